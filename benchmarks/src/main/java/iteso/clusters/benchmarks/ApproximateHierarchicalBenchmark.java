@@ -0,0 +1,73 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.ApproximateHierarchicalClustering;
+import iteso.clusters.ApproximateHierarchicalResult;
+import iteso.clusters.CoresetMethod;
+import iteso.clusters.Dataset;
+import iteso.clusters.DistanceMetric;
+import iteso.clusters.LinkageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide {@code ApproximateHierarchicalClustering.fit} según el tamaño de los datos, la forma de
+ * reducirlos y el número de representantes, con tamaños que el clustering exacto no alcanza.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApproximateHierarchicalBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"8"})
+    public int dimensions;
+
+    @Param({"KMEANS", "CLUSTERING_FEATURES"})
+    public CoresetMethod coreset;
+
+    @Param({"500", "2000"})
+    public int representatives;
+
+    private Dataset data;
+
+    @Setup
+    public void setUp() {
+        data = GaussianBlobs.generate(size, dimensions, 10, 1.0, 42);
+    }
+
+    @Benchmark
+    public ApproximateHierarchicalResult fit() {
+        return create().fit(data);
+    }
+
+    @Benchmark
+    public ApproximateHierarchicalResult fitParallel() {
+        ApproximateHierarchicalClustering clustering = create();
+        clustering.setParallelism(Runtime.getRuntime().availableProcessors());
+        return clustering.fit(data);
+    }
+
+    private ApproximateHierarchicalClustering create() {
+        ApproximateHierarchicalClustering clustering =
+                new ApproximateHierarchicalClustering(DistanceMetric.EUCLIDEAN, LinkageType.COMPLETE, 10);
+        clustering.setCoresetMethod(coreset);
+        clustering.setRepresentatives(representatives);
+        clustering.setSeed(42L);
+        return clustering;
+    }
+}
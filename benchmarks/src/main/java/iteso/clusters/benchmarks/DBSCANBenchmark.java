@@ -0,0 +1,63 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.DBSCAN;
+import iteso.clusters.DBSCANResult;
+import iteso.clusters.Dataset;
+import iteso.clusters.DistanceMetric;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide {@code DBSCAN.fit}, incluida la construcción del índice, según el tamaño de los datos, las
+ * dimensiones y la métrica. El radio crece con la raíz de las dimensiones para que la densidad de
+ * los vecindarios sea parecida.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DBSCANBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"2", "8"})
+    public int dimensions;
+
+    @Param({"EUCLIDEAN", "MANHATTAN"})
+    public DistanceMetric metric;
+
+    private Dataset data;
+
+    private double epsilon;
+
+    @Setup
+    public void setUp() {
+        data = GaussianBlobs.generate(size, dimensions, 10, 1.0, 42);
+        epsilon = 0.1 * Math.sqrt(dimensions) * (metric == DistanceMetric.MANHATTAN ? Math.sqrt(dimensions) : 1.0);
+    }
+
+    @Benchmark
+    public DBSCANResult fit() {
+        return new DBSCAN(epsilon, 10, metric).fit(data);
+    }
+
+    @Benchmark
+    public DBSCANResult fitParallel() {
+        DBSCAN dbscan = new DBSCAN(epsilon, 10, metric);
+        dbscan.setParallelism(Runtime.getRuntime().availableProcessors());
+        return dbscan.fit(data);
+    }
+}
@@ -0,0 +1,131 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.BinaryDataset;
+import iteso.clusters.DataLoader;
+import iteso.clusters.DataPoint;
+import iteso.clusters.Dataset;
+import iteso.clusters.InvalidDataException;
+import iteso.clusters.MissingDataException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la lectura de un CSV con una copia del cargador original, con {@code loadFromCSV}, que ahora
+ * usa el cargador paralelo mapeado en memoria, y con ese cargador directamente, y la lectura del
+ * mismo conjunto convertido al formato binario en double y en float.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataLoaderBenchmark {
+    @Param({"10000", "200000"})
+    public int size;
+
+    @Param({"4", "32"})
+    public int dimensions;
+
+    private Path file;
+    private Path binary;
+    private Path binaryFloat;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("blobs", ".csv");
+        GaussianBlobs.writeCsv(GaussianBlobs.generate(size, dimensions, 8, 1.0, 42), file);
+        binary = Files.createTempFile("blobs", ".clds");
+        binaryFloat = Files.createTempFile("blobs", ".clds");
+        try {
+            BinaryDataset.convert(file.toString(), binary.toString(), BinaryDataset.Precision.DOUBLE);
+            BinaryDataset.convert(file.toString(), binaryFloat.toString(), BinaryDataset.Precision.FLOAT);
+        } catch (InvalidDataException | MissingDataException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(binary);
+        Files.deleteIfExists(binaryFloat);
+    }
+
+    @Benchmark
+    public List<DataPoint> originalLoadFromCSV() throws IOException {
+        return originalLoadFromCSV(file.toString());
+    }
+
+    @Benchmark
+    public List<DataPoint> loadFromCSV() {
+        return new DataLoader().loadFromCSV(file.toString());
+    }
+
+    @Benchmark
+    public Dataset loadDataset() throws IOException, InvalidDataException, MissingDataException {
+        return new DataLoader().loadDataset(file.toString());
+    }
+
+    @Benchmark
+    public Dataset loadDatasetSingleThread() throws IOException, InvalidDataException, MissingDataException {
+        return new DataLoader(1).loadDataset(file.toString());
+    }
+
+    @Benchmark
+    public Dataset loadBinary() throws IOException, InvalidDataException {
+        return BinaryDataset.read(binary.toString());
+    }
+
+    @Benchmark
+    public Dataset loadBinaryFloat() throws IOException, InvalidDataException {
+        return BinaryDataset.read(binaryFloat.toString());
+    }
+
+    /**
+     * Copia de {@code DataLoader.loadFromCSV} antes de usar el cargador paralelo, que lee línea por
+     * línea con {@code split}; los errores de lectura se propagan en lugar de imprimirse.
+     */
+    private static List<DataPoint> originalLoadFromCSV(String filePath) throws IOException {
+        List<DataPoint> dataPoints = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
+            String line;
+            br.readLine(); // Saltar la línea de encabezados
+            while ((line = br.readLine()) != null) {
+                // Separar los valores por coma
+                String[] parts = line.split(",");
+                // Crear un array para las características numéricas
+                double[] features = new double[parts.length - 1];
+                for (int i = 0; i < parts.length - 1; i++) {
+                    // Convertir cada característica a un número
+                    features[i] = Double.parseDouble(parts[i]);
+                }
+                // La última parte es la etiqueta
+                String label = parts[parts.length - 1];
+                // Crear un nuevo punto de datos y agregarlo a la lista
+                dataPoints.add(new DataPoint(features, label));
+            }
+        }
+        return dataPoints;
+    }
+}
@@ -0,0 +1,100 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.Dataset;
+import iteso.clusters.DimensionReduction;
+import iteso.clusters.RandomProjection;
+import iteso.clusters.SparseDataset;
+import iteso.clusters.StreamingPCA;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el ajuste y la transformación de {@code RandomProjection} y {@code StreamingPCA} sobre
+ * datos dispersos de muchas dimensiones, con un número fijo de valores distintos de cero por punto
+ * concentrados en una banda de columnas distinta para cada grupo. Los datos son sintéticos porque
+ * {@code test.csv} tiene solo seis filas: reproducen a escala la forma que le da
+ * {@code DataLoader.loadSparseDataset}, columnas one-hot o de palabras casi todas en cero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DimensionReductionBenchmark {
+    @Param({"100000"})
+    public int size;
+
+    @Param({"10000", "100000"})
+    public int dimensions;
+
+    @Param({"20"})
+    public int nonZeros;
+
+    @Param({"16"})
+    public int target;
+
+    /**
+     * Número de grupos de los datos sintéticos.
+     */
+    private static final int GROUPS = 10;
+
+    private SparseDataset data;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int[] rowPointers = new int[size + 1];
+        int[] columns = new int[size * nonZeros];
+        double[] values = new double[size * nonZeros];
+        int band = dimensions / GROUPS;
+        for (int row = 0; row < size; row++) {
+            int group = random.nextInt(GROUPS);
+            TreeSet<Integer> chosen = new TreeSet<>();
+            while (chosen.size() < nonZeros) {
+                chosen.add(random.nextDouble() < 0.8 ? group * band + random.nextInt(band) : random.nextInt(dimensions));
+            }
+            int position = row * nonZeros;
+            for (int column : chosen) {
+                columns[position] = column;
+                values[position++] = 1 + random.nextInt(3);
+            }
+            rowPointers[row + 1] = position;
+        }
+        data = new SparseDataset(rowPointers, columns, values, dimensions, null);
+    }
+
+    @Benchmark
+    public Dataset randomProjection() {
+        return reduce(new RandomProjection(target), 1);
+    }
+
+    @Benchmark
+    public Dataset streamingPca() {
+        return reduce(new StreamingPCA(target), 1);
+    }
+
+    @Benchmark
+    public Dataset streamingPcaParallel() {
+        return reduce(new StreamingPCA(target), Runtime.getRuntime().availableProcessors());
+    }
+
+    private Dataset reduce(DimensionReduction reduction, int parallelism) {
+        reduction.setSeed(42L);
+        reduction.setParallelism(parallelism);
+        return reduction.fit(data).transform(data);
+    }
+}
@@ -0,0 +1,121 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.Dataset;
+import iteso.clusters.DistanceKernel;
+import iteso.clusters.DistanceMetric;
+import iteso.clusters.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el cálculo de distancias: la llamada general de {@link Utils}, el núcleo de la métrica y la
+ * búsqueda del centroide más cercano entre k centroides. {@link #baselineCalculateDistance()} mide
+ * una copia de la implementación original, con {@code switch} y {@code Math.pow}, como referencia
+ * para reproducir la mejora.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+    @Param({"4", "16", "64", "256"})
+    public int dimensions;
+
+    @Param({"EUCLIDEAN", "MANHATTAN", "CHEBYSHEV", "COSINE", "MINKOWSKI"})
+    public DistanceMetric metric;
+
+    /**
+     * Exponente de {@link DistanceMetric#MINKOWSKI}; las demás métricas lo ignoran.
+     */
+    @Param({"3.0"})
+    public double minkowskiP;
+
+    /**
+     * Número de centroides en la búsqueda del más cercano.
+     */
+    private static final int CENTROIDS = 32;
+
+    private double[] first;
+    private double[] second;
+    private double[] centroids;
+    private DistanceKernel kernel;
+
+    @Setup
+    public void setUp() {
+        Dataset points = GaussianBlobs.generate(2 + CENTROIDS, dimensions, 4, 1.0, 42);
+        first = points.copyRow(0);
+        second = points.copyRow(1);
+        centroids = new double[CENTROIDS * dimensions];
+        for (int c = 0; c < CENTROIDS; c++) {
+            points.copyRow(2 + c, centroids, c * dimensions);
+        }
+        kernel = DistanceKernel.of(metric, minkowskiP);
+    }
+
+    /**
+     * Distancia con la implementación original de {@code Utils.calculateDistance}. Solo tenía la
+     * distancia euclidiana y la Manhattan; con las demás métricas devuelve NaN en lugar de lanzar la
+     * excepción original, y su resultado no debe compararse.
+     */
+    @Benchmark
+    public double baselineCalculateDistance() {
+        if (metric != DistanceMetric.EUCLIDEAN && metric != DistanceMetric.MANHATTAN) {
+            return Double.NaN;
+        }
+        return originalCalculateDistance(first, second, metric);
+    }
+
+    @Benchmark
+    public double calculateDistance() {
+        return Utils.calculateDistance(first, second, metric);
+    }
+
+    @Benchmark
+    public double kernelDistance() {
+        return kernel.distance(first, 0, second, 0, dimensions);
+    }
+
+    @Benchmark
+    public int nearestCentroid() {
+        return kernel.nearest(first, 0, centroids, CENTROIDS, dimensions);
+    }
+
+    /**
+     * Copia de {@code Utils.calculateDistance} antes de los núcleos de distancia.
+     */
+    private static double originalCalculateDistance(double[] features1, double[] features2, DistanceMetric metric) {
+        double distance = 0.0;
+        switch (metric) {
+            case EUCLIDEAN:
+                // Calcular la suma de las diferencias al cuadrado
+                for (int i = 0; i < features1.length; i++) {
+                    distance += Math.pow(features1[i] - features2[i], 2);
+                }
+                // Obtener la raíz cuadrada de la suma
+                distance = Math.sqrt(distance);
+                break;
+            case MANHATTAN:
+                // Calcular la suma de las diferencias absolutas
+                for (int i = 0; i < features1.length; i++) {
+                    distance += Math.abs(features1[i] - features2[i]);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Métrica no soportada");
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,95 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.Dataset;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Generador de datos sintéticos: nubes gaussianas alrededor de centros uniformes.
+ * Con la misma semilla siempre produce los mismos datos.
+ */
+public final class GaussianBlobs {
+    /**
+     * Lado del hipercubo donde se eligen los centros.
+     */
+    private static final double CENTER_RANGE = 20.0;
+
+    private GaussianBlobs() {
+    }
+
+    /**
+     * Genera un conjunto de datos con nubes gaussianas isotrópicas.
+     * @param size Número de puntos.
+     * @param dimensions Número de dimensiones.
+     * @param centers Número de nubes.
+     * @param deviation Desviación estándar de cada nube.
+     * @param seed Semilla del generador.
+     * @return Conjunto de datos; la etiqueta de cada punto es el nombre de su nube.
+     */
+    public static Dataset generate(int size, int dimensions, int centers, double deviation, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] centerValues = new double[centers * dimensions];
+        for (int i = 0; i < centerValues.length; i++) {
+            centerValues[i] = random.nextDouble(-CENTER_RANGE / 2, CENTER_RANGE / 2);
+        }
+        String[] names = new String[centers];
+        for (int c = 0; c < centers; c++) {
+            names[c] = "blob-" + c;
+        }
+        Dataset data = Dataset.allocate(size, dimensions);
+        for (int p = 0; p < size; p++) {
+            int center = random.nextInt(centers);
+            for (int i = 0; i < dimensions; i++) {
+                data.set(p, i, centerValues[center * dimensions + i] + deviation * gaussian(random));
+            }
+            data.setLabel(p, names[center]);
+        }
+        return data;
+    }
+
+    /**
+     * Escribe un conjunto de datos en el formato CSV que lee {@link iteso.clusters.DataLoader}, que
+     * siempre descarta la primera línea como encabezado.
+     * @param data Conjunto de datos.
+     * @param file Archivo destino.
+     * @throws IOException Si el archivo no puede escribirse.
+     */
+    public static void writeCsv(Dataset data, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < data.dimensions(); i++) {
+                writer.write("x" + i);
+                writer.write(',');
+            }
+            writer.write("label");
+            writer.newLine();
+            for (int p = 0; p < data.size(); p++) {
+                for (int i = 0; i < data.dimensions(); i++) {
+                    writer.write(Double.toString(data.get(p, i)));
+                    writer.write(',');
+                }
+                writer.write(data.getLabel(p));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Obtiene una muestra normal estándar con el método polar de Marsaglia.
+     * @param random Generador de números aleatorios.
+     * @return La muestra.
+     */
+    private static double gaussian(SplittableRandom random) {
+        double u, v, s;
+        do {
+            u = random.nextDouble(-1.0, 1.0);
+            v = random.nextDouble(-1.0, 1.0);
+            s = u * u + v * v;
+        } while (s >= 1.0 || s == 0.0);
+        return u * Math.sqrt(-2.0 * Math.log(s) / s);
+    }
+}
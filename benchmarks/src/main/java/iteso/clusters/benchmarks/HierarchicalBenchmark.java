@@ -0,0 +1,65 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.Cluster;
+import iteso.clusters.Dataset;
+import iteso.clusters.DistanceMetric;
+import iteso.clusters.HierarchicalClustering;
+import iteso.clusters.LinkageType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide {@code HierarchicalClustering.fit} según el tamaño de los datos, la métrica y el tipo de enlace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HierarchicalBenchmark {
+    @Param({"1000", "5000"})
+    public int size;
+
+    @Param({"8"})
+    public int dimensions;
+
+    @Param({"EUCLIDEAN", "MANHATTAN"})
+    public DistanceMetric metric;
+
+    @Param({"SINGLE", "COMPLETE", "AVERAGE"})
+    public LinkageType linkage;
+
+    private Dataset data;
+
+    @Setup
+    public void setUp() {
+        data = GaussianBlobs.generate(size, dimensions, 10, 1.0, 42);
+    }
+
+    @Benchmark
+    public List<Cluster> fit() {
+        return new HierarchicalClustering(metric, linkage, 10).fit(data);
+    }
+
+    /**
+     * Enlace de Ward sobre centroides, sin matriz de distancias; siempre usa la métrica
+     * euclidiana, así que no depende de los parámetros de métrica ni de enlace.
+     */
+    @Benchmark
+    public List<Cluster> ward() {
+        return new HierarchicalClustering(DistanceMetric.EUCLIDEAN, LinkageType.WARD, 10).fit(data);
+    }
+}
@@ -0,0 +1,86 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.Dataset;
+import iteso.clusters.DistanceMetric;
+import iteso.clusters.HamerlyKMeans;
+import iteso.clusters.IndexedKMeans;
+import iteso.clusters.KMeans;
+import iteso.clusters.KMeansResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide {@code KMeans.fit} con un número fijo de iteraciones según el tamaño de los datos,
+ * las dimensiones, k y la métrica.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KMeansBenchmark {
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"4", "32"})
+    public int dimensions;
+
+    @Param({"8", "64"})
+    public int k;
+
+    @Param({"EUCLIDEAN", "MANHATTAN"})
+    public DistanceMetric metric;
+
+    /**
+     * Número de iteraciones de cada ejecución; sin tolerancia para que todas hagan el mismo trabajo.
+     */
+    private static final int ITERATIONS = 10;
+
+    private Dataset data;
+
+    @Setup
+    public void setUp() {
+        data = GaussianBlobs.generate(size, dimensions, k, 1.0, 42);
+    }
+
+    @Benchmark
+    public KMeansResult lloyd() {
+        KMeans kMeans = new KMeans(k, ITERATIONS, metric);
+        kMeans.setSeed(7L);
+        return kMeans.fit(data);
+    }
+
+    @Benchmark
+    public KMeansResult hamerly() {
+        KMeans kMeans = new HamerlyKMeans(k, ITERATIONS, metric);
+        kMeans.setSeed(7L);
+        return kMeans.fit(data);
+    }
+
+    @Benchmark
+    public KMeansResult indexed() {
+        KMeans kMeans = new IndexedKMeans(k, ITERATIONS, metric);
+        kMeans.setSeed(7L);
+        return kMeans.fit(data);
+    }
+
+    @Benchmark
+    public KMeansResult lloydParallel() {
+        KMeans kMeans = new KMeans(k, ITERATIONS, metric);
+        kMeans.setSeed(7L);
+        kMeans.setParallelism(Runtime.getRuntime().availableProcessors());
+        return kMeans.fit(data);
+    }
+}
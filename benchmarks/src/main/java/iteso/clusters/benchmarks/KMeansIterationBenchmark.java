@@ -0,0 +1,121 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.CentroidInitializer;
+import iteso.clusters.Dataset;
+import iteso.clusters.DistanceMetric;
+import iteso.clusters.HamerlyKMeans;
+import iteso.clusters.InitializationMethod;
+import iteso.clusters.KMeans;
+import iteso.clusters.KMeansResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el costo de las iteraciones de K-Means con la API pública. Los centroides iniciales son
+ * siempre los mismos, así que {@link #withoutIterations()} mide solo el costo fijo de
+ * {@code fit} (copiar los centroides y construir los clusters) y {@link #withIterations()} le
+ * suma {@value #ITERATIONS} iteraciones. La diferencia entre ambos dividida entre
+ * {@value #ITERATIONS} es el tiempo de una iteración; con el perfilador de GC, la diferencia de
+ * {@code gc.alloc.rate.norm} debe ser prácticamente cero.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KMeansIterationBenchmark {
+    @Param({"100000"})
+    public int size;
+
+    @Param({"8"})
+    public int dimensions;
+
+    @Param({"16"})
+    public int k;
+
+    @Param({"false", "true"})
+    public boolean hamerly;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    /**
+     * Iteraciones de {@link #withIterations()}; sin tolerancia, los datos no convergen antes.
+     */
+    private static final int ITERATIONS = 10;
+
+    private Dataset data;
+    private ForkJoinPool pool;
+    private KMeans withIterations;
+    private KMeans withoutIterations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        data = GaussianBlobs.generate(size, dimensions, k, 1.0, 42);
+        if (direct) {
+            Dataset copy = Dataset.allocateDirect(size, dimensions);
+            for (int p = 0; p < size; p++) {
+                for (int i = 0; i < dimensions; i++) {
+                    copy.set(p, i, data.get(p, i));
+                }
+            }
+            data = copy;
+        }
+        pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        double[] initial = InitializationMethod.RANDOM.initialize(data, k, DistanceMetric.EUCLIDEAN, 7L, pool);
+        // Mismos centroides iniciales en cada ejecución, sin el costo de elegirlos
+        CentroidInitializer fixed = (dataset, clusters, metric, seed, executor) -> initial.clone();
+        withIterations = create(ITERATIONS, fixed);
+        withoutIterations = create(0, fixed);
+        KMeansResult check = withIterations.fit(data);
+        if (check.getIterations() < ITERATIONS) {
+            throw new IllegalStateException("K-Means convergió en " + check.getIterations()
+                    + " iteraciones; la diferencia no mediría " + ITERATIONS);
+        }
+    }
+
+    private KMeans create(int iterations, CentroidInitializer initializer) {
+        KMeans kMeans = hamerly
+                ? new HamerlyKMeans(k, iterations, DistanceMetric.EUCLIDEAN)
+                : new KMeans(k, iterations, DistanceMetric.EUCLIDEAN);
+        kMeans.setInitializer(initializer);
+        kMeans.setSeed(7L);
+        kMeans.setPool(pool);
+        return kMeans;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public KMeansResult withoutIterations() {
+        return withoutIterations.fit(data);
+    }
+
+    @Benchmark
+    public KMeansResult withIterations() {
+        return withIterations.fit(data);
+    }
+}
@@ -0,0 +1,77 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.Dataset;
+import iteso.clusters.DistanceMetric;
+import iteso.clusters.InvalidDataException;
+import iteso.clusters.KMeans;
+import iteso.clusters.KMeansModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la predicción de un punto y de un lote con un {@link KMeansModel}, y la lectura de un
+ * modelo serializado, según k y las dimensiones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KMeansModelBenchmark {
+    private static final int BATCH = 4096;
+
+    @Param({"8", "64", "256"})
+    public int k;
+
+    @Param({"4", "32"})
+    public int dimensions;
+
+    private KMeansModel model;
+    private byte[] bytes;
+    private double[] batch;
+    private int[] labels;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Dataset data = GaussianBlobs.generate(Math.max(BATCH, 20 * k), dimensions, k, 1.0, 42);
+        KMeans kMeans = new KMeans(k, 20, DistanceMetric.EUCLIDEAN);
+        kMeans.setSeed(7L);
+        model = new KMeansModel(kMeans.fit(data), DistanceMetric.EUCLIDEAN);
+        bytes = model.toBytes();
+        batch = new double[BATCH * dimensions];
+        for (int i = 0; i < BATCH; i++) {
+            data.copyRow(i, batch, i * dimensions);
+        }
+        labels = new int[BATCH];
+    }
+
+    @Benchmark
+    public int predictPoint() {
+        next = (next + 1) % BATCH;
+        return model.predict(batch, next * dimensions);
+    }
+
+    @Benchmark
+    public int[] predictBatch() {
+        model.predict(batch, 0, BATCH, labels, null);
+        return labels;
+    }
+
+    @Benchmark
+    public KMeansModel load() throws InvalidDataException {
+        return KMeansModel.fromBytes(bytes);
+    }
+}
@@ -0,0 +1,78 @@
+package iteso.clusters.benchmarks;
+
+import iteso.clusters.Dataset;
+import iteso.clusters.DistanceMetric;
+import iteso.clusters.HamerlyKMeans;
+import iteso.clusters.InitializationMethod;
+import iteso.clusters.KMeans;
+import iteso.clusters.MultiStartKMeans;
+import iteso.clusters.MultiStartKMeansResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide {@code MultiStartKMeans.fit} con y sin abandono de reinicios, en un hilo y en todos los
+ * procesadores, con inicialización aleatoria para que los reinicios difieran.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiStartKMeansBenchmark {
+    @Param({"100000"})
+    public int size;
+
+    @Param({"8"})
+    public int dimensions;
+
+    @Param({"20"})
+    public int k;
+
+    @Param({"12"})
+    public int restarts;
+
+    private Dataset data;
+
+    @Setup
+    public void setUp() {
+        data = GaussianBlobs.generate(size, dimensions, k, 1.0, 42);
+    }
+
+    @Benchmark
+    public MultiStartKMeansResult pruned() {
+        return fit(0.1, 1);
+    }
+
+    @Benchmark
+    public MultiStartKMeansResult complete() {
+        return fit(Double.POSITIVE_INFINITY, 1);
+    }
+
+    @Benchmark
+    public MultiStartKMeansResult prunedParallel() {
+        return fit(0.1, Runtime.getRuntime().availableProcessors());
+    }
+
+    private MultiStartKMeansResult fit(double pruningMargin, int parallelism) {
+        KMeans kMeans = new HamerlyKMeans(k, 100, DistanceMetric.EUCLIDEAN);
+        kMeans.setInitializer(InitializationMethod.RANDOM);
+        MultiStartKMeans multiStart = new MultiStartKMeans(kMeans, restarts);
+        multiStart.setSeed(7L);
+        multiStart.setPruningMargin(pruningMargin);
+        multiStart.setParallelism(parallelism);
+        return multiStart.fit(data);
+    }
+}
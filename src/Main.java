@@ -6,6 +6,7 @@ public class Main {
         String csvPath = "data/IRIS.csv";
 
         Simplify simplify = new Simplify(csvPath);
+        simplify.setListener(new ConsoleSummary());
 
         simplify.performClustering("kmeans", 3, DistanceMetric.EUCLIDEAN, null);
         simplify.performClustering("hierarchical", 3, DistanceMetric.EUCLIDEAN, LinkageType.SINGLE);
@@ -0,0 +1,391 @@
+package iteso.clusters;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Motor de clustering jerárquico aglomerativo en tiempo O(n²).
+ * <p>
+ * Para enlace simple usa SLINK (Sibson, 1973), que calcula cada distancia una sola vez y solo
+ * necesita memoria O(n). Para los demás enlaces usa la cadena de vecinos más cercanos
+ * (Müllner, 2011) sobre una matriz de distancias condensada que se actualiza con la fórmula de
+ * Lance-Williams. El enlace de Ward con distancia euclidiana usa la misma cadena sobre los
+ * centroides y tamaños de los clusters, sin matriz. Todos producen la lista completa de fusiones
+ * ordenada por altura; los puntos de cada fusión son representantes de los dos clusters fusionados.
+ * <p>
+ * Cada motor recibe una condición de paro opcional que revisa en cada fila o fusión, para que un
+ * trabajo cancelado o vencido deje de ocupar su hilo; al cumplirse lanza una
+ * {@link java.util.concurrent.CancellationException}.
+ */
+final class AgglomerativeEngine {
+    private AgglomerativeEngine() {
+    }
+
+    /**
+     * Secuencia de n - 1 fusiones ordenada por altura. La fusión m une el cluster que contiene al
+     * punto {@code first[m]} con el que contiene al punto {@code second[m]} a la distancia
+     * {@code heights[m]}.
+     */
+    static final class Merges {
+        final int[] first;
+        final int[] second;
+        final double[] heights;
+
+        Merges(int[] first, int[] second, double[] heights) {
+            this.first = first;
+            this.second = second;
+            this.heights = heights;
+        }
+
+        /**
+         * Ordena las fusiones por altura conservando el orden original en los empates.
+         * @return Las mismas fusiones ordenadas.
+         */
+        Merges sorted() {
+            Integer[] order = new Integer[heights.length];
+            for (int m = 0; m < order.length; m++) order[m] = m;
+            Arrays.sort(order, Comparator.comparingDouble(m -> heights[m]));
+            int[] sortedFirst = new int[order.length];
+            int[] sortedSecond = new int[order.length];
+            double[] sortedHeights = new double[order.length];
+            for (int m = 0; m < order.length; m++) {
+                sortedFirst[m] = first[order[m]];
+                sortedSecond[m] = second[order[m]];
+                sortedHeights[m] = heights[order[m]];
+            }
+            return new Merges(sortedFirst, sortedSecond, sortedHeights);
+        }
+    }
+
+    /**
+     * Distancia entre dos puntos identificados por su índice.
+     */
+    private interface PairwiseDistance {
+        double between(int i, int j);
+    }
+
+    /**
+     * Calcula las fusiones de enlace simple con SLINK.
+     * @param data Conjunto de datos.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param stop Condición de paro, o null.
+     * @return Las fusiones ordenadas por altura.
+     */
+    static Merges singleLinkage(Dataset data, DistanceKernel kernel, BooleanSupplier stop) {
+        Dataset heap = data.toHeap();
+        int dimensions = heap.dimensions();
+        double[] features = heap.array();
+        // SLINK solo compara distancias, así que basta el valor comparable; las alturas se convierten al final
+        Merges merges = singleLinkage(heap.size(), (i, j) ->
+                kernel.comparable(features, i * dimensions, features, j * dimensions, dimensions), stop);
+        for (int m = 0; m < merges.heights.length; m++) {
+            merges.heights[m] = kernel.toDistance(merges.heights[m]);
+        }
+        return merges;
+    }
+
+    /**
+     * Calcula las fusiones de enlace simple con SLINK a partir de una matriz ya calculada,
+     * sin modificarla.
+     * @param matrix Matriz de distancias condensada.
+     * @param stop Condición de paro, o null.
+     * @return Las fusiones ordenadas por altura.
+     */
+    static Merges singleLinkage(CondensedDistanceMatrix matrix, BooleanSupplier stop) {
+        return singleLinkage(matrix.size(), matrix::get, stop);
+    }
+
+    /**
+     * Implementación de SLINK sobre una función de distancia entre puntos.
+     * @param size Número de puntos.
+     * @param distances Distancia entre cada par de puntos.
+     * @param stop Condición de paro, o null; se revisa en cada fila.
+     * @return Las fusiones ordenadas por altura.
+     */
+    private static Merges singleLinkage(int size, PairwiseDistance distances, BooleanSupplier stop) {
+        // Representación de punteros: el punto i se une al cluster de pointer[i] a la altura height[i]
+        int[] pointer = new int[size];
+        double[] height = new double[size];
+        double[] row = new double[size];
+        for (int i = 0; i < size; i++) {
+            Utils.checkStop(stop);
+            pointer[i] = i;
+            height[i] = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < i; j++) {
+                row[j] = distances.between(j, i);
+            }
+            for (int j = 0; j < i; j++) {
+                int target = pointer[j];
+                if (height[j] >= row[j]) {
+                    row[target] = Math.min(row[target], height[j]);
+                    height[j] = row[j];
+                    pointer[j] = i;
+                } else {
+                    row[target] = Math.min(row[target], row[j]);
+                }
+            }
+            for (int j = 0; j < i; j++) {
+                if (height[j] >= height[pointer[j]]) {
+                    pointer[j] = i;
+                }
+            }
+        }
+
+        int[] first = new int[Math.max(size - 1, 0)];
+        int[] second = new int[first.length];
+        double[] heights = new double[first.length];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = i;
+            second[i] = pointer[i];
+            heights[i] = height[i];
+        }
+        return new Merges(first, second, heights).sorted();
+    }
+
+    /**
+     * Calcula las fusiones con la cadena de vecinos más cercanos. La matriz se modifica.
+     * @param matrix Matriz de distancias condensada.
+     * @param linkage Tipo de enlace; debe ser reducible.
+     * @return Las fusiones ordenadas por altura.
+     */
+    static Merges nearestNeighborChain(CondensedDistanceMatrix matrix, LinkageType linkage) {
+        return nearestNeighborChain(matrix, linkage, null, null);
+    }
+
+    /**
+     * Calcula las fusiones con la cadena de vecinos más cercanos entre elementos con peso, por
+     * ejemplo representantes de grupos de puntos. La matriz se modifica.
+     * @param matrix Matriz de distancias condensada.
+     * @param linkage Tipo de enlace; debe ser reducible.
+     * @param weights Peso inicial de cada elemento, o null para peso 1; los enlaces que dependen
+     *                del tamaño de los clusters usan la suma de los pesos.
+     * @param stop Condición de paro, o null; se revisa en cada fusión.
+     * @return Las fusiones ordenadas por altura.
+     */
+    static Merges nearestNeighborChain(CondensedDistanceMatrix matrix, LinkageType linkage, double[] weights,
+                                       BooleanSupplier stop) {
+        int size = matrix.size();
+        int merges = Math.max(size - 1, 0);
+        int[] first = new int[merges];
+        int[] second = new int[merges];
+        double[] heights = new double[merges];
+        boolean[] active = new boolean[size];
+        Arrays.fill(active, true);
+        if (!linkage.isReducible()) {
+            throw new IllegalArgumentException("El enlace " + linkage + " no es reducible");
+        }
+        double[] clusterSizes = weights != null ? weights.clone() : new double[size];
+        if (weights == null) {
+            Arrays.fill(clusterSizes, 1);
+        }
+        boolean squared = linkage.usesSquaredDistances();
+        if (squared) {
+            // Ward opera sobre distancias al cuadrado; entre elementos con peso la distancia inicial
+            // ya es la de Ward entre sus grupos, 2·wi·wj / (wi + wj) veces la euclidiana al cuadrado
+            for (int i = 0; i < size; i++) {
+                Utils.checkStop(stop);
+                for (int j = i + 1; j < size; j++) {
+                    double distance = matrix.get(i, j);
+                    double scale = 2 * clusterSizes[i] * clusterSizes[j] / (clusterSizes[i] + clusterSizes[j]);
+                    matrix.set(i, j, scale * distance * distance);
+                }
+            }
+        }
+        int[] chain = new int[size];
+        int chainLength = 0;
+        int nextStart = 0;
+
+        for (int m = 0; m < merges; m++) {
+            Utils.checkStop(stop);
+            if (chainLength == 0) {
+                while (!active[nextStart]) nextStart++;
+                chain[chainLength++] = nextStart;
+            }
+            int a, b;
+            while (true) {
+                a = chain[chainLength - 1];
+                int previous = chainLength > 1 ? chain[chainLength - 2] : -1;
+                // Vecino más cercano de a; en empate se prefiere el elemento anterior de la cadena
+                b = -1;
+                double minDistance = Double.POSITIVE_INFINITY;
+                for (int c = 0; c < size; c++) {
+                    if (c == a || !active[c]) continue;
+                    double distance = matrix.get(a, c);
+                    if (distance < minDistance || b < 0) {
+                        minDistance = distance;
+                        b = c;
+                    }
+                }
+                if (previous >= 0 && matrix.get(a, previous) <= minDistance) {
+                    b = previous;
+                }
+                if (b == previous) {
+                    break;
+                }
+                chain[chainLength++] = b;
+            }
+            chainLength -= 2;
+
+            // Fusionar a y b; el nuevo cluster ocupa la posición del menor índice
+            double distance = matrix.get(a, b);
+            int keep = Math.min(a, b);
+            int removed = Math.max(a, b);
+            first[m] = keep;
+            second[m] = removed;
+            heights[m] = squared ? Math.sqrt(distance) : distance;
+            for (int c = 0; c < size; c++) {
+                if (c == keep || c == removed || !active[c]) continue;
+                matrix.set(keep, c, linkage.update(matrix.get(keep, c), matrix.get(removed, c), distance,
+                        clusterSizes[keep], clusterSizes[removed], clusterSizes[c]));
+            }
+            active[removed] = false;
+            clusterSizes[keep] += clusterSizes[removed];
+        }
+        return new Merges(first, second, heights).sorted();
+    }
+
+    /**
+     * Calcula las fusiones de enlace de Ward con la cadena de vecinos más cercanos sobre los
+     * centroides y tamaños de los clusters. La distancia de Ward entre dos clusters se obtiene de
+     * sus centroides, así que no hace falta la matriz de distancias: la memoria es O(n·d) y cada
+     * búsqueda del vecino más cercano recorre los centroides activos.
+     * @param data Conjunto de datos; la métrica es siempre la euclidiana.
+     * @param weights Peso inicial de cada punto, o null para peso 1.
+     * @param stop Condición de paro, o null; se revisa en cada fusión.
+     * @return Las fusiones ordenadas por altura.
+     */
+    static Merges wardLinkage(Dataset data, double[] weights, BooleanSupplier stop) {
+        int size = data.size();
+        int dimensions = data.dimensions();
+        // Copia propia: los centroides de los clusters fusionados se escriben encima de sus puntos
+        double[] centroids = data.hasArray() ? data.array().clone() : data.toHeap().array();
+        double[] clusterSizes = weights != null ? weights.clone() : new double[size];
+        if (weights == null) {
+            Arrays.fill(clusterSizes, 1);
+        }
+        DistanceKernel kernel = DistanceKernel.of(DistanceMetric.EUCLIDEAN);
+        int merges = Math.max(size - 1, 0);
+        int[] first = new int[merges];
+        int[] second = new int[merges];
+        double[] heights = new double[merges];
+        boolean[] active = new boolean[size];
+        Arrays.fill(active, true);
+        int[] chain = new int[size];
+        int chainLength = 0;
+        int nextStart = 0;
+
+        for (int m = 0; m < merges; m++) {
+            Utils.checkStop(stop);
+            if (chainLength == 0) {
+                while (!active[nextStart]) nextStart++;
+                chain[chainLength++] = nextStart;
+            }
+            int a, b;
+            double minDistance;
+            while (true) {
+                a = chain[chainLength - 1];
+                int previous = chainLength > 1 ? chain[chainLength - 2] : -1;
+                // Vecino más cercano de a; en empate se prefiere el elemento anterior de la cadena
+                b = -1;
+                minDistance = Double.POSITIVE_INFINITY;
+                for (int c = 0; c < size; c++) {
+                    if (c == a || !active[c]) continue;
+                    double distance = wardDistance(kernel, centroids, clusterSizes, a, c, dimensions);
+                    if (distance < minDistance || b < 0) {
+                        minDistance = distance;
+                        b = c;
+                    }
+                }
+                if (previous >= 0) {
+                    double toPrevious = wardDistance(kernel, centroids, clusterSizes, a, previous, dimensions);
+                    if (toPrevious <= minDistance) {
+                        minDistance = toPrevious;
+                        b = previous;
+                    }
+                }
+                if (b == previous) {
+                    break;
+                }
+                chain[chainLength++] = b;
+            }
+            chainLength -= 2;
+
+            // El centroide de la unión es el promedio ponderado y ocupa la posición del menor índice
+            int keep = Math.min(a, b);
+            int removed = Math.max(a, b);
+            first[m] = keep;
+            second[m] = removed;
+            heights[m] = Math.sqrt(minDistance);
+            double total = clusterSizes[keep] + clusterSizes[removed];
+            double keepShare = clusterSizes[keep] / total;
+            double removedShare = clusterSizes[removed] / total;
+            int keepOffset = keep * dimensions;
+            int removedOffset = removed * dimensions;
+            for (int f = 0; f < dimensions; f++) {
+                centroids[keepOffset + f] = keepShare * centroids[keepOffset + f]
+                        + removedShare * centroids[removedOffset + f];
+            }
+            clusterSizes[keep] = total;
+            active[removed] = false;
+        }
+        return new Merges(first, second, heights).sorted();
+    }
+
+    /**
+     * Calcula la distancia de Ward al cuadrado entre dos clusters a partir de sus centroides:
+     * 2·na·nb / (na + nb)·‖ca − cb‖², el doble del aumento de la suma de cuadrados al fusionarlos.
+     */
+    private static double wardDistance(DistanceKernel kernel, double[] centroids, double[] clusterSizes,
+                                       int a, int b, int dimensions) {
+        // Se ordenan los operandos para que la distancia sea idéntica en ambos sentidos
+        int low = Math.min(a, b);
+        int high = Math.max(a, b);
+        double scale = 2 * clusterSizes[low] * clusterSizes[high] / (clusterSizes[low] + clusterSizes[high]);
+        return scale * kernel.squaredDistance(centroids, low * dimensions, centroids, high * dimensions, dimensions);
+    }
+
+    /**
+     * Aplica las primeras fusiones hasta dejar el número de clusters indicado.
+     * @param merges Fusiones ordenadas por altura.
+     * @param size Número de puntos.
+     * @param clusterCount Número de clusters deseado.
+     * @return Cluster de cada punto, numerados de 0 en adelante en el orden de su primer punto.
+     */
+    static int[] cut(Merges merges, int size, int clusterCount) {
+        int[] parent = new int[size];
+        for (int i = 0; i < size; i++) parent[i] = i;
+        int applied = Math.max(0, Math.min(merges.heights.length, size - Math.max(clusterCount, 1)));
+        for (int m = 0; m < applied; m++) {
+            int rootA = find(parent, merges.first[m]);
+            int rootB = find(parent, merges.second[m]);
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+        int[] labels = new int[size];
+        int[] clusterOfRoot = new int[size];
+        Arrays.fill(clusterOfRoot, -1);
+        int clusters = 0;
+        for (int i = 0; i < size; i++) {
+            int root = find(parent, i);
+            if (clusterOfRoot[root] < 0) {
+                clusterOfRoot[root] = clusters++;
+            }
+            labels[i] = clusterOfRoot[root];
+        }
+        return labels;
+    }
+
+    /**
+     * Busca la raíz de un elemento en un union-find, comprimiendo el camino.
+     * @param parent Padre de cada elemento.
+     * @param i Elemento.
+     * @return La raíz.
+     */
+    static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
@@ -0,0 +1,565 @@
+package iteso.clusters;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Clustering jerárquico aproximado para conjuntos grandes. El clustering jerárquico exacto cuesta
+ * O(n²) en tiempo y, salvo el enlace simple, también en memoria; esta variante lo ejecuta sobre un
+ * conjunto reducido de representantes con peso y después asigna cada punto al cluster de su
+ * representante.
+ * <p>
+ * La ejecución tiene tres fases:
+ * <ol>
+ *     <li>Reducción: los datos se resumen en a lo más {@link #setRepresentatives(int) m}
+ *     representantes con {@link CoresetMethod#KMEANS microclusters de K-Means} o con
+ *     {@link CoresetMethod#CLUSTERING_FEATURES características de clustering} en una pasada.</li>
+ *     <li>Fusiones: el clustering jerárquico exacto sobre los representantes, con el número de
+ *     puntos de cada uno como peso en los enlaces que dependen del tamaño de los clusters.</li>
+ *     <li>Asignación: cada punto se asigna en paralelo a su representante más cercano, buscado en un
+ *     {@link SpatialIndex}; los centroides finales son la media de todos los puntos de cada cluster.</li>
+ * </ol>
+ * Con más representantes el resultado se parece más al exacto y tarda más: las fusiones cuestan
+ * O(m²). La concordancia puede medirse con {@link #setValidationSampleSize(int)}, que ejecuta
+ * el clustering exacto sobre una muestra y la compara con el índice de Rand ajustado. Con una
+ * semilla fija el resultado no depende del número de hilos.
+ */
+public class ApproximateHierarchicalClustering implements ClusteringAlgorithm {
+    /**
+     * Número de representantes por defecto.
+     */
+    public static final int DEFAULT_REPRESENTATIVES = 1000;
+
+    /**
+     * Nombre con el que se informan las fases al receptor.
+     */
+    private static final String SOURCE = "ApproximateHierarchicalClustering";
+
+    /**
+     * Núcleo euclidiano de las características de clustering, que se definen con él.
+     */
+    private static final DistanceKernel EUCLIDEAN = DistanceKernel.of(DistanceMetric.EUCLIDEAN);
+
+    /**
+     * Métrica de distancia a utilizar.
+     */
+    private final DistanceMetric metric;
+
+    /**
+     * Exponente de la distancia de Minkowski; solo se usa con {@link DistanceMetric#MINKOWSKI}.
+     */
+    private double minkowskiP = DistanceMetric.DEFAULT_MINKOWSKI_P;
+
+    /**
+     * Tipo de enlace.
+     */
+    private final LinkageType linkageType;
+
+    /**
+     * Número deseado de clusters al finalizar.
+     */
+    private final int desiredClusterCount;
+
+    /**
+     * Número máximo de representantes.
+     */
+    private int representatives = DEFAULT_REPRESENTATIVES;
+
+    /**
+     * Forma de reducir los datos a representantes.
+     */
+    private CoresetMethod coresetMethod = CoresetMethod.KMEANS;
+
+    /**
+     * Número máximo de iteraciones de los microclusters de K-Means.
+     */
+    private int reductionIterations = 3;
+
+    /**
+     * Tamaño de la muestra con la que se mide la concordancia con el exacto; 0 para no medirla.
+     */
+    private int validationSampleSize;
+
+    /**
+     * Semilla de la reducción y de la muestra, o null para elegir una nueva en cada ejecución.
+     */
+    private Long seed;
+
+    /**
+     * Número de hilos a utilizar; 1 para ejecución secuencial.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Pool de hilos externo, o null para crear uno propio según el paralelismo.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Receptor de las mediciones de cada ejecución, o null para no medir.
+     */
+    private ClusteringListener listener;
+
+    /**
+     * Constructor que inicializa los parámetros del algoritmo.
+     * @param metric Métrica de distancia.
+     * @param linkageType Tipo de enlace.
+     * @param desiredClusterCount Número deseado de clusters.
+     */
+    public ApproximateHierarchicalClustering(DistanceMetric metric, LinkageType linkageType, int desiredClusterCount) {
+        if (linkageType == null) {
+            throw new IllegalArgumentException("El clustering jerárquico requiere un tipo de enlace");
+        }
+        if (linkageType.requiresEuclidean() && metric != DistanceMetric.EUCLIDEAN) {
+            throw new IllegalArgumentException("El enlace " + linkageType + " requiere la distancia euclidiana");
+        }
+        this.metric = metric;
+        this.linkageType = linkageType;
+        this.desiredClusterCount = desiredClusterCount;
+    }
+
+    /**
+     * Establece el exponente de la distancia de Minkowski, que solo se usa con
+     * {@link DistanceMetric#MINKOWSKI}.
+     * @param minkowskiP Exponente, al menos 1; por defecto {@link DistanceMetric#DEFAULT_MINKOWSKI_P}.
+     */
+    public void setMinkowskiP(double minkowskiP) {
+        this.minkowskiP = DistanceMetric.checkMinkowskiP(minkowskiP);
+    }
+
+    /**
+     * Establece el número máximo de representantes. Las fusiones cuestan O(m²) en tiempo y en
+     * memoria: con 1000 representantes la matriz de distancias ocupa unos 4 MB.
+     * @param representatives Número de representantes; con menos puntos se usan todos.
+     */
+    public void setRepresentatives(int representatives) {
+        if (representatives < 1) {
+            throw new IllegalArgumentException("El número de representantes debe ser al menos 1");
+        }
+        this.representatives = representatives;
+    }
+
+    /**
+     * Establece la forma de reducir los datos a representantes.
+     * @param coresetMethod Forma de reducción; por defecto microclusters de K-Means.
+     */
+    public void setCoresetMethod(CoresetMethod coresetMethod) {
+        this.coresetMethod = coresetMethod;
+    }
+
+    /**
+     * Establece el número máximo de iteraciones de los microclusters de K-Means.
+     * @param reductionIterations Número de iteraciones.
+     */
+    public void setReductionIterations(int reductionIterations) {
+        if (reductionIterations < 1) {
+            throw new IllegalArgumentException("El número de iteraciones debe ser al menos 1");
+        }
+        this.reductionIterations = reductionIterations;
+    }
+
+    /**
+     * Establece el tamaño de la muestra con la que se compara el resultado contra el clustering
+     * jerárquico exacto de esos mismos puntos; la comparación cuesta O(muestra²).
+     * @param validationSampleSize Tamaño de la muestra, o 0 para no comparar.
+     */
+    public void setValidationSampleSize(int validationSampleSize) {
+        if (validationSampleSize < 0) {
+            throw new IllegalArgumentException("El tamaño de muestra no puede ser negativo");
+        }
+        this.validationSampleSize = validationSampleSize;
+    }
+
+    /**
+     * Fija la semilla de la reducción y de la muestra de validación.
+     * @param seed Semilla, o null para elegir una nueva en cada ejecución.
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Establece el número de hilos de la reducción, la matriz de distancias y la asignación.
+     * El resultado es el mismo con cualquier número de hilos.
+     * @param parallelism Número de hilos.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser al menos 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Establece un pool de hilos externo, que tiene prioridad sobre {@link #setParallelism(int)}
+     * y no se cierra al terminar.
+     * @param pool Pool de hilos, o null para crear uno propio.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Establece el receptor de las mediciones de cada ejecución: fases de reducción, fusiones,
+     * asignación y validación.
+     * @param listener El receptor, o null para no medir.
+     */
+    public void setListener(ClusteringListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Ejecuta el algoritmo sobre una lista de puntos.
+     * @param data Lista de puntos de datos a clusterizar.
+     * @return Clusters resultantes junto con las estadísticas de la ejecución.
+     */
+    @Override
+    public ApproximateHierarchicalResult fit(List<DataPoint> data) {
+        return fit(Dataset.fromDataPoints(data), data);
+    }
+
+    /**
+     * Ejecuta el algoritmo sobre un conjunto de datos columnar.
+     * @param data Conjunto de datos a clusterizar.
+     * @return Clusters resultantes, cuyos puntos son vistas sobre el conjunto, junto con las
+     * estadísticas de la ejecución.
+     */
+    @Override
+    public ApproximateHierarchicalResult fit(Dataset data) {
+        return fit(data, data.toDataPoints());
+    }
+
+    /**
+     * Ejecuta las tres fases sobre la matriz del conjunto, usando los puntos dados como miembros
+     * de los clusters resultantes.
+     * @param data Conjunto de datos con las características.
+     * @param points Puntos correspondientes a cada fila del conjunto.
+     * @return Clusters resultantes en el orden de su primer punto.
+     */
+    private ApproximateHierarchicalResult fit(Dataset data, List<DataPoint> points) {
+        ForkJoinPool executor = pool;
+        if (executor == null && parallelism > 1) {
+            executor = new ForkJoinPool(parallelism);
+        }
+        try {
+            long start = System.nanoTime();
+            Dataset heap = data.toHeap();
+            int size = heap.size();
+            int dimensions = heap.dimensions();
+            double[] values = heap.array();
+            DistanceKernel kernel = DistanceKernel.of(metric, minkowskiP);
+            long runSeed = seed != null ? seed : new Random().nextLong();
+
+            // Reducción a representantes; con pocos puntos cada punto es su propio representante
+            double[] candidates;
+            if (size <= representatives) {
+                candidates = Arrays.copyOf(values, size * dimensions);
+            } else if (coresetMethod == CoresetMethod.CLUSTERING_FEATURES) {
+                candidates = clusteringFeatures(values, size, dimensions, representatives);
+            } else {
+                double[] seeds = CentroidSeeding.random(heap, representatives, runSeed);
+                // El índice poda con la desigualdad triangular; sin ella se compara contra todos
+                KMeansEngine engine = metric.supportsTrianglePruning()
+                        ? new IndexedEngine(heap, seeds, kernel, executor)
+                        : new KMeansEngine(heap, seeds, kernel, executor);
+                int iterations = 0;
+                while (iterations++ < reductionIterations && engine.iterate() > 0) {
+                    // Unas pocas iteraciones bastan: solo se busca cubrir bien los datos
+                }
+                candidates = engine.centroids;
+            }
+            int candidateCount = candidates.length / Math.max(dimensions, 1);
+            long reductionTime = System.nanoTime() - start;
+            report("reducción", reductionTime, 8L * candidates.length);
+
+            // Asignación de cada punto a su representante más cercano, en paralelo por bloques
+            long mappingStart = System.nanoTime();
+            int[] nearest = new int[size];
+            if (candidateCount > 0) {
+                SpatialIndex index = SpatialIndex.create(candidates, candidateCount, dimensions, kernel,
+                        SpatialIndex.DEFAULT_LEAF_SIZE);
+                index.build(executor);
+                int chunkCount = KMeansEngine.chunkCount(size);
+                int chunkRows = (size + chunkCount - 1) / chunkCount;
+                KMeansEngine.runChunks(chunkCount, executor, chunk -> {
+                    SpatialIndex.Search search = new SpatialIndex.Search();
+                    int end = Math.min(size, (chunk + 1) * chunkRows);
+                    for (int p = chunk * chunkRows; p < end; p++) {
+                        nearest[p] = index.nearest(values, p * dimensions, search);
+                    }
+                });
+            }
+            long mappingTime = System.nanoTime() - mappingStart;
+
+            // Los representantes sin puntos se descartan; el peso de cada uno es su número de puntos
+            long[] counts = new long[candidateCount];
+            for (int p = 0; p < size; p++) {
+                counts[nearest[p]]++;
+            }
+            int[] compact = new int[candidateCount];
+            int count = 0;
+            for (int r = 0; r < candidateCount; r++) {
+                compact[r] = counts[r] > 0 ? count++ : -1;
+            }
+            double[] kept = new double[count * dimensions];
+            long[] weights = new long[count];
+            for (int r = 0; r < candidateCount; r++) {
+                if (compact[r] >= 0) {
+                    System.arraycopy(candidates, r * dimensions, kept, compact[r] * dimensions, dimensions);
+                    weights[compact[r]] = counts[r];
+                }
+            }
+
+            // Clustering jerárquico exacto sobre los representantes con peso
+            long linkageStart = System.nanoTime();
+            int[] representativeLabels = linkage(new Dataset(kept, count, dimensions, null), weights, executor);
+            long linkageTime = System.nanoTime() - linkageStart;
+            report("fusiones", linkageTime, 8L * count * (count - 1) / 2);
+
+            // Etiqueta de cada punto, numeradas en el orden de su primer punto
+            long labelStart = System.nanoTime();
+            int[] labels = new int[size];
+            int[] renumbered = new int[count];
+            Arrays.fill(renumbered, -1);
+            int clusterCount = 0;
+            for (int p = 0; p < size; p++) {
+                int label = representativeLabels[compact[nearest[p]]];
+                if (renumbered[label] < 0) {
+                    renumbered[label] = clusterCount++;
+                }
+                labels[p] = renumbered[label];
+            }
+            List<Cluster> clusters = HierarchicalClustering.buildClusters(data, points, labels);
+            mappingTime += System.nanoTime() - labelStart;
+            report("asignación", mappingTime, 4L * size + 8L * clusterCount * dimensions);
+
+            long validationStart = System.nanoTime();
+            double agreement = validationSampleSize > 0 ? agreement(heap, labels, runSeed) : Double.NaN;
+            long validationTime = validationSampleSize > 0 ? System.nanoTime() - validationStart : 0;
+            if (validationSampleSize > 0) {
+                report("validación", validationTime, 0);
+            }
+            return new ApproximateHierarchicalResult(clusters, labels, kept, weights, agreement, reductionTime,
+                    linkageTime, mappingTime, validationTime, System.nanoTime() - start);
+        } finally {
+            if (executor != null && executor != pool) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Ejecuta el clustering jerárquico exacto sobre los representantes y lo corta en el número
+     * deseado de clusters.
+     * @param representatives Representantes.
+     * @param weights Número de puntos de cada representante.
+     * @param executor Pool de hilos para la matriz de distancias, o null.
+     * @return Cluster de cada representante.
+     */
+    private int[] linkage(Dataset representatives, long[] weights, ForkJoinPool executor) {
+        int count = representatives.size();
+        if (count == 0) {
+            return new int[0];
+        }
+        double[] sizes = new double[count];
+        for (int r = 0; r < count; r++) {
+            sizes[r] = weights[r];
+        }
+        HierarchicalClustering exact = new HierarchicalClustering(metric, linkageType, desiredClusterCount);
+        exact.setMinkowskiP(minkowskiP);
+        exact.setPool(executor);
+        AgglomerativeEngine.Merges merges = exact.computeMerges(representatives, sizes);
+        return AgglomerativeEngine.cut(merges, count, desiredClusterCount);
+    }
+
+    /**
+     * Compara el resultado con el clustering jerárquico exacto de una muestra de los puntos.
+     * @param data Conjunto de datos en el heap.
+     * @param labels Cluster aproximado de cada punto.
+     * @param runSeed Semilla de la ejecución.
+     * @return El índice de Rand ajustado sobre la muestra.
+     */
+    private double agreement(Dataset data, int[] labels, long runSeed) {
+        int size = data.size();
+        int dimensions = data.dimensions();
+        int sampleSize = Math.min(validationSampleSize, size);
+        // Algoritmo de Floyd, con una semilla distinta a la de la reducción
+        Random random = new Random(~runSeed);
+        TreeSet<Integer> chosen = new TreeSet<>();
+        for (int j = size - sampleSize; j < size; j++) {
+            int candidate = random.nextInt(j + 1);
+            chosen.add(chosen.contains(candidate) ? j : candidate);
+        }
+        Dataset sample = Dataset.allocate(sampleSize, dimensions);
+        int[] approximate = new int[sampleSize];
+        int row = 0;
+        for (int index : chosen) {
+            data.copyRow(index, sample.array(), row * dimensions);
+            approximate[row++] = labels[index];
+        }
+        HierarchicalClustering exact = new HierarchicalClustering(metric, linkageType, desiredClusterCount);
+        exact.setMinkowskiP(minkowskiP);
+        int[] exactLabels = exact.buildDendrogram(sample).cutAtK(Math.max(desiredClusterCount, 1));
+        return ClusterEvaluator.adjustedRandIndex(exactLabels, approximate);
+    }
+
+    /**
+     * Resume los puntos en características de clustering (número de puntos, suma lineal y suma de
+     * cuadrados) en una sola pasada, al estilo de BIRCH pero sin árbol: cada punto se compara con
+     * todos los representantes actuales, así que la pasada cuesta O(n * m) distancias.
+     * @param values Puntos en orden por filas.
+     * @param size Número de puntos.
+     * @param dimensions Número de dimensiones.
+     * @param maximum Número máximo de representantes.
+     * @return Centro de cada característica en orden por filas.
+     */
+    static double[] clusteringFeatures(double[] values, int size, int dimensions, int maximum) {
+        ClusteringFeatures features = new ClusteringFeatures(maximum + 1, dimensions);
+        for (int p = 0; p < size; p++) {
+            features.insert(values, p * dimensions, 1, dotSelf(values, p * dimensions, dimensions));
+            if (features.count > maximum) {
+                features.condense(maximum);
+            }
+        }
+        return Arrays.copyOf(features.centers, features.count * dimensions);
+    }
+
+    /**
+     * Características de clustering activas y el umbral de radio con el que absorben puntos.
+     */
+    private static final class ClusteringFeatures {
+        final int dimensions;
+        final double[] sums;
+        final double[] centers;
+        final long[] counts;
+        final double[] squares;
+        int count;
+        double threshold;
+
+        ClusteringFeatures(int capacity, int dimensions) {
+            this.dimensions = dimensions;
+            this.sums = new double[capacity * dimensions];
+            this.centers = new double[capacity * dimensions];
+            this.counts = new long[capacity];
+            this.squares = new double[capacity];
+        }
+
+        /**
+         * Agrega un punto, o una característica completa, a la más cercana si el radio resultante
+         * no supera el umbral, o como una característica nueva.
+         * @param sum Suma lineal a agregar.
+         * @param offset Posición inicial de la suma.
+         * @param points Número de puntos que agrega.
+         * @param square Suma de cuadrados que agrega.
+         */
+        void insert(double[] sum, int offset, long points, double square) {
+            if (count > 0) {
+                int best;
+                if (points == 1) {
+                    best = EUCLIDEAN.nearest(sum, offset, centers, count, dimensions);
+                } else {
+                    // Una característica completa se compara por su centro, no por su suma
+                    double[] center = new double[dimensions];
+                    for (int i = 0; i < dimensions; i++) center[i] = sum[offset + i] / points;
+                    best = EUCLIDEAN.nearest(center, 0, centers, count, dimensions);
+                }
+                if (radius(best, sum, offset, points, square) <= threshold) {
+                    absorb(best, sum, offset, points, square);
+                    return;
+                }
+            }
+            int slot = count++;
+            counts[slot] = 0;
+            squares[slot] = 0;
+            Arrays.fill(sums, slot * dimensions, (slot + 1) * dimensions, 0.0);
+            absorb(slot, sum, offset, points, square);
+        }
+
+        /**
+         * Radio de la unión de una característica con los puntos dados.
+         */
+        double radius(int target, double[] sum, int offset, long points, double square) {
+            long total = counts[target] + points;
+            double norm = 0.0;
+            for (int i = 0; i < dimensions; i++) {
+                double mean = (sums[target * dimensions + i] + sum[offset + i]) / total;
+                norm += mean * mean;
+            }
+            return Math.sqrt(Math.max(0.0, (squares[target] + square) / total - norm));
+        }
+
+        void absorb(int target, double[] sum, int offset, long points, double square) {
+            counts[target] += points;
+            squares[target] += square;
+            for (int i = 0; i < dimensions; i++) {
+                sums[target * dimensions + i] += sum[offset + i];
+                centers[target * dimensions + i] = sums[target * dimensions + i] / counts[target];
+            }
+        }
+
+        /**
+         * Aumenta el umbral y vuelve a insertar las características entre sí hasta que queden a lo
+         * más tres cuartos del máximo, para no repetir la condensación en cada punto.
+         * @param maximum Número máximo de representantes.
+         */
+        void condense(int maximum) {
+            int target = Math.max(1, maximum * 3 / 4);
+            while (count > target) {
+                // El radio de la unión de dos puntos es la mitad de su distancia
+                threshold = Math.max(threshold * 1.5, medianNearestDistance() / 2);
+                int previous = count;
+                double[] oldSums = Arrays.copyOf(sums, previous * dimensions);
+                long[] oldCounts = Arrays.copyOf(counts, previous);
+                double[] oldSquares = Arrays.copyOf(squares, previous);
+                count = 0;
+                for (int f = 0; f < previous; f++) {
+                    insert(oldSums, f * dimensions, oldCounts[f], oldSquares[f]);
+                }
+            }
+        }
+
+        /**
+         * Mediana de la distancia de cada centro a su centro más cercano, en O(m²).
+         */
+        double medianNearestDistance() {
+            double[] nearest = new double[count];
+            for (int a = 0; a < count; a++) {
+                double min = Double.POSITIVE_INFINITY;
+                for (int b = 0; b < count; b++) {
+                    if (a != b) {
+                        min = Math.min(min, EUCLIDEAN.comparable(centers, a * dimensions, centers, b * dimensions,
+                                dimensions));
+                    }
+                }
+                nearest[a] = min;
+            }
+            Arrays.sort(nearest);
+            double median = Math.sqrt(nearest[count / 2]);
+            // Con centros repetidos la mediana puede ser 0; cualquier umbral positivo los une
+            return median > 0 ? median : Double.MIN_NORMAL;
+        }
+    }
+
+    /**
+     * Suma de cuadrados de un vector.
+     */
+    private static double dotSelf(double[] values, int offset, int dimensions) {
+        double total = 0.0;
+        for (int i = 0; i < dimensions; i++) {
+            total += values[offset + i] * values[offset + i];
+        }
+        return total;
+    }
+
+    /**
+     * Informa al receptor, si hay uno, del fin de una fase.
+     */
+    private void report(String phase, long nanos, long allocatedBytes) {
+        if (listener != null) {
+            listener.phaseCompleted(SOURCE, phase, nanos, 0, allocatedBytes);
+        }
+    }
+}
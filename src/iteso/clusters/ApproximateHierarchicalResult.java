@@ -0,0 +1,171 @@
+package iteso.clusters;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Resultado de una ejecución de {@link ApproximateHierarchicalClustering}.
+ * Se comporta como la lista de clusters encontrados y además informa la etiqueta de cada punto,
+ * los representantes con su peso, el tiempo de cada fase y, si se pidió, la concordancia con el
+ * clustering exacto sobre una muestra.
+ */
+public class ApproximateHierarchicalResult extends AbstractList<Cluster> {
+    /**
+     * Clusters encontrados, en el orden de su primer punto.
+     */
+    private final List<Cluster> clusters;
+
+    /**
+     * Cluster de cada punto.
+     */
+    private final int[] labels;
+
+    /**
+     * Representantes en orden por filas (representantes x dimensiones).
+     */
+    private final double[] representatives;
+
+    /**
+     * Número de puntos de cada representante.
+     */
+    private final long[] weights;
+
+    /**
+     * Índice de Rand ajustado contra el clustering exacto de una muestra, o NaN si no se midió.
+     */
+    private final double agreement;
+
+    /**
+     * Duración de la reducción, de las fusiones, de la asignación de los puntos, de la validación
+     * y de la ejecución completa en nanosegundos.
+     */
+    private final long reductionTime, linkageTime, mappingTime, validationTime, totalTime;
+
+    /**
+     * Constructor del resultado.
+     * @param clusters Clusters encontrados.
+     * @param labels Cluster de cada punto.
+     * @param representatives Representantes en orden por filas.
+     * @param weights Número de puntos de cada representante.
+     * @param agreement Concordancia con el clustering exacto de una muestra, o NaN.
+     * @param reductionTime Duración de la reducción en nanosegundos.
+     * @param linkageTime Duración de las fusiones entre representantes en nanosegundos.
+     * @param mappingTime Duración de la asignación de los puntos en nanosegundos.
+     * @param validationTime Duración de la validación en nanosegundos.
+     * @param totalTime Duración total en nanosegundos.
+     */
+    public ApproximateHierarchicalResult(List<Cluster> clusters, int[] labels, double[] representatives,
+                                         long[] weights, double agreement, long reductionTime, long linkageTime,
+                                         long mappingTime, long validationTime, long totalTime) {
+        this.clusters = clusters;
+        this.labels = labels;
+        this.representatives = representatives;
+        this.weights = weights;
+        this.agreement = agreement;
+        this.reductionTime = reductionTime;
+        this.linkageTime = linkageTime;
+        this.mappingTime = mappingTime;
+        this.validationTime = validationTime;
+        this.totalTime = totalTime;
+    }
+
+    @Override
+    public Cluster get(int index) {
+        return clusters.get(index);
+    }
+
+    @Override
+    public int size() {
+        return clusters.size();
+    }
+
+    /**
+     * Obtiene los clusters encontrados.
+     * @return Lista de clusters en el orden de su primer punto.
+     */
+    public List<Cluster> getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Obtiene el cluster de cada punto, por ejemplo para compararlo con otro resultado mediante
+     * {@link ClusterEvaluator#adjustedRandIndex(int[], int[])}.
+     * @return Cluster de cada punto, numerados desde 0.
+     */
+    public int[] getLabels() {
+        return labels.clone();
+    }
+
+    /**
+     * Obtiene el número de representantes sobre los que se ejecutó el clustering jerárquico.
+     * @return Número de representantes.
+     */
+    public int getRepresentativeCount() {
+        return weights.length;
+    }
+
+    /**
+     * Obtiene los representantes.
+     * @return Representantes en orden por filas (representantes x dimensiones).
+     */
+    public double[] getRepresentatives() {
+        return representatives.clone();
+    }
+
+    /**
+     * Obtiene cuántos puntos quedaron asignados a cada representante.
+     * @return Peso de cada representante.
+     */
+    public long[] getWeights() {
+        return weights.clone();
+    }
+
+    /**
+     * Obtiene el índice de Rand ajustado entre este resultado y el clustering jerárquico exacto de
+     * una muestra de los puntos: 1 si coinciden por completo sobre la muestra.
+     * @return La concordancia, o NaN si no se pidió validar.
+     */
+    public double getAgreement() {
+        return agreement;
+    }
+
+    /**
+     * Obtiene la duración de la reducción a representantes.
+     * @return Tiempo en nanosegundos.
+     */
+    public long getReductionTime() {
+        return reductionTime;
+    }
+
+    /**
+     * Obtiene la duración del clustering jerárquico entre representantes.
+     * @return Tiempo en nanosegundos.
+     */
+    public long getLinkageTime() {
+        return linkageTime;
+    }
+
+    /**
+     * Obtiene la duración de la asignación de cada punto a su representante más cercano.
+     * @return Tiempo en nanosegundos.
+     */
+    public long getMappingTime() {
+        return mappingTime;
+    }
+
+    /**
+     * Obtiene la duración de la validación contra el clustering exacto de una muestra.
+     * @return Tiempo en nanosegundos, o 0 si no se pidió validar.
+     */
+    public long getValidationTime() {
+        return validationTime;
+    }
+
+    /**
+     * Obtiene la duración total de la ejecución.
+     * @return Tiempo en nanosegundos.
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+}
@@ -0,0 +1,86 @@
+package iteso.clusters;
+
+/**
+ * Índice de bolas: cada nodo guarda el centro de sus puntos y el radio que los contiene a todos,
+ * y se parte por la mediana de la dimensión de mayor extensión. La cota de un nodo es la distancia
+ * al centro menos el radio, válida para cualquier métrica que cumpla la desigualdad triangular;
+ * a diferencia de las cajas de {@link KdTree}, sigue descartando nodos en muchas dimensiones.
+ * Se construye con {@link SpatialIndex#build(Dataset, DistanceMetric)}.
+ */
+public final class BallTree extends SpatialIndex {
+    /**
+     * Centro de cada nodo (nodos x dimensiones).
+     */
+    private final double[] centers;
+
+    /**
+     * Radio de cada nodo.
+     */
+    private final double[] radii;
+
+    /**
+     * Dimensión de mayor extensión de cada nodo.
+     */
+    private final int[] widest;
+
+    /**
+     * Constructor del índice, sin construirlo.
+     * @param values Características en orden por filas.
+     * @param size Número de puntos.
+     * @param dimensions Número de dimensiones.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param leafSize Número máximo de puntos por hoja.
+     */
+    BallTree(double[] values, int size, int dimensions, DistanceKernel kernel, int leafSize) {
+        super(values, size, dimensions, kernel, leafSize);
+        this.centers = new double[nodeCount * dimensions];
+        this.radii = new double[nodeCount];
+        this.widest = new int[nodeCount];
+    }
+
+    @Override
+    long estimatedBytes() {
+        return super.estimatedBytes() + 8L * nodeCount * (dimensions + 1) + 4L * nodeCount;
+    }
+
+    @Override
+    void computeBounds(int node) {
+        int base = node * dimensions;
+        int start = nodeStart[node];
+        int end = nodeEnd[node];
+        int first = order[start] * dimensions;
+        // El centro es el promedio; la extensión se mide con el mínimo y máximo de cada dimensión
+        double bestWidth = -1.0;
+        for (int j = 0; j < dimensions; j++) {
+            double min = values[first + j];
+            double max = min;
+            double sum = 0.0;
+            for (int i = start; i < end; i++) {
+                double value = values[order[i] * dimensions + j];
+                sum += value;
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+            centers[base + j] = sum / (end - start);
+            if (max - min > bestWidth) {
+                bestWidth = max - min;
+                widest[node] = j;
+            }
+        }
+        double radius = 0.0;
+        for (int i = start; i < end; i++) {
+            radius = Math.max(radius, kernel.distance(centers, base, values, order[i] * dimensions, dimensions));
+        }
+        radii[node] = radius;
+    }
+
+    @Override
+    int splitDimension(int node) {
+        return widest[node];
+    }
+
+    @Override
+    double lowerBound(int node, double[] query, int offset, Search search) {
+        return Math.max(0.0, kernel.distance(query, offset, centers, node * dimensions, dimensions) - radii[node]);
+    }
+}
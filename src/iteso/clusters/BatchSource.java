@@ -0,0 +1,18 @@
+package iteso.clusters;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Fuente de datos que entrega un conjunto grande por lotes, sin cargarlo completo en memoria.
+ */
+public interface BatchSource extends Closeable {
+    /**
+     * Lee el siguiente lote.
+     * @return Un conjunto de datos con a lo más el tamaño de lote configurado, o null si no hay más datos.
+     * @throws IOException Si los datos no pueden leerse.
+     * @throws InvalidDataException Si una fila del lote es inválida.
+     * @throws MissingDataException Si a una fila del lote le faltan valores.
+     */
+    Dataset nextBatch() throws IOException, InvalidDataException, MissingDataException;
+}
@@ -0,0 +1,418 @@
+package iteso.clusters;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Formato binario de conjuntos de datos, para no interpretar el mismo CSV en cada ejecución.
+ * <p>
+ * El archivo está en little-endian y tiene cuatro partes:
+ * <ol>
+ *     <li>Un encabezado de 64 bytes: el número mágico {@code CLDS}, la versión, los bytes por valor
+ *     (8 para double, 4 para float), n, d, el número de etiquetas distintas y la posición de cada
+ *     parte.</li>
+ *     <li>Las características en orden por filas, a partir del byte 64.</li>
+ *     <li>El código de la etiqueta de cada fila como int, o -1 si no tiene.</li>
+ *     <li>El diccionario de etiquetas: por cada código, su longitud en bytes y su texto en UTF-8.</li>
+ * </ol>
+ * Un archivo en double de hasta 2 GB de características se lee sin copiarlas: se mapea en memoria
+ * y el {@link Dataset} queda respaldado por el mapeo, de solo lectura. Los archivos más grandes y
+ * los de float se copian a una matriz en el heap por bloques en paralelo, lo que es una copia de
+ * memoria y no una interpretación de texto. {@link DataLoader#loadDataset(String)} reconoce el
+ * formato por su número mágico, así que cualquier componente que recibe una ruta puede usarlo.
+ */
+public final class BinaryDataset {
+    /**
+     * Número mágico del formato ("CLDS").
+     */
+    static final int MAGIC = 0x434C4453;
+
+    /**
+     * Versión del formato.
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * Tamaño del encabezado, que también alinea el inicio de las características.
+     */
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * Filas por lote al convertir un CSV.
+     */
+    private static final int CONVERT_BATCH = 65536;
+
+    /**
+     * Valores por bloque al copiar las características al heap.
+     */
+    private static final int COPY_BLOCK = 1 << 24;
+
+    /**
+     * Precisión con la que se guardan las características.
+     */
+    public enum Precision {
+        /**
+         * double de 8 bytes; se lee sin copiar.
+         */
+        DOUBLE(8),
+        /**
+         * float de 4 bytes; ocupa la mitad y se convierte a double al leer.
+         */
+        FLOAT(4);
+
+        private final int bytes;
+
+        Precision(int bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Obtiene los bytes de cada valor.
+         * @return Bytes por valor.
+         */
+        public int bytes() {
+            return bytes;
+        }
+    }
+
+    private BinaryDataset() {
+    }
+
+    /**
+     * Convierte un archivo CSV al formato binario leyéndolo por lotes, sin cargarlo completo.
+     * @param csvPath Ruta del archivo CSV, con el formato de {@link DataLoader#loadDataset(String)}.
+     * @param binaryPath Ruta del archivo binario a crear o reemplazar.
+     * @param precision Precisión de las características.
+     * @throws IOException Si algún archivo no puede leerse o escribirse.
+     * @throws InvalidDataException Si el CSV contiene valores inválidos.
+     * @throws MissingDataException Si al CSV le faltan valores.
+     */
+    public static void convert(String csvPath, String binaryPath, Precision precision)
+            throws IOException, InvalidDataException, MissingDataException {
+        try (BatchSource source = new DataLoader(1).openBatches(csvPath, CONVERT_BATCH);
+             Writer writer = new Writer(Paths.get(binaryPath), precision)) {
+            Dataset batch;
+            while ((batch = source.nextBatch()) != null) {
+                writer.append(batch);
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Convierte un CSV al formato binario desde la línea de comandos:
+     * {@code BinaryDataset entrada.csv salida.clds [double|float]}.
+     * @param args Ruta del CSV, ruta del archivo binario y, opcionalmente, la precisión.
+     * @throws Exception Si la conversión falla.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Uso: BinaryDataset entrada.csv salida.clds [double|float]");
+            return;
+        }
+        Precision precision = args.length > 2 ? Precision.valueOf(args[2].toUpperCase()) : Precision.DOUBLE;
+        long start = System.nanoTime();
+        convert(args[0], args[1], precision);
+        System.out.printf("Convertido en %.2f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Guarda un conjunto de datos en el formato binario.
+     * @param data Conjunto de datos.
+     * @param binaryPath Ruta del archivo a crear o reemplazar.
+     * @param precision Precisión de las características.
+     * @throws IOException Si el archivo no puede escribirse.
+     */
+    public static void write(Dataset data, String binaryPath, Precision precision) throws IOException {
+        try (Writer writer = new Writer(Paths.get(binaryPath), precision)) {
+            writer.append(data);
+            writer.finish();
+        }
+    }
+
+    /**
+     * Lee un archivo binario en el hilo actual.
+     * @param binaryPath Ruta del archivo.
+     * @return El conjunto de datos.
+     * @throws IOException Si el archivo no puede leerse.
+     * @throws InvalidDataException Si el archivo no tiene el formato binario o está incompleto.
+     * @see #read(String, ForkJoinPool)
+     */
+    public static Dataset read(String binaryPath) throws IOException, InvalidDataException {
+        return read(binaryPath, null);
+    }
+
+    /**
+     * Lee un archivo binario: mapea las características sin copiarlas si son double y caben en un
+     * solo mapeo, y si no las copia al heap por bloques en paralelo.
+     * @param binaryPath Ruta del archivo.
+     * @param pool Pool de hilos para la copia, o null para el hilo actual.
+     * @return El conjunto de datos; si está mapeado, es de solo lectura.
+     * @throws IOException Si el archivo no puede leerse.
+     * @throws InvalidDataException Si el archivo no tiene el formato binario o está incompleto.
+     */
+    public static Dataset read(String binaryPath, ForkJoinPool pool) throws IOException, InvalidDataException {
+        try (FileChannel channel = FileChannel.open(Paths.get(binaryPath), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+                // Leer hasta completar el encabezado o llegar al final
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new InvalidDataException("El archivo no tiene el formato binario de conjuntos: " + binaryPath);
+            }
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new InvalidDataException("Versión de formato no soportada: " + version);
+            }
+            int valueBytes = header.get();
+            header.get();
+            long size = header.getLong();
+            int dimensions = header.getInt();
+            int labelCount = header.getInt();
+            long featureOffset = header.getLong();
+            long labelsOffset = header.getLong();
+            long dictionaryOffset = header.getLong();
+            long fileLength = header.getLong();
+            long values = size * dimensions;
+            if (valueBytes != 8 && valueBytes != 4 || size < 0 || dimensions < 0 || labelCount < 0
+                    || values > Integer.MAX_VALUE - 8 || fileLength != channel.size()
+                    || labelsOffset != featureOffset + values * valueBytes
+                    || dictionaryOffset != labelsOffset + 4 * size || dictionaryOffset > fileLength) {
+                throw new InvalidDataException("El encabezado del archivo es inválido o el archivo está incompleto: "
+                        + binaryPath);
+            }
+            int rows = (int) size;
+            String[] labels = readLabels(channel, rows, labelsOffset, dictionaryOffset, labelCount, fileLength);
+
+            if (valueBytes == 8 && values * 8 <= Integer.MAX_VALUE) {
+                // Sin copia: la matriz del conjunto es el propio mapeo del archivo
+                DoubleBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, featureOffset, values * 8)
+                        .order(ByteOrder.LITTLE_ENDIAN)
+                        .asDoubleBuffer();
+                return new Dataset(buffer, rows, dimensions, labels);
+            }
+            double[] matrix = new double[(int) values];
+            int blocks = (int) ((values + COPY_BLOCK - 1) / COPY_BLOCK);
+            IOException[] failure = new IOException[1];
+            KMeansEngine.runChunks(blocks, pool, block -> {
+                int start = block * COPY_BLOCK;
+                int count = (int) Math.min(COPY_BLOCK, values - start);
+                try {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                            featureOffset + (long) start * valueBytes, (long) count * valueBytes);
+                    mapped.order(ByteOrder.LITTLE_ENDIAN);
+                    if (valueBytes == 8) {
+                        mapped.asDoubleBuffer().get(matrix, start, count);
+                    } else {
+                        FloatBuffer floats = mapped.asFloatBuffer();
+                        for (int i = 0; i < count; i++) {
+                            matrix[start + i] = floats.get(i);
+                        }
+                    }
+                } catch (IOException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            return new Dataset(matrix, rows, dimensions, labels);
+        }
+    }
+
+    /**
+     * Indica si un archivo empieza con el número mágico del formato binario.
+     * @param filePath Ruta del archivo.
+     * @return true si el archivo es binario.
+     * @throws IOException Si el archivo no puede leerse.
+     */
+    public static boolean isBinary(String filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Leer los primeros cuatro bytes
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Lee los códigos de etiqueta y el diccionario; las filas con la misma etiqueta comparten el String.
+     */
+    private static String[] readLabels(FileChannel channel, int rows, long labelsOffset, long dictionaryOffset,
+                                       int labelCount, long fileLength) throws IOException, InvalidDataException {
+        ByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset, fileLength - dictionaryOffset)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        String[] names = new String[labelCount];
+        for (int c = 0; c < labelCount; c++) {
+            if (dictionary.remaining() < 4) {
+                throw new InvalidDataException("El diccionario de etiquetas está incompleto");
+            }
+            int length = dictionary.getInt();
+            if (length < 0 || length > dictionary.remaining()) {
+                throw new InvalidDataException("El diccionario de etiquetas está incompleto");
+            }
+            byte[] bytes = new byte[length];
+            dictionary.get(bytes);
+            names[c] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        String[] labels = new String[rows];
+        if (labelCount == 0) {
+            return labels;
+        }
+        IntBuffer codes = channel.map(FileChannel.MapMode.READ_ONLY, labelsOffset, 4L * rows)
+                .order(ByteOrder.LITTLE_ENDIAN)
+                .asIntBuffer();
+        for (int i = 0; i < rows; i++) {
+            int code = codes.get(i);
+            if (code >= labelCount || code < -1) {
+                throw new InvalidDataException("Código de etiqueta inválido en la fila " + i + ": " + code);
+            }
+            labels[i] = code < 0 ? null : names[code];
+        }
+        return labels;
+    }
+
+    /**
+     * Escritor secuencial del formato: las características se escriben en el archivo final y los
+     * códigos de etiqueta en un archivo temporal que se agrega al terminar, cuando ya se conoce n.
+     */
+    private static final class Writer implements AutoCloseable {
+        private final Path target;
+        private final Precision precision;
+        private final FileChannel out;
+        private final Path codesPath;
+        private final FileChannel codes;
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private ByteBuffer rowBuffer = ByteBuffer.allocate(0);
+        private ByteBuffer codeBuffer = ByteBuffer.allocate(0);
+        private long size;
+        private int dimensions = -1;
+        private boolean finished;
+
+        Writer(Path target, Precision precision) throws IOException {
+            this.target = target.toAbsolutePath();
+            this.precision = precision;
+            this.out = FileChannel.open(this.target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.codesPath = Files.createTempFile(this.target.getParent(), this.target.getFileName().toString(), ".labels");
+            this.codes = FileChannel.open(codesPath, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            out.position(HEADER_SIZE);
+        }
+
+        /**
+         * Agrega las filas de un conjunto al final del archivo.
+         */
+        void append(Dataset batch) throws IOException {
+            if (dimensions < 0) {
+                dimensions = batch.dimensions();
+            } else if (batch.dimensions() != dimensions && batch.size() > 0) {
+                throw new IllegalArgumentException("Todos los lotes deben tener " + dimensions + " dimensiones");
+            }
+            int rowBytes = dimensions * precision.bytes();
+            int rowsPerWrite = Math.max(1, (1 << 22) / Math.max(rowBytes, 1));
+            if (rowBuffer.capacity() < rowsPerWrite * rowBytes) {
+                rowBuffer = ByteBuffer.allocate(rowsPerWrite * rowBytes).order(ByteOrder.LITTLE_ENDIAN);
+                codeBuffer = ByteBuffer.allocate(rowsPerWrite * 4).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            for (int start = 0; start < batch.size(); start += rowsPerWrite) {
+                int end = Math.min(batch.size(), start + rowsPerWrite);
+                rowBuffer.clear();
+                codeBuffer.clear();
+                for (int p = start; p < end; p++) {
+                    for (int j = 0; j < dimensions; j++) {
+                        if (precision == Precision.DOUBLE) {
+                            rowBuffer.putDouble(batch.get(p, j));
+                        } else {
+                            rowBuffer.putFloat((float) batch.get(p, j));
+                        }
+                    }
+                    codeBuffer.putInt(code(batch.getLabel(p)));
+                }
+                writeFully(out, rowBuffer.flip());
+                writeFully(codes, codeBuffer.flip());
+            }
+            size += batch.size();
+        }
+
+        /**
+         * Agrega los códigos y el diccionario y escribe el encabezado.
+         */
+        void finish() throws IOException {
+            long labelsOffset = out.position();
+            long transferred = 0;
+            long codesLength = codes.size();
+            while (transferred < codesLength) {
+                transferred += codes.transferTo(transferred, codesLength - transferred, out);
+            }
+            long dictionaryOffset = labelsOffset + codesLength;
+            out.position(dictionaryOffset);
+            for (String name : names) {
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+                entry.putInt(bytes.length).put(bytes);
+                writeFully(out, entry.flip());
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putShort(VERSION).put((byte) precision.bytes()).put((byte) 0);
+            header.putLong(size).putInt(Math.max(dimensions, 0)).putInt(names.size());
+            header.putLong(HEADER_SIZE).putLong(labelsOffset).putLong(dictionaryOffset).putLong(out.position());
+            header.position(HEADER_SIZE);
+            out.position(0);
+            writeFully(out, header.flip());
+            finished = true;
+        }
+
+        private int code(String label) {
+            if (label == null) {
+                return -1;
+            }
+            Integer code = dictionary.get(label);
+            if (code == null) {
+                code = names.size();
+                dictionary.put(label, code);
+                names.add(label);
+            }
+            return code;
+        }
+
+        private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                codes.close();
+                out.close();
+            } finally {
+                if (!finished) {
+                    Files.deleteIfExists(target);
+                }
+            }
+        }
+    }
+}
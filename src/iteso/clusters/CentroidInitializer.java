@@ -0,0 +1,35 @@
+package iteso.clusters;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Interfaz para estrategias de selección de centroides iniciales en K-Means.
+ * Las estrategias incluidas están en {@link InitializationMethod}.
+ */
+public interface CentroidInitializer {
+    /**
+     * Selecciona los centroides iniciales.
+     * Con la misma semilla el resultado debe ser el mismo, sin importar el pool.
+     * @param data Conjunto de datos.
+     * @param k Número de centroides a seleccionar.
+     * @param metric Métrica de distancia.
+     * @param seed Semilla para los números aleatorios.
+     * @param pool Pool de hilos, o null para ejecución secuencial.
+     * @return Centroides iniciales en orden por filas (k x dimensiones).
+     */
+    double[] initialize(Dataset data, int k, DistanceMetric metric, long seed, ForkJoinPool pool);
+
+    /**
+     * Selecciona los centroides iniciales con el núcleo de distancias que usará K-Means, que
+     * incluye el exponente de {@link DistanceMetric#MINKOWSKI}. Por omisión solo pasa la métrica.
+     * @param data Conjunto de datos.
+     * @param k Número de centroides a seleccionar.
+     * @param kernel Núcleo de distancias.
+     * @param seed Semilla para los números aleatorios.
+     * @param pool Pool de hilos, o null para ejecución secuencial.
+     * @return Centroides iniciales en orden por filas (k x dimensiones).
+     */
+    default double[] initialize(Dataset data, int k, DistanceKernel kernel, long seed, ForkJoinPool pool) {
+        return initialize(data, k, kernel.metric(), seed, pool);
+    }
+}
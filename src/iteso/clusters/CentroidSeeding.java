@@ -0,0 +1,309 @@
+package iteso.clusters;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Implementaciones de las estrategias de {@link InitializationMethod}.
+ * Las pasadas sobre los datos usan la misma división en bloques que {@link KMeansEngine}, por lo
+ * que con la misma semilla el resultado no depende del número de hilos.
+ */
+final class CentroidSeeding {
+    /**
+     * Número de rondas de sobremuestreo de k-means||.
+     */
+    static final int PARALLEL_ROUNDS = 5;
+
+    private CentroidSeeding() {
+    }
+
+    /**
+     * Selecciona k filas distintas al azar.
+     * @param data Conjunto de datos.
+     * @param k Número de centroides.
+     * @param seed Semilla.
+     * @return Centroides iniciales (k x dimensiones).
+     */
+    static double[] random(Dataset data, int k, long seed) {
+        int size = checkSize(data, k);
+        int dimensions = data.dimensions();
+        Random random = new Random(seed);
+        // Algoritmo de Floyd: k índices distintos sin recorrer todo el conjunto
+        LinkedHashSet<Integer> chosen = new LinkedHashSet<>();
+        for (int j = size - k; j < size; j++) {
+            int candidate = random.nextInt(j + 1);
+            chosen.add(chosen.contains(candidate) ? j : candidate);
+        }
+        double[] centroids = new double[k * dimensions];
+        int c = 0;
+        for (int index : chosen) {
+            data.copyRow(index, centroids, c++ * dimensions);
+        }
+        return centroids;
+    }
+
+    /**
+     * Selecciona k centroides con k-means++.
+     * @param data Conjunto de datos.
+     * @param k Número de centroides.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param seed Semilla.
+     * @param pool Pool de hilos, o null.
+     * @return Centroides iniciales (k x dimensiones).
+     */
+    static double[] kMeansPlusPlus(Dataset data, int k, DistanceKernel kernel, long seed, ForkJoinPool pool) {
+        int size = checkSize(data, k);
+        int dimensions = data.dimensions();
+        Random random = new Random(seed);
+        double[] centroids = new double[k * dimensions];
+        double[] minDistances = new double[size];
+        int[] nearest = new int[size];
+
+        data.copyRow(random.nextInt(size), centroids, 0);
+        double cost = updateDistances(data, centroids, 0, 1, kernel, minDistances, nearest, true, pool);
+        for (int c = 1; c < k; c++) {
+            int pick = sample(minDistances, size, cost, random);
+            data.copyRow(pick, centroids, c * dimensions);
+            cost = updateDistances(data, centroids, c, c + 1, kernel, minDistances, nearest, false, pool);
+        }
+        return centroids;
+    }
+
+    /**
+     * Agrega centroides a una solución existente con pasos de k-means++: cada nuevo centroide es
+     * un punto elegido con probabilidad proporcional a su distancia al cuadrado a los actuales.
+     * Permite iniciar K-Means con k clusters a partir de la solución con menos clusters.
+     * @param data Conjunto de datos.
+     * @param centroids Centroides existentes en orden por filas.
+     * @param k Número total de centroides deseado.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param seed Semilla.
+     * @param pool Pool de hilos, o null.
+     * @return Los centroides existentes seguidos de los nuevos (k x dimensiones).
+     */
+    static double[] extend(Dataset data, double[] centroids, int k, DistanceKernel kernel, long seed, ForkJoinPool pool) {
+        int size = checkSize(data, k);
+        int dimensions = data.dimensions();
+        int existing = centroids.length / Math.max(dimensions, 1);
+        if (existing == 0) {
+            return kMeansPlusPlus(data, k, kernel, seed, pool);
+        }
+        Random random = new Random(seed);
+        double[] extended = Arrays.copyOf(centroids, k * dimensions);
+        double[] minDistances = new double[size];
+        int[] nearest = new int[size];
+        double cost = updateDistances(data, extended, 0, existing, kernel, minDistances, nearest, true, pool);
+        for (int c = existing; c < k; c++) {
+            int pick = sample(minDistances, size, cost, random);
+            data.copyRow(pick, extended, c * dimensions);
+            cost = updateDistances(data, extended, c, c + 1, kernel, minDistances, nearest, false, pool);
+        }
+        return extended;
+    }
+
+    /**
+     * Selecciona k centroides con k-means|| (Bahmani et al.): varias rondas de sobremuestreo en
+     * paralelo seguidas de k-means++ ponderado sobre los candidatos.
+     * @param data Conjunto de datos.
+     * @param k Número de centroides.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param seed Semilla.
+     * @param pool Pool de hilos, o null.
+     * @return Centroides iniciales (k x dimensiones).
+     */
+    static double[] kMeansParallel(Dataset data, int k, DistanceKernel kernel, long seed, ForkJoinPool pool) {
+        int size = checkSize(data, k);
+        int dimensions = data.dimensions();
+        Random random = new Random(seed);
+        double oversampling = 2.0 * k;
+        int chunkCount = KMeansEngine.chunkCount(size);
+        int chunkRows = (size + chunkCount - 1) / chunkCount;
+
+        double[] minDistances = new double[size];
+        int[] nearest = new int[size];
+        double[] candidates = new double[(int) Math.min((long) size, 1 + (long) Math.ceil(oversampling) * PARALLEL_ROUNDS + 16) * dimensions];
+        int candidateCount = 1;
+        data.copyRow(random.nextInt(size), candidates, 0);
+        double cost = updateDistances(data, candidates, 0, 1, kernel, minDistances, nearest, true, pool);
+
+        for (int round = 0; round < PARALLEL_ROUNDS && cost > 0; round++) {
+            // Cada bloque muestrea con su propio generador derivado de la semilla, la ronda y el bloque
+            int[][] sampled = new int[chunkCount][];
+            int[] sampledCounts = new int[chunkCount];
+            long roundSeed = random.nextLong();
+            double currentCost = cost;
+            KMeansEngine.runChunks(chunkCount, pool, chunk -> {
+                SplittableRandom chunkRandom = new SplittableRandom(roundSeed ^ (0x9E3779B97F4A7C15L * (chunk + 1)));
+                int[] picks = new int[16];
+                int count = 0;
+                int to = Math.min(size, (chunk + 1) * chunkRows);
+                for (int p = chunk * chunkRows; p < to; p++) {
+                    if (chunkRandom.nextDouble() * currentCost < oversampling * minDistances[p]) {
+                        if (count == picks.length) picks = Arrays.copyOf(picks, count * 2);
+                        picks[count++] = p;
+                    }
+                }
+                sampled[chunk] = picks;
+                sampledCounts[chunk] = count;
+            });
+
+            int added = 0;
+            for (int count : sampledCounts) added += count;
+            if (added == 0) continue;
+            int needed = (candidateCount + added) * dimensions;
+            if (needed > candidates.length) {
+                candidates = Arrays.copyOf(candidates, Math.max(needed, candidates.length * 2));
+            }
+            int first = candidateCount;
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                for (int i = 0; i < sampledCounts[chunk]; i++) {
+                    data.copyRow(sampled[chunk][i], candidates, candidateCount++ * dimensions);
+                }
+            }
+            cost = updateDistances(data, candidates, first, candidateCount, kernel, minDistances, nearest, false, pool);
+        }
+
+        if (candidateCount <= k) {
+            // Muy pocos candidatos distintos: completar con k-means++ sobre todo el conjunto
+            return candidateCount == k ? Arrays.copyOf(candidates, k * dimensions)
+                    : kMeansPlusPlus(data, k, kernel, seed, pool);
+        }
+
+        // Ponderar cada candidato por el número de puntos para los que es el más cercano
+        double[] weights = new double[candidateCount];
+        for (int p = 0; p < size; p++) {
+            weights[nearest[p]]++;
+        }
+        return weightedPlusPlus(candidates, weights, candidateCount, dimensions, k, kernel, random);
+    }
+
+    /**
+     * Ejecuta k-means++ ponderado sobre un conjunto pequeño de candidatos.
+     * @param candidates Candidatos (m x dimensiones).
+     * @param weights Peso de cada candidato.
+     * @param count Número de candidatos.
+     * @param dimensions Número de dimensiones.
+     * @param k Número de centroides a elegir.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param random Generador de números aleatorios.
+     * @return Centroides elegidos (k x dimensiones).
+     */
+    private static double[] weightedPlusPlus(double[] candidates, double[] weights, int count, int dimensions,
+                                             int k, DistanceKernel kernel, Random random) {
+        double[] centroids = new double[k * dimensions];
+        double[] scores = weights.clone();
+        double[] minDistances = new double[count];
+        Arrays.fill(minDistances, Double.MAX_VALUE);
+        double total = 0.0;
+        for (int i = 0; i < count; i++) total += scores[i];
+        for (int c = 0; c < k; c++) {
+            int pick = sample(scores, count, total, random);
+            System.arraycopy(candidates, pick * dimensions, centroids, c * dimensions, dimensions);
+            total = 0.0;
+            for (int i = 0; i < count; i++) {
+                double distance = kernel.squaredDistance(candidates, i * dimensions, centroids, c * dimensions, dimensions);
+                minDistances[i] = Math.min(minDistances[i], distance);
+                scores[i] = weights[i] * minDistances[i];
+                total += scores[i];
+            }
+        }
+        return centroids;
+    }
+
+    /**
+     * Actualiza, para cada punto, la distancia al cuadrado a su centroide más cercano
+     * considerando los centroides en el rango [from, to).
+     * @param data Conjunto de datos.
+     * @param centroids Centroides (m x dimensiones).
+     * @param from Primer centroide nuevo.
+     * @param to Centroide final (exclusivo).
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param minDistances Distancia al cuadrado al centroide más cercano, por punto.
+     * @param nearest Índice del centroide más cercano, por punto.
+     * @param reset Si es true se ignoran los valores previos de las distancias.
+     * @param pool Pool de hilos, o null.
+     * @return La suma de las distancias mínimas, combinada en el orden de los bloques.
+     */
+    private static double updateDistances(Dataset data, double[] centroids, int from, int to, DistanceKernel kernel,
+                                          double[] minDistances, int[] nearest, boolean reset, ForkJoinPool pool) {
+        int size = data.size();
+        int dimensions = data.dimensions();
+        int chunkCount = KMeansEngine.chunkCount(size);
+        int chunkRows = (size + chunkCount - 1) / chunkCount;
+        double[] partial = new double[chunkCount];
+        KMeansEngine.runChunks(chunkCount, pool, chunk -> {
+            boolean onHeap = data.hasArray();
+            double[] row = onHeap ? data.array() : new double[dimensions];
+            double sum = 0.0;
+            int end = Math.min(size, (chunk + 1) * chunkRows);
+            for (int p = chunk * chunkRows; p < end; p++) {
+                int offset = p * dimensions;
+                if (!onHeap) {
+                    data.copyRow(p, row, 0);
+                    offset = 0;
+                }
+                double best = reset ? Double.MAX_VALUE : minDistances[p];
+                int bestIndex = reset ? from : nearest[p];
+                for (int c = from; c < to; c++) {
+                    double distance = kernel.squaredDistance(row, offset, centroids, c * dimensions, dimensions);
+                    if (distance < best) {
+                        best = distance;
+                        bestIndex = c;
+                    }
+                }
+                minDistances[p] = best;
+                nearest[p] = bestIndex;
+                sum += best;
+            }
+            partial[chunk] = sum;
+        });
+        double total = 0.0;
+        for (double value : partial) total += value;
+        return total;
+    }
+
+    /**
+     * Elige un índice con probabilidad proporcional a su peso; si todos los pesos son cero elige
+     * uno al azar de manera uniforme.
+     * @param weights Pesos.
+     * @param count Número de elementos.
+     * @param total Suma de los pesos.
+     * @param random Generador de números aleatorios.
+     * @return El índice elegido.
+     */
+    private static int sample(double[] weights, int count, double total, Random random) {
+        if (!(total > 0)) {
+            return random.nextInt(count);
+        }
+        double target = random.nextDouble() * total;
+        double cumulative = 0.0;
+        int lastPositive = 0;
+        for (int i = 0; i < count; i++) {
+            if (weights[i] > 0) {
+                cumulative += weights[i];
+                lastPositive = i;
+                if (cumulative > target) {
+                    return i;
+                }
+            }
+        }
+        // Por redondeo la suma acumulada puede quedar apenas debajo del objetivo
+        return lastPositive;
+    }
+
+    /**
+     * Valida que haya al menos k puntos.
+     * @param data Conjunto de datos.
+     * @param k Número de centroides.
+     * @return Número de puntos.
+     */
+    private static int checkSize(Dataset data, int k) {
+        if (k < 1 || k > data.size()) {
+            throw new IllegalArgumentException("k debe estar entre 1 y el número de puntos (" + data.size() + "), se recibió " + k);
+        }
+        return data.size();
+    }
+}
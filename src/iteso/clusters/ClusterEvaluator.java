@@ -0,0 +1,556 @@
+package iteso.clusters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/**
+ * Calcula métricas de calidad de un clustering a partir de su lista de clusters: inercia,
+ * índice de Davies-Bouldin, índice de Calinski-Harabasz y coeficiente de silueta.
+ * <p>
+ * La silueta exacta cuesta O(n²) distancias; se calcula en paralelo por bloques de filas, cada uno
+ * dueño de sus propias sumas, de modo que el resultado no depende del número de hilos. Para
+ * conjuntos grandes se estima con una muestra aleatoria de puntos, cada uno evaluado contra todos
+ * los demás, y se reporta un intervalo de confianza. Los clusters vacíos se ignoran y los centros se
+ * recalculan como la media de los puntos, sin depender del centroide guardado en cada cluster.
+ * <p>
+ * Además compara dos asignaciones de los mismos puntos con el índice de Rand ajustado, por ejemplo
+ * un resultado aproximado contra el exacto.
+ */
+public class ClusterEvaluator {
+    /**
+     * Tamaño de muestra por defecto para la silueta en {@link #evaluate(List)}.
+     */
+    public static final int DEFAULT_SAMPLE_SIZE = 2000;
+
+    /**
+     * Filas por bloque en el cálculo de la silueta.
+     */
+    private static final int TILE_SIZE = 256;
+
+    /**
+     * Núcleo euclidiano para la inercia y el índice de Calinski-Harabasz, que se definen con él.
+     */
+    private static final DistanceKernel EUCLIDEAN = DistanceKernel.of(DistanceMetric.EUCLIDEAN);
+
+    /**
+     * Núcleo de distancias de la métrica para la silueta y el índice de Davies-Bouldin.
+     */
+    private DistanceKernel kernel;
+
+    /**
+     * Número de hilos.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Semilla del muestreo, o null para elegir una nueva en cada estimación.
+     */
+    private Long seed;
+
+    /**
+     * Tamaño de la muestra de la silueta en {@link #evaluate(List)}; con más puntos se estima.
+     */
+    private int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+    /**
+     * Nivel de confianza del intervalo de las estimaciones.
+     */
+    private double confidence = 0.95;
+
+    /**
+     * Constructor del evaluador.
+     * @param metric Métrica de distancia para la silueta y el índice de Davies-Bouldin.
+     */
+    public ClusterEvaluator(DistanceMetric metric) {
+        this.kernel = DistanceKernel.of(metric);
+    }
+
+    /**
+     * Establece el exponente de la distancia de Minkowski, que solo se usa si el evaluador se
+     * creó con {@link DistanceMetric#MINKOWSKI}.
+     * @param minkowskiP Exponente, al menos 1; por defecto {@link DistanceMetric#DEFAULT_MINKOWSKI_P}.
+     */
+    public void setMinkowskiP(double minkowskiP) {
+        this.kernel = DistanceKernel.of(kernel.metric(), DistanceMetric.checkMinkowskiP(minkowskiP));
+    }
+
+    /**
+     * Establece el número de hilos con los que se calcula la silueta.
+     * @param parallelism Número de hilos; 1 calcula en el hilo actual.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser al menos 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Fija la semilla del muestreo para obtener estimaciones reproducibles.
+     * @param seed Semilla, o null para elegir una nueva en cada estimación.
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Establece cuántos puntos se muestrean para estimar la silueta en {@link #evaluate(List)}.
+     * Con menos puntos que la muestra se calcula de forma exacta.
+     * @param sampleSize Tamaño de la muestra.
+     */
+    public void setSampleSize(int sampleSize) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("El tamaño de muestra debe ser al menos 1");
+        }
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Establece el nivel de confianza del intervalo de las estimaciones.
+     * @param confidence Nivel de confianza, entre 0 y 1 (por defecto 0.95).
+     */
+    public void setConfidence(double confidence) {
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("El nivel de confianza debe estar entre 0 y 1");
+        }
+        this.confidence = confidence;
+    }
+
+    /**
+     * Calcula todas las métricas; la silueta es exacta si hay a lo más tantos puntos como el
+     * tamaño de muestra, y estimada si hay más.
+     * @param clusters Clusters a evaluar.
+     * @return El reporte con cada métrica y su tiempo de cálculo.
+     */
+    public EvaluationReport evaluate(List<Cluster> clusters) {
+        long start = System.nanoTime();
+        Prepared data = new Prepared(clusters);
+        QualityScore inertia = inertia(data);
+        QualityScore daviesBouldin = daviesBouldin(data);
+        QualityScore calinskiHarabasz = calinskiHarabasz(data, inertia.getValue());
+        QualityScore silhouette = data.size <= sampleSize
+                ? silhouette(data, null)
+                : sampledSilhouette(data, sampleSize);
+        return new EvaluationReport(inertia, daviesBouldin, calinskiHarabasz, silhouette, System.nanoTime() - start);
+    }
+
+    /**
+     * Calcula la inercia: la suma de las distancias euclidianas al cuadrado de cada punto a la
+     * media de su cluster.
+     * @param clusters Clusters a evaluar.
+     * @return La inercia.
+     */
+    public QualityScore inertia(List<Cluster> clusters) {
+        return inertia(new Prepared(clusters));
+    }
+
+    /**
+     * Calcula el índice de Davies-Bouldin: el promedio, sobre cada cluster, de la mayor razón
+     * entre la suma de las dispersiones de dos clusters y la distancia entre sus centros.
+     * @param clusters Clusters a evaluar.
+     * @return El índice, o NaN con menos de dos clusters.
+     */
+    public QualityScore daviesBouldin(List<Cluster> clusters) {
+        return daviesBouldin(new Prepared(clusters));
+    }
+
+    /**
+     * Calcula el índice de Calinski-Harabasz: la razón entre la dispersión entre clusters y la
+     * dispersión dentro de los clusters, corregida por sus grados de libertad.
+     * @param clusters Clusters a evaluar.
+     * @return El índice, o NaN con menos de dos clusters o tantos clusters como puntos.
+     */
+    public QualityScore calinskiHarabasz(List<Cluster> clusters) {
+        Prepared data = new Prepared(clusters);
+        return calinskiHarabasz(data, inertia(data).getValue());
+    }
+
+    /**
+     * Calcula el coeficiente de silueta exacto.
+     * @param clusters Clusters a evaluar.
+     * @return El coeficiente, o NaN con menos de dos clusters.
+     */
+    public QualityScore silhouette(List<Cluster> clusters) {
+        return silhouette(new Prepared(clusters), null);
+    }
+
+    /**
+     * Calcula el coeficiente de silueta exacto leyendo las distancias de una matriz ya calculada,
+     * por ejemplo la del clustering jerárquico. Los puntos deben ser vistas sobre el conjunto con
+     * el que se calculó la matriz.
+     * @param clusters Clusters a evaluar.
+     * @param matrix Matriz de distancias condensada del conjunto.
+     * @return El coeficiente, o NaN con menos de dos clusters.
+     */
+    public QualityScore silhouette(List<Cluster> clusters, CondensedDistanceMatrix matrix) {
+        Prepared data = new Prepared(clusters);
+        for (int row : data.rows) {
+            if (row < 0 || row >= matrix.size()) {
+                throw new IllegalArgumentException("Los puntos deben ser vistas sobre el conjunto de la matriz");
+            }
+        }
+        return silhouette(data, matrix);
+    }
+
+    /**
+     * Estima el coeficiente de silueta con una muestra aleatoria de puntos, cada uno comparado con
+     * todos los demás, en O(muestra * n) distancias.
+     * @param clusters Clusters a evaluar.
+     * @param sampleSize Número de puntos de la muestra.
+     * @return La estimación con su intervalo de confianza, o NaN con menos de dos clusters.
+     */
+    public QualityScore sampledSilhouette(List<Cluster> clusters, int sampleSize) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("El tamaño de muestra debe ser al menos 1");
+        }
+        return sampledSilhouette(new Prepared(clusters), sampleSize);
+    }
+
+    /**
+     * Calcula el índice de Rand ajustado entre dos asignaciones de los mismos puntos: 1 si
+     * coinciden salvo por la numeración de los clusters, cerca de 0 si coinciden como al azar.
+     * Las etiquetas negativas, como el ruido de {@link DBSCAN}, cuentan como un grupo más.
+     * @param labels Cluster de cada punto en la primera asignación.
+     * @param other Cluster de cada punto en la segunda asignación.
+     * @return El índice, a lo más 1.
+     */
+    public static double adjustedRandIndex(int[] labels, int[] other) {
+        if (labels.length != other.length) {
+            throw new IllegalArgumentException("Las asignaciones deben tener el mismo número de puntos");
+        }
+        int[] a = compact(labels);
+        int[] b = compact(other);
+        int rows = 0, columns = 0;
+        for (int p = 0; p < a.length; p++) {
+            rows = Math.max(rows, a[p] + 1);
+            columns = Math.max(columns, b[p] + 1);
+        }
+        long[] table = new long[rows * columns];
+        long[] rowSums = new long[rows];
+        long[] columnSums = new long[columns];
+        for (int p = 0; p < a.length; p++) {
+            table[a[p] * columns + b[p]]++;
+            rowSums[a[p]]++;
+            columnSums[b[p]]++;
+        }
+        double index = 0, rowPairs = 0, columnPairs = 0;
+        for (long count : table) index += pairs(count);
+        for (long count : rowSums) rowPairs += pairs(count);
+        for (long count : columnSums) columnPairs += pairs(count);
+        double expected = rowPairs * columnPairs / Math.max(pairs(a.length), 1);
+        double maximum = (rowPairs + columnPairs) / 2;
+        // Ambas asignaciones triviales (todo junto o todo separado) coinciden por completo
+        return maximum == expected ? 1.0 : (index - expected) / (maximum - expected);
+    }
+
+    /**
+     * Renumera etiquetas arbitrarias como 0, 1, 2... en el orden de su primera aparición.
+     */
+    private static int[] compact(int[] labels) {
+        Map<Integer, Integer> ids = new HashMap<>();
+        int[] compact = new int[labels.length];
+        for (int p = 0; p < labels.length; p++) {
+            compact[p] = ids.computeIfAbsent(labels[p], label -> ids.size());
+        }
+        return compact;
+    }
+
+    private static double pairs(long count) {
+        return count * (count - 1) / 2.0;
+    }
+
+    private QualityScore inertia(Prepared data) {
+        long start = System.nanoTime();
+        double total = 0.0;
+        for (int p = 0; p < data.size; p++) {
+            total += EUCLIDEAN.squaredDistance(data.values, p * data.dimensions,
+                    data.centers, data.labels[p] * data.dimensions, data.dimensions);
+        }
+        return new QualityScore("Inercia", total, data.size, System.nanoTime() - start);
+    }
+
+    private QualityScore daviesBouldin(Prepared data) {
+        long start = System.nanoTime();
+        int k = data.clusterCount;
+        int d = data.dimensions;
+        double value = Double.NaN;
+        if (k >= 2) {
+            // Dispersión de cada cluster: distancia promedio de sus puntos a su centro
+            double[] scatter = new double[k];
+            for (int p = 0; p < data.size; p++) {
+                scatter[data.labels[p]] += kernel.distance(data.values, p * d, data.centers, data.labels[p] * d, d);
+            }
+            for (int c = 0; c < k; c++) {
+                scatter[c] /= data.counts[c];
+            }
+            double total = 0.0;
+            for (int a = 0; a < k; a++) {
+                double worst = 0.0;
+                for (int b = 0; b < k; b++) {
+                    if (a == b) continue;
+                    double separation = kernel.distance(data.centers, a * d, data.centers, b * d, d);
+                    worst = Math.max(worst, (scatter[a] + scatter[b]) / separation);
+                }
+                total += worst;
+            }
+            value = total / k;
+        }
+        return new QualityScore("Davies-Bouldin", value, data.size, System.nanoTime() - start);
+    }
+
+    private QualityScore calinskiHarabasz(Prepared data, double within) {
+        long start = System.nanoTime();
+        int k = data.clusterCount;
+        int d = data.dimensions;
+        double value = Double.NaN;
+        if (k >= 2 && data.size > k) {
+            double[] mean = new double[d];
+            for (int c = 0; c < k; c++) {
+                for (int i = 0; i < d; i++) {
+                    mean[i] += data.centers[c * d + i] * data.counts[c];
+                }
+            }
+            for (int i = 0; i < d; i++) {
+                mean[i] /= data.size;
+            }
+            double between = 0.0;
+            for (int c = 0; c < k; c++) {
+                between += data.counts[c] * EUCLIDEAN.squaredDistance(data.centers, c * d, mean, 0, d);
+            }
+            value = within == 0.0 ? Double.POSITIVE_INFINITY
+                    : (between / (k - 1)) / (within / (data.size - k));
+        }
+        return new QualityScore("Calinski-Harabasz", value, data.size, System.nanoTime() - start);
+    }
+
+    /**
+     * Calcula la silueta exacta por bloques de filas.
+     * @param data Datos preparados.
+     * @param matrix Matriz de distancias, o null para calcularlas.
+     * @return La silueta exacta.
+     */
+    private QualityScore silhouette(Prepared data, CondensedDistanceMatrix matrix) {
+        long start = System.nanoTime();
+        int n = data.size;
+        double value = Double.NaN;
+        if (data.clusterCount >= 2) {
+            int blocks = (n + TILE_SIZE - 1) / TILE_SIZE;
+            double[] partial = new double[blocks];
+            run(blocks, block -> {
+                int from = block * TILE_SIZE;
+                int to = Math.min(n, from + TILE_SIZE);
+                double[] sums = new double[(to - from) * data.clusterCount];
+                accumulate(data, matrix, from, to, sums);
+                double total = 0.0;
+                for (int p = from; p < to; p++) {
+                    total += pointSilhouette(data, p, sums, (p - from) * data.clusterCount);
+                }
+                partial[block] = total;
+            });
+            double total = 0.0;
+            for (double blockTotal : partial) total += blockTotal;
+            value = total / n;
+        }
+        return new QualityScore("Silueta", value, n, System.nanoTime() - start);
+    }
+
+    /**
+     * Estima la silueta con una muestra sin reemplazo y calcula su intervalo de confianza con la
+     * aproximación normal y la corrección por población finita.
+     * @param data Datos preparados.
+     * @param sampleSize Número de puntos de la muestra.
+     * @return La estimación.
+     */
+    private QualityScore sampledSilhouette(Prepared data, int sampleSize) {
+        long start = System.nanoTime();
+        int n = data.size;
+        int m = Math.min(sampleSize, n);
+        if (data.clusterCount < 2) {
+            return new QualityScore("Silueta", Double.NaN, Double.NaN, Double.NaN, m, true, System.nanoTime() - start);
+        }
+        // Fisher-Yates parcial: los primeros m elementos forman la muestra
+        SplittableRandom random = new SplittableRandom(seed != null ? seed : new Random().nextLong());
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        for (int i = 0; i < m; i++) {
+            int j = i + random.nextInt(n - i);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        double[] scores = new double[m];
+        int k = data.clusterCount;
+        int blocks = (m + TILE_SIZE - 1) / TILE_SIZE;
+        run(blocks, block -> {
+            double[] sums = new double[k];
+            int end = Math.min(m, (block + 1) * TILE_SIZE);
+            for (int s = block * TILE_SIZE; s < end; s++) {
+                int p = order[s];
+                Arrays.fill(sums, 0.0);
+                accumulate(data, null, p, p + 1, sums);
+                scores[s] = pointSilhouette(data, p, sums, 0);
+            }
+        });
+        double mean = 0.0;
+        for (double score : scores) mean += score;
+        mean /= m;
+        double variance = 0.0;
+        for (double score : scores) variance += (score - mean) * (score - mean);
+        variance = m > 1 ? variance / (m - 1) : 0.0;
+        double correction = n > 1 ? (double) (n - m) / (n - 1) : 0.0;
+        double halfWidth = normalQuantile(0.5 + confidence / 2) * Math.sqrt(variance / m * correction);
+        return new QualityScore("Silueta", mean, Math.max(-1.0, mean - halfWidth), Math.min(1.0, mean + halfWidth),
+                m, m < n, System.nanoTime() - start);
+    }
+
+    /**
+     * Suma, para cada punto de un rango de filas, sus distancias a todos los puntos de cada cluster.
+     * Recorre los demás puntos por bloques para que se mantengan en la caché.
+     * @param data Datos preparados.
+     * @param matrix Matriz de distancias, o null para calcularlas.
+     * @param from Primera fila.
+     * @param to Fila final (exclusiva).
+     * @param sums Sumas de salida ((to - from) x clusters).
+     */
+    private void accumulate(Prepared data, CondensedDistanceMatrix matrix, int from, int to, double[] sums) {
+        int n = data.size;
+        int d = data.dimensions;
+        int k = data.clusterCount;
+        double[] values = data.values;
+        int[] labels = data.labels;
+        for (int tile = 0; tile < n; tile += TILE_SIZE) {
+            int tileEnd = Math.min(n, tile + TILE_SIZE);
+            for (int p = from; p < to; p++) {
+                int base = (p - from) * k;
+                for (int q = tile; q < tileEnd; q++) {
+                    if (q == p) continue;
+                    double distance = matrix != null
+                            ? matrix.get(data.rows[p], data.rows[q])
+                            : kernel.distance(values, p * d, values, q * d, d);
+                    sums[base + labels[q]] += distance;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcula la silueta de un punto a partir de sus sumas de distancias a cada cluster.
+     * @param data Datos preparados.
+     * @param p Punto.
+     * @param sums Sumas de distancias del punto a cada cluster.
+     * @param offset Posición de las sumas del punto.
+     * @return La silueta del punto; 0 si su cluster tiene un solo punto.
+     */
+    private static double pointSilhouette(Prepared data, int p, double[] sums, int offset) {
+        int own = data.labels[p];
+        if (data.counts[own] == 1) {
+            return 0.0;
+        }
+        double a = sums[offset + own] / (data.counts[own] - 1);
+        double b = Double.POSITIVE_INFINITY;
+        for (int c = 0; c < data.clusterCount; c++) {
+            if (c != own) {
+                b = Math.min(b, sums[offset + c] / data.counts[c]);
+            }
+        }
+        double scale = Math.max(a, b);
+        return scale == 0.0 ? 0.0 : (b - a) / scale;
+    }
+
+    /**
+     * Ejecuta una tarea por bloque con el paralelismo configurado.
+     * @param blocks Número de bloques.
+     * @param body Tarea que recibe el índice del bloque.
+     */
+    private void run(int blocks, IntConsumer body) {
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            KMeansEngine.runChunks(blocks, pool, body);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Aproxima el cuantil de la distribución normal estándar (Abramowitz y Stegun 26.2.23,
+     * error menor a 4.5e-4).
+     * @param probability Probabilidad acumulada, entre 0 y 1.
+     * @return El cuantil.
+     */
+    private static double normalQuantile(double probability) {
+        double tail = probability < 0.5 ? probability : 1 - probability;
+        double t = Math.sqrt(-2.0 * Math.log(tail));
+        double z = t - (2.515517 + 0.802853 * t + 0.010328 * t * t)
+                / (1 + 1.432788 * t + 0.189269 * t * t + 0.001308 * t * t * t);
+        return probability < 0.5 ? -z : z;
+    }
+
+    /**
+     * Puntos de los clusters copiados a una matriz contigua, con la etiqueta de cada uno,
+     * el tamaño de cada cluster y su media.
+     */
+    private static final class Prepared {
+        final int size, dimensions, clusterCount;
+        final double[] values;
+        final int[] labels;
+        final int[] rows;
+        final long[] counts;
+        final double[] centers;
+
+        Prepared(List<Cluster> clusters) {
+            List<Cluster> nonEmpty = new ArrayList<>();
+            int total = 0;
+            int d = -1;
+            for (Cluster cluster : clusters) {
+                if (cluster.getPoints().isEmpty()) continue;
+                nonEmpty.add(cluster);
+                total += cluster.getPoints().size();
+                if (d < 0) {
+                    d = cluster.getPoints().get(0).getFeatures().length;
+                }
+            }
+            this.size = total;
+            this.dimensions = Math.max(d, 0);
+            this.clusterCount = nonEmpty.size();
+            this.values = new double[Dataset.checkedCapacity(size, dimensions)];
+            this.labels = new int[size];
+            this.rows = new int[size];
+            this.counts = new long[clusterCount];
+            this.centers = new double[clusterCount * dimensions];
+            int p = 0;
+            for (int c = 0; c < clusterCount; c++) {
+                for (DataPoint point : nonEmpty.get(c).getPoints()) {
+                    Dataset source = point.getSource();
+                    if (source != null && !point.isDetached() && source.dimensions() == dimensions) {
+                        source.copyRow(point.getIndex(), values, p * dimensions);
+                    } else {
+                        double[] features = point.getFeatures();
+                        if (features.length != dimensions) {
+                            throw new IllegalArgumentException("Todos los puntos deben tener " + dimensions + " dimensiones");
+                        }
+                        System.arraycopy(features, 0, values, p * dimensions, dimensions);
+                    }
+                    labels[p] = c;
+                    rows[p] = point.getIndex();
+                    for (int i = 0; i < dimensions; i++) {
+                        centers[c * dimensions + i] += values[p * dimensions + i];
+                    }
+                    p++;
+                }
+                counts[c] = nonEmpty.get(c).getPoints().size();
+                for (int i = 0; i < dimensions; i++) {
+                    centers[c * dimensions + i] /= counts[c];
+                }
+            }
+        }
+    }
+}
@@ -12,4 +12,15 @@ public interface ClusteringAlgorithm {
      * @return Lista de clusters resultantes.
      */
     List<Cluster> fit(List<DataPoint> data);
-}
\ No newline at end of file
+
+    /**
+     * Ejecuta el algoritmo de clustering sobre un conjunto de datos columnar.
+     * Por defecto trabaja sobre vistas ligeras de cada fila; las implementaciones
+     * pueden sobrescribirlo para recorrer directamente la matriz contigua.
+     * @param data Conjunto de datos a clusterizar.
+     * @return Lista de clusters resultantes, cuyos puntos son vistas sobre el conjunto.
+     */
+    default List<Cluster> fit(Dataset data) {
+        return fit(data.toDataPoints());
+    }
+}
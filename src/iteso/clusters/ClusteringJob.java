@@ -0,0 +1,175 @@
+package iteso.clusters;
+
+import java.time.Duration;
+
+/**
+ * Descripción de un trabajo de clustering para {@link ClusteringService}: el archivo de datos,
+ * el algoritmo y sus parámetros, y un plazo opcional contado desde que se envía el trabajo.
+ */
+public class ClusteringJob {
+    /**
+     * Ruta del archivo CSV o binario con los datos.
+     */
+    private final String filePath;
+
+    /**
+     * Algoritmo a ejecutar.
+     */
+    private final ClusteringMethod method;
+
+    /**
+     * Número de clusters deseado.
+     */
+    private final int k;
+
+    /**
+     * Métrica de distancia.
+     */
+    private final DistanceMetric metric;
+
+    /**
+     * Tipo de enlace; solo se usa en el clustering jerárquico.
+     */
+    private final LinkageType linkage;
+
+    /**
+     * Número máximo de iteraciones de K-Means.
+     */
+    private int maxIterations = 300;
+
+    /**
+     * Semilla de K-Means, o null para elegir una nueva en cada ejecución.
+     */
+    private Long seed;
+
+    /**
+     * Plazo del trabajo desde que se envía, o null para no tener plazo.
+     */
+    private Duration timeout;
+
+    /**
+     * Constructor del trabajo.
+     * @param filePath Ruta del archivo CSV o binario con los datos.
+     * @param method Algoritmo a ejecutar.
+     * @param k Número de clusters deseado.
+     * @param metric Métrica de distancia.
+     * @param linkage Tipo de enlace del clustering jerárquico; se ignora con K-Means.
+     */
+    public ClusteringJob(String filePath, ClusteringMethod method, int k, DistanceMetric metric, LinkageType linkage) {
+        if (filePath == null || method == null || metric == null) {
+            throw new IllegalArgumentException("El archivo, el algoritmo y la métrica son obligatorios");
+        }
+        if (method == ClusteringMethod.HIERARCHICAL && linkage == null) {
+            throw new IllegalArgumentException("El clustering jerárquico requiere un tipo de enlace");
+        }
+        if (k < 1) {
+            throw new IllegalArgumentException("El número de clusters debe ser al menos 1");
+        }
+        this.filePath = filePath;
+        this.method = method;
+        this.k = k;
+        this.metric = metric;
+        this.linkage = linkage;
+    }
+
+    /**
+     * Establece el número máximo de iteraciones de K-Means.
+     * @param maxIterations Número máximo de iteraciones.
+     */
+    public void setMaxIterations(int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("El número de iteraciones debe ser al menos 1");
+        }
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Fija la semilla de K-Means para obtener resultados reproducibles.
+     * @param seed Semilla, o null para elegir una nueva en cada ejecución.
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Establece el plazo del trabajo, contado desde que se envía; incluye la espera en la cola y
+     * la carga de los datos.
+     * @param timeout Plazo, o null para no tener plazo.
+     */
+    public void setTimeout(Duration timeout) {
+        if (timeout != null && timeout.isNegative()) {
+            throw new IllegalArgumentException("El plazo no puede ser negativo");
+        }
+        this.timeout = timeout;
+    }
+
+    /**
+     * Obtiene la ruta del archivo con los datos.
+     * @return Ruta del archivo.
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * Obtiene el algoritmo a ejecutar.
+     * @return El algoritmo.
+     */
+    public ClusteringMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * Obtiene el número de clusters deseado.
+     * @return Número de clusters.
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Obtiene la métrica de distancia.
+     * @return La métrica.
+     */
+    public DistanceMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Obtiene el tipo de enlace del clustering jerárquico.
+     * @return El tipo de enlace, o null.
+     */
+    public LinkageType getLinkage() {
+        return linkage;
+    }
+
+    /**
+     * Obtiene el número máximo de iteraciones de K-Means.
+     * @return Número máximo de iteraciones.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Obtiene la semilla de K-Means.
+     * @return La semilla, o null si se elige en cada ejecución.
+     */
+    public Long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Obtiene el plazo del trabajo desde que se envía.
+     * @return El plazo, o null si no tiene.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public String toString() {
+        return method + "(k=" + k + ", " + metric + (method == ClusteringMethod.HIERARCHICAL ? ", " + linkage : "")
+                + ") " + filePath;
+    }
+}
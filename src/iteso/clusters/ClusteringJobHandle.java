@@ -0,0 +1,346 @@
+package iteso.clusters;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Seguimiento de un trabajo enviado a {@link ClusteringService}: su estado, sus tiempos, su
+ * resultado y la posibilidad de cancelarlo.
+ * <p>
+ * La cancelación y el plazo son cooperativos: el trabajo termina de inmediato para quien lo espera,
+ * y el cálculo se detiene en la siguiente iteración de K-Means o fase del clustering jerárquico.
+ */
+public class ClusteringJobHandle {
+    /**
+     * Estados de un trabajo.
+     */
+    public enum State {
+        /**
+         * Enviado, en espera de los datos o del pool de cálculo.
+         */
+        QUEUED,
+        /**
+         * Cargando los datos o esperando a que otro trabajo los cargue.
+         */
+        LOADING,
+        /**
+         * Ejecutando el algoritmo.
+         */
+        RUNNING,
+        /**
+         * Terminado con resultado.
+         */
+        SUCCEEDED,
+        /**
+         * Terminado con un error al cargar los datos o en el algoritmo.
+         */
+        FAILED,
+        /**
+         * Cancelado con {@link #cancel()} o al cerrar el servicio.
+         */
+        CANCELLED,
+        /**
+         * Detenido porque se venció su plazo.
+         */
+        TIMED_OUT
+    }
+
+    /**
+     * Número consecutivo del trabajo en el servicio.
+     */
+    private final long id;
+
+    /**
+     * Descripción del trabajo.
+     */
+    private final ClusteringJob job;
+
+    /**
+     * Resultado del trabajo.
+     */
+    private final CompletableFuture<List<Cluster>> result = new CompletableFuture<>();
+
+    /**
+     * Momento del envío, en nanosegundos de {@link System#nanoTime()}.
+     */
+    private final long submitted;
+
+    /**
+     * Momento en que vence el plazo, válido solo si hay plazo.
+     */
+    private final long deadline;
+
+    /**
+     * Indica si el trabajo tiene plazo.
+     */
+    private final boolean hasDeadline;
+
+    /**
+     * Estado actual.
+     */
+    private volatile State state = State.QUEUED;
+
+    /**
+     * Indica que una llamada a {@link #finish} ya fijó el estado final. Se marca bajo el candado,
+     * antes de completar el futuro, para que dos terminaciones simultáneas no pasen ambas.
+     */
+    private boolean done;
+
+    /**
+     * Indica al cálculo que debe detenerse.
+     */
+    private volatile boolean stopRequested;
+
+    /**
+     * Etapa que se está esperando, para dejar de esperarla al cancelar.
+     */
+    private volatile Future<?> stage;
+
+    /**
+     * Momentos de inicio del algoritmo y de fin del trabajo, o 0 si no han ocurrido.
+     */
+    private long started, finished;
+
+    /**
+     * Constructor del seguimiento.
+     * @param id Número consecutivo del trabajo.
+     * @param job Descripción del trabajo.
+     */
+    ClusteringJobHandle(long id, ClusteringJob job) {
+        this.id = id;
+        this.job = job;
+        this.submitted = System.nanoTime();
+        this.hasDeadline = job.getTimeout() != null;
+        this.deadline = hasDeadline ? submitted + saturatedNanos(job.getTimeout().toNanos()) : 0;
+    }
+
+    /**
+     * Limita un plazo para que sumarlo al momento del envío no se desborde.
+     */
+    private static long saturatedNanos(long nanos) {
+        return Math.min(nanos, Long.MAX_VALUE / 4);
+    }
+
+    /**
+     * Obtiene el número consecutivo del trabajo en el servicio.
+     * @return Número del trabajo.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Obtiene la descripción del trabajo.
+     * @return El trabajo.
+     */
+    public ClusteringJob getJob() {
+        return job;
+    }
+
+    /**
+     * Obtiene el estado actual del trabajo.
+     * @return El estado.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Indica si el trabajo ya terminó, con cualquier estado final.
+     * @return true si terminó.
+     */
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /**
+     * Cancela el trabajo si aún no ha terminado.
+     * @return true si esta llamada lo canceló.
+     */
+    public boolean cancel() {
+        return finish(State.CANCELLED, null, new CancellationException("Trabajo " + id + " cancelado"));
+    }
+
+    /**
+     * Espera el resultado del trabajo.
+     * @return Los clusters; con K-Means son un {@link KMeansResult}.
+     * @throws ClusteringException Si el trabajo falló, se canceló o se venció su plazo.
+     * @throws InterruptedException Si el hilo se interrumpe mientras espera.
+     */
+    public List<Cluster> get() throws ClusteringException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException | CancellationException e) {
+            throw failure(e);
+        }
+    }
+
+    /**
+     * Espera el resultado del trabajo a lo más el tiempo dado.
+     * @param timeout Tiempo máximo de espera.
+     * @param unit Unidad del tiempo.
+     * @return Los clusters; con K-Means son un {@link KMeansResult}.
+     * @throws ClusteringException Si el trabajo falló, se canceló o se venció su plazo.
+     * @throws InterruptedException Si el hilo se interrumpe mientras espera.
+     * @throws TimeoutException Si el trabajo no termina en el tiempo dado; sigue en ejecución.
+     */
+    public List<Cluster> get(long timeout, TimeUnit unit)
+            throws ClusteringException, InterruptedException, TimeoutException {
+        try {
+            return result.get(timeout, unit);
+        } catch (ExecutionException | CancellationException e) {
+            throw failure(e);
+        }
+    }
+
+    /**
+     * Convierte la terminación anormal del trabajo en una excepción de la librería.
+     */
+    private ClusteringException failure(Exception e) {
+        Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+        if (cause instanceof ClusteringException) {
+            return (ClusteringException) cause;
+        }
+        return new ClusteringException("Trabajo " + id + " (" + job + ") terminó con estado " + state, cause);
+    }
+
+    /**
+     * Obtiene el tiempo que el trabajo esperó desde su envío hasta que empezó el algoritmo,
+     * o hasta ahora si aún no empieza.
+     * @return Tiempo en nanosegundos.
+     */
+    public synchronized long getQueueTime() {
+        long end = started != 0 ? started : finished != 0 ? finished : System.nanoTime();
+        return end - submitted;
+    }
+
+    /**
+     * Obtiene el tiempo de ejecución del algoritmo, o 0 si no llegó a empezar.
+     * @return Tiempo en nanosegundos.
+     */
+    public synchronized long getRunTime() {
+        if (started == 0) {
+            return 0;
+        }
+        return (finished != 0 ? finished : System.nanoTime()) - started;
+    }
+
+    /**
+     * Obtiene el tiempo total desde el envío hasta el fin del trabajo, o hasta ahora.
+     * @return Tiempo en nanosegundos.
+     */
+    public synchronized long getLatency() {
+        return (finished != 0 ? finished : System.nanoTime()) - submitted;
+    }
+
+    /**
+     * Futuro con el resultado, para que el servicio registre el fin del trabajo.
+     */
+    CompletableFuture<List<Cluster>> future() {
+        return result;
+    }
+
+    /**
+     * Cambia el estado de un trabajo que no ha terminado.
+     * @param next Nuevo estado no final.
+     */
+    synchronized void setState(State next) {
+        if (!done) {
+            state = next;
+        }
+    }
+
+    /**
+     * Marca el inicio del algoritmo.
+     * @return false si el trabajo ya terminó y no debe empezar.
+     */
+    synchronized boolean start() {
+        if (done) {
+            return false;
+        }
+        started = System.nanoTime();
+        state = State.RUNNING;
+        return true;
+    }
+
+    /**
+     * Indica si el algoritmo llegó a empezar.
+     * @return true si empezó.
+     */
+    synchronized boolean wasStarted() {
+        return started != 0;
+    }
+
+    /**
+     * Termina el trabajo con un estado final, si no había terminado. Pide al cálculo que se
+     * detenga y deja de esperar la etapa en curso.
+     * @param last Estado final.
+     * @param clusters Resultado si el trabajo tuvo éxito.
+     * @param error Causa si el trabajo no tuvo éxito.
+     * @return true si esta llamada terminó el trabajo.
+     */
+    boolean finish(State last, List<Cluster> clusters, Throwable error) {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            state = last;
+            finished = System.nanoTime();
+            stopRequested = true;
+        }
+        Future<?> current = stage;
+        if (current != null) {
+            current.cancel(false);
+        }
+        if (error == null) {
+            result.complete(clusters);
+        } else {
+            result.completeExceptionally(error);
+        }
+        return true;
+    }
+
+    /**
+     * Espera una etapa del trabajo respetando su plazo. La etapa se cancela si el trabajo termina
+     * mientras se espera, así que no debe ser un futuro compartido.
+     * @param future Etapa a esperar.
+     * @param <T> Tipo del resultado de la etapa.
+     * @return El resultado de la etapa.
+     * @throws ExecutionException Si la etapa falló.
+     * @throws TimeoutException Si se venció el plazo.
+     * @throws InterruptedException Si el hilo se interrumpe mientras espera.
+     */
+    <T> T await(CompletableFuture<T> future) throws ExecutionException, TimeoutException, InterruptedException {
+        stage = future;
+        try {
+            if (stopRequested) {
+                future.cancel(false);
+            }
+            return hasDeadline ? future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS) : future.get();
+        } finally {
+            stage = null;
+        }
+    }
+
+    /**
+     * Indica si el cálculo debe detenerse porque el trabajo terminó o se venció su plazo.
+     * @return true si debe detenerse.
+     */
+    boolean shouldStop() {
+        return stopRequested || hasDeadline && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * Indica si se venció el plazo del trabajo.
+     * @return true si tiene plazo y ya pasó.
+     */
+    boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadline >= 0;
+    }
+}
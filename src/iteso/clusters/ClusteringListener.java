@@ -0,0 +1,49 @@
+package iteso.clusters;
+
+/**
+ * Receptor de las mediciones de una ejecución de {@link DataLoader}, {@link KMeans} o
+ * {@link HierarchicalClustering}: duración de cada fase, inercia de cada iteración, distancias
+ * evaluadas, fusiones por segundo y una estimación de la memoria que reserva cada fase.
+ * <p>
+ * Se registra con {@code setListener}; sin receptor (null, el valor por defecto) no se mide nada
+ * más allá de lo que ya informan los resultados. Todos los métodos tienen una implementación vacía
+ * para que cada receptor atienda solo lo que le interesa. Los eventos se emiten desde el hilo que
+ * ejecuta el algoritmo; un receptor compartido entre ejecuciones concurrentes debe ser seguro para
+ * hilos, como {@link MetricsRegistry}.
+ */
+public interface ClusteringListener {
+    /**
+     * Se llama al terminar una fase de una ejecución.
+     * @param source Componente que la ejecutó, por ejemplo "KMeans" o "DataLoader".
+     * @param phase Nombre de la fase.
+     * @param nanos Duración de la fase en nanosegundos.
+     * @param distanceComputations Distancias evaluadas en la fase, o 0 si no aplica.
+     * @param allocatedBytes Estimación de los bytes que reserva la fase en sus estructuras principales.
+     */
+    default void phaseCompleted(String source, String phase, long nanos, long distanceComputations,
+                                long allocatedBytes) {
+    }
+
+    /**
+     * Se llama al terminar cada iteración de K-Means. Calcular la inercia cuesta una pasada sobre
+     * los datos, que solo se hace cuando hay un receptor.
+     * @param source Componente que la ejecutó.
+     * @param iteration Número de la iteración, desde 1.
+     * @param inertia Inercia de las asignaciones de la iteración con los centroides recién actualizados.
+     * @param changes Puntos que cambiaron de cluster.
+     * @param distanceComputations Distancias evaluadas en la iteración.
+     * @param nanos Duración de la iteración en nanosegundos.
+     */
+    default void iterationCompleted(String source, int iteration, double inertia, int changes,
+                                    long distanceComputations, long nanos) {
+    }
+
+    /**
+     * Se llama al terminar de calcular las fusiones de un clustering jerárquico.
+     * @param source Componente que las calculó.
+     * @param merges Número de fusiones.
+     * @param nanos Duración del cálculo en nanosegundos, sin la matriz de distancias.
+     */
+    default void mergesCompleted(String source, int merges, long nanos) {
+    }
+}
@@ -0,0 +1,15 @@
+package iteso.clusters;
+
+/**
+ * Enumeración de los algoritmos que puede ejecutar un {@link ClusteringJob}.
+ */
+public enum ClusteringMethod {
+    /**
+     * K-Means con la métrica del trabajo.
+     */
+    KMEANS,
+    /**
+     * Clustering jerárquico con la métrica y el enlace del trabajo.
+     */
+    HIERARCHICAL
+}
@@ -0,0 +1,293 @@
+package iteso.clusters;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servicio que ejecuta muchos trabajos de clustering a la vez sobre unos cuantos archivos de datos.
+ * <p>
+ * Cada trabajo se coordina en un hilo propio: un hilo virtual cuando la JVM los ofrece, o un hilo
+ * de plataforma en otro caso. Ese hilo solo espera; la carga de los datos y los algoritmos se
+ * ejecutan en un único pool de cálculo con tantos hilos como se indiquen, así que el uso de CPU
+ * queda acotado aunque haya cientos de trabajos en espera. Los datos se guardan en una
+ * {@link DatasetCache} compartida: los trabajos sobre el mismo archivo lo cargan una sola vez.
+ * <p>
+ * Cada trabajo puede cancelarse y tener un plazo; ver {@link ClusteringJobHandle}. Las
+ * estadísticas de la cola y de latencia se obtienen con {@link #getStats()}.
+ */
+public class ClusteringService implements AutoCloseable {
+    /**
+     * Número de trabajos recientes cuyas esperas y latencias se conservan para los percentiles.
+     */
+    static final int LATENCY_SAMPLES = 1024;
+
+    /**
+     * Pool de cálculo compartido por la carga de datos y los algoritmos.
+     */
+    private final ForkJoinPool computePool;
+
+    /**
+     * Ejecutor de los hilos que coordinan cada trabajo.
+     */
+    private final ExecutorService jobExecutor;
+
+    /**
+     * Caché de los conjuntos de datos.
+     */
+    private final DatasetCache cache;
+
+    /**
+     * Trabajos que no han terminado.
+     */
+    private final Set<ClusteringJobHandle> active = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * Conteos de trabajos por estado final.
+     */
+    private long succeeded, failed, cancelled, timedOut;
+
+    /**
+     * Anillos con las esperas en cola y las latencias de los trabajos recientes.
+     */
+    private final long[] queueTimes = new long[LATENCY_SAMPLES];
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private long queueTimeCount, latencyCount;
+
+    /**
+     * Indica si el servicio ya no acepta trabajos.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constructor del servicio.
+     * @param computeThreads Número de hilos del pool de cálculo.
+     * @param cacheBytes Límite de bytes de la caché de datos.
+     */
+    public ClusteringService(int computeThreads, long cacheBytes) {
+        if (computeThreads < 1) {
+            throw new IllegalArgumentException("El número de hilos debe ser al menos 1");
+        }
+        this.computePool = new ForkJoinPool(computeThreads);
+        this.cache = new DatasetCache(cacheBytes);
+        this.jobExecutor = newJobExecutor();
+    }
+
+    /**
+     * Crea el ejecutor de hilos virtuales si la JVM lo ofrece; en una JVM anterior a Java 21 usa
+     * hilos de plataforma que se crean según se necesiten.
+     * @return El ejecutor de los hilos de coordinación.
+     */
+    private static ExecutorService newJobExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger threads = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "clustering-job-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Envía un trabajo; regresa de inmediato.
+     * @param job Trabajo a ejecutar.
+     * @return Seguimiento del trabajo.
+     */
+    public ClusteringJobHandle submit(ClusteringJob job) {
+        if (closed) {
+            throw new IllegalStateException("El servicio está cerrado");
+        }
+        ClusteringJobHandle handle = new ClusteringJobHandle(nextId.incrementAndGet(), job);
+        active.add(handle);
+        queued.incrementAndGet();
+        handle.future().whenComplete((clusters, error) -> finished(handle));
+        try {
+            jobExecutor.execute(() -> execute(handle));
+        } catch (RuntimeException e) {
+            handle.finish(ClusteringJobHandle.State.CANCELLED, null, e);
+        }
+        return handle;
+    }
+
+    /**
+     * Envía varios trabajos.
+     * @param jobs Trabajos a ejecutar.
+     * @return Seguimiento de cada trabajo, en el mismo orden.
+     */
+    public List<ClusteringJobHandle> submitAll(Collection<ClusteringJob> jobs) {
+        List<ClusteringJobHandle> handles = new ArrayList<>(jobs.size());
+        for (ClusteringJob job : jobs) {
+            handles.add(submit(job));
+        }
+        return handles;
+    }
+
+    /**
+     * Coordina un trabajo: espera sus datos y su algoritmo, ambos en el pool de cálculo, respetando
+     * su plazo y su cancelación.
+     * @param handle Seguimiento del trabajo.
+     */
+    private void execute(ClusteringJobHandle handle) {
+        ClusteringJob job = handle.getJob();
+        try {
+            handle.setState(ClusteringJobHandle.State.LOADING);
+            // Se espera una copia para que cancelar este trabajo no cancele la carga compartida
+            Dataset data = handle.await(cache.getAsync(job.getFilePath(), computePool).copy());
+            List<Cluster> clusters = handle.await(CompletableFuture.supplyAsync(() -> fit(handle, data), computePool));
+            handle.finish(ClusteringJobHandle.State.SUCCEEDED, clusters, null);
+        } catch (TimeoutException e) {
+            expire(handle);
+        } catch (CancellationException e) {
+            // Cancelado desde fuera: el seguimiento ya terminó, o el plazo detuvo el algoritmo
+            if (handle.isExpired()) {
+                expire(handle);
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CancellationException && handle.isExpired()) {
+                expire(handle);
+            } else {
+                handle.finish(ClusteringJobHandle.State.FAILED, null,
+                        new ClusteringException("Falló el trabajo " + job + ": " + cause.getMessage(), cause));
+            }
+        } catch (InterruptedException e) {
+            handle.cancel();
+        } catch (RuntimeException e) {
+            handle.finish(ClusteringJobHandle.State.FAILED, null,
+                    new ClusteringException("Falló el trabajo " + job + ": " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Termina un trabajo por vencimiento de su plazo.
+     */
+    private static void expire(ClusteringJobHandle handle) {
+        handle.finish(ClusteringJobHandle.State.TIMED_OUT, null, new ClusteringException(
+                "Se venció el plazo de " + handle.getJob().getTimeout() + " del trabajo " + handle.getJob()));
+    }
+
+    /**
+     * Ejecuta el algoritmo de un trabajo en el pool de cálculo. El algoritmo revisa en cada
+     * iteración, fila o fusión si el trabajo debe detenerse y en ese caso lanza una
+     * {@link CancellationException}.
+     * @param handle Seguimiento del trabajo.
+     * @param data Conjunto de datos.
+     * @return Los clusters.
+     */
+    private List<Cluster> fit(ClusteringJobHandle handle, Dataset data) {
+        if (!handle.start()) {
+            throw new CancellationException();
+        }
+        queued.decrementAndGet();
+        running.incrementAndGet();
+        record(queueTimes, handle.getQueueTime(), true);
+        try {
+            ClusteringJob job = handle.getJob();
+            if (job.getMethod() == ClusteringMethod.KMEANS) {
+                KMeans kMeans = new KMeans(job.getK(), job.getMaxIterations(), job.getMetric());
+                if (job.getSeed() != null) {
+                    kMeans.setSeed(job.getSeed());
+                }
+                kMeans.setPool(computePool);
+                // Una condición de paro, no un receptor, para no calcular la inercia en cada iteración
+                kMeans.setStopCheck(handle::shouldStop);
+                return kMeans.fit(data);
+            }
+            HierarchicalClustering clustering = new HierarchicalClustering(job.getMetric(), job.getLinkage(), job.getK());
+            clustering.setPool(computePool);
+            // La matriz y las fusiones revisan el plazo por bloque y por fusión, no solo entre fases
+            clustering.setStopCheck(handle::shouldStop);
+            return clustering.fit(data);
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    /**
+     * Registra el fin de un trabajo en las estadísticas.
+     * @param handle Seguimiento del trabajo terminado.
+     */
+    private void finished(ClusteringJobHandle handle) {
+        active.remove(handle);
+        if (!handle.wasStarted()) {
+            queued.decrementAndGet();
+        }
+        synchronized (this) {
+            switch (handle.getState()) {
+                case SUCCEEDED:
+                    succeeded++;
+                    break;
+                case TIMED_OUT:
+                    timedOut++;
+                    break;
+                case CANCELLED:
+                    cancelled++;
+                    break;
+                default:
+                    failed++;
+            }
+        }
+        record(latencies, handle.getLatency(), false);
+    }
+
+    /**
+     * Agrega una muestra a un anillo de muestras recientes.
+     */
+    private synchronized void record(long[] samples, long nanos, boolean queueTime) {
+        long count = queueTime ? queueTimeCount++ : latencyCount++;
+        samples[(int) (count % samples.length)] = nanos;
+    }
+
+    /**
+     * Obtiene la caché de datos del servicio, por ejemplo para vaciarla.
+     * @return La caché.
+     */
+    public DatasetCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Obtiene una foto de las estadísticas actuales del servicio.
+     * @return Las estadísticas.
+     */
+    public synchronized ServiceStats getStats() {
+        return new ServiceStats(nextId.get(), succeeded, failed, cancelled, timedOut, queued.get(), running.get(),
+                cache.getHits(), cache.getMisses(), cache.getBytes(),
+                Arrays.copyOf(queueTimes, (int) Math.min(queueTimeCount, LATENCY_SAMPLES)),
+                Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_SAMPLES)));
+    }
+
+    /**
+     * Deja de aceptar trabajos, cancela los que no han terminado y libera los hilos.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (ClusteringJobHandle handle : active) {
+            handle.cancel();
+        }
+        jobExecutor.shutdown();
+        computePool.shutdown();
+    }
+}
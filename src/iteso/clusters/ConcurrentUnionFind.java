@@ -0,0 +1,71 @@
+package iteso.clusters;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Estructura de conjuntos disjuntos que varios hilos pueden modificar a la vez sin bloqueos.
+ * <p>
+ * Las uniones enlazan siempre la raíz mayor bajo la menor con una operación CAS, y la búsqueda
+ * acorta los caminos a la mitad con CAS que pueden fallar sin consecuencias. Por eso la raíz de
+ * cada conjunto es su menor elemento, sin importar el orden en que los hilos hagan las uniones.
+ */
+class ConcurrentUnionFind {
+    /**
+     * Padre de cada elemento; una raíz es su propio padre.
+     */
+    private final AtomicIntegerArray parent;
+
+    /**
+     * Constructor que crea un conjunto por elemento.
+     * @param size Número de elementos.
+     */
+    ConcurrentUnionFind(int size) {
+        parent = new AtomicIntegerArray(size);
+        for (int i = 0; i < size; i++) {
+            parent.set(i, i);
+        }
+    }
+
+    /**
+     * Busca la raíz del conjunto de un elemento.
+     * @param x Elemento.
+     * @return La raíz, que es el menor elemento del conjunto una vez terminadas las uniones.
+     */
+    int find(int x) {
+        while (true) {
+            int p = parent.get(x);
+            if (p == x) {
+                return x;
+            }
+            int grandparent = parent.get(p);
+            if (grandparent != p) {
+                parent.compareAndSet(x, p, grandparent);
+            }
+            x = grandparent;
+        }
+    }
+
+    /**
+     * Une los conjuntos de dos elementos.
+     * @param a Primer elemento.
+     * @param b Segundo elemento.
+     */
+    void union(int a, int b) {
+        while (true) {
+            a = find(a);
+            b = find(b);
+            if (a == b) {
+                return;
+            }
+            if (a < b) {
+                int swap = a;
+                a = b;
+                b = swap;
+            }
+            // Si otro hilo cambió la raíz a entre la búsqueda y el CAS, se vuelve a intentar
+            if (parent.compareAndSet(a, a, b)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package iteso.clusters;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Matriz de distancias condensada: guarda solo las n * (n - 1) / 2 distancias entre pares
+ * distintos (i &lt; j), fila por fila, como en el triángulo superior de la matriz completa.
+ * <p>
+ * Los valores pueden guardarse como double o float, en el heap o en un archivo temporal mapeado en
+ * memoria (ver {@link MatrixStorage}), de modo que matrices de 100 mil puntos quepan aunque no
+ * quepan en el heap. Las distancias se calculan en paralelo por bloques cuadrados de filas para
+ * aprovechar la caché, y la misma matriz puede compartirse entre el clustering jerárquico y las
+ * métricas de evaluación. Debe cerrarse al terminar para liberar el archivo temporal.
+ */
+public class CondensedDistanceMatrix implements Closeable {
+    /**
+     * Filas por lado de cada bloque calculado en paralelo.
+     */
+    private static final int TILE_SIZE = 256;
+
+    /**
+     * Bytes por segmento mapeado; cada segmento contiene un número entero de valores.
+     */
+    private static final int SEGMENT_SHIFT = 30;
+
+    /**
+     * Número de puntos.
+     */
+    private final int size;
+
+    /**
+     * Número de distancias guardadas.
+     */
+    private final long length;
+
+    /**
+     * Forma de almacenamiento.
+     */
+    private final MatrixStorage storage;
+
+    /**
+     * Valores en el heap, según la forma de almacenamiento.
+     */
+    private final double[] doubles;
+    private final float[] floats;
+
+    /**
+     * Segmentos mapeados del archivo temporal y su canal.
+     */
+    private final MappedByteBuffer[] segments;
+    private final FileChannel channel;
+
+    /**
+     * Crea una matriz vacía.
+     * @param size Número de puntos.
+     * @param storage Forma de almacenamiento.
+     * @throws IOException Si no puede crearse el archivo temporal.
+     */
+    public CondensedDistanceMatrix(int size, MatrixStorage storage) throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("El número de puntos no puede ser negativo");
+        }
+        this.size = size;
+        this.length = (long) size * (size - 1) / 2;
+        this.storage = storage;
+        if (!storage.isMapped() && length > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("La matriz de distancias para " + size
+                    + " puntos excede el tamaño máximo de un array; use " + MatrixStorage.MAPPED_FLOAT);
+        }
+        this.doubles = storage == MatrixStorage.DOUBLE ? new double[(int) length] : null;
+        this.floats = storage == MatrixStorage.FLOAT ? new float[(int) length] : null;
+        if (storage.isMapped()) {
+            long bytes = length * valueBytes();
+            Path file = Files.createTempFile("distancias", ".bin");
+            this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            int segmentCount = (int) ((bytes + (1L << SEGMENT_SHIFT) - 1) >>> SEGMENT_SHIFT);
+            this.segments = new MappedByteBuffer[segmentCount];
+            for (int s = 0; s < segmentCount; s++) {
+                long start = (long) s << SEGMENT_SHIFT;
+                segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(1L << SEGMENT_SHIFT, bytes - start));
+                segments[s].order(ByteOrder.nativeOrder());
+            }
+        } else {
+            this.channel = null;
+            this.segments = null;
+        }
+    }
+
+    /**
+     * Calcula todas las distancias entre los puntos de un conjunto, en doubles en el heap y en el hilo actual.
+     * @param data Conjunto de datos.
+     * @param metric Métrica de distancia.
+     * @return La matriz condensada.
+     */
+    public static CondensedDistanceMatrix compute(Dataset data, DistanceMetric metric) {
+        try {
+            return compute(data, metric, MatrixStorage.DOUBLE, null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Una matriz en el heap no usa archivos", e);
+        }
+    }
+
+    /**
+     * Calcula todas las distancias entre los puntos de un conjunto, por bloques en paralelo.
+     * @param data Conjunto de datos.
+     * @param metric Métrica de distancia.
+     * @param storage Forma de almacenamiento.
+     * @param pool Pool de hilos, o null para calcular en el hilo actual.
+     * @return La matriz condensada.
+     * @throws IOException Si no puede crearse el archivo temporal.
+     */
+    public static CondensedDistanceMatrix compute(Dataset data, DistanceMetric metric, MatrixStorage storage,
+                                                  ForkJoinPool pool) throws IOException {
+        return compute(data, DistanceKernel.of(metric), storage, pool);
+    }
+
+    /**
+     * Calcula todas las distancias con el núcleo de una métrica, por ejemplo
+     * {@link DistanceKernel#minkowski(double)} con un exponente dado.
+     * @param data Conjunto de datos.
+     * @param kernel Núcleo de distancias.
+     * @param storage Forma de almacenamiento.
+     * @param pool Pool de hilos, o null para calcular en el hilo actual.
+     * @return La matriz condensada.
+     * @throws IOException Si no puede crearse el archivo temporal.
+     */
+    public static CondensedDistanceMatrix compute(Dataset data, DistanceKernel kernel, MatrixStorage storage,
+                                                  ForkJoinPool pool) throws IOException {
+        return compute(data, kernel, storage, pool, null);
+    }
+
+    /**
+     * Calcula todas las distancias revisando antes de cada bloque si debe detenerse.
+     * @param data Conjunto de datos.
+     * @param kernel Núcleo de distancias.
+     * @param storage Forma de almacenamiento.
+     * @param pool Pool de hilos, o null para calcular en el hilo actual.
+     * @param stop Condición de paro, o null; si se cumple se lanza una
+     *             {@link java.util.concurrent.CancellationException} y la matriz se cierra.
+     * @return La matriz condensada.
+     * @throws IOException Si no puede crearse el archivo temporal.
+     */
+    static CondensedDistanceMatrix compute(Dataset data, DistanceKernel kernel, MatrixStorage storage,
+                                           ForkJoinPool pool, BooleanSupplier stop) throws IOException {
+        // Reservar la matriz no puede interrumpirse, así que se revisa antes
+        Utils.checkStop(stop);
+        Dataset heap = data.toHeap();
+        int size = heap.size();
+        int dimensions = heap.dimensions();
+        double[] features = heap.array();
+        CondensedDistanceMatrix matrix = new CondensedDistanceMatrix(size, storage);
+
+        // Enumerar los bloques del triángulo superior
+        int blocks = (size + TILE_SIZE - 1) / TILE_SIZE;
+        int tileCount = blocks * (blocks + 1) / 2;
+        int[] tileRows = new int[tileCount];
+        int[] tileColumns = new int[tileCount];
+        int t = 0;
+        for (int bi = 0; bi < blocks; bi++) {
+            for (int bj = bi; bj < blocks; bj++) {
+                tileRows[t] = bi;
+                tileColumns[t++] = bj;
+            }
+        }
+        try {
+            KMeansEngine.runChunks(tileCount, pool, tile -> {
+                Utils.checkStop(stop);
+                int rowEnd = Math.min(size, (tileRows[tile] + 1) * TILE_SIZE);
+                int columnStart = tileColumns[tile] * TILE_SIZE;
+                int columnEnd = Math.min(size, columnStart + TILE_SIZE);
+                for (int i = tileRows[tile] * TILE_SIZE; i < rowEnd; i++) {
+                    long position = matrix.index(i, Math.max(i + 1, columnStart));
+                    for (int j = Math.max(i + 1, columnStart); j < columnEnd; j++) {
+                        matrix.set(position++, kernel.distance(features, i * dimensions, features, j * dimensions, dimensions));
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            try {
+                matrix.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+            throw e;
+        }
+        return matrix;
+    }
+
+    /**
+     * Crea una copia independiente con la misma forma de almacenamiento.
+     * @return La copia, que también debe cerrarse.
+     * @throws IOException Si no puede crearse el archivo temporal.
+     */
+    public CondensedDistanceMatrix copy() throws IOException {
+        CondensedDistanceMatrix copy = new CondensedDistanceMatrix(size, storage);
+        if (doubles != null) {
+            System.arraycopy(doubles, 0, copy.doubles, 0, doubles.length);
+        } else if (floats != null) {
+            System.arraycopy(floats, 0, copy.floats, 0, floats.length);
+        } else {
+            for (int s = 0; s < segments.length; s++) {
+                copy.segments[s].put(0, segments[s], 0, segments[s].limit());
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Obtiene el número de puntos.
+     * @return Número de puntos.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Obtiene el número de distancias guardadas.
+     * @return n * (n - 1) / 2.
+     */
+    public long length() {
+        return length;
+    }
+
+    /**
+     * Obtiene la forma de almacenamiento.
+     * @return La forma de almacenamiento.
+     */
+    public MatrixStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Calcula la posición condensada del par (i, j).
+     * @param i Primer punto.
+     * @param j Segundo punto, distinto del primero.
+     * @return La posición dentro del orden condensado.
+     */
+    public long index(int i, int j) {
+        if (i > j) {
+            int swap = i;
+            i = j;
+            j = swap;
+        }
+        return (long) size * i - (long) i * (i + 1) / 2 + (j - i - 1);
+    }
+
+    /**
+     * Obtiene la distancia entre dos puntos distintos.
+     * @param i Primer punto.
+     * @param j Segundo punto.
+     * @return La distancia.
+     */
+    public double get(int i, int j) {
+        return get(index(i, j));
+    }
+
+    /**
+     * Establece la distancia entre dos puntos distintos.
+     * @param i Primer punto.
+     * @param j Segundo punto.
+     * @param distance La nueva distancia.
+     */
+    public void set(int i, int j, double distance) {
+        set(index(i, j), distance);
+    }
+
+    /**
+     * Obtiene una distancia por su posición condensada.
+     * @param index Posición dentro del orden condensado.
+     * @return La distancia.
+     */
+    public double get(long index) {
+        if (doubles != null) {
+            return doubles[(int) index];
+        }
+        if (floats != null) {
+            return floats[(int) index];
+        }
+        long offset = index * valueBytes();
+        MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+        int position = (int) (offset & ((1L << SEGMENT_SHIFT) - 1));
+        return storage == MatrixStorage.MAPPED_FLOAT ? segment.getFloat(position) : segment.getDouble(position);
+    }
+
+    /**
+     * Establece una distancia por su posición condensada.
+     * @param index Posición dentro del orden condensado.
+     * @param distance La nueva distancia.
+     */
+    public void set(long index, double distance) {
+        if (doubles != null) {
+            doubles[(int) index] = distance;
+        } else if (floats != null) {
+            floats[(int) index] = (float) distance;
+        } else {
+            long offset = index * valueBytes();
+            MappedByteBuffer segment = segments[(int) (offset >>> SEGMENT_SHIFT)];
+            int position = (int) (offset & ((1L << SEGMENT_SHIFT) - 1));
+            if (storage == MatrixStorage.MAPPED_FLOAT) {
+                segment.putFloat(position, (float) distance);
+            } else {
+                segment.putDouble(position, distance);
+            }
+        }
+    }
+
+    /**
+     * Obtiene el número de bytes de cada valor guardado.
+     * @return 4 en precisión simple, 8 en doble.
+     */
+    private int valueBytes() {
+        return storage.isSinglePrecision() ? Float.BYTES : Double.BYTES;
+    }
+
+    /**
+     * Cierra el archivo temporal, si lo hay, y lo elimina.
+     * @throws IOException Si el archivo no puede cerrarse.
+     */
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
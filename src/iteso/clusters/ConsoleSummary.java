@@ -0,0 +1,65 @@
+package iteso.clusters;
+
+import java.io.PrintStream;
+
+/**
+ * Receptor que escribe una línea por fase y por cálculo de fusiones en una consola. Las
+ * iteraciones solo se escriben si se pide con {@link #setPrintIterations(boolean)}, para que el
+ * resumen siga siendo corto con muchas iteraciones.
+ */
+public class ConsoleSummary implements ClusteringListener {
+    /**
+     * Destino de las líneas.
+     */
+    private final PrintStream out;
+
+    /**
+     * Indica si se escribe una línea por iteración.
+     */
+    private boolean printIterations;
+
+    /**
+     * Constructor que escribe en la salida estándar.
+     */
+    public ConsoleSummary() {
+        this(System.out);
+    }
+
+    /**
+     * Constructor que escribe en el destino dado.
+     * @param out Destino de las líneas.
+     */
+    public ConsoleSummary(PrintStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Indica si debe escribirse una línea por cada iteración de K-Means.
+     * @param printIterations true para escribir las iteraciones.
+     */
+    public void setPrintIterations(boolean printIterations) {
+        this.printIterations = printIterations;
+    }
+
+    @Override
+    public void phaseCompleted(String source, String phase, long nanos, long distanceComputations,
+                               long allocatedBytes) {
+        out.printf("[%s] %s: %.2f ms, %d distancias, ~%d KB%n", source, phase, nanos / 1e6,
+                distanceComputations, allocatedBytes / 1024);
+    }
+
+    @Override
+    public void iterationCompleted(String source, int iteration, double inertia, int changes,
+                                   long distanceComputations, long nanos) {
+        if (printIterations) {
+            out.printf("[%s] iteración %d: inercia %.4f, %d cambios, %d distancias, %.2f ms%n", source, iteration,
+                    inertia, changes, distanceComputations, nanos / 1e6);
+        }
+    }
+
+    @Override
+    public void mergesCompleted(String source, int merges, long nanos) {
+        out.printf("[%s] %d fusiones en %.2f ms (%.0f por segundo)%n", source, merges, nanos / 1e6,
+                nanos == 0 ? 0.0 : merges * 1e9 / nanos);
+    }
+}
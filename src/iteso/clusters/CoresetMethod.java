@@ -0,0 +1,19 @@
+package iteso.clusters;
+
+/**
+ * Enumeración de las formas de reducir los datos a representantes con peso en
+ * {@link ApproximateHierarchicalClustering}.
+ */
+public enum CoresetMethod {
+    /**
+     * Microclusters de K-Means: unas pocas iteraciones con tantos centroides como representantes,
+     * partiendo de puntos elegidos al azar. Se paraleliza por bloques de puntos.
+     */
+    KMEANS,
+    /**
+     * Características de clustering al estilo BIRCH, construidas en una sola pasada secuencial: cada
+     * punto se absorbe en el representante más cercano si su radio no supera un umbral, o abre uno
+     * nuevo. Si hay demasiados representantes, el umbral crece y se vuelven a agrupar entre sí.
+     */
+    CLUSTERING_FEATURES
+}
@@ -0,0 +1,126 @@
+package iteso.clusters;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lector de un archivo CSV por lotes. El archivo se recorre una sola vez a través de ventanas
+ * mapeadas en memoria y cada fila se interpreta igual que en {@link DataLoader#loadDataset(String)}.
+ */
+class CsvBatchSource implements BatchSource {
+    /**
+     * Tamaño de cada ventana mapeada del archivo.
+     */
+    private static final long WINDOW_SIZE = 1L << 26;
+
+    /**
+     * Canal del archivo.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Tamaño del archivo.
+     */
+    private final long fileSize;
+
+    /**
+     * Número de columnas numéricas y tamaño de lote.
+     */
+    private final int dimensions, batchSize;
+
+    /**
+     * Etiquetas ya vistas.
+     */
+    private final DataLoader.LabelCache labelCache = new DataLoader.LabelCache();
+
+    /**
+     * Ventana mapeada actual y su posición en el archivo.
+     */
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /**
+     * Posición en el archivo de la siguiente línea por leer.
+     */
+    private long position;
+
+    /**
+     * Número de filas entregadas hasta ahora.
+     */
+    private int row;
+
+    /**
+     * Abre el archivo y lee su encabezado.
+     * @param filePath La ruta del archivo CSV.
+     * @param batchSize Número máximo de filas por lote.
+     */
+    CsvBatchSource(String filePath, int batchSize) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser al menos 1");
+        }
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.batchSize = batchSize;
+        long headerEnd = DataLoader.findLineEnd(channel, 0, fileSize);
+        this.dimensions = headerEnd < fileSize ? DataLoader.countCommas(channel, headerEnd) : 0;
+        this.position = Math.min(headerEnd + 1, fileSize);
+    }
+
+    @Override
+    public Dataset nextBatch() throws IOException, InvalidDataException, MissingDataException {
+        if (position >= fileSize) {
+            return null;
+        }
+        double[] values = new double[Dataset.checkedCapacity(batchSize, dimensions)];
+        String[] labels = new String[batchSize];
+        int rows = 0;
+        while (rows < batchSize && position < fileSize) {
+            if (window == null || position >= windowStart + window.limit()) {
+                remap(position);
+            }
+            int lineStart = (int) (position - windowStart);
+            int limit = window.limit();
+            int lineEnd = lineStart;
+            while (lineEnd < limit && window.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd == limit && windowStart + limit < fileSize) {
+                // La línea cruza el final de la ventana: volver a mapear desde su inicio
+                if (lineStart == 0) {
+                    throw new InvalidDataException("Fila " + (row + 1) + ": línea demasiado larga");
+                }
+                remap(position);
+                continue;
+            }
+            position = windowStart + lineEnd + 1;
+            if (lineEnd > lineStart && window.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd == lineStart) {
+                continue; // Saltar líneas vacías
+            }
+            labels[rows] = DataLoader.parseRow(window, lineStart, lineEnd, row, values, rows * dimensions,
+                    dimensions, labelCache);
+            rows++;
+            row++;
+        }
+        return rows == 0 ? null : new Dataset(values, rows, dimensions, labels);
+    }
+
+    /**
+     * Mapea una nueva ventana del archivo.
+     * @param start Posición inicial de la ventana.
+     */
+    private void remap(long start) throws IOException {
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+        windowStart = start;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
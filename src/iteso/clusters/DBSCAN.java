@@ -0,0 +1,232 @@
+package iteso.clusters;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Clustering basado en densidad (DBSCAN). Un punto es central si tiene al menos
+ * {@code minPoints} puntos, incluido él mismo, a una distancia no mayor que {@code epsilon}; los
+ * puntos centrales a esa distancia entre sí forman un mismo cluster, los demás puntos cercanos a un
+ * punto central se agregan al cluster de éste y el resto es ruido. A diferencia de {@link KMeans},
+ * encuentra clusters de cualquier forma y no requiere saber cuántos hay.
+ * <p>
+ * Los vecindarios se buscan en un {@link SpatialIndex} en lugar de comparar todos los pares. Los
+ * puntos se procesan en bloques en paralelo en dos pasadas: la primera cuenta los vecinos de cada
+ * punto y la segunda une los puntos centrales vecinos en un {@link ConcurrentUnionFind} sin
+ * bloqueos. Cada punto frontera se asigna al cluster de su punto central más cercano, con empates
+ * a favor del de menor índice, así que el resultado no depende del número de hilos ni del orden
+ * de los puntos.
+ */
+public class DBSCAN implements ClusteringAlgorithm {
+    /**
+     * Radio de los vecindarios.
+     */
+    private final double epsilon;
+
+    /**
+     * Número mínimo de puntos en el vecindario de un punto central, incluido él mismo.
+     */
+    private final int minPoints;
+
+    /**
+     * Métrica de distancia a utilizar.
+     */
+    private final DistanceMetric metric;
+
+    /**
+     * Exponente de la distancia de Minkowski; solo se usa con {@link DistanceMetric#MINKOWSKI}.
+     */
+    private double minkowskiP = DistanceMetric.DEFAULT_MINKOWSKI_P;
+
+    /**
+     * Número de hilos a utilizar; 1 para ejecución secuencial.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Pool de hilos externo, o null para crear uno propio según el paralelismo.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Constructor que inicializa los parámetros del algoritmo.
+     * @param epsilon Radio de los vecindarios.
+     * @param minPoints Número mínimo de puntos en el vecindario de un punto central, incluido él mismo.
+     * @param metric Métrica de distancia.
+     */
+    public DBSCAN(double epsilon, int minPoints, DistanceMetric metric) {
+        if (!(epsilon >= 0)) {
+            throw new IllegalArgumentException("El radio debe ser un número no negativo");
+        }
+        if (minPoints < 1) {
+            throw new IllegalArgumentException("El número mínimo de puntos debe ser al menos 1");
+        }
+        this.epsilon = epsilon;
+        this.minPoints = minPoints;
+        this.metric = metric;
+    }
+
+    /**
+     * Establece el exponente de la distancia de Minkowski, que solo se usa con
+     * {@link DistanceMetric#MINKOWSKI}.
+     * @param minkowskiP Exponente, al menos 1; por defecto {@link DistanceMetric#DEFAULT_MINKOWSKI_P}.
+     */
+    public void setMinkowskiP(double minkowskiP) {
+        this.minkowskiP = DistanceMetric.checkMinkowskiP(minkowskiP);
+    }
+
+    /**
+     * Establece el número de hilos con los que se construye el índice y se procesan los puntos.
+     * El resultado es el mismo con cualquier número de hilos.
+     * @param parallelism Número de hilos.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser al menos 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Establece un pool de hilos externo, que tiene prioridad sobre {@link #setParallelism(int)}
+     * y no se cierra al terminar.
+     * @param pool Pool de hilos, o null para crear uno propio.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Ejecuta el algoritmo sobre una lista de puntos.
+     * @param data Lista de puntos de datos a clusterizar.
+     * @return Clusters resultantes, con el ruido aparte.
+     */
+    @Override
+    public DBSCANResult fit(List<DataPoint> data) {
+        return fit(Dataset.fromDataPoints(data), data);
+    }
+
+    /**
+     * Ejecuta el algoritmo sobre un conjunto de datos columnar.
+     * @param data Conjunto de datos a clusterizar.
+     * @return Clusters resultantes, cuyos puntos son vistas sobre el conjunto, con el ruido aparte.
+     */
+    @Override
+    public DBSCANResult fit(Dataset data) {
+        return fit(data, data.toDataPoints());
+    }
+
+    /**
+     * Ejecuta el algoritmo sobre la matriz del conjunto, usando los puntos dados como
+     * miembros de los clusters resultantes.
+     * @param data Conjunto de datos con las características.
+     * @param points Puntos correspondientes a cada fila del conjunto.
+     * @return Clusters resultantes en el orden de su primer punto, con el ruido aparte.
+     */
+    private DBSCANResult fit(Dataset data, List<DataPoint> points) {
+        ForkJoinPool executor = pool;
+        if (executor == null && parallelism > 1) {
+            executor = new ForkJoinPool(parallelism);
+        }
+        try {
+            long start = System.nanoTime();
+            Dataset heap = data.toHeap();
+            int size = heap.size();
+            int dimensions = heap.dimensions();
+            double[] values = heap.array();
+            SpatialIndex index = SpatialIndex.create(values, size, dimensions, DistanceKernel.of(metric, minkowskiP),
+                    SpatialIndex.DEFAULT_LEAF_SIZE);
+            index.build(executor);
+            long indexTime = System.nanoTime() - start;
+
+            int chunkCount = KMeansEngine.chunkCount(size);
+            int chunkRows = (size + chunkCount - 1) / chunkCount;
+            SpatialIndex.Search[] searches = new SpatialIndex.Search[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                searches[c] = new SpatialIndex.Search();
+            }
+
+            // Primera pasada: contar los vecinos de cada punto para saber cuáles son centrales
+            boolean[] core = new boolean[size];
+            KMeansEngine.runChunks(chunkCount, executor, chunk -> {
+                SpatialIndex.Search search = searches[chunk];
+                int end = Math.min(size, (chunk + 1) * chunkRows);
+                for (int p = chunk * chunkRows; p < end; p++) {
+                    core[p] = index.withinRadius(values, p * dimensions, epsilon, search) >= minPoints;
+                }
+            });
+
+            // Segunda pasada: unir los puntos centrales vecinos y elegir el punto central de cada frontera
+            ConcurrentUnionFind components = new ConcurrentUnionFind(size);
+            int[] borderOf = new int[size];
+            KMeansEngine.runChunks(chunkCount, executor, chunk -> {
+                SpatialIndex.Search search = searches[chunk];
+                int end = Math.min(size, (chunk + 1) * chunkRows);
+                for (int p = chunk * chunkRows; p < end; p++) {
+                    int found = index.withinRadius(values, p * dimensions, epsilon, search);
+                    int nearest = -1;
+                    double nearestDistance = Double.POSITIVE_INFINITY;
+                    for (int i = 0; i < found; i++) {
+                        int q = search.getIndex(i);
+                        if (!core[q]) {
+                            continue;
+                        }
+                        if (core[p]) {
+                            if (q < p) {
+                                components.union(p, q);
+                            }
+                        } else {
+                            double distance = search.getDistance(i);
+                            if (distance < nearestDistance || distance == nearestDistance && q < nearest) {
+                                nearest = q;
+                                nearestDistance = distance;
+                            }
+                        }
+                    }
+                    borderOf[p] = nearest;
+                }
+            });
+
+            // Numerar los clusters en el orden de su primer punto; el ruido queda con -1
+            int[] labels = new int[size];
+            int[] rootLabels = new int[size];
+            Arrays.fill(rootLabels, -1);
+            int clusterCount = 0;
+            int coreCount = 0;
+            for (int p = 0; p < size; p++) {
+                int anchor = core[p] ? p : borderOf[p];
+                if (anchor < 0) {
+                    labels[p] = -1;
+                    continue;
+                }
+                if (core[p]) {
+                    coreCount++;
+                }
+                int root = components.find(anchor);
+                if (rootLabels[root] < 0) {
+                    rootLabels[root] = clusterCount++;
+                }
+                labels[p] = rootLabels[root];
+            }
+
+            List<Cluster> clusters = HierarchicalClustering.buildClusters(data, points, labels);
+            Cluster noise = new Cluster();
+            for (int p = 0; p < size; p++) {
+                if (labels[p] < 0) {
+                    noise.addPoint(points.get(p));
+                }
+            }
+            long distanceComputations = 0;
+            for (SpatialIndex.Search search : searches) {
+                distanceComputations += search.getEvaluations();
+            }
+            return new DBSCANResult(clusters, noise, labels, coreCount, distanceComputations, indexTime,
+                    System.nanoTime() - start);
+        } finally {
+            if (executor != null && executor != pool) {
+                executor.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package iteso.clusters;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Resultado de una ejecución de {@link DBSCAN}.
+ * Se comporta como la lista de clusters encontrados y guarda aparte los puntos de ruido, que no
+ * pertenecen a ningún cluster; además informa la etiqueta de cada punto, cuántos puntos son
+ * centrales, cuántas distancias se evaluaron y cuánto tardó la ejecución.
+ */
+public class DBSCANResult extends AbstractList<Cluster> {
+    /**
+     * Clusters encontrados, en el orden de su primer punto.
+     */
+    private final List<Cluster> clusters;
+
+    /**
+     * Puntos de ruido; no tiene centroide.
+     */
+    private final Cluster noise;
+
+    /**
+     * Cluster de cada punto, o -1 si es ruido.
+     */
+    private final int[] labels;
+
+    /**
+     * Número de puntos centrales.
+     */
+    private final int corePoints;
+
+    /**
+     * Distancias evaluadas en las búsquedas, incluidas las cotas de los nodos del índice.
+     */
+    private final long distanceComputations;
+
+    /**
+     * Duración de la construcción del índice y de la ejecución completa en nanosegundos.
+     */
+    private final long indexTime, totalTime;
+
+    /**
+     * Constructor del resultado.
+     * @param clusters Clusters encontrados.
+     * @param noise Puntos de ruido.
+     * @param labels Cluster de cada punto, o -1 si es ruido.
+     * @param corePoints Número de puntos centrales.
+     * @param distanceComputations Distancias evaluadas.
+     * @param indexTime Duración de la construcción del índice en nanosegundos.
+     * @param totalTime Duración total en nanosegundos.
+     */
+    public DBSCANResult(List<Cluster> clusters, Cluster noise, int[] labels, int corePoints,
+                        long distanceComputations, long indexTime, long totalTime) {
+        this.clusters = clusters;
+        this.noise = noise;
+        this.labels = labels;
+        this.corePoints = corePoints;
+        this.distanceComputations = distanceComputations;
+        this.indexTime = indexTime;
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * Obtiene un cluster encontrado.
+     * @param index Índice del cluster.
+     * @return El cluster.
+     */
+    @Override
+    public Cluster get(int index) {
+        return clusters.get(index);
+    }
+
+    /**
+     * Obtiene el número de clusters, sin contar el ruido.
+     * @return Número de clusters.
+     */
+    @Override
+    public int size() {
+        return clusters.size();
+    }
+
+    /**
+     * Obtiene los clusters encontrados.
+     * @return Lista de clusters.
+     */
+    public List<Cluster> getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Obtiene los puntos de ruido, que no pertenecen a ningún cluster.
+     * @return Cluster sin centroide con los puntos de ruido.
+     */
+    public Cluster getNoise() {
+        return noise;
+    }
+
+    /**
+     * Obtiene el cluster de cada punto.
+     * @return Índice del cluster de cada punto en el orden de entrada, o -1 si es ruido.
+     */
+    public int[] getLabels() {
+        return labels.clone();
+    }
+
+    /**
+     * Obtiene el número de puntos centrales.
+     * @return Número de puntos centrales.
+     */
+    public int getCorePoints() {
+        return corePoints;
+    }
+
+    /**
+     * Obtiene el número de distancias evaluadas en las búsquedas de vecindarios, incluidas las
+     * cotas de los nodos del índice.
+     * @return Número de evaluaciones de distancia.
+     */
+    public long getDistanceComputations() {
+        return distanceComputations;
+    }
+
+    /**
+     * Obtiene la duración de la construcción del índice.
+     * @return Duración en nanosegundos.
+     */
+    public long getIndexTime() {
+        return indexTime;
+    }
+
+    /**
+     * Obtiene la duración total de la ejecución.
+     * @return Duración en nanosegundos.
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+}
@@ -1,42 +1,678 @@
 package iteso.clusters;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 /**
  * Clase responsable de cargar datos desde un archivo CSV.
  */
 public class DataLoader {
     /**
-     * Carga puntos de datos desde un archivo CSV especificado.
+     * Tamaño mínimo de cada bloque del archivo que se procesa en paralelo.
+     */
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+    /**
+     * Tamaño máximo de cada bloque; debe caber en un solo MappedByteBuffer.
+     */
+    private static final long MAX_CHUNK_SIZE = 1L << 28;
+
+    /**
+     * Número máximo de etiquetas distintas que cada bloque reutiliza sin crear un String nuevo.
+     */
+    private static final int LABEL_CACHE_SIZE = 256;
+
+    /**
+     * Separador de las palabras de un campo de texto en {@link #loadSparseDataset(String)}.
+     */
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    /**
+     * Potencias de 10 que un double representa exactamente.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Número de hilos usados para interpretar el archivo.
+     */
+    private final int parallelism;
+
+    /**
+     * Receptor de las mediciones de cada carga, o null para no medir.
+     */
+    private ClusteringListener listener;
+
+    /**
+     * Constructor que usa todos los procesadores disponibles.
+     */
+    public DataLoader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor que fija el número de hilos usados por {@link #loadDataset(String)}.
+     * @param parallelism Número de hilos.
+     */
+    public DataLoader(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser al menos 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Establece el receptor de las mediciones de {@link #loadDataset(String)}: la fase de conteo de
+     * filas y la de interpretación, con la memoria de la matriz resultante.
+     * @param listener El receptor, o null para no medir.
+     */
+    public void setListener(ClusteringListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Carga puntos de datos desde un archivo CSV especificado, con el mismo formato y las mismas
+     * validaciones que {@link #loadDataset(String)}. Los puntos son vistas sobre el conjunto cargado.
      * @param filePath La ruta del archivo CSV.
      * @return Una lista de objetos DataPoint cargados desde el archivo.
+     * @throws UncheckedIOException Si el archivo no puede leerse.
+     * @throws IllegalArgumentException Si el archivo tiene datos inválidos o incompletos.
+     * @see #loadDataset(String)
      */
     public List<DataPoint> loadFromCSV(String filePath) {
-        List<DataPoint> dataPoints = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(filePath))) {
-            String line;
-            br.readLine(); // Saltar la línea de encabezados
-            while ((line = br.readLine()) != null) {
-                // Separar los valores por coma
-                String[] parts = line.split(",");
-                // Crear un array para las características numéricas
-                double[] features = new double[parts.length - 1];
-                for (int i = 0; i < parts.length - 1; i++) {
-                    // Convertir cada característica a un número
-                    features[i] = Double.parseDouble(parts[i]);
-                }
-                // La última parte es la etiqueta
-                String label = parts[parts.length - 1];
-                // Crear un nuevo punto de datos y agregarlo a la lista
-                dataPoints.add(new DataPoint(features, label));
-            }
+        try {
+            return loadDataset(filePath).toDataPoints();
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException("No se pudo leer el archivo " + filePath, e);
+        } catch (InvalidDataException | MissingDataException e) {
+            throw new IllegalArgumentException("El archivo " + filePath + " no es válido: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Carga un archivo CSV directamente en un conjunto de datos columnar.
+     * El archivo se mapea en memoria y se divide en bloques que terminan en un salto de línea;
+     * cada bloque se interpreta en paralelo sin crear un String por campo y escribe sus filas
+     * directamente en la matriz de características. El número de columnas numéricas lo define
+     * el encabezado; la última columna es la etiqueta. Las líneas vacías se ignoran.
+     * <p>
+     * Si el archivo está en el formato de {@link BinaryDataset} se lee con él, sin interpretar texto.
+     * @param filePath La ruta del archivo CSV o binario.
+     * @return El conjunto de datos cargado desde el archivo.
+     * @throws IOException Si el archivo no puede leerse.
+     * @throws InvalidDataException Si una fila tiene un valor no numérico o columnas de más.
+     * @throws MissingDataException Si a una fila le faltan valores o columnas.
+     */
+    public Dataset loadDataset(String filePath) throws IOException, InvalidDataException, MissingDataException {
+        long loadStart = System.nanoTime();
+        if (BinaryDataset.isBinary(filePath)) {
+            ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+            try {
+                Dataset dataset = BinaryDataset.read(filePath, pool);
+                if (listener != null) {
+                    listener.phaseCompleted("DataLoader", "lectura binaria", System.nanoTime() - loadStart, 0,
+                            dataset.hasArray() ? 8L * dataset.size() * dataset.dimensions() + 8L * dataset.size()
+                                    : 8L * dataset.size());
+                }
+                return dataset;
+            } finally {
+                if (pool != null) {
+                    pool.shutdown();
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            // Leer el encabezado para conocer el número de columnas
+            long headerEnd = findLineEnd(channel, 0, fileSize);
+            if (headerEnd >= fileSize) {
+                return Dataset.allocate(0, 0);
+            }
+            int dimensions = countCommas(channel, headerEnd);
+
+            // Dividir el resto del archivo en bloques que terminan en un salto de línea
+            long dataStart = headerEnd + 1;
+            long chunkSize = Math.min(MAX_CHUNK_SIZE,
+                    Math.max(MIN_CHUNK_SIZE, (fileSize - dataStart) / (parallelism * 4L) + 1));
+            List<long[]> bounds = new ArrayList<>();
+            long start = dataStart;
+            while (start < fileSize) {
+                long end = start + chunkSize >= fileSize
+                        ? fileSize
+                        : findLineEnd(channel, start + chunkSize, fileSize) + 1;
+                end = Math.min(end, fileSize);
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new InvalidDataException("Línea demasiado larga cerca de la posición " + start);
+                }
+                bounds.add(new long[]{start, end});
+                start = end;
+            }
+            MappedByteBuffer[] chunks = new MappedByteBuffer[bounds.size()];
+            for (int c = 0; c < chunks.length; c++) {
+                long[] range = bounds.get(c);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]);
+            }
+
+            // Primera pasada: contar las filas de cada bloque para saber dónde escribirlas
+            List<Callable<Integer>> counters = new ArrayList<>();
+            for (MappedByteBuffer chunk : chunks) {
+                counters.add(() -> countRows(chunk));
+            }
+            List<Integer> counts = invokeAll(counters);
+            int[] firstRow = new int[chunks.length];
+            long rows = 0;
+            for (int c = 0; c < chunks.length; c++) {
+                firstRow[c] = (int) rows;
+                rows += counts.get(c);
+            }
+            if (rows * Math.max(dimensions, 1) > Integer.MAX_VALUE - 8) {
+                throw new InvalidDataException("El archivo tiene demasiados valores para un solo conjunto: " + filePath);
+            }
+
+            long parseStart = System.nanoTime();
+            if (listener != null) {
+                listener.phaseCompleted("DataLoader", "conteo", parseStart - loadStart, 0, 0);
+            }
+
+            // Segunda pasada: interpretar cada bloque directamente en la matriz final
+            Dataset dataset = Dataset.allocate((int) rows, dimensions);
+            List<Callable<Integer>> parsers = new ArrayList<>();
+            for (int c = 0; c < chunks.length; c++) {
+                MappedByteBuffer chunk = chunks[c];
+                int row = firstRow[c];
+                parsers.add(() -> parseRows(chunk, row, dataset));
+            }
+            invokeAll(parsers);
+            if (listener != null) {
+                listener.phaseCompleted("DataLoader", "lectura", System.nanoTime() - parseStart, 0,
+                        8L * rows * dimensions + 8L * rows);
+            }
+            return dataset;
+        }
+    }
+
+    /**
+     * Carga un archivo CSV con columnas de texto o categóricas en un conjunto disperso, sin pasar
+     * por una matriz densa. La última columna es la etiqueta. Una columna cuyos valores son todos
+     * numéricos da una sola característica; en las demás, cada palabra distinta de cada columna
+     * (en minúsculas, separada por caracteres que no son letras ni dígitos) es una característica
+     * cuyo valor es el número de veces que aparece, de modo que un valor categórico de una sola
+     * palabra queda codificado one-hot. Las características se numeran en el orden en que
+     * aparecen por primera vez. Los campos no pueden contener comas; las líneas vacías se ignoran.
+     * @param filePath La ruta del archivo CSV.
+     * @return El conjunto disperso; con miles de palabras distintas se reduce con una
+     * {@link DimensionReduction} antes del clustering.
+     * @throws IOException Si el archivo no puede leerse.
+     * @throws InvalidDataException Si una fila tiene columnas de más.
+     * @throws MissingDataException Si el archivo no tiene encabezado o a una fila le faltan columnas.
+     */
+    public SparseDataset loadSparseDataset(String filePath) throws IOException, InvalidDataException,
+            MissingDataException {
+        long loadStart = System.nanoTime();
+        String[] header;
+        List<String[]> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null) {
+                throw new MissingDataException("El archivo no tiene encabezado: " + filePath);
+            }
+            header = line.split(",", -1);
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] fields = line.split(",", -1);
+                if (fields.length < header.length) {
+                    throw new MissingDataException("Fila " + (rows.size() + 1) + ": se esperaban " + header.length
+                            + " columnas y hay " + fields.length);
+                }
+                if (fields.length > header.length) {
+                    throw new InvalidDataException("Fila " + (rows.size() + 1) + ": hay más columnas que en el encabezado");
+                }
+                rows.add(fields);
+            }
+        }
+
+        // Una columna es numérica si todos sus valores no vacíos lo son
+        int featureColumns = header.length - 1;
+        boolean[] numeric = new boolean[Math.max(featureColumns, 0)];
+        Arrays.fill(numeric, true);
+        for (String[] fields : rows) {
+            for (int c = 0; c < featureColumns; c++) {
+                String value = fields[c].trim();
+                if (numeric[c] && !value.isEmpty() && !isNumber(value)) {
+                    numeric[c] = false;
+                }
+            }
+        }
+
+        Map<String, Integer> features = new HashMap<>();
+        int[] rowPointers = new int[rows.size() + 1];
+        int[] columns = new int[16];
+        double[] values = new double[16];
+        String[] labels = new String[rows.size()];
+        TreeMap<Integer, Double> entries = new TreeMap<>();
+        int nonZeros = 0;
+        for (int row = 0; row < rows.size(); row++) {
+            String[] fields = rows.get(row);
+            entries.clear();
+            for (int c = 0; c < featureColumns; c++) {
+                String value = fields[c].trim();
+                if (value.isEmpty()) continue;
+                if (numeric[c]) {
+                    double number = Double.parseDouble(value);
+                    if (number != 0) {
+                        entries.merge(features.computeIfAbsent(header[c], name -> features.size()), number, Double::sum);
+                    }
+                    continue;
+                }
+                for (String word : WORD_SEPARATOR.split(value.toLowerCase(Locale.ROOT))) {
+                    if (!word.isEmpty()) {
+                        entries.merge(features.computeIfAbsent(header[c] + "=" + word, name -> features.size()),
+                                1.0, Double::sum);
+                    }
+                }
+            }
+            if (nonZeros + entries.size() > columns.length) {
+                int capacity = Math.max(columns.length * 2, nonZeros + entries.size());
+                columns = Arrays.copyOf(columns, capacity);
+                values = Arrays.copyOf(values, capacity);
+            }
+            for (Map.Entry<Integer, Double> entry : entries.entrySet()) {
+                columns[nonZeros] = entry.getKey();
+                values[nonZeros++] = entry.getValue();
+            }
+            rowPointers[row + 1] = nonZeros;
+            labels[row] = fields[featureColumns];
+        }
+        if (listener != null) {
+            listener.phaseCompleted("DataLoader", "lectura dispersa", System.nanoTime() - loadStart, 0,
+                    12L * nonZeros + 4L * rowPointers.length + 8L * rows.size());
+        }
+        return new SparseDataset(rowPointers, columns, values, features.size(), labels);
+    }
+
+    /**
+     * Indica si un campo de texto es un número.
+     */
+    private static boolean isNumber(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Abre un archivo CSV para leerlo por lotes de tamaño fijo, sin cargarlo completo en memoria.
+     * El formato y los errores son los mismos que en {@link #loadDataset(String)}.
+     * @param filePath La ruta del archivo CSV.
+     * @param batchSize Número máximo de filas por lote.
+     * @return Una fuente de lotes que debe cerrarse al terminar.
+     * @throws IOException Si el archivo no puede abrirse.
+     */
+    public BatchSource openBatches(String filePath, int batchSize) throws IOException {
+        return new CsvBatchSource(filePath, batchSize);
+    }
+
+    /**
+     * Ejecuta tareas en paralelo y propaga la primera excepción en el orden de las tareas.
+     * @param tasks Tareas a ejecutar.
+     * @return Los resultados en el mismo orden que las tareas.
+     */
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException, InvalidDataException, MissingDataException {
+        List<T> results = new ArrayList<>(tasks.size());
+        ForkJoinPool pool = parallelism == 1 || tasks.size() == 1 ? null : new ForkJoinPool(parallelism);
+        try {
+            if (pool == null) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+                return results;
+            }
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InvalidDataException) throw (InvalidDataException) cause;
+            if (cause instanceof MissingDataException) throw (MissingDataException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Carga interrumpida", e);
+        } catch (IOException | InvalidDataException | MissingDataException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Busca el siguiente salto de línea a partir de una posición del archivo.
+     * @param channel Canal del archivo.
+     * @param position Posición inicial de la búsqueda.
+     * @param fileSize Tamaño del archivo.
+     * @return La posición del salto de línea, o el tamaño del archivo si no hay más.
+     */
+    static long findLineEnd(FileChannel channel, long position, long fileSize) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        while (position < fileSize) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Cuenta las comas del encabezado, que equivalen al número de columnas numéricas.
+     * @param channel Canal del archivo.
+     * @param headerEnd Posición del salto de línea que termina el encabezado.
+     * @return Número de comas en el encabezado.
+     */
+    static int countCommas(FileChannel channel, long headerEnd) throws IOException {
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerEnd);
+        int commas = 0;
+        for (int i = 0; i < header.limit(); i++) {
+            if (header.get(i) == ',') {
+                commas++;
+            }
+        }
+        return commas;
+    }
+
+    /**
+     * Cuenta las líneas no vacías de un bloque.
+     * @param chunk Bloque del archivo.
+     * @return Número de filas de datos en el bloque.
+     */
+    private static int countRows(ByteBuffer chunk) {
+        int rows = 0;
+        boolean content = false;
+        int limit = chunk.limit();
+        for (int i = 0; i < limit; i++) {
+            byte b = chunk.get(i);
+            if (b == '\n') {
+                if (content) rows++;
+                content = false;
+            } else if (b != '\r') {
+                content = true;
+            }
+        }
+        return content ? rows + 1 : rows;
+    }
+
+    /**
+     * Interpreta las filas de un bloque y las escribe en el conjunto de datos.
+     * @param chunk Bloque del archivo.
+     * @param firstRow Fila del conjunto donde se escribe la primera fila del bloque.
+     * @param dataset Conjunto de datos destino.
+     * @return Número de filas interpretadas.
+     */
+    private static int parseRows(ByteBuffer chunk, int firstRow, Dataset dataset)
+            throws InvalidDataException, MissingDataException {
+        int dimensions = dataset.dimensions();
+        double[] values = dataset.array();
+        String[] labels = dataset.getLabels();
+        LabelCache labelCache = new LabelCache();
+
+        int row = firstRow;
+        int limit = chunk.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && chunk.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && chunk.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd == lineStart) {
+                lineStart = next; // Saltar líneas vacías
+                continue;
+            }
+            labels[row] = parseRow(chunk, lineStart, lineEnd, row, values, row * dimensions, dimensions, labelCache);
+            row++;
+            lineStart = next;
+        }
+        return row - firstRow;
+    }
+
+    /**
+     * Interpreta una línea no vacía: escribe sus columnas numéricas en la matriz y devuelve la etiqueta.
+     * @param buffer Buffer que contiene la línea.
+     * @param lineStart Posición inicial de la línea.
+     * @param lineEnd Posición final (exclusiva) de la línea, sin el salto de línea.
+     * @param row Número de fila, para los mensajes de error.
+     * @param values Matriz de características destino.
+     * @param offset Posición de la fila dentro de la matriz.
+     * @param dimensions Número de columnas numéricas.
+     * @param labelCache Etiquetas ya vistas, para reutilizar sus String.
+     * @return La etiqueta de la fila.
+     */
+    static String parseRow(ByteBuffer buffer, int lineStart, int lineEnd, int row, double[] values, int offset,
+                           int dimensions, LabelCache labelCache) throws InvalidDataException, MissingDataException {
+        // Columnas numéricas
+        int position = lineStart;
+        for (int column = 0; column < dimensions; column++) {
+            int comma = position;
+            while (comma < lineEnd && buffer.get(comma) != ',') {
+                comma++;
+            }
+            if (comma == lineEnd) {
+                throw new MissingDataException("Fila " + (row + 1) + ": se esperaban " + (dimensions + 1)
+                        + " columnas y solo hay " + (column + 1));
+            }
+            values[offset + column] = parseDouble(buffer, position, comma, row, column);
+            position = comma + 1;
+        }
+
+        // La última columna es la etiqueta
+        int length = lineEnd - position;
+        if (length == 0) {
+            throw new MissingDataException("Fila " + (row + 1) + ": falta la etiqueta");
+        }
+        for (int i = position; i < lineEnd; i++) {
+            if (buffer.get(i) == ',') {
+                throw new InvalidDataException("Fila " + (row + 1) + ": hay más columnas que en el encabezado");
+            }
+        }
+        return labelCache.get(buffer, position, length);
+    }
+
+    /**
+     * Etiquetas ya vistas por un hilo de interpretación. Las etiquetas suelen repetirse mucho,
+     * así que se comparan los bytes antes de crear un String nuevo.
+     */
+    static final class LabelCache {
+        private final byte[][] bytes = new byte[LABEL_CACHE_SIZE][];
+        private final String[] labels = new String[LABEL_CACHE_SIZE];
+        private int count;
+        private int last = -1;
+
+        /**
+         * Obtiene el String de una etiqueta, reutilizándolo si ya se había visto.
+         * @param buffer Buffer que contiene la etiqueta.
+         * @param position Posición inicial de la etiqueta.
+         * @param length Longitud en bytes de la etiqueta.
+         * @return La etiqueta.
+         */
+        String get(ByteBuffer buffer, int position, int length) {
+            if (last >= 0 && sameBytes(buffer, position, length, bytes[last])) {
+                return labels[last];
+            }
+            for (int i = 0; i < count; i++) {
+                if (sameBytes(buffer, position, length, bytes[i])) {
+                    last = i;
+                    return labels[i];
+                }
+            }
+            byte[] copy = new byte[length];
+            buffer.get(position, copy);
+            String label = new String(copy, StandardCharsets.UTF_8);
+            if (count < LABEL_CACHE_SIZE) {
+                bytes[count] = copy;
+                labels[count] = label;
+                last = count++;
+            }
+            return label;
+        }
+    }
+
+    /**
+     * Compara un rango del bloque con una secuencia de bytes.
+     * @param chunk Bloque del archivo.
+     * @param position Posición inicial del rango.
+     * @param length Longitud del rango.
+     * @param bytes Bytes a comparar.
+     * @return true si son iguales.
+     */
+    private static boolean sameBytes(ByteBuffer chunk, int position, int length, byte[] bytes) {
+        if (bytes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(position + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Interpreta un número decimal directamente desde los bytes del bloque.
+     * Los números con hasta 15 dígitos significativos y exponentes pequeños se calculan de forma
+     * exacta sin crear objetos; cualquier otro caso recurre a {@link Double#parseDouble(String)}.
+     * @param chunk Bloque del archivo.
+     * @param start Posición inicial del campo.
+     * @param end Posición final (exclusiva) del campo.
+     * @param row Fila del campo, para los mensajes de error.
+     * @param column Columna del campo, para los mensajes de error.
+     * @return El valor interpretado.
+     */
+    static double parseDouble(ByteBuffer chunk, int start, int end, int row, int column)
+            throws InvalidDataException, MissingDataException {
+        // Ignorar espacios alrededor del valor
+        while (start < end && chunk.get(start) == ' ') start++;
+        while (end > start && chunk.get(end - 1) == ' ') end--;
+        if (start == end) {
+            throw new MissingDataException("Fila " + (row + 1) + ", columna " + (column + 1) + ": valor vacío");
+        }
+
+        int position = start;
+        boolean negative = false;
+        byte b = chunk.get(position);
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        boolean fast = true;
+        // Parte entera
+        while (position < end && (b = chunk.get(position)) >= '0' && b <= '9') {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                fast = false;
+            }
+            anyDigit = true;
+            position++;
+        }
+        // Parte fraccionaria
+        if (position < end && chunk.get(position) == '.') {
+            position++;
+            while (position < end && (b = chunk.get(position)) >= '0' && b <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                } else {
+                    fast = false;
+                }
+                anyDigit = true;
+                position++;
+            }
+        }
+        // Exponente
+        if (anyDigit && position < end && ((b = chunk.get(position)) == 'e' || b == 'E')) {
+            position++;
+            boolean negativeExponent = false;
+            if (position < end && ((b = chunk.get(position)) == '-' || b == '+')) {
+                negativeExponent = b == '-';
+                position++;
+            }
+            int value = 0;
+            boolean exponentDigits = false;
+            while (position < end && (b = chunk.get(position)) >= '0' && b <= '9') {
+                value = Math.min(value * 10 + (b - '0'), 100000);
+                exponentDigits = true;
+                position++;
+            }
+            if (!exponentDigits) {
+                anyDigit = false;
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+
+        if (anyDigit && position == end && fast && digits <= 15 && exponent >= -22 && exponent <= 22) {
+            // Caso rápido: la mantisa y la potencia de 10 son exactas, el resultado queda bien redondeado
+            double value = exponent < 0
+                    ? mantissa / POWERS_OF_TEN[-exponent]
+                    : mantissa * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+
+        // Caso general: notaciones especiales o demasiados dígitos
+        byte[] bytes = new byte[end - start];
+        chunk.get(start, bytes);
+        String text = new String(bytes, StandardCharsets.US_ASCII);
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new InvalidDataException("Fila " + (row + 1) + ", columna " + (column + 1)
+                    + ": valor no numérico \"" + text + "\"", e);
         }
-        return dataPoints;
     }
-}
\ No newline at end of file
+}
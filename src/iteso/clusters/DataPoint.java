@@ -2,10 +2,13 @@ package iteso.clusters;
 
 /**
  * Clase que representa un punto de datos con características y una etiqueta.
+ * Un punto puede ser independiente, con su propio array de características, o una
+ * vista ligera sobre una fila de un {@link Dataset}.
  */
 public class DataPoint {
     /**
      * Array de características numéricas del punto de datos.
+     * En una vista es null mientras no se reemplacen con {@link #setFeatures(double[])}.
      */
     private double[] features;
 
@@ -14,6 +17,21 @@ public class DataPoint {
      */
     private String label;
 
+    /**
+     * Conjunto de datos del que este punto es una vista, o null si es independiente.
+     */
+    private final Dataset source;
+
+    /**
+     * Fila del punto dentro del conjunto de origen, o -1 si es independiente.
+     */
+    private final int index;
+
+    /**
+     * Indica si las características de una vista fueron reemplazadas y ya no reflejan al origen.
+     */
+    private boolean detached;
+
     /**
      * Constructor que inicializa las características y la etiqueta del punto de datos.
      * @param features Array de características.
@@ -22,22 +40,44 @@ public class DataPoint {
     public DataPoint(double[] features, String label) {
         this.features = features;
         this.label = label;
+        this.source = null;
+        this.index = -1;
+    }
+
+    /**
+     * Constructor de una vista sobre una fila de un conjunto de datos.
+     * @param source Conjunto de datos de origen.
+     * @param index Fila del punto dentro del conjunto.
+     */
+    DataPoint(Dataset source, int index) {
+        this.source = source;
+        this.index = index;
+        this.label = source.getLabel(index);
     }
 
     /**
      * Obtiene las características del punto de datos.
+     * En una vista se devuelve en cada llamada una copia de la fila actual del conjunto de origen,
+     * de modo que refleja cambios como {@link Dataset#normalizeRows()} igual que
+     * {@link #distanceTo(DataPoint, DistanceMetric)}, y modificar la copia no altera el punto;
+     * para cambiarlo se usa {@link #setFeatures(double[])}.
      * @return Array de características.
      */
     public double[] getFeatures() {
+        if (source != null && !detached) {
+            return source.copyRow(index);
+        }
         return features;
     }
 
     /**
      * Establece nuevas características para el punto de datos.
+     * En una vista, el conjunto de origen no se modifica.
      * @param features Array de nuevas características.
      */
     public void setFeatures(double[] features) {
         this.features = features;
+        this.detached = source != null;
     }
 
     /**
@@ -47,7 +87,16 @@ public class DataPoint {
      * @return La distancia calculada.
      */
     public double distanceTo(DataPoint other, DistanceMetric metric) {
-        return Utils.calculateDistance(this.features, other.getFeatures(), metric);
+        if (isArrayView()) {
+            int length = source.dimensions();
+            if (other.isArrayView()) {
+                // Ambos puntos viven en bloques contiguos: leer directamente de ellos
+                return Utils.calculateDistance(source.array(), index * length,
+                        other.source.array(), other.index * length, length, metric);
+            }
+            return Utils.calculateDistance(source.array(), index * length, other.getFeatures(), 0, length, metric);
+        }
+        return Utils.calculateDistance(this.getFeatures(), other.getFeatures(), metric);
     }
 
     /**
@@ -57,4 +106,37 @@ public class DataPoint {
     public String getLabel() {
         return label;
     }
-}
\ No newline at end of file
+
+    /**
+     * Obtiene el conjunto de datos del que este punto es una vista.
+     * @return El conjunto de origen, o null si el punto es independiente.
+     */
+    public Dataset getSource() {
+        return source;
+    }
+
+    /**
+     * Obtiene la fila del punto dentro de su conjunto de origen.
+     * @return El índice de la fila, o -1 si el punto es independiente.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Indica si el punto es una vista cuyas características ya no coinciden con su origen
+     * porque fueron reemplazadas con {@link #setFeatures(double[])}.
+     * @return true si el punto dejó de reflejar a su conjunto de origen.
+     */
+    boolean isDetached() {
+        return detached;
+    }
+
+    /**
+     * Indica si el punto puede leerse directamente del array de su conjunto de origen.
+     * @return true si es una vista sobre un conjunto en el heap.
+     */
+    private boolean isArrayView() {
+        return source != null && !detached && source.hasArray();
+    }
+}
@@ -0,0 +1,349 @@
+package iteso.clusters;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conjunto de datos almacenado en forma columnar primitiva.
+ * Las características de todos los puntos se guardan en un solo bloque contiguo
+ * en orden por filas (fila i, columna j en la posición i * dimensiones + j), ya sea
+ * en un {@code double[]} en el heap o en un {@link DoubleBuffer} fuera del heap.
+ * Las etiquetas se guardan por separado en su propio array.
+ */
+public class Dataset {
+    /**
+     * Número de puntos (filas) del conjunto.
+     */
+    private final int size;
+
+    /**
+     * Número de características (columnas) por punto.
+     */
+    private final int dimensions;
+
+    /**
+     * Matriz de características en el heap, o null si el conjunto vive fuera del heap.
+     */
+    private final double[] values;
+
+    /**
+     * Matriz de características fuera del heap, o null si el conjunto vive en el heap.
+     */
+    private final DoubleBuffer buffer;
+
+    /**
+     * Etiqueta de cada punto; puede contener nulls.
+     */
+    private final String[] labels;
+
+    /**
+     * Constructor que envuelve una matriz de características existente sin copiarla.
+     * @param values Matriz de características en orden por filas.
+     * @param size Número de puntos.
+     * @param dimensions Número de características por punto.
+     * @param labels Etiquetas de los puntos, o null si no hay etiquetas.
+     */
+    public Dataset(double[] values, int size, int dimensions, String[] labels) {
+        this(values, null, size, dimensions, labels);
+    }
+
+    /**
+     * Constructor que envuelve un buffer fuera del heap existente sin copiarlo.
+     * @param buffer Buffer de características en orden por filas.
+     * @param size Número de puntos.
+     * @param dimensions Número de características por punto.
+     * @param labels Etiquetas de los puntos, o null si no hay etiquetas.
+     */
+    public Dataset(DoubleBuffer buffer, int size, int dimensions, String[] labels) {
+        this(null, buffer, size, dimensions, labels);
+    }
+
+    private Dataset(double[] values, DoubleBuffer buffer, int size, int dimensions, String[] labels) {
+        if (size < 0 || dimensions < 0) {
+            throw new IllegalArgumentException("Tamaño o dimensiones negativas");
+        }
+        long capacity = (long) size * dimensions;
+        long available = values != null ? values.length : buffer.capacity();
+        if (available < capacity) {
+            throw new IllegalArgumentException("La matriz de características es más pequeña que " + size + "x" + dimensions);
+        }
+        if (labels != null && labels.length < size) {
+            throw new IllegalArgumentException("Hay menos etiquetas que puntos");
+        }
+        this.values = values;
+        this.buffer = buffer;
+        this.size = size;
+        this.dimensions = dimensions;
+        this.labels = labels != null ? labels : new String[size];
+    }
+
+    /**
+     * Reserva un conjunto de datos vacío en el heap.
+     * @param size Número de puntos.
+     * @param dimensions Número de características por punto.
+     * @return Un conjunto con todas las características en cero.
+     */
+    public static Dataset allocate(int size, int dimensions) {
+        return new Dataset(new double[checkedCapacity(size, dimensions)], size, dimensions, null);
+    }
+
+    /**
+     * Reserva un conjunto de datos vacío fuera del heap.
+     * @param size Número de puntos.
+     * @param dimensions Número de características por punto.
+     * @return Un conjunto con todas las características en cero, respaldado por un buffer directo.
+     */
+    public static Dataset allocateDirect(int size, int dimensions) {
+        int capacity = checkedCapacity(size, dimensions);
+        if (capacity > Integer.MAX_VALUE / Double.BYTES) {
+            throw new IllegalArgumentException("El conjunto excede el tamaño máximo de un buffer directo");
+        }
+        DoubleBuffer buffer = ByteBuffer.allocateDirect(capacity * Double.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asDoubleBuffer();
+        return new Dataset(buffer, size, dimensions, null);
+    }
+
+    /**
+     * Construye un conjunto de datos a partir de una lista de puntos.
+     * Si los puntos son vistas de un mismo conjunto, en orden y completas, se devuelve
+     * ese conjunto sin copiar nada.
+     * @param points Lista de puntos de datos.
+     * @return El conjunto de datos equivalente.
+     */
+    public static Dataset fromDataPoints(List<DataPoint> points) {
+        if (points.isEmpty()) {
+            return allocate(0, 0);
+        }
+        Dataset source = points.get(0).getSource();
+        if (source != null && source.size == points.size()) {
+            boolean sameView = true;
+            for (int i = 0; i < points.size() && sameView; i++) {
+                DataPoint point = points.get(i);
+                sameView = point.getSource() == source && point.getIndex() == i && !point.isDetached();
+            }
+            if (sameView) {
+                return source;
+            }
+        }
+
+        int dimensions = points.get(0).getFeatures().length;
+        double[] values = new double[checkedCapacity(points.size(), dimensions)];
+        String[] labels = new String[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            double[] features = points.get(i).getFeatures();
+            if (features.length != dimensions) {
+                throw new IllegalArgumentException("El punto " + i + " tiene " + features.length
+                        + " características, se esperaban " + dimensions);
+            }
+            System.arraycopy(features, 0, values, i * dimensions, dimensions);
+            labels[i] = points.get(i).getLabel();
+        }
+        return new Dataset(values, points.size(), dimensions, labels);
+    }
+
+    /**
+     * Calcula el número de elementos de una matriz de tamaño x dimensiones.
+     * @param size Número de filas.
+     * @param dimensions Número de columnas.
+     * @return El producto, si cabe en un array de Java.
+     */
+    static int checkedCapacity(int size, int dimensions) {
+        long capacity = (long) size * dimensions;
+        if (capacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("El conjunto " + size + "x" + dimensions + " excede el tamaño máximo de un array");
+        }
+        return (int) capacity;
+    }
+
+    /**
+     * Obtiene el número de puntos.
+     * @return Número de filas.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Obtiene el número de características por punto.
+     * @return Número de columnas.
+     */
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Lee una característica.
+     * @param row Índice del punto.
+     * @param column Índice de la característica.
+     * @return El valor almacenado.
+     */
+    public double get(int row, int column) {
+        int index = row * dimensions + column;
+        return values != null ? values[index] : buffer.get(index);
+    }
+
+    /**
+     * Escribe una característica.
+     * @param row Índice del punto.
+     * @param column Índice de la característica.
+     * @param value El nuevo valor.
+     */
+    public void set(int row, int column, double value) {
+        int index = row * dimensions + column;
+        if (values != null) {
+            values[index] = value;
+        } else {
+            buffer.put(index, value);
+        }
+    }
+
+    /**
+     * Copia las características de un punto a un array destino.
+     * @param row Índice del punto.
+     * @param target Array destino.
+     * @param offset Posición inicial dentro del destino.
+     */
+    public void copyRow(int row, double[] target, int offset) {
+        int start = row * dimensions;
+        if (values != null) {
+            System.arraycopy(values, start, target, offset, dimensions);
+        } else {
+            for (int j = 0; j < dimensions; j++) {
+                target[offset + j] = buffer.get(start + j);
+            }
+        }
+    }
+
+    /**
+     * Copia las características de un punto a un nuevo array.
+     * @param row Índice del punto.
+     * @return Un array nuevo con las características.
+     */
+    public double[] copyRow(int row) {
+        double[] features = new double[dimensions];
+        copyRow(row, features, 0);
+        return features;
+    }
+
+    /**
+     * Divide cada punto entre su norma euclidiana, como supone {@link DistanceMetric#COSINE}.
+     * Los puntos nulos quedan igual. Modifica el conjunto, así que un conjunto mapeado de solo
+     * lectura debe copiarse antes con {@link #toHeap()}.
+     */
+    public void normalizeRows() {
+        if (values != null) {
+            for (int row = 0; row < size; row++) {
+                KMeansEngine.normalize(values, row * dimensions, dimensions);
+            }
+            return;
+        }
+        for (int row = 0; row < size; row++) {
+            double squaredNorm = 0.0;
+            for (int column = 0; column < dimensions; column++) {
+                double value = get(row, column);
+                squaredNorm += value * value;
+            }
+            if (squaredNorm > 0.0) {
+                double scale = 1.0 / Math.sqrt(squaredNorm);
+                for (int column = 0; column < dimensions; column++) {
+                    set(row, column, get(row, column) * scale);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indica si las características están respaldadas por un array en el heap.
+     * @return true si {@link #array()} puede usarse.
+     */
+    public boolean hasArray() {
+        return values != null;
+    }
+
+    /**
+     * Obtiene el array en el heap que respalda al conjunto, sin copiarlo.
+     * @return La matriz de características en orden por filas.
+     * @throws UnsupportedOperationException Si el conjunto vive fuera del heap.
+     */
+    public double[] array() {
+        if (values == null) {
+            throw new UnsupportedOperationException("El conjunto de datos vive fuera del heap");
+        }
+        return values;
+    }
+
+    /**
+     * Obtiene el buffer fuera del heap que respalda al conjunto.
+     * @return El buffer, o null si el conjunto vive en el heap.
+     */
+    public DoubleBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Obtiene la etiqueta de un punto.
+     * @param row Índice del punto.
+     * @return La etiqueta, o null si no tiene.
+     */
+    public String getLabel(int row) {
+        return labels[row];
+    }
+
+    /**
+     * Establece la etiqueta de un punto.
+     * @param row Índice del punto.
+     * @param label La nueva etiqueta.
+     */
+    public void setLabel(int row, String label) {
+        labels[row] = label;
+    }
+
+    /**
+     * Obtiene el array de etiquetas, sin copiarlo.
+     * @return Las etiquetas de todos los puntos.
+     */
+    public String[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * Crea una vista ligera de un punto del conjunto.
+     * @param row Índice del punto.
+     * @return Un DataPoint que lee sus características de este conjunto.
+     */
+    public DataPoint getPoint(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Índice " + row + " fuera de rango para " + size + " puntos");
+        }
+        return new DataPoint(this, row);
+    }
+
+    /**
+     * Crea una lista de vistas ligeras sobre todos los puntos del conjunto.
+     * @return Lista de DataPoint, uno por fila.
+     */
+    public List<DataPoint> toDataPoints() {
+        List<DataPoint> points = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            points.add(new DataPoint(this, i));
+        }
+        return points;
+    }
+
+    /**
+     * Devuelve una copia del conjunto en el heap, o el mismo conjunto si ya vive en el heap.
+     * @return Un conjunto respaldado por un array.
+     */
+    public Dataset toHeap() {
+        if (values != null) {
+            return this;
+        }
+        double[] copy = new double[checkedCapacity(size, dimensions)];
+        buffer.get(0, copy, 0, copy.length);
+        return new Dataset(copy, size, dimensions, labels);
+    }
+}
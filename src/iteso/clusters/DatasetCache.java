@@ -0,0 +1,277 @@
+package iteso.clusters;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Caché de conjuntos de datos cargados, compartida entre hilos y acotada en bytes.
+ * <p>
+ * La llave es la ruta absoluta del archivo; cada entrada recuerda la fecha de modificación y el
+ * tamaño del archivo con que se cargó, y si cambian se vuelve a cargar. Cuando varios hilos piden
+ * el mismo archivo a la vez, solo uno lo carga y los demás esperan esa misma carga. Al superar el
+ * límite se descartan las entradas usadas hace más tiempo (LRU); un conjunto más grande que el
+ * límite se entrega sin guardarse.
+ */
+public class DatasetCache {
+    /**
+     * Límite de bytes de los conjuntos guardados.
+     */
+    private final long capacity;
+
+    /**
+     * Entradas en orden de acceso, de la usada hace más tiempo a la más reciente.
+     */
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Bytes de las entradas ya cargadas.
+     */
+    private long bytes;
+
+    /**
+     * Estadísticas de uso.
+     */
+    private long hits, misses, evictions;
+
+    /**
+     * Entrada de la caché: una carga en curso o terminada de una versión del archivo.
+     */
+    private static final class Entry {
+        final long modified;
+        final long fileSize;
+        final CompletableFuture<Dataset> future = new CompletableFuture<>();
+        long bytes;
+
+        Entry(long modified, long fileSize) {
+            this.modified = modified;
+            this.fileSize = fileSize;
+        }
+    }
+
+    /**
+     * Constructor de la caché.
+     * @param capacity Límite de bytes de los conjuntos guardados.
+     */
+    public DatasetCache(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("El límite de la caché no puede ser negativo");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Obtiene un conjunto de datos, cargándolo en el hilo actual si no está guardado.
+     * @param filePath Ruta de un archivo CSV o binario.
+     * @return El conjunto de datos.
+     * @throws IOException Si el archivo no puede leerse.
+     * @throws InvalidDataException Si el archivo contiene valores inválidos.
+     * @throws MissingDataException Si al archivo le faltan valores.
+     * @see #get(String, Executor)
+     */
+    public Dataset get(String filePath) throws IOException, InvalidDataException, MissingDataException {
+        return get(filePath, Runnable::run);
+    }
+
+    /**
+     * Obtiene un conjunto de datos. Si no está guardado, o el archivo cambió, lo carga con un
+     * {@link DataLoader} de un hilo en el ejecutor dado y espera la carga.
+     * @param filePath Ruta de un archivo CSV o binario.
+     * @param executor Ejecutor en que se carga el archivo.
+     * @return El conjunto de datos.
+     * @throws IOException Si el archivo no puede leerse.
+     * @throws InvalidDataException Si el archivo contiene valores inválidos.
+     * @throws MissingDataException Si al archivo le faltan valores.
+     */
+    public Dataset get(String filePath, Executor executor) throws IOException, InvalidDataException, MissingDataException {
+        CompletableFuture<Dataset> future = getAsync(filePath, executor);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Carga interrumpida: " + filePath, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof InvalidDataException) throw (InvalidDataException) cause;
+            if (cause instanceof MissingDataException) throw (MissingDataException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Obtiene un conjunto de datos sin esperar su carga. El futuro devuelto es compartido por
+     * todos los que piden la misma versión del archivo: para dejar de esperarlo sin afectar a los
+     * demás debe cancelarse una copia ({@link CompletableFuture#copy()}), no el original.
+     * @param filePath Ruta de un archivo CSV o binario.
+     * @param executor Ejecutor en que se carga el archivo si no está guardado.
+     * @return Futuro con el conjunto de datos, o con el error de la carga.
+     */
+    public CompletableFuture<Dataset> getAsync(String filePath, Executor executor) {
+        Path path;
+        long modified, fileSize;
+        try {
+            path = Paths.get(filePath).toAbsolutePath().normalize();
+            modified = Files.getLastModifiedTime(path).toMillis();
+            fileSize = Files.size(path);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        Entry entry;
+        boolean load = false;
+        synchronized (this) {
+            entry = entries.get(path);
+            if (entry != null && (entry.modified != modified || entry.fileSize != fileSize)) {
+                remove(path, entry);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(modified, fileSize);
+                entries.put(path, entry);
+                misses++;
+                load = true;
+            } else {
+                hits++;
+            }
+        }
+        if (load) {
+            Entry loading = entry;
+            try {
+                executor.execute(() -> load(path, loading));
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if (entries.get(path) == loading) {
+                        entries.remove(path);
+                    }
+                }
+                loading.future.completeExceptionally(e);
+            }
+        }
+        return entry.future;
+    }
+
+    /**
+     * Carga el archivo de una entrada y la cuenta en el límite, o la quita si falla.
+     */
+    private void load(Path path, Entry entry) {
+        Dataset data;
+        try {
+            data = new DataLoader(1).loadDataset(path.toString());
+        } catch (Throwable e) {
+            synchronized (this) {
+                if (entries.get(path) == entry) {
+                    entries.remove(path);
+                }
+            }
+            entry.future.completeExceptionally(e);
+            return;
+        }
+        synchronized (this) {
+            if (entries.get(path) == entry) {
+                entry.bytes = estimateBytes(data);
+                bytes += entry.bytes;
+                if (entry.bytes > capacity) {
+                    remove(path, entry);
+                } else {
+                    evict();
+                }
+            }
+        }
+        entry.future.complete(data);
+    }
+
+    /**
+     * Descarta las entradas cargadas usadas hace más tiempo hasta respetar el límite.
+     */
+    private void evict() {
+        Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+        while (bytes > capacity && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.future.isDone()) {
+                bytes -= entry.bytes;
+                evictions++;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Quita una entrada y descuenta sus bytes.
+     */
+    private void remove(Path path, Entry entry) {
+        entries.remove(path);
+        bytes -= entry.bytes;
+    }
+
+    /**
+     * Estima la memoria de un conjunto: sus características en el heap y la referencia de cada
+     * etiqueta. Un conjunto mapeado solo cuenta las etiquetas, porque el sistema operativo
+     * administra sus páginas.
+     */
+    private static long estimateBytes(Dataset data) {
+        long labels = 8L * data.size();
+        return data.hasArray() ? labels + 8L * data.size() * data.dimensions() : labels;
+    }
+
+    /**
+     * Descarta todas las entradas cargadas.
+     */
+    public synchronized void clear() {
+        entries.values().removeIf(entry -> {
+            if (entry.future.isDone()) {
+                bytes -= entry.bytes;
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Obtiene los bytes estimados de los conjuntos guardados.
+     * @return Número de bytes.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Obtiene el número de conjuntos guardados o en carga.
+     * @return Número de entradas.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Obtiene cuántas veces se encontró el conjunto pedido.
+     * @return Número de aciertos.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Obtiene cuántas veces hubo que cargar el conjunto pedido.
+     * @return Número de fallos.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Obtiene cuántas entradas se descartaron por el límite.
+     * @return Número de descartes.
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,258 @@
+package iteso.clusters;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Árbol de fusiones completo de un clustering jerárquico, guardado en arrays primitivos.
+ * <p>
+ * Las hojas 0..n-1 son los puntos y la fusión m crea el nodo n + m, que une los nodos
+ * {@code getLeft(m)} y {@code getRight(m)} a la altura {@code getHeight(m)}; las fusiones están
+ * ordenadas por altura. Una vez construido, el árbol puede cortarse en cualquier número de clusters
+ * o a cualquier altura en tiempo lineal, sin volver a ejecutar el algoritmo.
+ */
+public class Dendrogram {
+    /**
+     * Número de puntos (hojas).
+     */
+    private final int size;
+
+    /**
+     * Nodos unidos por cada fusión.
+     */
+    private final int[] left, right;
+
+    /**
+     * Altura (distancia entre clusters) de cada fusión.
+     */
+    private final double[] heights;
+
+    /**
+     * Número de puntos del cluster creado por cada fusión.
+     */
+    private final int[] sizes;
+
+    /**
+     * Constructor que recibe los arrays del árbol sin copiarlos.
+     * @param size Número de puntos.
+     * @param left Primer nodo de cada fusión.
+     * @param right Segundo nodo de cada fusión.
+     * @param heights Altura de cada fusión, en orden no decreciente.
+     * @param sizes Número de puntos del cluster creado por cada fusión.
+     */
+    public Dendrogram(int size, int[] left, int[] right, double[] heights, int[] sizes) {
+        int merges = Math.max(size - 1, 0);
+        if (left.length != merges || right.length != merges || heights.length != merges || sizes.length != merges) {
+            throw new IllegalArgumentException("Un dendrograma de " + size + " puntos debe tener " + merges + " fusiones");
+        }
+        this.size = size;
+        this.left = left;
+        this.right = right;
+        this.heights = heights;
+        this.sizes = sizes;
+    }
+
+    /**
+     * Construye el árbol a partir de fusiones entre representantes ordenadas por altura.
+     * @param merges Fusiones del motor aglomerativo.
+     * @param size Número de puntos.
+     * @return El dendrograma.
+     */
+    static Dendrogram fromMerges(AgglomerativeEngine.Merges merges, int size) {
+        int count = merges.heights.length;
+        int[] left = new int[count];
+        int[] right = new int[count];
+        int[] sizes = new int[count];
+        int[] parent = new int[size];
+        int[] nodeOf = new int[size];
+        int[] members = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+            nodeOf[i] = i;
+            members[i] = 1;
+        }
+        for (int m = 0; m < count; m++) {
+            int rootA = AgglomerativeEngine.find(parent, merges.first[m]);
+            int rootB = AgglomerativeEngine.find(parent, merges.second[m]);
+            left[m] = Math.min(nodeOf[rootA], nodeOf[rootB]);
+            right[m] = Math.max(nodeOf[rootA], nodeOf[rootB]);
+            int root = Math.min(rootA, rootB);
+            parent[Math.max(rootA, rootB)] = root;
+            members[root] = members[rootA] + members[rootB];
+            sizes[m] = members[root];
+            nodeOf[root] = size + m;
+        }
+        return new Dendrogram(size, left, right, merges.heights.clone(), sizes);
+    }
+
+    /**
+     * Corta el árbol para obtener exactamente k clusters (o n si k es mayor que el número de puntos).
+     * @param k Número de clusters deseado, al menos 1.
+     * @return Cluster de cada punto, numerados desde 0 en el orden de su primer punto.
+     */
+    public int[] cutAtK(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("El número de clusters debe ser al menos 1");
+        }
+        k = Math.min(k, size);
+        int[] labels = new int[size];
+        if (size == 0) {
+            return labels;
+        }
+        int applied = size - k;
+        int[] stack = new int[size];
+        int cluster = 0;
+        if (k == 1) {
+            cluster = mark(size == 1 ? 0 : 2 * size - 2, cluster, labels, stack);
+        } else {
+            // Las raíces de los clusters son los hijos de las k - 1 fusiones más altas que no fueron cortados
+            for (int m = applied; m < size - 1; m++) {
+                if (left[m] < size || left[m] - size < applied) cluster = mark(left[m], cluster, labels, stack);
+                if (right[m] < size || right[m] - size < applied) cluster = mark(right[m], cluster, labels, stack);
+            }
+        }
+        return renumber(labels, cluster);
+    }
+
+    /**
+     * Corta el árbol a una altura: se aplican todas las fusiones con altura menor o igual.
+     * @param height Altura de corte.
+     * @return Cluster de cada punto, numerados desde 0 en el orden de su primer punto.
+     */
+    public int[] cutAtHeight(double height) {
+        return cutAtK(Math.max(1, size - mergesUpTo(height)));
+    }
+
+    /**
+     * Corta el árbol en k clusters y los construye con sus puntos y centroides.
+     * @param data Conjunto de datos usado para construir el árbol.
+     * @param k Número de clusters deseado.
+     * @return Lista de clusters en el orden de su primer punto.
+     */
+    public List<Cluster> clustersAtK(Dataset data, int k) {
+        return HierarchicalClustering.buildClusters(data, data.toDataPoints(), cutAtK(k));
+    }
+
+    /**
+     * Corta el árbol a una altura y construye los clusters con sus puntos y centroides.
+     * @param data Conjunto de datos usado para construir el árbol.
+     * @param height Altura de corte.
+     * @return Lista de clusters en el orden de su primer punto.
+     */
+    public List<Cluster> clustersAtHeight(Dataset data, double height) {
+        return HierarchicalClustering.buildClusters(data, data.toDataPoints(), cutAtHeight(height));
+    }
+
+    /**
+     * Cuenta las fusiones con altura menor o igual a un valor.
+     * @param height Altura de corte.
+     * @return Número de fusiones.
+     */
+    private int mergesUpTo(double height) {
+        int low = 0;
+        int high = heights.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (heights[middle] <= height) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Asigna un cluster a todas las hojas bajo un nodo.
+     * @param node Nodo raíz del cluster.
+     * @param cluster Número del cluster.
+     * @param labels Cluster de cada punto.
+     * @param stack Pila de trabajo con capacidad para n nodos.
+     * @return El siguiente número de cluster libre.
+     */
+    private int mark(int node, int cluster, int[] labels, int[] stack) {
+        int top = 0;
+        stack[top++] = node;
+        while (top > 0) {
+            int current = stack[--top];
+            if (current < size) {
+                labels[current] = cluster;
+            } else {
+                stack[top++] = left[current - size];
+                stack[top++] = right[current - size];
+            }
+        }
+        return cluster + 1;
+    }
+
+    /**
+     * Renumera los clusters en el orden de su primer punto.
+     * @param labels Cluster de cada punto.
+     * @param clusterCount Número de clusters.
+     * @return Las mismas etiquetas, renumeradas.
+     */
+    private int[] renumber(int[] labels, int clusterCount) {
+        int[] order = new int[clusterCount];
+        Arrays.fill(order, -1);
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            if (order[labels[i]] < 0) {
+                order[labels[i]] = next++;
+            }
+            labels[i] = order[labels[i]];
+        }
+        return labels;
+    }
+
+    /**
+     * Obtiene el número de puntos del árbol.
+     * @return Número de hojas.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Obtiene el número de fusiones del árbol.
+     * @return n - 1, o 0 si el árbol está vacío.
+     */
+    public int getMergeCount() {
+        return heights.length;
+    }
+
+    /**
+     * Obtiene el primer nodo unido por una fusión.
+     * @param merge Índice de la fusión.
+     * @return Un punto (menor que n) o el nodo creado por una fusión anterior (n + índice).
+     */
+    public int getLeft(int merge) {
+        return left[merge];
+    }
+
+    /**
+     * Obtiene el segundo nodo unido por una fusión.
+     * @param merge Índice de la fusión.
+     * @return Un punto (menor que n) o el nodo creado por una fusión anterior (n + índice).
+     */
+    public int getRight(int merge) {
+        return right[merge];
+    }
+
+    /**
+     * Obtiene la altura de una fusión.
+     * @param merge Índice de la fusión.
+     * @return La distancia entre los clusters fusionados.
+     */
+    public double getHeight(int merge) {
+        return heights[merge];
+    }
+
+    /**
+     * Obtiene el número de puntos del cluster creado por una fusión.
+     * @param merge Índice de la fusión.
+     * @return Número de puntos.
+     */
+    public int getSize(int merge) {
+        return sizes[merge];
+    }
+}
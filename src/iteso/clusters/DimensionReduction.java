@@ -0,0 +1,311 @@
+package iteso.clusters;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reducción lineal de dimensiones que se ejecuta antes del clustering: cada punto x de d
+ * dimensiones se transforma en y = x·W − s, con W una matriz de d x t y t mucho menor que d.
+ * <p>
+ * Acepta conjuntos densos y dispersos; con un {@link SparseDataset} cada producto solo recorre las
+ * columnas distintas de cero de la fila, así que transformar cuesta O(valores distintos de cero · t).
+ * El resultado es siempre un {@link Dataset} denso de t dimensiones, sobre el que cualquier
+ * algoritmo evita los ciclos de distancia sobre las d dimensiones originales; ver
+ * {@link ProjectedClustering}.
+ * <p>
+ * Las transformaciones se reparten por bloques de filas que solo dependen del número de puntos,
+ * de modo que el resultado es el mismo con cualquier número de hilos.
+ */
+public abstract class DimensionReduction {
+    /**
+     * Número de filas por bloque al repartir los productos entre hilos.
+     */
+    static final int BLOCK_ROWS = 512;
+
+    /**
+     * Número de dimensiones del resultado.
+     */
+    final int targetDimensions;
+
+    /**
+     * Semilla de los números aleatorios, o null para elegir una en cada ajuste.
+     */
+    Long seed;
+
+    /**
+     * Número de hilos con el que se crea un pool propio si no se proporciona uno.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Pool de hilos compartido, o null para crear uno propio según el paralelismo.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Número de dimensiones de los datos de entrada, o -1 antes del ajuste.
+     */
+    int inputDimensions = -1;
+
+    /**
+     * Matriz de proyección en orden por filas (dimensiones de entrada x dimensiones del resultado).
+     */
+    double[] components;
+
+    /**
+     * Término que se resta a cada punto transformado, por ejemplo la media proyectada.
+     */
+    double[] shift;
+
+    /**
+     * Constructor que fija el número de dimensiones del resultado.
+     * @param targetDimensions Número de dimensiones del resultado, al menos 1.
+     */
+    DimensionReduction(int targetDimensions) {
+        if (targetDimensions < 1) {
+            throw new IllegalArgumentException("El número de dimensiones del resultado debe ser al menos 1");
+        }
+        this.targetDimensions = targetDimensions;
+    }
+
+    /**
+     * Fija la semilla para que el ajuste sea reproducible.
+     * @param seed La semilla, o null para elegir una en cada ajuste.
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Establece el número de hilos usados en los productos. Con 1 todo se ejecuta en el hilo actual.
+     * @param parallelism Número de hilos.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser al menos 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Establece un pool de hilos compartido; tiene prioridad sobre el paralelismo.
+     * @param pool El pool a utilizar, o null para volver a usar el paralelismo configurado.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Obtiene el número de dimensiones del resultado.
+     * @return Número de dimensiones.
+     */
+    public int getTargetDimensions() {
+        return targetDimensions;
+    }
+
+    /**
+     * Obtiene la matriz de proyección.
+     * @return Copia de la matriz en orden por filas (dimensiones de entrada x dimensiones del
+     * resultado), o null antes del ajuste.
+     */
+    public double[] getComponents() {
+        return components != null ? components.clone() : null;
+    }
+
+    /**
+     * Ajusta la reducción a un conjunto disperso.
+     * @param data Conjunto de datos.
+     * @return Esta misma reducción, para encadenar {@link #transform(SparseDataset)}.
+     */
+    public DimensionReduction fit(SparseDataset data) {
+        return fit(Rows.of(data));
+    }
+
+    /**
+     * Ajusta la reducción a un conjunto denso.
+     * @param data Conjunto de datos.
+     * @return Esta misma reducción, para encadenar {@link #transform(Dataset)}.
+     */
+    public DimensionReduction fit(Dataset data) {
+        return fit(Rows.of(data));
+    }
+
+    /**
+     * Transforma un conjunto disperso con la reducción ya ajustada.
+     * @param data Conjunto con las dimensiones del ajuste.
+     * @return Conjunto denso de {@link #getTargetDimensions()} dimensiones, con las mismas etiquetas.
+     */
+    public Dataset transform(SparseDataset data) {
+        return transform(Rows.of(data), data.getLabels());
+    }
+
+    /**
+     * Transforma un conjunto denso con la reducción ya ajustada.
+     * @param data Conjunto con las dimensiones del ajuste.
+     * @return Conjunto denso de {@link #getTargetDimensions()} dimensiones, con las mismas etiquetas.
+     */
+    public Dataset transform(Dataset data) {
+        return transform(Rows.of(data), data.getLabels());
+    }
+
+    /**
+     * Ajusta la reducción con el pool configurado.
+     * @param rows Filas de los datos.
+     * @return Esta misma reducción.
+     */
+    private DimensionReduction fit(Rows rows) {
+        ForkJoinPool executor = openPool();
+        try {
+            fit(rows, executor);
+            inputDimensions = rows.dimensions;
+            return this;
+        } finally {
+            closePool(executor);
+        }
+    }
+
+    /**
+     * Calcula la matriz de proyección y el término que se resta.
+     * @param rows Filas de los datos.
+     * @param executor Pool de hilos para los productos, o null.
+     */
+    abstract void fit(Rows rows, ForkJoinPool executor);
+
+    /**
+     * Transforma todas las filas en paralelo por bloques.
+     * @param rows Filas de los datos.
+     * @param labels Etiquetas que conserva el resultado.
+     * @return El conjunto transformado.
+     */
+    private Dataset transform(Rows rows, String[] labels) {
+        if (components == null) {
+            throw new IllegalStateException("La reducción no se ha ajustado");
+        }
+        if (rows.dimensions != inputDimensions) {
+            throw new IllegalArgumentException("Se esperaban " + inputDimensions + " dimensiones, se recibieron "
+                    + rows.dimensions);
+        }
+        int t = targetDimensions;
+        Dataset result = Dataset.allocate(rows.size, t);
+        double[] target = result.array();
+        ForkJoinPool executor = openPool();
+        try {
+            KMeansEngine.runChunks(blockCount(rows.size), executor, block -> {
+                for (int row = block * BLOCK_ROWS, end = Math.min(rows.size, row + BLOCK_ROWS); row < end; row++) {
+                    rows.multiply(row, components, t, target, row * t);
+                    for (int c = 0; c < t; c++) {
+                        target[row * t + c] -= shift[c];
+                    }
+                }
+            });
+        } finally {
+            closePool(executor);
+        }
+        System.arraycopy(labels, 0, result.getLabels(), 0, rows.size);
+        return result;
+    }
+
+    /**
+     * Calcula el número de bloques de {@link #BLOCK_ROWS} filas.
+     * @param size Número de filas.
+     * @return Número de bloques.
+     */
+    static int blockCount(int size) {
+        return Math.max(1, (size + BLOCK_ROWS - 1) / BLOCK_ROWS);
+    }
+
+    /**
+     * Obtiene el pool configurado o crea uno propio según el paralelismo.
+     * @return El pool, o null para ejecutar en el hilo actual.
+     */
+    private ForkJoinPool openPool() {
+        return pool != null ? pool : parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    /**
+     * Cierra el pool si fue creado por {@link #openPool()}.
+     * @param executor El pool devuelto por {@link #openPool()}.
+     */
+    private void closePool(ForkJoinPool executor) {
+        if (executor != null && executor != pool) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Vista uniforme de las filas de un conjunto denso o disperso: los valores de la fila i ocupan
+     * el rango [start(i), end(i)) de {@link #values}, con sus columnas en {@link #columns} si el
+     * conjunto es disperso o consecutivas desde 0 si es denso.
+     */
+    static final class Rows {
+        final int size, dimensions;
+        final double[] values;
+        final int[] columns;
+        private final int[] pointers;
+
+        private Rows(int size, int dimensions, double[] values, int[] columns, int[] pointers) {
+            this.size = size;
+            this.dimensions = dimensions;
+            this.values = values;
+            this.columns = columns;
+            this.pointers = pointers;
+        }
+
+        static Rows of(SparseDataset data) {
+            int[] pointers = new int[data.size() + 1];
+            for (int row = 0; row < data.size(); row++) {
+                pointers[row + 1] = data.rowEnd(row);
+            }
+            return new Rows(data.size(), data.dimensions(), data.values(), data.columns(), pointers);
+        }
+
+        static Rows of(Dataset data) {
+            // Un conjunto fuera del heap se copia para leer sus filas como arreglo
+            Dataset heap = data.toHeap();
+            return new Rows(heap.size(), heap.dimensions(), heap.array(), null, null);
+        }
+
+        int start(int row) {
+            return pointers != null ? pointers[row] : row * dimensions;
+        }
+
+        int end(int row) {
+            return pointers != null ? pointers[row + 1] : (row + 1) * dimensions;
+        }
+
+        int column(int row, int i) {
+            return columns != null ? columns[i] : i - row * dimensions;
+        }
+
+        /**
+         * Multiplica una fila por una matriz de dimensiones x width: out = x·M.
+         */
+        void multiply(int row, double[] matrix, int width, double[] out, int outOffset) {
+            for (int c = 0; c < width; c++) {
+                out[outOffset + c] = 0.0;
+            }
+            for (int i = start(row), end = end(row); i < end; i++) {
+                double value = values[i];
+                if (value == 0.0) continue;
+                int base = column(row, i) * width;
+                for (int c = 0; c < width; c++) {
+                    out[outOffset + c] += value * matrix[base + c];
+                }
+            }
+        }
+
+        /**
+         * Suma a las columnas [from, to) de una matriz de dimensiones x width el producto de la
+         * fila transpuesta por un vector: M[j] += x_j · z.
+         */
+        void scatter(int row, double[] vector, int vectorOffset, double[] matrix, int width, int from, int to) {
+            for (int i = start(row), end = end(row); i < end; i++) {
+                double value = values[i];
+                if (value == 0.0) continue;
+                int base = column(row, i) * width;
+                for (int c = from; c < to; c++) {
+                    matrix[base + c] += value * vector[vectorOffset + c];
+                }
+            }
+        }
+    }
+}
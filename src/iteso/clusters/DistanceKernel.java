@@ -0,0 +1,476 @@
+package iteso.clusters;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Núcleo de cálculo de distancias para una métrica concreta.
+ * <p>
+ * Cada métrica tiene una sola implementación final, que los algoritmos eligen una vez por
+ * ejecución con {@link #of(DistanceMetric)}; así el compilador JIT ve una sola clase en cada punto
+ * de llamada y puede insertar el cálculo en el ciclo interno sin evaluar un {@code switch} por
+ * distancia. Los ciclos están desenrollados en cuatro acumuladores independientes para que el
+ * procesador pueda solapar las sumas.
+ * <p>
+ * Cuando solo importa comparar distancias se usa {@link #comparable}, un valor monótono con la
+ * distancia que es más barato de calcular (la euclidiana al cuadrado, sin raíz).
+ */
+public abstract class DistanceKernel {
+    private static final DistanceKernel EUCLIDEAN = new Euclidean();
+    private static final DistanceKernel MANHATTAN = new Manhattan();
+    private static final DistanceKernel CHEBYSHEV = new Chebyshev();
+    private static final DistanceKernel COSINE = new Cosine();
+
+    /**
+     * Núcleos de Minkowski creados, por exponente, para no crear uno en cada llamada.
+     */
+    private static final Map<Double, Minkowski> MINKOWSKI_KERNELS = new ConcurrentHashMap<>();
+
+    /**
+     * Último núcleo de Minkowski devuelto; evita consultar el mapa, que convierte el exponente en
+     * objeto, cuando se calculan distancias de una en una con el mismo exponente.
+     */
+    private static volatile Minkowski lastMinkowski;
+
+    DistanceKernel() {
+    }
+
+    /**
+     * Obtiene el núcleo de una métrica; {@link DistanceMetric#MINKOWSKI} usa
+     * {@link DistanceMetric#DEFAULT_MINKOWSKI_P}.
+     * @param metric Métrica de distancia.
+     * @return El núcleo de la métrica.
+     */
+    public static DistanceKernel of(DistanceMetric metric) {
+        return of(metric, DistanceMetric.DEFAULT_MINKOWSKI_P);
+    }
+
+    /**
+     * Obtiene el núcleo de una métrica con el exponente de Minkowski dado, que las demás métricas
+     * ignoran. No crea objetos, así que puede llamarse por cada distancia.
+     * @param metric Métrica de distancia.
+     * @param minkowskiP Exponente de Minkowski, al menos 1.
+     * @return El núcleo de la métrica.
+     */
+    public static DistanceKernel of(DistanceMetric metric, double minkowskiP) {
+        if (metric == DistanceMetric.EUCLIDEAN) return EUCLIDEAN;
+        if (metric == DistanceMetric.MANHATTAN) return MANHATTAN;
+        if (metric == DistanceMetric.CHEBYSHEV) return CHEBYSHEV;
+        if (metric == DistanceMetric.COSINE) return COSINE;
+        if (metric == DistanceMetric.MINKOWSKI) return minkowski(minkowskiP);
+        throw new IllegalArgumentException("Métrica no soportada: " + metric);
+    }
+
+    /**
+     * Obtiene el núcleo de Minkowski con un exponente. Con p = 1, 2 o infinito devuelve el núcleo
+     * de Manhattan, euclidiano o de Chebyshev, que son más rápidos.
+     * @param p Exponente, al menos 1 para que sea una métrica.
+     * @return El núcleo.
+     */
+    public static DistanceKernel minkowski(double p) {
+        if (p == 1.0) return MANHATTAN;
+        if (p == 2.0) return EUCLIDEAN;
+        if (p == Double.POSITIVE_INFINITY) return CHEBYSHEV;
+        Minkowski last = lastMinkowski;
+        if (last != null && last.p == p) {
+            return last;
+        }
+        last = MINKOWSKI_KERNELS.computeIfAbsent(DistanceMetric.checkMinkowskiP(p), Minkowski::new);
+        lastMinkowski = last;
+        return last;
+    }
+
+    /**
+     * Obtiene la métrica que implementa este núcleo.
+     * @return La métrica.
+     */
+    public abstract DistanceMetric metric();
+
+    /**
+     * Calcula la distancia entre dos vectores almacenados dentro de arrays más grandes.
+     * @param a Array que contiene el primer vector.
+     * @param aOffset Posición inicial del primer vector.
+     * @param b Array que contiene el segundo vector.
+     * @param bOffset Posición inicial del segundo vector.
+     * @param length Número de características de cada vector.
+     * @return La distancia.
+     */
+    public abstract double distance(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /**
+     * Calcula un valor que ordena los pares igual que la distancia, sin los pasos finales que no
+     * cambian el orden.
+     * @param a Array que contiene el primer vector.
+     * @param aOffset Posición inicial del primer vector.
+     * @param b Array que contiene el segundo vector.
+     * @param bOffset Posición inicial del segundo vector.
+     * @param length Número de características de cada vector.
+     * @return El valor comparable.
+     */
+    public abstract double comparable(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /**
+     * Convierte un valor comparable en la distancia correspondiente.
+     * @param comparable Valor calculado con {@link #comparable}.
+     * @return La distancia.
+     */
+    public abstract double toDistance(double comparable);
+
+    /**
+     * Convierte una distancia en el valor comparable correspondiente.
+     * @param distance Distancia.
+     * @return El valor comparable.
+     */
+    public abstract double toComparable(double distance);
+
+    /**
+     * Calcula el cuadrado de la distancia, que usa la siembra de K-Means++.
+     * @param a Array que contiene el primer vector.
+     * @param aOffset Posición inicial del primer vector.
+     * @param b Array que contiene el segundo vector.
+     * @param bOffset Posición inicial del segundo vector.
+     * @param length Número de características de cada vector.
+     * @return La distancia al cuadrado.
+     */
+    public double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double distance = distance(a, aOffset, b, bOffset, length);
+        return distance * distance;
+    }
+
+    /**
+     * Calcula los valores comparables de un vector a cada uno de varios centroides.
+     * @param point Array que contiene el vector.
+     * @param offset Posición inicial del vector.
+     * @param centroids Centroides en orden por filas (count x dimensions).
+     * @param count Número de centroides.
+     * @param dimensions Número de dimensiones.
+     * @param out Array donde se escribe el valor comparable de cada centroide.
+     */
+    public void comparableToAll(double[] point, int offset, double[] centroids, int count, int dimensions, double[] out) {
+        for (int c = 0; c < count; c++) {
+            out[c] = comparable(point, offset, centroids, c * dimensions, dimensions);
+        }
+    }
+
+    /**
+     * Busca el centroide más cercano a un vector; en caso de empate gana el de menor índice.
+     * @param point Array que contiene el vector.
+     * @param offset Posición inicial del vector.
+     * @param centroids Centroides en orden por filas (count x dimensions).
+     * @param count Número de centroides.
+     * @param dimensions Número de dimensiones.
+     * @return Índice del centroide más cercano.
+     */
+    public int nearest(double[] point, int offset, double[] centroids, int count, int dimensions) {
+        // Cada núcleo final sobrescribe este método con el mismo ciclo. Aquí la llamada a comparable
+        // es una sola para todos los núcleos y se vuelve megamórfica en cuanto se usan varias
+        // métricas en la misma JVM, lo que impide insertarla; en la copia de cada clase final se
+        // resuelve sin despacho virtual y el cálculo se inserta en el ciclo.
+        int best = 0;
+        double min = Double.POSITIVE_INFINITY;
+        for (int c = 0; c < count; c++) {
+            double value = comparable(point, offset, centroids, c * dimensions, dimensions);
+            if (value < min) {
+                min = value;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Distancia euclidiana; el valor comparable es la suma de cuadrados.
+     */
+    private static final class Euclidean extends DistanceKernel {
+        @Override
+        public DistanceMetric metric() {
+            return DistanceMetric.EUCLIDEAN;
+        }
+
+        @Override
+        public double distance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            return Math.sqrt(comparable(a, aOffset, b, bOffset, length));
+        }
+
+        @Override
+        public double comparable(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+            int i = 0;
+            for (int end = length - 3; i < end; i += 4) {
+                double d0 = a[aOffset + i] - b[bOffset + i];
+                double d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+                double d2 = a[aOffset + i + 2] - b[bOffset + i + 2];
+                double d3 = a[aOffset + i + 3] - b[bOffset + i + 3];
+                s0 += d0 * d0;
+                s1 += d1 * d1;
+                s2 += d2 * d2;
+                s3 += d3 * d3;
+            }
+            for (; i < length; i++) {
+                double d = a[aOffset + i] - b[bOffset + i];
+                s0 += d * d;
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        @Override
+        public double toDistance(double comparable) {
+            return Math.sqrt(comparable);
+        }
+
+        @Override
+        public double toComparable(double distance) {
+            return distance * distance;
+        }
+
+        @Override
+        public double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            return comparable(a, aOffset, b, bOffset, length);
+        }
+
+        @Override
+        public int nearest(double[] point, int offset, double[] centroids, int count, int dimensions) {
+            // Copia de DistanceKernel#nearest para que comparable se enlace a esta clase
+            int best = 0;
+            double min = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < count; c++) {
+                double value = comparable(point, offset, centroids, c * dimensions, dimensions);
+                if (value < min) {
+                    min = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Distancia Manhattan; ya es barata, así que el valor comparable es la distancia misma.
+     */
+    private static final class Manhattan extends DistanceKernel {
+        @Override
+        public DistanceMetric metric() {
+            return DistanceMetric.MANHATTAN;
+        }
+
+        @Override
+        public double distance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+            int i = 0;
+            for (int end = length - 3; i < end; i += 4) {
+                s0 += Math.abs(a[aOffset + i] - b[bOffset + i]);
+                s1 += Math.abs(a[aOffset + i + 1] - b[bOffset + i + 1]);
+                s2 += Math.abs(a[aOffset + i + 2] - b[bOffset + i + 2]);
+                s3 += Math.abs(a[aOffset + i + 3] - b[bOffset + i + 3]);
+            }
+            for (; i < length; i++) {
+                s0 += Math.abs(a[aOffset + i] - b[bOffset + i]);
+            }
+            return (s0 + s1) + (s2 + s3);
+        }
+
+        @Override
+        public double comparable(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            return distance(a, aOffset, b, bOffset, length);
+        }
+
+        @Override
+        public double toDistance(double comparable) {
+            return comparable;
+        }
+
+        @Override
+        public double toComparable(double distance) {
+            return distance;
+        }
+
+        @Override
+        public int nearest(double[] point, int offset, double[] centroids, int count, int dimensions) {
+            // Copia de DistanceKernel#nearest para que comparable se enlace a esta clase
+            int best = 0;
+            double min = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < count; c++) {
+                double value = comparable(point, offset, centroids, c * dimensions, dimensions);
+                if (value < min) {
+                    min = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Distancia de Chebyshev; el valor comparable es la distancia misma.
+     */
+    private static final class Chebyshev extends DistanceKernel {
+        @Override
+        public DistanceMetric metric() {
+            return DistanceMetric.CHEBYSHEV;
+        }
+
+        @Override
+        public double distance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            double m0 = 0.0, m1 = 0.0, m2 = 0.0, m3 = 0.0;
+            int i = 0;
+            for (int end = length - 3; i < end; i += 4) {
+                m0 = Math.max(m0, Math.abs(a[aOffset + i] - b[bOffset + i]));
+                m1 = Math.max(m1, Math.abs(a[aOffset + i + 1] - b[bOffset + i + 1]));
+                m2 = Math.max(m2, Math.abs(a[aOffset + i + 2] - b[bOffset + i + 2]));
+                m3 = Math.max(m3, Math.abs(a[aOffset + i + 3] - b[bOffset + i + 3]));
+            }
+            for (; i < length; i++) {
+                m0 = Math.max(m0, Math.abs(a[aOffset + i] - b[bOffset + i]));
+            }
+            return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+        }
+
+        @Override
+        public double comparable(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            return distance(a, aOffset, b, bOffset, length);
+        }
+
+        @Override
+        public double toDistance(double comparable) {
+            return comparable;
+        }
+
+        @Override
+        public double toComparable(double distance) {
+            return distance;
+        }
+
+        @Override
+        public int nearest(double[] point, int offset, double[] centroids, int count, int dimensions) {
+            // Copia de DistanceKernel#nearest para que comparable se enlace a esta clase
+            int best = 0;
+            double min = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < count; c++) {
+                double value = comparable(point, offset, centroids, c * dimensions, dimensions);
+                if (value < min) {
+                    min = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Distancia coseno sobre vectores de norma 1: solo calcula el producto punto, sin normas ni
+     * raíces. El valor comparable es la distancia misma.
+     */
+    private static final class Cosine extends DistanceKernel {
+        @Override
+        public DistanceMetric metric() {
+            return DistanceMetric.COSINE;
+        }
+
+        @Override
+        public double distance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+            int i = 0;
+            for (int end = length - 3; i < end; i += 4) {
+                s0 += a[aOffset + i] * b[bOffset + i];
+                s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+                s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+                s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+            }
+            for (; i < length; i++) {
+                s0 += a[aOffset + i] * b[bOffset + i];
+            }
+            return 1.0 - ((s0 + s1) + (s2 + s3));
+        }
+
+        @Override
+        public double comparable(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            return distance(a, aOffset, b, bOffset, length);
+        }
+
+        @Override
+        public double toDistance(double comparable) {
+            return comparable;
+        }
+
+        @Override
+        public double toComparable(double distance) {
+            return distance;
+        }
+
+        @Override
+        public int nearest(double[] point, int offset, double[] centroids, int count, int dimensions) {
+            // Copia de DistanceKernel#nearest para que comparable se enlace a esta clase
+            int best = 0;
+            double min = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < count; c++) {
+                double value = comparable(point, offset, centroids, c * dimensions, dimensions);
+                if (value < min) {
+                    min = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Distancia de Minkowski con un exponente arbitrario; el valor comparable es la suma de las
+     * diferencias elevadas al exponente, sin la raíz.
+     */
+    private static final class Minkowski extends DistanceKernel {
+        private final double p;
+
+        Minkowski(double p) {
+            this.p = p;
+        }
+
+        @Override
+        public DistanceMetric metric() {
+            return DistanceMetric.MINKOWSKI;
+        }
+
+        @Override
+        public double distance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            return Math.pow(comparable(a, aOffset, b, bOffset, length), 1.0 / p);
+        }
+
+        @Override
+        public double comparable(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            double s0 = 0.0, s1 = 0.0;
+            int i = 0;
+            for (int end = length - 1; i < end; i += 2) {
+                s0 += Math.pow(Math.abs(a[aOffset + i] - b[bOffset + i]), p);
+                s1 += Math.pow(Math.abs(a[aOffset + i + 1] - b[bOffset + i + 1]), p);
+            }
+            for (; i < length; i++) {
+                s0 += Math.pow(Math.abs(a[aOffset + i] - b[bOffset + i]), p);
+            }
+            return s0 + s1;
+        }
+
+        @Override
+        public double toDistance(double comparable) {
+            return Math.pow(comparable, 1.0 / p);
+        }
+
+        @Override
+        public double toComparable(double distance) {
+            return Math.pow(distance, p);
+        }
+
+        @Override
+        public int nearest(double[] point, int offset, double[] centroids, int count, int dimensions) {
+            // Copia de DistanceKernel#nearest para que comparable se enlace a esta clase
+            int best = 0;
+            double min = Double.POSITIVE_INFINITY;
+            for (int c = 0; c < count; c++) {
+                double value = comparable(point, offset, centroids, c * dimensions, dimensions);
+                if (value < min) {
+                    min = value;
+                    best = c;
+                }
+            }
+            return best;
+        }
+    }
+}
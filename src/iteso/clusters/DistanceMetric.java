@@ -1,7 +1,12 @@
 package iteso.clusters;
 
 /**
- * Enumeración de las métricas de distancia disponibles.
+ * Enumeración de las métricas de distancia disponibles, con las propiedades que los algoritmos
+ * consultan para elegir su estrategia más rápida que siga siendo válida.
+ * <p>
+ * El exponente de {@link #MINKOWSKI} no forma parte de la métrica: se configura en cada algoritmo
+ * con {@code setMinkowskiP} o se pasa a {@link DistanceKernel#of(DistanceMetric, double)}, y vale
+ * {@link #DEFAULT_MINKOWSKI_P} si no se indica.
  */
 public enum DistanceMetric {
     /**
@@ -11,5 +16,75 @@ public enum DistanceMetric {
     /**
      * Distancia Manhattan.
      */
-    MANHATTAN
-}
\ No newline at end of file
+    MANHATTAN,
+    /**
+     * Distancia de Chebyshev: la mayor diferencia en una sola característica.
+     */
+    CHEBYSHEV,
+    /**
+     * Distancia coseno, 1 menos el producto punto. Supone vectores ya normalizados a norma 1
+     * (ver {@link Dataset#normalizeRows()}), con lo que el coseno se reduce al producto punto. No
+     * cumple la desigualdad triangular, así que los algoritmos no podan con ella.
+     */
+    COSINE,
+    /**
+     * Distancia de Minkowski: la raíz p de la suma de las diferencias elevadas a p, con p al
+     * menos 1. Con p = 1, 2 o infinito equivale a {@link #MANHATTAN}, {@link #EUCLIDEAN} o
+     * {@link #CHEBYSHEV} y usa sus núcleos.
+     */
+    MINKOWSKI;
+
+    /**
+     * Exponente de {@link #MINKOWSKI} cuando no se indica otro.
+     */
+    public static final double DEFAULT_MINKOWSKI_P = 2.0;
+
+    /**
+     * Indica si es una métrica en sentido estricto: simétrica, cero solo entre vectores iguales y
+     * con desigualdad triangular.
+     * @return true para la familia de Minkowski, false para la distancia coseno.
+     */
+    public boolean isTrueMetric() {
+        return this != COSINE;
+    }
+
+    /**
+     * Indica si la desigualdad triangular permite descartar candidatos sin calcular su distancia,
+     * como hacen las cotas de {@link HamerlyKMeans}, el índice de {@link IndexedKMeans} y el
+     * {@link BallTree}. Sin ella esos algoritmos recurren a comparar contra todos.
+     * @return true si puede podarse con la desigualdad triangular.
+     */
+    public boolean supportsTrianglePruning() {
+        return isTrueMetric();
+    }
+
+    /**
+     * Indica si la distancia a una caja alineada con los ejes se acota con el punto de la caja más
+     * cercano en cada característica por separado, lo que requiere el {@link KdTree}.
+     * @return true para la familia de Minkowski.
+     */
+    public boolean supportsBoxBounds() {
+        return isTrueMetric();
+    }
+
+    /**
+     * Indica si la métrica supone vectores de norma 1; K-Means normaliza entonces sus centroides
+     * (K-Means esférico).
+     * @return true para la distancia coseno.
+     */
+    public boolean requiresNormalizedVectors() {
+        return this == COSINE;
+    }
+
+    /**
+     * Valida un exponente de Minkowski.
+     * @param p Exponente.
+     * @return El mismo exponente.
+     */
+    static double checkMinkowskiP(double p) {
+        if (!(p >= 1)) {
+            throw new IllegalArgumentException("El exponente de Minkowski debe ser al menos 1, se recibió " + p);
+        }
+        return p;
+    }
+}
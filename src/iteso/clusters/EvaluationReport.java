@@ -0,0 +1,78 @@
+package iteso.clusters;
+
+/**
+ * Resultado de evaluar un clustering con todas las métricas de {@link ClusterEvaluator}.
+ */
+public class EvaluationReport {
+    private final QualityScore inertia;
+    private final QualityScore daviesBouldin;
+    private final QualityScore calinskiHarabasz;
+    private final QualityScore silhouette;
+
+    /**
+     * Tiempo total de la evaluación en nanosegundos, incluida la preparación de los datos.
+     */
+    private final long totalTime;
+
+    /**
+     * Constructor del reporte.
+     * @param inertia Inercia.
+     * @param daviesBouldin Índice de Davies-Bouldin.
+     * @param calinskiHarabasz Índice de Calinski-Harabasz.
+     * @param silhouette Coeficiente de silueta, exacto o estimado.
+     * @param totalTime Tiempo total en nanosegundos.
+     */
+    public EvaluationReport(QualityScore inertia, QualityScore daviesBouldin, QualityScore calinskiHarabasz,
+                            QualityScore silhouette, long totalTime) {
+        this.inertia = inertia;
+        this.daviesBouldin = daviesBouldin;
+        this.calinskiHarabasz = calinskiHarabasz;
+        this.silhouette = silhouette;
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * Obtiene la inercia: suma de distancias euclidianas al cuadrado de cada punto a la media de su cluster.
+     * @return La inercia; menor es mejor.
+     */
+    public QualityScore getInertia() {
+        return inertia;
+    }
+
+    /**
+     * Obtiene el índice de Davies-Bouldin.
+     * @return El índice; menor es mejor.
+     */
+    public QualityScore getDaviesBouldin() {
+        return daviesBouldin;
+    }
+
+    /**
+     * Obtiene el índice de Calinski-Harabasz.
+     * @return El índice; mayor es mejor.
+     */
+    public QualityScore getCalinskiHarabasz() {
+        return calinskiHarabasz;
+    }
+
+    /**
+     * Obtiene el coeficiente de silueta.
+     * @return El coeficiente, entre -1 y 1; mayor es mejor.
+     */
+    public QualityScore getSilhouette() {
+        return silhouette;
+    }
+
+    /**
+     * Obtiene el tiempo total de la evaluación.
+     * @return Tiempo en nanosegundos.
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    @Override
+    public String toString() {
+        return inertia + "\n" + daviesBouldin + "\n" + calinskiHarabasz + "\n" + silhouette;
+    }
+}
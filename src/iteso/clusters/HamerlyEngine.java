@@ -0,0 +1,184 @@
+package iteso.clusters;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Motor de K-Means acelerado con el algoritmo de Hamerly.
+ * <p>
+ * Cada punto guarda una cota superior de la distancia a su centroide y una cota inferior de la
+ * distancia al segundo centroide más cercano. Tras mover los centroides, las cotas se ajustan con
+ * la desigualdad triangular usando cuánto se movió cada centroide, y junto con la mitad de la
+ * distancia de cada centroide a su vecino más cercano permiten descartar la mayoría de las
+ * evaluaciones de distancia. Cuando una cota no basta se vuelve a la búsqueda completa, que usa
+ * exactamente la misma función y regla de desempate que {@link KMeansEngine}, y la actualización
+ * de centroides es la misma; por eso el resultado es idéntico al de Lloyd.
+ */
+class HamerlyEngine extends KMeansEngine {
+    /**
+     * Margen relativo con el que se relajan las cotas para absorber errores de redondeo.
+     */
+    private static final double MARGIN = 1e-10;
+
+    /**
+     * Cota superior de la distancia de cada punto a su centroide.
+     */
+    private final double[] upper;
+
+    /**
+     * Cota inferior de la distancia de cada punto al segundo centroide más cercano.
+     */
+    private final double[] lower;
+
+    /**
+     * Desplazamiento de cada centroide en la última actualización.
+     */
+    private final double[] shifts;
+
+    /**
+     * Mitad de la distancia de cada centroide a su centroide más cercano.
+     */
+    private final double[] halfNearest;
+
+    /**
+     * Mayor y segundo mayor desplazamiento, y el centroide con el mayor.
+     */
+    private double largestShift, secondShift;
+    private int largestShiftIndex = -1;
+
+    /**
+     * Distancias evaluadas fuera de los bloques (entre centroides y desplazamientos).
+     */
+    private long centroidDistances;
+
+    /**
+     * Constructor del motor.
+     * @param data Conjunto de datos.
+     * @param initialCentroids Centroides iniciales (k x dimensiones), que se copian.
+     * @param kernel Núcleo de distancias; su métrica debe cumplir la desigualdad triangular.
+     * @param pool Pool de hilos, o null para ejecución secuencial.
+     */
+    HamerlyEngine(Dataset data, double[] initialCentroids, DistanceKernel kernel, ForkJoinPool pool) {
+        super(data, initialCentroids, kernel, pool);
+        this.upper = new double[size];
+        this.lower = new double[size];
+        this.shifts = new double[k];
+        this.halfNearest = new double[k];
+    }
+
+    @Override
+    int iterate() {
+        // Distancia de cada centroide a su vecino más cercano
+        for (int j = 0; j < k; j++) {
+            halfNearest[j] = Double.MAX_VALUE;
+        }
+        for (int a = 0; a < k; a++) {
+            for (int b = a + 1; b < k; b++) {
+                double distance = 0.5 * distance(centroids, a * dimensions, centroids, b * dimensions);
+                halfNearest[a] = Math.min(halfNearest[a], distance);
+                halfNearest[b] = Math.min(halfNearest[b], distance);
+            }
+        }
+        centroidDistances += (long) k * (k - 1) / 2;
+
+        int changes = super.iterate();
+
+        // Cuánto se movió cada centroide, para ajustar las cotas en la siguiente asignación
+        largestShift = 0.0;
+        secondShift = 0.0;
+        largestShiftIndex = -1;
+        for (int j = 0; j < k; j++) {
+            shifts[j] = distance(previousCentroids, j * dimensions, centroids, j * dimensions);
+            if (shifts[j] > largestShift) {
+                secondShift = largestShift;
+                largestShift = shifts[j];
+                largestShiftIndex = j;
+            } else if (shifts[j] > secondShift) {
+                secondShift = shifts[j];
+            }
+        }
+        centroidDistances += k;
+        return changes;
+    }
+
+    @Override
+    int assignChunk(int chunk, double[] sums, long[] chunkCounts) {
+        int from = chunk * chunkRows;
+        int to = Math.min(size, from + chunkRows);
+        boolean onHeap = data.hasArray();
+        double[] row = rowSource(chunk);
+        int changes = 0;
+        long evaluated = 0;
+        for (int p = from; p < to; p++) {
+            int offset = p * dimensions;
+            if (!onHeap) {
+                data.copyRow(p, row, 0);
+                offset = 0;
+            }
+            int assigned = labels[p];
+            boolean scan = assigned < 0;
+            if (!scan) {
+                // Ajustar las cotas con el movimiento de los centroides
+                double otherShift = assigned == largestShiftIndex ? secondShift : largestShift;
+                double up = (upper[p] + shifts[assigned]) * (1 + MARGIN);
+                double low = (lower[p] - otherShift) * (1 - MARGIN);
+                double bound = Math.max(halfNearest[assigned] * (1 - MARGIN), low);
+                if (!(up < bound)) {
+                    // Ajustar la cota superior con la distancia real y volver a comparar
+                    up = distance(row, offset, centroids, assigned * dimensions);
+                    evaluated++;
+                    scan = !(up < bound);
+                }
+                upper[p] = up;
+                lower[p] = low;
+            }
+            if (scan) {
+                // Búsqueda completa con la misma regla que Lloyd: gana el primer mínimo estricto
+                int best = 0;
+                double minDistance = Double.MAX_VALUE;
+                double second = Double.MAX_VALUE;
+                for (int c = 0; c < k; c++) {
+                    double distance = distance(row, offset, centroids, c * dimensions);
+                    if (distance < minDistance) {
+                        second = minDistance;
+                        minDistance = distance;
+                        best = c;
+                    } else if (distance < second) {
+                        second = distance;
+                    }
+                }
+                evaluated += k;
+                if (best != assigned) {
+                    changes++;
+                }
+                labels[p] = best;
+                upper[p] = minDistance;
+                lower[p] = second;
+            }
+            int label = labels[p];
+            chunkCounts[label]++;
+            int target = label * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                sums[target + i] += row[offset + i];
+            }
+        }
+        chunkDistances[chunk] += evaluated;
+        return changes;
+    }
+
+    @Override
+    long estimatedBytes() {
+        return super.estimatedBytes() + 16L * size + 16L * k;
+    }
+
+    @Override
+    long distanceComputations() {
+        return super.distanceComputations() + centroidDistances;
+    }
+
+    /**
+     * Calcula la distancia con la métrica del motor.
+     */
+    private double distance(double[] a, int aOffset, double[] b, int bOffset) {
+        return kernel.distance(a, aOffset, b, bOffset, dimensions);
+    }
+}
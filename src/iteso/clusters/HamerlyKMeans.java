@@ -0,0 +1,32 @@
+package iteso.clusters;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Variante acelerada de K-Means basada en el algoritmo de Hamerly.
+ * Produce exactamente los mismos clusters que {@link KMeans} con la misma configuración y semilla,
+ * pero usa cotas de distancia por punto y distancias entre centroides para evitar la mayoría de
+ * las evaluaciones de distancia. El número de evaluaciones evitadas se informa en
+ * {@link KMeansResult#getAvoidedDistanceComputations()}.
+ * Guarda dos valores adicionales por punto, por lo que su memoria crece con n y no con n * k.
+ */
+public class HamerlyKMeans extends KMeans {
+    /**
+     * Constructor que inicializa los parámetros del algoritmo.
+     * @param k Número de clusters.
+     * @param maxIterations Número máximo de iteraciones.
+     * @param metric Métrica de distancia.
+     */
+    public HamerlyKMeans(int k, int maxIterations, DistanceMetric metric) {
+        super(k, maxIterations, metric);
+    }
+
+    @Override
+    KMeansEngine createEngine(Dataset data, double[] initialCentroids, DistanceKernel kernel, ForkJoinPool pool) {
+        if (!kernel.metric().supportsTrianglePruning()) {
+            // Las cotas solo son válidas con la desigualdad triangular; sin ella se usa Lloyd
+            return super.createEngine(data, initialCentroids, kernel, pool);
+        }
+        return new HamerlyEngine(data, initialCentroids, kernel, pool);
+    }
+}
@@ -1,19 +1,45 @@
 package iteso.clusters;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
 
 /**
  * Clase que implementa el algoritmo de clustering jerárquico.
+ * Acepta cualquier {@link DistanceMetric} (euclidiana, Manhattan, Chebyshev, coseno o Minkowski
+ * con el exponente de {@link #setMinkowskiP(double)}) y cualquier {@link LinkageType}. Las
+ * fusiones se calculan en tiempo O(n²) con un motor distinto según el enlace:
+ * <ul>
+ *     <li>simple: SLINK, sin guardar la matriz de distancias;</li>
+ *     <li>completo y promedio: la cadena de vecinos más cercanos sobre una matriz de distancias
+ *     condensada que se actualiza con la fórmula de Lance-Williams;</li>
+ *     <li>Ward: la cadena de vecinos más cercanos sobre los centroides y tamaños de los clusters,
+ *     sin matriz; solo admite la distancia euclidiana.</li>
+ * </ul>
+ * <p>
+ * Con {@link #setKeepDendrogram(boolean)} cada ejecución conserva el árbol completo de fusiones,
+ * que después puede cortarse en cualquier número de clusters sin repetir el cálculo.
+ * <p>
+ * La matriz de distancias se calcula en paralelo con {@link #setParallelism(int)} y puede guardarse
+ * en precisión simple o en un archivo mapeado con {@link #setMatrixStorage(MatrixStorage)}; también
+ * puede recibirse ya calculada con {@link #buildDendrogram(CondensedDistanceMatrix)}.
  */
 public class HierarchicalClustering implements ClusteringAlgorithm{
     /**
-     * Métrica de distancia a utilizar (Euclidiana o Manhattan).
+     * Métrica de distancia a utilizar; el enlace de Ward solo admite la euclidiana.
      */
     private DistanceMetric metric;
 
     /**
-     * Tipo de enlace (simple o completo).
+     * Exponente de la distancia de Minkowski; solo se usa con {@link DistanceMetric#MINKOWSKI}.
+     */
+    private double minkowskiP = DistanceMetric.DEFAULT_MINKOWSKI_P;
+
+    /**
+     * Tipo de enlace (simple, completo, promedio o Ward), que determina el motor de las fusiones.
      */
     private LinkageType linkageType;
 
@@ -22,6 +48,41 @@ public class HierarchicalClustering implements ClusteringAlgorithm{
      */
     private int desiredClusterCount;
 
+    /**
+     * Indica si debe conservarse el dendrograma de la última ejecución.
+     */
+    private boolean keepDendrogram;
+
+    /**
+     * Dendrograma de la última ejecución, si se pidió conservarlo.
+     */
+    private Dendrogram dendrogram;
+
+    /**
+     * Forma de almacenar la matriz de distancias de los enlaces que la necesitan.
+     */
+    private MatrixStorage matrixStorage = MatrixStorage.DOUBLE;
+
+    /**
+     * Número de hilos con los que se calcula la matriz de distancias.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Pool de hilos compartido, o null para crear uno por ejecución según el paralelismo.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Receptor de las mediciones de cada ejecución, o null para no medir.
+     */
+    private ClusteringListener listener;
+
+    /**
+     * Condición con la que se detienen la matriz y las fusiones, o null para no revisarla.
+     */
+    private BooleanSupplier stopCheck;
+
     /**
      * Constructor que inicializa los parámetros del algoritmo.
      * @param metric Métrica de distancia.
@@ -34,6 +95,106 @@ public class HierarchicalClustering implements ClusteringAlgorithm{
         this.desiredClusterCount = desiredClusterCount;
     }
 
+    /**
+     * Establece el exponente de la distancia de Minkowski, que solo se usa con
+     * {@link DistanceMetric#MINKOWSKI}.
+     * @param minkowskiP Exponente, al menos 1; por defecto {@link DistanceMetric#DEFAULT_MINKOWSKI_P}.
+     */
+    public void setMinkowskiP(double minkowskiP) {
+        this.minkowskiP = DistanceMetric.checkMinkowskiP(minkowskiP);
+    }
+
+    /**
+     * Indica si cada ejecución de {@code fit} debe conservar el dendrograma completo.
+     * @param keepDendrogram true para conservarlo y consultarlo con {@link #getDendrogram()}.
+     */
+    public void setKeepDendrogram(boolean keepDendrogram) {
+        this.keepDendrogram = keepDendrogram;
+    }
+
+    /**
+     * Establece cómo se guarda la matriz de distancias. Con 100 mil puntos solo cabe mapeada en disco.
+     * @param matrixStorage Forma de almacenamiento; por defecto doubles en el heap.
+     */
+    public void setMatrixStorage(MatrixStorage matrixStorage) {
+        this.matrixStorage = matrixStorage;
+    }
+
+    /**
+     * Establece el número de hilos con los que se calcula la matriz de distancias.
+     * @param parallelism Número de hilos; 1 calcula en el hilo actual.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser al menos 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Establece un pool de hilos compartido para la matriz de distancias; tiene prioridad sobre el paralelismo.
+     * @param pool El pool a utilizar, o null para volver a usar el paralelismo configurado.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Establece el receptor de las mediciones de cada ejecución: fases de matriz de distancias,
+     * fusiones y construcción de clusters, y las fusiones por segundo.
+     * @param listener El receptor, o null para no medir.
+     */
+    public void setListener(ClusteringListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Establece la condición de paro que se revisa en cada bloque de la matriz de distancias y en
+     * cada fila o fusión; al cumplirse el cálculo lanza una
+     * {@link java.util.concurrent.CancellationException}. La usa {@link ClusteringService} para los
+     * trabajos cancelados o vencidos.
+     * @param stopCheck La condición, o null para no revisarla.
+     */
+    void setStopCheck(BooleanSupplier stopCheck) {
+        this.stopCheck = stopCheck;
+    }
+
+    /**
+     * Obtiene el dendrograma de la última ejecución de {@code fit}.
+     * @return El dendrograma, o null si no se pidió conservarlo.
+     */
+    public Dendrogram getDendrogram() {
+        return dendrogram;
+    }
+
+    /**
+     * Construye el dendrograma completo de un conjunto de datos, sin cortarlo.
+     * @param data Conjunto de datos.
+     * @return El árbol completo de fusiones.
+     */
+    public Dendrogram buildDendrogram(Dataset data) {
+        return Dendrogram.fromMerges(computeMerges(data), data.size());
+    }
+
+    /**
+     * Construye el dendrograma completo a partir de una matriz de distancias ya calculada, que
+     * puede compartirse con otros cálculos porque no se modifica. El enlace de Ward se calcula
+     * aquí con Lance-Williams sobre la matriz, suponiendo que contiene distancias euclidianas.
+     * @param matrix Matriz de distancias condensada.
+     * @return El árbol completo de fusiones.
+     * @throws IOException Si no puede crearse la copia de trabajo de una matriz mapeada.
+     */
+    public Dendrogram buildDendrogram(CondensedDistanceMatrix matrix) throws IOException {
+        checkLinkage();
+        if (linkageType == LinkageType.SINGLE) {
+            return Dendrogram.fromMerges(AgglomerativeEngine.singleLinkage(matrix, stopCheck), matrix.size());
+        }
+        try (CondensedDistanceMatrix working = matrix.copy()) {
+            return Dendrogram.fromMerges(AgglomerativeEngine.nearestNeighborChain(working, linkageType, null, stopCheck),
+                    matrix.size());
+        }
+    }
+
     /**
      * Ejecuta el algoritmo de clustering jerárquico sobre los datos proporcionados.
      * @param data Lista de puntos de datos a clusterizar.
@@ -41,114 +202,167 @@ public class HierarchicalClustering implements ClusteringAlgorithm{
      */
     @Override
     public List<Cluster> fit(List<DataPoint> data) {
-        // Inicializar cada punto como su propio cluster
-        List<Cluster> clusters = initializeClusters(data);
-
-        // Fusionar clusters hasta llegar al número deseado
-        while (clusters.size() > desiredClusterCount) {
-            mergeClosestClusters(clusters);
-        }
+        return fit(Dataset.fromDataPoints(data), data);
+    }
 
-        return clusters;
+    /**
+     * Ejecuta el algoritmo de clustering jerárquico sobre un conjunto de datos columnar.
+     * @param data Conjunto de datos a clusterizar.
+     * @return Lista de clusters resultantes, cuyos puntos son vistas sobre el conjunto.
+     */
+    @Override
+    public List<Cluster> fit(Dataset data) {
+        return fit(data, data.toDataPoints());
     }
 
     /**
-     * Crea un cluster para cada punto de datos.
-     * @param data Lista de puntos de datos.
-     * @return Lista inicial de clusters.
+     * Calcula las fusiones y detiene la jerarquía en el número deseado de clusters.
+     * @param data Conjunto de datos con las características.
+     * @param points Puntos correspondientes a cada fila del conjunto.
+     * @return Lista de clusters resultantes, en el orden de su primer punto.
      */
-    private List<Cluster> initializeClusters(List<DataPoint> data) {
-        List<Cluster> clusters = new ArrayList<>();
-        for (DataPoint point : data) {
-            Cluster cluster = new Cluster();
-            cluster.setCentroid(point); // El centroide inicial es el punto mismo
-            cluster.addPoint(point);
-            clusters.add(cluster);
+    private List<Cluster> fit(Dataset data, List<DataPoint> points) {
+        dendrogram = null;
+        if (data.size() == 0) {
+            return new ArrayList<>();
+        }
+        AgglomerativeEngine.Merges merges = computeMerges(data);
+        long start = System.nanoTime();
+        int[] labels;
+        if (keepDendrogram) {
+            dendrogram = Dendrogram.fromMerges(merges, data.size());
+            labels = dendrogram.cutAtK(Math.max(desiredClusterCount, 1));
+        } else {
+            labels = AgglomerativeEngine.cut(merges, data.size(), desiredClusterCount);
+        }
+        List<Cluster> clusters = buildClusters(data, points, labels);
+        if (listener != null) {
+            listener.phaseCompleted("HierarchicalClustering", "clusters", System.nanoTime() - start, 0,
+                    4L * data.size() + 8L * data.size() + 8L * clusters.size() * data.dimensions());
         }
         return clusters;
     }
 
     /**
-     * Fusiona los dos clusters más cercanos según la métrica y el tipo de enlace.
-     * @param clusters Lista actual de clusters.
+     * Calcula la secuencia completa de fusiones con el motor adecuado al tipo de enlace.
+     * @param data Conjunto de datos.
+     * @return Las fusiones ordenadas por altura.
      */
-    private void mergeClosestClusters(List<Cluster> clusters) {
-        double minDistance = Double.MAX_VALUE;
-        Cluster clusterA = null;
-        Cluster clusterB = null;
+    private AgglomerativeEngine.Merges computeMerges(Dataset data) {
+        return computeMerges(data, null);
+    }
 
-        // Buscar los dos clusters más cercanos
-        for (int i = 0; i < clusters.size(); i++) {
-            for (int j = i + 1; j < clusters.size(); j++) {
-                double distance = calculateClusterDistance(clusters.get(i), clusters.get(j));
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    clusterA = clusters.get(i);
-                    clusterB = clusters.get(j);
-                }
+    /**
+     * Calcula la secuencia completa de fusiones entre elementos con peso con la estrategia más
+     * rápida que sea válida para el enlace: SLINK para el enlace simple, la cadena de vecinos sobre
+     * centroides para Ward y la matriz de distancias con Lance-Williams para los demás.
+     * @param data Conjunto de datos.
+     * @param weights Peso de cada fila, o null para peso 1; el enlace simple no lo usa.
+     * @return Las fusiones ordenadas por altura.
+     */
+    AgglomerativeEngine.Merges computeMerges(Dataset data, double[] weights) {
+        checkLinkage();
+        DistanceKernel kernel = DistanceKernel.of(metric, minkowskiP);
+        if (linkageType.requiresEuclidean() && kernel.metric() != DistanceMetric.EUCLIDEAN) {
+            throw new IllegalArgumentException("El enlace " + linkageType + " requiere la distancia euclidiana");
+        }
+        long pairs = (long) data.size() * (data.size() - 1) / 2;
+        if (linkageType == LinkageType.SINGLE) {
+            // El enlace simple solo depende de la distancia mínima, no del tamaño de los clusters
+            long start = System.nanoTime();
+            AgglomerativeEngine.Merges merges = AgglomerativeEngine.singleLinkage(data, kernel, stopCheck);
+            reportMerges(data.size(), System.nanoTime() - start, pairs, 20L * data.size());
+            return merges;
+        }
+        if (linkageType == LinkageType.WARD) {
+            long start = System.nanoTime();
+            AgglomerativeEngine.Merges merges = AgglomerativeEngine.wardLinkage(data, weights, stopCheck);
+            reportMerges(data.size(), System.nanoTime() - start, 0,
+                    8L * data.size() * (data.dimensions() + 1) + 12L * data.size());
+            return merges;
+        }
+        ForkJoinPool executor = pool != null ? pool : parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        long matrixStart = System.nanoTime();
+        try (CondensedDistanceMatrix matrix = CondensedDistanceMatrix.compute(data, kernel, matrixStorage, executor, stopCheck)) {
+            if (listener != null) {
+                listener.phaseCompleted("HierarchicalClustering", "matriz", System.nanoTime() - matrixStart, pairs,
+                        pairs * (matrixStorage.isSinglePrecision() ? 4 : 8));
+            }
+            long start = System.nanoTime();
+            AgglomerativeEngine.Merges merges = AgglomerativeEngine.nearestNeighborChain(matrix, linkageType, weights, stopCheck);
+            reportMerges(data.size(), System.nanoTime() - start, 0, 20L * data.size());
+            return merges;
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo crear la matriz de distancias", e);
+        } finally {
+            if (executor != null && executor != pool) {
+                executor.shutdown();
             }
         }
+    }
 
-        // Fusionar los clusters encontrados
-        if (clusterA != null && clusterB != null) {
-            // Combinar los puntos de ambos clusters
-            clusterA.getPoints().addAll(clusterB.getPoints());
-            // Recalcular el centroide del cluster fusionado
-            clusterA.setCentroid(recomputeCentroid(clusterA));
-            // Remover el cluster que ha sido fusionado
-            clusters.remove(clusterB);
+    /**
+     * Informa al receptor, si hay uno, del cálculo de las fusiones.
+     * @param size Número de puntos.
+     * @param nanos Duración del cálculo.
+     * @param distanceComputations Distancias evaluadas durante el cálculo.
+     * @param allocatedBytes Estimación de la memoria reservada.
+     */
+    private void reportMerges(int size, long nanos, long distanceComputations, long allocatedBytes) {
+        if (listener != null) {
+            int merges = Math.max(size - 1, 0);
+            listener.phaseCompleted("HierarchicalClustering", "fusiones", nanos, distanceComputations,
+                    allocatedBytes + 16L * merges);
+            listener.mergesCompleted("HierarchicalClustering", merges, nanos);
         }
     }
 
     /**
-     * Calcula la distancia entre dos clusters basándose en el tipo de enlace.
-     * @param cluster1 El primer cluster.
-     * @param cluster2 El segundo cluster.
-     * @return La distancia calculada entre los clusters.
+     * Verifica que se haya indicado un tipo de enlace.
      */
-    private double calculateClusterDistance(Cluster cluster1, Cluster cluster2) {
-        double distance = linkageType == LinkageType.SINGLE ? Double.MAX_VALUE : Double.MIN_VALUE;
-
-        for (DataPoint point1 : cluster1.getPoints()) {
-            for (DataPoint point2 : cluster2.getPoints()) {
-                double currentDistance = point1.distanceTo(point2, metric);
-
-                if (linkageType == LinkageType.SINGLE) {
-                    // Enlace simple: buscar la distancia mínima
-                    distance = Math.min(distance, currentDistance);
-                } else if (linkageType == LinkageType.COMPLETE) {
-                    // Enlace completo: buscar la distancia máxima
-                    distance = Math.max(distance, currentDistance);
-                }
-            }
+    private void checkLinkage() {
+        if (linkageType == null) {
+            throw new IllegalArgumentException("El clustering jerárquico requiere un tipo de enlace");
         }
-
-        return distance;
     }
 
     /**
-     * Recalcula el centroide de un cluster.
-     * @param cluster El cluster para el cual se recalculará el centroide.
-     * @return Un nuevo DataPoint que representa el centroide.
+     * Construye los clusters a partir de la etiqueta de cada punto y calcula sus centroides.
+     * @param data Conjunto de datos.
+     * @param points Puntos correspondientes a cada fila del conjunto.
+     * @param labels Cluster de cada punto, numerados desde 0; los puntos con etiqueta negativa se omiten.
+     * @return Lista de clusters.
      */
-    private DataPoint recomputeCentroid(Cluster cluster) {
-        int numFeatures = cluster.getPoints().get(0).getFeatures().length;
-        double[] newCentroid = new double[numFeatures];
-
-        // Sumar todas las características de los puntos en el cluster
-        for (DataPoint point : cluster.getPoints()) {
-            double[] features = point.getFeatures();
-            for (int i = 0; i < numFeatures; i++) {
-                newCentroid[i] += features[i];
+    static List<Cluster> buildClusters(Dataset data, List<DataPoint> points, int[] labels) {
+        int clusterCount = 0;
+        for (int label : labels) {
+            clusterCount = Math.max(clusterCount, label + 1);
+        }
+        int dimensions = data.dimensions();
+        double[] sums = new double[clusterCount * dimensions];
+        List<Cluster> clusters = new ArrayList<>(clusterCount);
+        for (int c = 0; c < clusterCount; c++) {
+            clusters.add(new Cluster());
+        }
+        for (int p = 0; p < labels.length; p++) {
+            if (labels[p] < 0) {
+                continue;
+            }
+            clusters.get(labels[p]).addPoint(points.get(p));
+            int offset = labels[p] * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                sums[offset + i] += data.get(p, i);
             }
         }
-
         // Dividir entre el número de puntos para obtener el promedio
-        for (int i = 0; i < newCentroid.length; i++) {
-            newCentroid[i] /= cluster.getPoints().size();
+        for (int c = 0; c < clusterCount; c++) {
+            double[] centroid = new double[dimensions];
+            int size = clusters.get(c).getPoints().size();
+            for (int i = 0; i < dimensions; i++) {
+                centroid[i] = sums[c * dimensions + i] / size;
+            }
+            clusters.get(c).setCentroid(new DataPoint(centroid, null));
         }
-
-        // Crear un nuevo DataPoint sin etiqueta para el centroide
-        return new DataPoint(newCentroid, null);
+        return clusters;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package iteso.clusters;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Motor de K-Means que busca el centroide más cercano de cada punto en un {@link SpatialIndex}
+ * construido sobre los centroides, en lugar de recorrerlos todos.
+ * <p>
+ * El índice se reconstruye en su lugar cada vez que se mueven los centroides, lo que cuesta
+ * O(k log k) y no asigna memoria, y cada bloque usa su propio estado de búsqueda. La búsqueda es
+ * exacta, compara los mismos valores que {@link KMeansEngine} y desempata por el menor índice,
+ * así que el resultado es idéntico al de Lloyd. Conviene con muchos clusters en pocas dimensiones.
+ */
+class IndexedEngine extends KMeansEngine {
+    /**
+     * Número máximo de centroides por hoja del índice.
+     */
+    private static final int LEAF_SIZE = 4;
+
+    /**
+     * Índice sobre los centroides actuales.
+     */
+    private final SpatialIndex index;
+
+    /**
+     * Estado de búsqueda de cada bloque.
+     */
+    private final SpatialIndex.Search[] searches;
+
+    /**
+     * Constructor del motor.
+     * @param data Conjunto de datos.
+     * @param initialCentroids Centroides iniciales (k x dimensiones), que se copian.
+     * @param kernel Núcleo de distancias; su métrica debe cumplir la desigualdad triangular.
+     * @param pool Pool de hilos, o null para ejecución secuencial.
+     */
+    IndexedEngine(Dataset data, double[] initialCentroids, DistanceKernel kernel, ForkJoinPool pool) {
+        super(data, initialCentroids, kernel, pool);
+        this.index = SpatialIndex.create(centroids, k, dimensions, kernel, LEAF_SIZE);
+        index.build(null);
+        this.searches = new SpatialIndex.Search[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            searches[c] = new SpatialIndex.Search();
+            searches[c].scratch(dimensions);
+        }
+    }
+
+    @Override
+    int iterate() {
+        int changes = super.iterate();
+        index.rebuild(centroids);
+        return changes;
+    }
+
+    @Override
+    long estimatedBytes() {
+        return super.estimatedBytes() + index.estimatedBytes();
+    }
+
+    @Override
+    int nearest(int chunk, double[] row, int offset) {
+        SpatialIndex.Search search = searches[chunk];
+        long before = search.evaluations;
+        int best = index.nearest(row, offset, search);
+        chunkDistances[chunk] += search.evaluations - before;
+        return best;
+    }
+}
@@ -0,0 +1,32 @@
+package iteso.clusters;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Variante de K-Means que asigna cada punto buscando su centroide más cercano en un índice
+ * espacial ({@link KdTree} con la métrica euclidiana en pocas dimensiones, {@link BallTree} en
+ * otro caso) en lugar de compararlo con todos los centroides.
+ * Produce exactamente los mismos clusters que {@link KMeans} con la misma configuración y semilla.
+ * Conviene cuando k es grande y hay pocas dimensiones; el número de evaluaciones evitadas, contando
+ * las cotas de los nodos, se informa en {@link KMeansResult#getAvoidedDistanceComputations()}.
+ */
+public class IndexedKMeans extends KMeans {
+    /**
+     * Constructor que inicializa los parámetros del algoritmo.
+     * @param k Número de clusters.
+     * @param maxIterations Número máximo de iteraciones.
+     * @param metric Métrica de distancia.
+     */
+    public IndexedKMeans(int k, int maxIterations, DistanceMetric metric) {
+        super(k, maxIterations, metric);
+    }
+
+    @Override
+    KMeansEngine createEngine(Dataset data, double[] initialCentroids, DistanceKernel kernel, ForkJoinPool pool) {
+        if (!kernel.metric().supportsTrianglePruning()) {
+            // Las cotas solo son válidas con la desigualdad triangular; sin ella se usa Lloyd
+            return super.createEngine(data, initialCentroids, kernel, pool);
+        }
+        return new IndexedEngine(data, initialCentroids, kernel, pool);
+    }
+}
@@ -0,0 +1,43 @@
+package iteso.clusters;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Enumeración de las estrategias de inicialización de centroides disponibles para K-Means.
+ */
+public enum InitializationMethod implements CentroidInitializer {
+    /**
+     * Selecciona k puntos distintos al azar.
+     */
+    RANDOM {
+        @Override
+        public double[] initialize(Dataset data, int k, DistanceKernel kernel, long seed, ForkJoinPool pool) {
+            return CentroidSeeding.random(data, k, seed);
+        }
+    },
+    /**
+     * k-means++: cada nuevo centroide se elige con probabilidad proporcional al cuadrado de su
+     * distancia al centroide más cercano ya elegido. Requiere k pasadas sobre los datos.
+     */
+    KMEANS_PLUS_PLUS {
+        @Override
+        public double[] initialize(Dataset data, int k, DistanceKernel kernel, long seed, ForkJoinPool pool) {
+            return CentroidSeeding.kMeansPlusPlus(data, k, kernel, seed, pool);
+        }
+    },
+    /**
+     * k-means||: en unas pocas rondas paralelas sobremuestrea alrededor de 2k candidatos por ronda
+     * y después reduce los candidatos ponderados a k con k-means++. Pensado para conjuntos grandes.
+     */
+    KMEANS_PARALLEL {
+        @Override
+        public double[] initialize(Dataset data, int k, DistanceKernel kernel, long seed, ForkJoinPool pool) {
+            return CentroidSeeding.kMeansParallel(data, k, kernel, seed, pool);
+        }
+    };
+
+    @Override
+    public double[] initialize(Dataset data, int k, DistanceMetric metric, long seed, ForkJoinPool pool) {
+        return initialize(data, k, DistanceKernel.of(metric), seed, pool);
+    }
+}
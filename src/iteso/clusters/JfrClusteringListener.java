@@ -0,0 +1,123 @@
+package iteso.clusters;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Receptor que publica las mediciones como eventos de Java Flight Recorder, para verlas junto
+ * con los eventos del GC y de los hilos en JDK Mission Control. Si no hay una grabación activa
+ * con estos eventos habilitados, cada evento se descarta sin construirse.
+ */
+public class JfrClusteringListener implements ClusteringListener {
+    @Name("iteso.clusters.Phase")
+    @Label("Fase de clustering")
+    @Category({"Clustering"})
+    static final class PhaseEvent extends Event {
+        @Label("Componente")
+        String source;
+
+        @Label("Fase")
+        String phase;
+
+        @Label("Duración")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+
+        @Label("Distancias evaluadas")
+        long distanceComputations;
+
+        @Label("Memoria estimada")
+        @DataAmount
+        long allocatedBytes;
+    }
+
+    @Name("iteso.clusters.Iteration")
+    @Label("Iteración de K-Means")
+    @Category({"Clustering"})
+    static final class IterationEvent extends Event {
+        @Label("Componente")
+        String source;
+
+        @Label("Iteración")
+        int iteration;
+
+        @Label("Inercia")
+        double inertia;
+
+        @Label("Cambios")
+        int changes;
+
+        @Label("Distancias evaluadas")
+        long distanceComputations;
+
+        @Label("Duración")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    @Name("iteso.clusters.Merges")
+    @Label("Fusiones jerárquicas")
+    @Category({"Clustering"})
+    static final class MergesEvent extends Event {
+        @Label("Componente")
+        String source;
+
+        @Label("Fusiones")
+        int merges;
+
+        @Label("Duración")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+    }
+
+    private final PhaseEvent phaseProbe = new PhaseEvent();
+    private final IterationEvent iterationProbe = new IterationEvent();
+    private final MergesEvent mergesProbe = new MergesEvent();
+
+    @Override
+    public void phaseCompleted(String source, String phase, long nanos, long distanceComputations,
+                               long allocatedBytes) {
+        if (!phaseProbe.isEnabled()) {
+            return;
+        }
+        PhaseEvent event = new PhaseEvent();
+        event.source = source;
+        event.phase = phase;
+        event.nanos = nanos;
+        event.distanceComputations = distanceComputations;
+        event.allocatedBytes = allocatedBytes;
+        event.commit();
+    }
+
+    @Override
+    public void iterationCompleted(String source, int iteration, double inertia, int changes,
+                                   long distanceComputations, long nanos) {
+        if (!iterationProbe.isEnabled()) {
+            return;
+        }
+        IterationEvent event = new IterationEvent();
+        event.source = source;
+        event.iteration = iteration;
+        event.inertia = inertia;
+        event.changes = changes;
+        event.distanceComputations = distanceComputations;
+        event.nanos = nanos;
+        event.commit();
+    }
+
+    @Override
+    public void mergesCompleted(String source, int merges, long nanos) {
+        if (!mergesProbe.isEnabled()) {
+            return;
+        }
+        MergesEvent event = new MergesEvent();
+        event.source = source;
+        event.merges = merges;
+        event.nanos = nanos;
+        event.commit();
+    }
+}
@@ -1,11 +1,20 @@
 package iteso.clusters;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
 
 /**
  * Clase que implementa el algoritmo K-Means para clustering.
+ * Las iteraciones pueden ejecutarse en paralelo con {@link #setParallelism(int)} o
+ * {@link #setPool(ForkJoinPool)}; con la misma semilla ({@link #setSeed(long)}) el resultado es
+ * idéntico sin importar el número de hilos. Los centroides iniciales se eligen con la estrategia
+ * configurada en {@link #setInitializer(CentroidInitializer)}.
+ * <p>
+ * El algoritmo se detiene antes de {@code maxIterations} cuando ningún punto cambia de cluster
+ * o cuando ningún centroide se mueve más que la tolerancia configurada.
  */
 public class KMeans implements ClusteringAlgorithm {
     /**
@@ -19,10 +28,52 @@ public class KMeans implements ClusteringAlgorithm {
     private int maxIterations;
 
     /**
-     * Métrica de distancia a utilizar (Euclidiana o Manhattan).
+     * Métrica de distancia a utilizar. Con {@link DistanceMetric#COSINE} los centroides se
+     * normalizan a norma 1 (K-Means esférico), y con {@link DistanceMetric#MINKOWSKI} se usa el
+     * exponente {@link #minkowskiP}.
      */
     private DistanceMetric metric;
 
+    /**
+     * Exponente de la distancia de Minkowski; solo se usa con {@link DistanceMetric#MINKOWSKI}.
+     */
+    private double minkowskiP = DistanceMetric.DEFAULT_MINKOWSKI_P;
+
+    /**
+     * Desplazamiento máximo de un centroide por debajo del cual se considera que el algoritmo convergió.
+     */
+    private double tolerance = 0.0;
+
+    /**
+     * Estrategia de selección de los centroides iniciales.
+     */
+    private CentroidInitializer initializer = InitializationMethod.KMEANS_PLUS_PLUS;
+
+    /**
+     * Semilla fija para la inicialización, o null para elegir una nueva en cada ejecución.
+     */
+    private Long seed;
+
+    /**
+     * Número de hilos para las iteraciones cuando no se proporciona un pool.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Pool de hilos compartido, o null para crear uno por ejecución según el paralelismo.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Receptor de las mediciones de cada ejecución, o null para no medir.
+     */
+    private ClusteringListener listener;
+
+    /**
+     * Condición con la que se detienen las iteraciones, o null para no revisarla.
+     */
+    private BooleanSupplier stopCheck;
+
     /**
      * Constructor que inicializa los parámetros del algoritmo K-Means.
      * @param k Número de clusters.
@@ -35,89 +86,237 @@ public class KMeans implements ClusteringAlgorithm {
         this.metric = metric;
     }
 
+    /**
+     * Obtiene el número de clusters a formar.
+     * @return Número de clusters.
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Obtiene el número máximo de iteraciones.
+     * @return Número máximo de iteraciones.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    /**
+     * Obtiene la métrica de distancia.
+     * @return La métrica.
+     */
+    public DistanceMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Obtiene el exponente de la distancia de Minkowski.
+     * @return El exponente.
+     */
+    public double getMinkowskiP() {
+        return minkowskiP;
+    }
+
+    /**
+     * Obtiene el núcleo de distancias de la métrica configurada, con su exponente.
+     * @return El núcleo.
+     */
+    DistanceKernel getKernel() {
+        return DistanceKernel.of(metric, minkowskiP);
+    }
+
+    /**
+     * Obtiene la tolerancia de convergencia.
+     * @return Desplazamiento máximo de un centroide con el que se considera que convergió.
+     */
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Obtiene la estrategia de selección de los centroides iniciales.
+     * @return La estrategia.
+     */
+    public CentroidInitializer getInitializer() {
+        return initializer;
+    }
+
+    /**
+     * Establece el exponente de la distancia de Minkowski, que solo se usa con
+     * {@link DistanceMetric#MINKOWSKI}.
+     * @param minkowskiP Exponente, al menos 1; por defecto {@link DistanceMetric#DEFAULT_MINKOWSKI_P}.
+     */
+    public void setMinkowskiP(double minkowskiP) {
+        this.minkowskiP = DistanceMetric.checkMinkowskiP(minkowskiP);
+    }
+
+    /**
+     * Establece la tolerancia de convergencia: si ningún centroide se desplaza (en distancia
+     * euclidiana) más que este valor en una iteración, el algoritmo se detiene.
+     * Con 0 solo se detiene cuando los centroides dejan de moverse por completo.
+     * @param tolerance Desplazamiento máximo permitido.
+     */
+    public void setTolerance(double tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("La tolerancia no puede ser negativa");
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Establece la estrategia de selección de los centroides iniciales.
+     * Por defecto se usa {@link InitializationMethod#KMEANS_PLUS_PLUS}.
+     * @param initializer La estrategia a utilizar.
+     */
+    public void setInitializer(CentroidInitializer initializer) {
+        if (initializer == null) {
+            throw new IllegalArgumentException("La estrategia de inicialización no puede ser null");
+        }
+        this.initializer = initializer;
+    }
+
+    /**
+     * Fija la semilla de la inicialización para que las ejecuciones sean reproducibles.
+     * Sin semilla se elige una nueva en cada ejecución, que se informa en {@link KMeansResult#getSeed()}.
+     * @param seed La semilla a utilizar.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Establece el número de hilos usados en cada iteración. Con 1 todo se ejecuta en el hilo actual.
+     * @param parallelism Número de hilos.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser al menos 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Establece un pool de hilos compartido para las iteraciones; tiene prioridad sobre el paralelismo.
+     * @param pool El pool a utilizar, o null para volver a usar el paralelismo configurado.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Establece el receptor de las mediciones de cada ejecución: fases de inicialización,
+     * iteraciones y construcción de clusters, y la inercia de cada iteración.
+     * @param listener El receptor, o null para no medir.
+     */
+    public void setListener(ClusteringListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Establece la condición de paro que se revisa tras la inicialización y tras cada iteración;
+     * al cumplirse la ejecución lanza una {@link java.util.concurrent.CancellationException}. A
+     * diferencia de un receptor, no obliga a calcular la inercia de cada iteración. La usa
+     * {@link ClusteringService} para los trabajos cancelados o vencidos.
+     * @param stopCheck La condición, o null para no revisarla.
+     */
+    void setStopCheck(BooleanSupplier stopCheck) {
+        this.stopCheck = stopCheck;
+    }
+
     /**
      * Ejecuta el algoritmo K-Means sobre los datos proporcionados.
      * @param data Lista de puntos de datos a clusterizar.
-     * @return Lista de clusters resultantes.
+     * @return Clusters resultantes junto con las estadísticas de la ejecución.
      */
     @Override
-    public List<Cluster> fit(List<DataPoint> data) {
-        // Inicializar clusters con centroides aleatorios
-        List<Cluster> clusters = initializeClusters(data);
-        for (int i = 0; i < maxIterations; i++) {
-            // Asignar puntos a los clusters más cercanos
-            assignPointsToClusters(data, clusters);
-            // Recalcular los centroides de los clusters
-            recomputeCentroids(clusters);
-        }
-        return clusters;
+    public KMeansResult fit(List<DataPoint> data) {
+        return fit(Dataset.fromDataPoints(data), data);
     }
 
     /**
-     * Inicializa los clusters seleccionando centroides aleatorios.
-     * @param data Lista de puntos de datos.
-     * @return Lista inicial de clusters.
+     * Ejecuta el algoritmo K-Means recorriendo directamente la matriz contigua del conjunto.
+     * @param data Conjunto de datos a clusterizar.
+     * @return Clusters resultantes, cuyos puntos son vistas sobre el conjunto, junto con las
+     * estadísticas de la ejecución.
      */
-    private List<Cluster> initializeClusters(List<DataPoint> data) {
-        List<Cluster> clusters = new ArrayList<>();
-        Random random = new Random();
-        for (int i = 0; i < k; i++) {
-            Cluster cluster = new Cluster();
-            // Seleccionar un punto aleatorio como centroide inicial
-            cluster.setCentroid(data.get(random.nextInt(data.size())));
-            clusters.add(cluster);
-        }
-        return clusters;
+    @Override
+    public KMeansResult fit(Dataset data) {
+        return fit(data, data.toDataPoints());
     }
 
     /**
-     * Asigna cada punto de datos al cluster con el centroide más cercano.
-     * @param data Lista de puntos de datos.
-     * @param clusters Lista de clusters.
+     * Ejecuta el algoritmo sobre la matriz del conjunto, usando los puntos dados como
+     * miembros de los clusters resultantes.
+     * @param data Conjunto de datos con las características.
+     * @param points Puntos correspondientes a cada fila del conjunto.
+     * @return Clusters resultantes junto con las estadísticas de la ejecución.
      */
-    private void assignPointsToClusters(List<DataPoint> data, List<Cluster> clusters) {
-        // Limpiar los puntos de cada cluster
-        for (Cluster cluster : clusters) {
-            cluster.clearPoints();
+    private KMeansResult fit(Dataset data, List<DataPoint> points) {
+        ForkJoinPool executor = pool;
+        if (executor == null && parallelism > 1) {
+            executor = new ForkJoinPool(parallelism);
         }
-        // Asignar cada punto al cluster más cercano
-        for (DataPoint point : data) {
-            Cluster bestCluster = null;
-            double minDistance = Double.MAX_VALUE;
-            for (Cluster cluster : clusters) {
-                double distance = point.distanceTo(cluster.getCentroid(), metric);
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    bestCluster = cluster;
+        try {
+            DistanceKernel kernel = getKernel();
+            // Seleccionar los centroides iniciales; su costo se mide aparte de las iteraciones
+            long runSeed = seed != null ? seed : new Random().nextLong();
+            long initializationStart = System.nanoTime();
+            double[] initialCentroids = initializer.initialize(data, k, kernel, runSeed, executor);
+            long initializationTime = System.nanoTime() - initializationStart;
+            Utils.checkStop(stopCheck);
+
+            KMeansEngine engine = createEngine(data, initialCentroids, kernel, executor);
+            String source = getClass().getSimpleName();
+            if (listener != null) {
+                listener.phaseCompleted(source, "inicialización", initializationTime, 0,
+                        8L * initialCentroids.length + engine.estimatedBytes());
+            }
+            long[] iterationTimes = new long[maxIterations];
+            int iterations = 0;
+            boolean converged = false;
+            while (iterations < maxIterations && !converged) {
+                long before = listener != null ? engine.distanceComputations() : 0;
+                long start = System.nanoTime();
+                // Asignar puntos y recalcular centroides en una sola pasada
+                int changes = engine.iterate();
+                iterationTimes[iterations++] = System.nanoTime() - start;
+                Utils.checkStop(stopCheck);
+                if (listener != null) {
+                    listener.iterationCompleted(source, iterations, engine.inertia(), changes,
+                            engine.distanceComputations() - before, iterationTimes[iterations - 1]);
                 }
+                // Sin reasignaciones los centroides ya no pueden cambiar
+                converged = changes == 0 || engine.maxShift <= tolerance;
+            }
+            long clustersStart = System.nanoTime();
+            KMeansResult result = new KMeansResult(engine.toClusters(points), iterations, converged, engine.inertia(),
+                    Arrays.copyOf(iterationTimes, iterations), initializationTime, runSeed,
+                    engine.distanceComputations(), (long) data.size() * k * iterations);
+            if (listener != null) {
+                listener.phaseCompleted(source, "iteraciones", result.getTotalTime(),
+                        result.getDistanceComputations(), 0);
+                listener.phaseCompleted(source, "clusters", System.nanoTime() - clustersStart, 0,
+                        8L * data.size() + 8L * k * data.dimensions());
             }
-            if (bestCluster != null) {
-                bestCluster.addPoint(point);
+            return result;
+        } finally {
+            if (executor != null && executor != pool) {
+                executor.shutdown();
             }
         }
     }
 
     /**
-     * Recalcula los centroides de los clusters basándose en los puntos asignados.
-     * @param clusters Lista de clusters.
+     * Crea el motor que ejecuta las iteraciones. Las variantes aceleradas lo sobrescriben para
+     * cambiar la forma de asignar los puntos sin alterar el resultado.
+     * @param data Conjunto de datos.
+     * @param initialCentroids Centroides iniciales.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param pool Pool de hilos, o null.
+     * @return El motor de iteraciones.
      */
-    private void recomputeCentroids(List<Cluster> clusters) {
-        for (Cluster cluster : clusters) {
-            if (cluster.getPoints().isEmpty()) continue; // Saltar si el cluster no tiene puntos
-            double[] newCentroid = new double[cluster.getCentroid().getFeatures().length];
-            // Sumar las características de todos los puntos en el cluster
-            for (DataPoint point : cluster.getPoints()) {
-                double[] features = point.getFeatures();
-                for (int i = 0; i < features.length; i++) {
-                    newCentroid[i] += features[i];
-                }
-            }
-            // Calcular el promedio de las características
-            for (int i = 0; i < newCentroid.length; i++) {
-                newCentroid[i] /= cluster.getPoints().size();
-            }
-            // Establecer el nuevo centroide
-            cluster.setCentroid(new DataPoint(newCentroid, null));
-        }
+    KMeansEngine createEngine(Dataset data, double[] initialCentroids, DistanceKernel kernel, ForkJoinPool pool) {
+        return new KMeansEngine(data, initialCentroids, kernel, pool);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,437 @@
+package iteso.clusters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Motor de iteraciones de K-Means (algoritmo de Lloyd) sobre la matriz contigua de un {@link Dataset}.
+ * <p>
+ * Las filas se dividen en bloques cuyo número depende solo del tamaño de los datos, nunca del número
+ * de hilos. Cada bloque asigna sus puntos al centroide más cercano y acumula sus propias sumas
+ * parciales por cluster; al terminar, las sumas parciales se combinan en el orden de los bloques.
+ * Así, con los mismos centroides iniciales, el resultado es idéntico con uno o con muchos hilos y
+ * ningún hilo escribe en memoria compartida con otro.
+ * <p>
+ * Las asignaciones viven en un array de enteros y los centroides en dos matrices que se alternan
+ * en cada iteración. Las sumas parciales, los buffers de filas y las tareas de cada bloque se crean
+ * una sola vez y se reinician en cada iteración, de modo que una iteración no asigna memoria; los
+ * objetos {@link Cluster} solo se crean al final con {@link #toClusters(List)}.
+ */
+class KMeansEngine {
+    /**
+     * Número mínimo de filas por bloque.
+     */
+    static final int MIN_CHUNK_ROWS = 2048;
+
+    /**
+     * Número máximo de bloques; limita la memoria de las sumas parciales a MAX_CHUNKS * k * d.
+     */
+    static final int MAX_CHUNKS = 64;
+
+    /**
+     * Conjunto de datos a clusterizar.
+     */
+    final Dataset data;
+
+    /**
+     * Número de puntos, dimensiones y clusters.
+     */
+    final int size, dimensions, k;
+
+    /**
+     * Métrica de distancia.
+     */
+    final DistanceMetric metric;
+
+    /**
+     * Núcleo de distancias de la métrica, elegido una vez por ejecución.
+     */
+    final DistanceKernel kernel;
+
+    /**
+     * Centroides actuales en orden por filas (k x dimensiones).
+     */
+    double[] centroids;
+
+    /**
+     * Centroides antes de la última actualización; se intercambia con {@link #centroids} en cada iteración.
+     */
+    double[] previousCentroids;
+
+    /**
+     * Cluster asignado a cada punto, o -1 antes de la primera asignación.
+     */
+    final int[] labels;
+
+    /**
+     * Número de puntos asignados a cada cluster en la última iteración.
+     */
+    final long[] counts;
+
+    /**
+     * Mayor desplazamiento euclidiano de un centroide en la última iteración.
+     */
+    double maxShift;
+
+    /**
+     * Número de bloques y filas por bloque.
+     */
+    final int chunkCount, chunkRows;
+
+    /**
+     * Distancias punto-centroide evaluadas por cada bloque en todas las iteraciones.
+     */
+    final long[] chunkDistances;
+
+    /**
+     * Pool de hilos, o null para ejecutar todo en el hilo actual.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Sumas, conteos y cambios parciales de cada bloque, y su combinación.
+     */
+    private final double[][] partialSums;
+    private final long[][] partialCounts;
+    private final int[] partialChanges;
+    private final double[] sums;
+
+    /**
+     * Buffer de una fila por bloque cuando los datos no están en el heap, o null si lo están.
+     */
+    private final double[][] rowBuffers;
+
+    /**
+     * Tarea de cada bloque y tarea raíz que las lanza, o null en ejecución secuencial.
+     */
+    private final RecursiveAction[] chunkTasks;
+    private final RecursiveAction rootTask;
+
+    /**
+     * Constructor del motor.
+     * @param data Conjunto de datos.
+     * @param initialCentroids Centroides iniciales (k x dimensiones), que se copian.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param pool Pool de hilos, o null para ejecución secuencial.
+     */
+    KMeansEngine(Dataset data, double[] initialCentroids, DistanceKernel kernel, ForkJoinPool pool) {
+        this.data = data;
+        this.size = data.size();
+        this.dimensions = data.dimensions();
+        this.k = initialCentroids.length / Math.max(dimensions, 1);
+        this.metric = kernel.metric();
+        this.kernel = kernel;
+        this.centroids = initialCentroids.clone();
+        this.previousCentroids = initialCentroids.clone();
+        this.labels = new int[size];
+        Arrays.fill(labels, -1);
+        this.counts = new long[k];
+        this.pool = pool;
+        this.chunkCount = chunkCount(size);
+        this.chunkRows = (size + chunkCount - 1) / chunkCount;
+        this.chunkDistances = new long[chunkCount];
+        this.partialSums = new double[chunkCount][k * dimensions];
+        this.partialCounts = new long[chunkCount][k];
+        this.partialChanges = new int[chunkCount];
+        this.sums = new double[k * dimensions];
+        this.rowBuffers = data.hasArray() ? null : new double[chunkCount][dimensions];
+        if (pool != null && chunkCount > 1) {
+            chunkTasks = new RecursiveAction[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                int chunk = c;
+                chunkTasks[c] = new RecursiveAction() {
+                    @Override
+                    protected void compute() {
+                        runChunk(chunk);
+                    }
+                };
+            }
+            rootTask = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(chunkTasks);
+                }
+            };
+        } else {
+            chunkTasks = null;
+            rootTask = null;
+        }
+    }
+
+    /**
+     * Calcula el número de bloques para un número de filas, independiente del número de hilos.
+     * @param size Número de filas.
+     * @return Número de bloques.
+     */
+    static int chunkCount(int size) {
+        return Math.max(1, Math.min(MAX_CHUNKS, (size + MIN_CHUNK_ROWS - 1) / MIN_CHUNK_ROWS));
+    }
+
+    /**
+     * Ejecuta una tarea por bloque, en el pool si se proporciona o en el hilo actual si no.
+     * @param chunkCount Número de bloques.
+     * @param pool Pool de hilos, o null para ejecución secuencial.
+     * @param body Tarea que recibe el índice del bloque.
+     */
+    static void runChunks(int chunkCount, ForkJoinPool pool, IntConsumer body) {
+        if (pool == null || chunkCount == 1) {
+            for (int c = 0; c < chunkCount; c++) {
+                body.accept(c);
+            }
+            return;
+        }
+        List<RecursiveAction> tasks = new ArrayList<>(chunkCount);
+        for (int c = 0; c < chunkCount; c++) {
+            int chunk = c;
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    body.accept(chunk);
+                }
+            });
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+
+    /**
+     * Ejecuta una iteración completa: asignación de puntos y recálculo de centroides.
+     * Los clusters que se quedan sin puntos conservan su centroide anterior.
+     * @return Número de puntos que cambiaron de cluster.
+     */
+    int iterate() {
+        int changes = assignAll();
+
+        // Combinar las sumas parciales en el orden de los bloques
+        Arrays.fill(sums, 0.0);
+        for (int c = 0; c < chunkCount; c++) {
+            double[] partial = partialSums[c];
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] += partial[i];
+            }
+        }
+
+        // Calcular el promedio de cada cluster en la otra matriz y cuánto se movió su centroide
+        double[] next = previousCentroids;
+        double maxSquaredShift = 0.0;
+        for (int j = 0; j < k; j++) {
+            int offset = j * dimensions;
+            if (counts[j] == 0) {
+                // Conservar el centroide si el cluster no tiene puntos
+                System.arraycopy(centroids, offset, next, offset, dimensions);
+                continue;
+            }
+            for (int i = 0; i < dimensions; i++) {
+                next[offset + i] = sums[offset + i] / counts[j];
+            }
+            if (metric.requiresNormalizedVectors()) {
+                // K-Means esférico: la distancia coseno supone centroides de norma 1
+                normalize(next, offset, dimensions);
+            }
+            double squaredShift = 0.0;
+            for (int i = 0; i < dimensions; i++) {
+                double delta = next[offset + i] - centroids[offset + i];
+                squaredShift += delta * delta;
+            }
+            maxSquaredShift = Math.max(maxSquaredShift, squaredShift);
+        }
+        previousCentroids = centroids;
+        centroids = next;
+        maxShift = Math.sqrt(maxSquaredShift);
+        return changes;
+    }
+
+    /**
+     * Divide un vector entre su norma euclidiana; un vector nulo queda igual.
+     * @param values Arreglo con el vector.
+     * @param offset Posición del vector en el arreglo.
+     * @param length Número de componentes.
+     */
+    static void normalize(double[] values, int offset, int length) {
+        double squaredNorm = 0.0;
+        for (int i = 0; i < length; i++) {
+            squaredNorm += values[offset + i] * values[offset + i];
+        }
+        if (squaredNorm > 0.0) {
+            double scale = 1.0 / Math.sqrt(squaredNorm);
+            for (int i = 0; i < length; i++) {
+                values[offset + i] *= scale;
+            }
+        }
+    }
+
+    /**
+     * Asigna cada punto a su centroide más cercano sin modificar los centroides.
+     * @return Número de puntos que cambiaron de cluster.
+     */
+    int assign() {
+        return assignAll();
+    }
+
+    /**
+     * Ejecuta la asignación de todos los bloques y combina sus conteos en el orden de los bloques.
+     * @return Número de puntos que cambiaron de cluster.
+     */
+    private int assignAll() {
+        if (rootTask == null) {
+            for (int c = 0; c < chunkCount; c++) {
+                runChunk(c);
+            }
+        } else {
+            for (RecursiveAction task : chunkTasks) {
+                task.reinitialize();
+            }
+            rootTask.reinitialize();
+            pool.invoke(rootTask);
+        }
+        Arrays.fill(counts, 0);
+        int changes = 0;
+        for (int c = 0; c < chunkCount; c++) {
+            for (int j = 0; j < k; j++) {
+                counts[j] += partialCounts[c][j];
+            }
+            changes += partialChanges[c];
+        }
+        return changes;
+    }
+
+    /**
+     * Limpia los acumuladores de un bloque y asigna sus puntos.
+     * @param chunk Índice del bloque.
+     */
+    private void runChunk(int chunk) {
+        Arrays.fill(partialSums[chunk], 0.0);
+        Arrays.fill(partialCounts[chunk], 0);
+        partialChanges[chunk] = assignChunk(chunk, partialSums[chunk], partialCounts[chunk]);
+    }
+
+    /**
+     * Obtiene el array del que se leen las filas de un bloque: la matriz del conjunto si está en el
+     * heap, o el buffer del bloque si no.
+     * @param chunk Índice del bloque.
+     * @return El array de filas.
+     */
+    double[] rowSource(int chunk) {
+        return rowBuffers == null ? data.array() : rowBuffers[chunk];
+    }
+
+    /**
+     * Asigna los puntos de un bloque a su centroide más cercano y acumula sus sumas parciales.
+     * @param chunk Índice del bloque.
+     * @param sums Sumas parciales del bloque (k x dimensiones).
+     * @param chunkCounts Número de puntos del bloque asignados a cada cluster.
+     * @return Número de puntos del bloque que cambiaron de cluster.
+     */
+    int assignChunk(int chunk, double[] sums, long[] chunkCounts) {
+        int from = chunk * chunkRows;
+        int to = Math.min(size, from + chunkRows);
+        boolean onHeap = data.hasArray();
+        double[] row = rowSource(chunk);
+        int changes = 0;
+        for (int p = from; p < to; p++) {
+            int offset = p * dimensions;
+            if (!onHeap) {
+                data.copyRow(p, row, 0);
+                offset = 0;
+            }
+            int best = nearest(chunk, row, offset);
+            if (labels[p] != best) {
+                labels[p] = best;
+                changes++;
+            }
+            chunkCounts[best]++;
+            int target = best * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                sums[target + i] += row[offset + i];
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Busca el centroide más cercano a un vector y cuenta las distancias evaluadas en el bloque;
+     * en caso de empate gana el de menor índice.
+     * @param chunk Índice del bloque que hace la búsqueda.
+     * @param row Array que contiene el vector.
+     * @param offset Posición inicial del vector.
+     * @return Índice del centroide más cercano.
+     */
+    int nearest(int chunk, double[] row, int offset) {
+        chunkDistances[chunk] += k;
+        return kernel.nearest(row, offset, centroids, k, dimensions);
+    }
+
+    /**
+     * Estima la memoria que reservó el motor en sus estructuras principales.
+     * @return Número de bytes.
+     */
+    long estimatedBytes() {
+        long bytes = 8L * k * dimensions * (3 + chunkCount) + 8L * k * (1 + chunkCount) + 4L * size;
+        return rowBuffers == null ? bytes : bytes + 8L * chunkCount * dimensions;
+    }
+
+    /**
+     * Obtiene el número total de distancias evaluadas en todas las iteraciones.
+     * @return Número de evaluaciones de distancia.
+     */
+    long distanceComputations() {
+        long total = 0;
+        for (long count : chunkDistances) total += count;
+        return total;
+    }
+
+    /**
+     * Calcula la inercia: la suma de las distancias euclidianas al cuadrado de cada punto
+     * al centroide de su cluster.
+     * @return La inercia de las asignaciones y centroides actuales.
+     */
+    double inertia() {
+        double total = 0.0;
+        for (int c = 0; c < chunkCount; c++) {
+            int from = c * chunkRows;
+            int to = Math.min(size, from + chunkRows);
+            double chunkTotal = 0.0;
+            for (int p = from; p < to; p++) {
+                if (labels[p] < 0) continue;
+                int offset = labels[p] * dimensions;
+                for (int i = 0; i < dimensions; i++) {
+                    double delta = data.get(p, i) - centroids[offset + i];
+                    chunkTotal += delta * delta;
+                }
+            }
+            total += chunkTotal;
+        }
+        return total;
+    }
+
+    /**
+     * Construye los clusters finales a partir de las asignaciones y los centroides actuales.
+     * @param points Punto correspondiente a cada fila del conjunto.
+     * @return Lista de clusters, en el orden de los centroides.
+     */
+    List<Cluster> toClusters(List<DataPoint> points) {
+        List<Cluster> clusters = new ArrayList<>(k);
+        for (int j = 0; j < k; j++) {
+            Cluster cluster = new Cluster();
+            double[] centroid = new double[dimensions];
+            System.arraycopy(centroids, j * dimensions, centroid, 0, dimensions);
+            cluster.setCentroid(new DataPoint(centroid, null));
+            clusters.add(cluster);
+        }
+        for (int p = 0; p < size; p++) {
+            if (labels[p] >= 0) {
+                clusters.get(labels[p]).addPoint(points.get(p));
+            }
+        }
+        return clusters;
+    }
+}
@@ -0,0 +1,464 @@
+package iteso.clusters;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+/**
+ * Modelo entrenado de K-Means: los centroides, la métrica y los datos de la ejecución que los
+ * produjo, listo para asignar puntos nuevos con {@code predict} sin volver a entrenar.
+ * <p>
+ * El modelo es inmutable, así que puede compartirse entre hilos y reemplazarse por otro
+ * atómicamente (ver {@link KMeansModelHolder}). Las predicciones por lotes escriben en arrays que
+ * recibe el llamador y no asignan memoria por punto.
+ * <p>
+ * Se guarda en un formato binario compacto en little-endian: un encabezado con el número mágico
+ * {@code KMDL}, la versión, k, las dimensiones, el nombre de la métrica y los datos de la
+ * ejecución, seguido del tamaño de cada cluster, de los centroides como doubles en orden por filas
+ * y de un CRC32 de todo lo anterior. Cargar un modelo es leer un arreglo de bytes y copiar los
+ * centroides en bloque.
+ */
+public final class KMeansModel {
+    /**
+     * Número mágico del formato ("KMDL").
+     */
+    private static final int MAGIC = 0x4B4D444C;
+
+    /**
+     * Versión del formato.
+     */
+    private static final short VERSION = 1;
+
+    /**
+     * Centroides en orden por filas (k x dimensiones).
+     */
+    private final double[] centroids;
+
+    /**
+     * Número de clusters y de dimensiones.
+     */
+    private final int k, dimensions;
+
+    /**
+     * Métrica de distancia, exponente de Minkowski y su núcleo.
+     */
+    private final DistanceMetric metric;
+    private final double minkowskiP;
+    private final DistanceKernel kernel;
+
+    /**
+     * Puntos de entrenamiento asignados a cada cluster.
+     */
+    private final long[] clusterSizes;
+
+    /**
+     * Datos de la ejecución que produjo el modelo.
+     */
+    private final long seed;
+    private final int iterations;
+    private final boolean converged;
+    private final double inertia;
+
+    /**
+     * Momento en que se creó el modelo, en milisegundos desde la época.
+     */
+    private final long createdAt;
+
+    /**
+     * Constructor que crea un modelo a partir del resultado de un entrenamiento. Si el entrenamiento
+     * no convergió, los centroides finales pueden asignar algunos puntos de entrenamiento a un
+     * cluster distinto del que indica el resultado.
+     * @param result Resultado de {@link KMeans#fit(Dataset)} o de sus variantes.
+     * @param metric Métrica con la que se entrenó.
+     */
+    public KMeansModel(KMeansResult result, DistanceMetric metric) {
+        this(result, metric, DistanceMetric.DEFAULT_MINKOWSKI_P);
+    }
+
+    /**
+     * Constructor que crea un modelo a partir del resultado de un entrenamiento con la distancia
+     * de Minkowski.
+     * @param result Resultado de {@link KMeans#fit(Dataset)} o de sus variantes.
+     * @param metric Métrica con la que se entrenó.
+     * @param minkowskiP Exponente de Minkowski con el que se entrenó; las demás métricas lo ignoran.
+     */
+    public KMeansModel(KMeansResult result, DistanceMetric metric, double minkowskiP) {
+        this(centroids(result), result.size(), result.isEmpty() ? 0 : result.get(0).getCentroid().getFeatures().length,
+                metric, minkowskiP, sizes(result), result.getSeed(), result.getIterations(), result.isConverged(),
+                result.getInertia(), System.currentTimeMillis());
+    }
+
+    /**
+     * Constructor que crea un modelo a partir de centroides ya calculados.
+     * @param centroids Centroides en orden por filas (k x dimensiones), que se copian.
+     * @param dimensions Número de dimensiones.
+     * @param metric Métrica de distancia.
+     */
+    public KMeansModel(double[] centroids, int dimensions, DistanceMetric metric) {
+        this(centroids, dimensions, metric, DistanceMetric.DEFAULT_MINKOWSKI_P);
+    }
+
+    /**
+     * Constructor que crea un modelo a partir de centroides ya calculados con la distancia de
+     * Minkowski.
+     * @param centroids Centroides en orden por filas (k x dimensiones), que se copian.
+     * @param dimensions Número de dimensiones.
+     * @param metric Métrica de distancia.
+     * @param minkowskiP Exponente de Minkowski; las demás métricas lo ignoran.
+     */
+    public KMeansModel(double[] centroids, int dimensions, DistanceMetric metric, double minkowskiP) {
+        this(centroids.clone(), dimensions == 0 ? 0 : centroids.length / dimensions, dimensions, metric, minkowskiP,
+                new long[dimensions == 0 ? 0 : centroids.length / dimensions], 0, 0, false, Double.NaN,
+                System.currentTimeMillis());
+    }
+
+    private KMeansModel(double[] centroids, int k, int dimensions, DistanceMetric metric, double minkowskiP,
+                        long[] clusterSizes, long seed, int iterations, boolean converged, double inertia, long createdAt) {
+        if (dimensions < 1 || k < 1 || centroids.length != k * dimensions) {
+            throw new IllegalArgumentException("Los centroides deben formar una matriz de k x dimensiones no vacía");
+        }
+        if (metric == null) {
+            throw new IllegalArgumentException("El modelo requiere una métrica de distancia");
+        }
+        this.centroids = centroids;
+        this.k = k;
+        this.dimensions = dimensions;
+        this.metric = metric;
+        this.minkowskiP = DistanceMetric.checkMinkowskiP(minkowskiP);
+        this.kernel = DistanceKernel.of(metric, minkowskiP);
+        this.clusterSizes = clusterSizes;
+        this.seed = seed;
+        this.iterations = iterations;
+        this.converged = converged;
+        this.inertia = inertia;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Obtiene el número de clusters.
+     * @return Número de clusters.
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * Obtiene el número de dimensiones de los puntos.
+     * @return Número de dimensiones.
+     */
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Obtiene la métrica de distancia.
+     * @return La métrica.
+     */
+    public DistanceMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Obtiene el exponente de Minkowski, que solo se usa con {@link DistanceMetric#MINKOWSKI}.
+     * @return El exponente.
+     */
+    public double getMinkowskiP() {
+        return minkowskiP;
+    }
+
+    /**
+     * Obtiene una copia de los centroides.
+     * @return Centroides en orden por filas (k x dimensiones).
+     */
+    public double[] getCentroids() {
+        return centroids.clone();
+    }
+
+    /**
+     * Obtiene el número de puntos de entrenamiento asignados a cada cluster.
+     * @return Tamaños de los clusters; ceros si el modelo no viene de un entrenamiento.
+     */
+    public long[] getClusterSizes() {
+        return clusterSizes.clone();
+    }
+
+    /**
+     * Obtiene la semilla del entrenamiento.
+     * @return La semilla.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Obtiene el número de iteraciones del entrenamiento.
+     * @return Número de iteraciones.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Indica si el entrenamiento convergió.
+     * @return true si convergió antes del límite de iteraciones.
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * Obtiene la inercia final del entrenamiento.
+     * @return La inercia, o NaN si el modelo no viene de un entrenamiento.
+     */
+    public double getInertia() {
+        return inertia;
+    }
+
+    /**
+     * Obtiene el momento en que se creó el modelo.
+     * @return Milisegundos desde la época.
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    /**
+     * Asigna un punto a su centroide más cercano; en caso de empate gana el de menor índice.
+     * @param point Características del punto.
+     * @return Índice del cluster.
+     */
+    public int predict(double[] point) {
+        if (point.length != dimensions) {
+            throw new IllegalArgumentException("Se esperaban " + dimensions + " dimensiones, se recibieron " + point.length);
+        }
+        return kernel.nearest(point, 0, centroids, k, dimensions);
+    }
+
+    /**
+     * Asigna un punto guardado dentro de un array más grande, sin asignar memoria.
+     * @param values Array que contiene el punto.
+     * @param offset Posición inicial del punto.
+     * @return Índice del cluster.
+     */
+    public int predict(double[] values, int offset) {
+        return kernel.nearest(values, offset, centroids, k, dimensions);
+    }
+
+    /**
+     * Asigna un lote de puntos guardados en orden por filas.
+     * @param values Array con los puntos (count x dimensiones a partir de offset).
+     * @param offset Posición inicial del primer punto.
+     * @param count Número de puntos.
+     * @param labels Array donde se escribe el cluster de cada punto, con al menos count posiciones.
+     * @param distances Array donde se escribe la distancia de cada punto a su centroide, o null.
+     */
+    public void predict(double[] values, int offset, int count, int[] labels, double[] distances) {
+        predict(values, offset, count, labels, distances, 0);
+    }
+
+    /**
+     * Asigna todos los puntos de un conjunto de datos en el hilo actual.
+     * @param data Conjunto de datos con las mismas dimensiones que el modelo.
+     * @param labels Array donde se escribe el cluster de cada punto, con al menos data.size() posiciones.
+     */
+    public void predict(Dataset data, int[] labels) {
+        predict(data, labels, null, null);
+    }
+
+    /**
+     * Asigna todos los puntos de un conjunto de datos, en paralelo por bloques si se da un pool.
+     * @param data Conjunto de datos con las mismas dimensiones que el modelo.
+     * @param labels Array donde se escribe el cluster de cada punto, con al menos data.size() posiciones.
+     * @param distances Array donde se escribe la distancia de cada punto a su centroide, o null.
+     * @param pool Pool de hilos, o null para el hilo actual.
+     */
+    public void predict(Dataset data, int[] labels, double[] distances, ForkJoinPool pool) {
+        if (data.dimensions() != dimensions) {
+            throw new IllegalArgumentException("Se esperaban " + dimensions + " dimensiones, se recibieron "
+                    + data.dimensions());
+        }
+        int size = data.size();
+        int chunkCount = KMeansEngine.chunkCount(size);
+        int chunkRows = (size + chunkCount - 1) / chunkCount;
+        KMeansEngine.runChunks(chunkCount, pool, chunk -> {
+            int start = chunk * chunkRows;
+            int end = Math.min(size, start + chunkRows);
+            if (data.hasArray()) {
+                predict(data.array(), start * dimensions, end - start, labels, distances, start);
+                return;
+            }
+            // Copiar cada fila del buffer directo a un array del bloque
+            double[] row = new double[dimensions];
+            for (int p = start; p < end; p++) {
+                data.copyRow(p, row, 0);
+                labels[p] = kernel.nearest(row, 0, centroids, k, dimensions);
+                if (distances != null) {
+                    distances[p] = kernel.distance(row, 0, centroids, labels[p] * dimensions, dimensions);
+                }
+            }
+        });
+    }
+
+    /**
+     * Asigna un lote de filas escribiendo los resultados a partir de una posición de salida.
+     */
+    private void predict(double[] values, int offset, int count, int[] labels, double[] distances, int target) {
+        for (int i = 0; i < count; i++) {
+            int row = offset + i * dimensions;
+            int label = kernel.nearest(values, row, centroids, k, dimensions);
+            labels[target + i] = label;
+            if (distances != null) {
+                distances[target + i] = kernel.distance(values, row, centroids, label * dimensions, dimensions);
+            }
+        }
+    }
+
+    /**
+     * Guarda el modelo en un archivo. Se escribe primero un archivo temporal en la misma carpeta
+     * que después se renombra, así que quien lea el archivo nunca ve un modelo a medias.
+     * @param filePath Ruta del archivo.
+     * @throws IOException Si el archivo no puede escribirse.
+     */
+    public void save(String filePath) throws IOException {
+        Path target = Paths.get(filePath).toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, toBytes());
+            try {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Carga un modelo guardado con {@link #save(String)}.
+     * @param filePath Ruta del archivo.
+     * @return El modelo.
+     * @throws IOException Si el archivo no puede leerse.
+     * @throws InvalidDataException Si el archivo no es un modelo válido o está dañado.
+     */
+    public static KMeansModel load(String filePath) throws IOException, InvalidDataException {
+        return fromBytes(Files.readAllBytes(Paths.get(filePath)));
+    }
+
+    /**
+     * Serializa el modelo en el formato binario.
+     * @return Los bytes del modelo.
+     */
+    public byte[] toBytes() {
+        // El exponente de Minkowski viaja en el nombre, por ejemplo "MINKOWSKI(3.0)"
+        String name = metric == DistanceMetric.MINKOWSKI ? metric.name() + "(" + minkowskiP + ")" : metric.name();
+        byte[] metricName = name.getBytes(StandardCharsets.UTF_8);
+        int length = 4 + 2 + 2 + 4 + 4 + 2 + metricName.length + 8 + 4 + 1 + 8 + 8
+                + 8 * k + 8 * centroids.length + 8;
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+        buffer.putInt(k).putInt(dimensions);
+        buffer.putShort((short) metricName.length).put(metricName);
+        buffer.putLong(seed).putInt(iterations).put((byte) (converged ? 1 : 0)).putDouble(inertia).putLong(createdAt);
+        buffer.asLongBuffer().put(clusterSizes);
+        buffer.position(buffer.position() + 8 * k);
+        buffer.asDoubleBuffer().put(centroids);
+        buffer.position(buffer.position() + 8 * centroids.length);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putLong(crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * Lee un modelo del formato binario.
+     * @param bytes Los bytes del modelo.
+     * @return El modelo.
+     * @throws InvalidDataException Si los bytes no son un modelo válido o están dañados.
+     */
+    public static KMeansModel fromBytes(byte[] bytes) throws InvalidDataException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new InvalidDataException("Los datos no son un modelo de K-Means");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new InvalidDataException("Versión de modelo no soportada: " + version);
+            }
+            buffer.getShort();
+            int k = buffer.getInt();
+            int dimensions = buffer.getInt();
+            if (k < 1 || dimensions < 1 || (long) k * dimensions * 8 > bytes.length) {
+                throw new InvalidDataException("Tamaño de modelo inválido: k=" + k + ", dimensiones=" + dimensions);
+            }
+            byte[] metricName = new byte[buffer.getShort()];
+            buffer.get(metricName);
+            String name = new String(metricName, StandardCharsets.UTF_8);
+            double minkowskiP = DistanceMetric.DEFAULT_MINKOWSKI_P;
+            int parenthesis = name.indexOf('(');
+            if (parenthesis >= 0 && name.endsWith(")")) {
+                minkowskiP = Double.parseDouble(name.substring(parenthesis + 1, name.length() - 1));
+                name = name.substring(0, parenthesis);
+            }
+            DistanceMetric metric = DistanceMetric.valueOf(name);
+            long seed = buffer.getLong();
+            int iterations = buffer.getInt();
+            boolean converged = buffer.get() != 0;
+            double inertia = buffer.getDouble();
+            long createdAt = buffer.getLong();
+            long[] clusterSizes = new long[k];
+            buffer.asLongBuffer().get(clusterSizes);
+            buffer.position(buffer.position() + 8 * k);
+            double[] centroids = new double[k * dimensions];
+            buffer.asDoubleBuffer().get(centroids);
+            buffer.position(buffer.position() + 8 * centroids.length);
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, buffer.position());
+            if (buffer.getLong() != crc.getValue() || buffer.hasRemaining()) {
+                throw new InvalidDataException("El modelo está dañado: la suma de verificación no coincide");
+            }
+            return new KMeansModel(centroids, k, dimensions, metric, minkowskiP, clusterSizes, seed, iterations, converged,
+                    inertia, createdAt);
+        } catch (BufferUnderflowException e) {
+            throw new InvalidDataException("El modelo está incompleto", e);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidDataException("El modelo tiene un valor inválido: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Copia los centroides de un resultado en orden por filas.
+     */
+    private static double[] centroids(List<Cluster> clusters) {
+        if (clusters.isEmpty()) {
+            return new double[0];
+        }
+        int dimensions = clusters.get(0).getCentroid().getFeatures().length;
+        double[] centroids = new double[clusters.size() * dimensions];
+        for (int c = 0; c < clusters.size(); c++) {
+            System.arraycopy(clusters.get(c).getCentroid().getFeatures(), 0, centroids, c * dimensions, dimensions);
+        }
+        return centroids;
+    }
+
+    /**
+     * Obtiene el número de puntos de cada cluster de un resultado.
+     */
+    private static long[] sizes(List<Cluster> clusters) {
+        long[] sizes = new long[clusters.size()];
+        for (int c = 0; c < sizes.length; c++) {
+            sizes[c] = clusters.get(c).getPoints().size();
+        }
+        return sizes;
+    }
+}
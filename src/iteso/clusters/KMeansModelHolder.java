@@ -0,0 +1,69 @@
+package iteso.clusters;
+
+import java.io.IOException;
+
+/**
+ * Referencia a un {@link KMeansModel} que puede reemplazarse mientras otros hilos predicen.
+ * <p>
+ * El modelo nuevo se carga y se valida por completo antes del reemplazo, que es una sola escritura
+ * volátil; cada predicción usa el modelo que estaba vigente al empezar, así que nunca mezcla
+ * centroides de dos modelos ni espera a que termine una carga.
+ */
+public class KMeansModelHolder {
+    /**
+     * Modelo vigente.
+     */
+    private volatile KMeansModel model;
+
+    /**
+     * Constructor con el modelo inicial.
+     * @param model Modelo inicial.
+     */
+    public KMeansModelHolder(KMeansModel model) {
+        this.model = model;
+    }
+
+    /**
+     * Obtiene el modelo vigente. Quien haga varias predicciones relacionadas debe guardar el modelo
+     * en una variable local para que todas usen el mismo.
+     * @return El modelo vigente.
+     */
+    public KMeansModel get() {
+        return model;
+    }
+
+    /**
+     * Reemplaza el modelo vigente.
+     * @param model Modelo nuevo; debe tener las mismas dimensiones que el vigente.
+     * @return El modelo anterior.
+     */
+    public KMeansModel swap(KMeansModel model) {
+        KMeansModel previous = this.model;
+        if (model.getDimensions() != previous.getDimensions()) {
+            throw new IllegalArgumentException("El modelo nuevo tiene " + model.getDimensions()
+                    + " dimensiones y el vigente " + previous.getDimensions());
+        }
+        this.model = model;
+        return previous;
+    }
+
+    /**
+     * Carga un modelo de un archivo y lo pone en lugar del vigente.
+     * @param filePath Ruta del archivo.
+     * @return El modelo anterior.
+     * @throws IOException Si el archivo no puede leerse.
+     * @throws InvalidDataException Si el archivo no es un modelo válido; el modelo vigente no cambia.
+     */
+    public KMeansModel reload(String filePath) throws IOException, InvalidDataException {
+        return swap(KMeansModel.load(filePath));
+    }
+
+    /**
+     * Asigna un punto con el modelo vigente.
+     * @param point Características del punto.
+     * @return Índice del cluster.
+     */
+    public int predict(double[] point) {
+        return model.predict(point);
+    }
+}
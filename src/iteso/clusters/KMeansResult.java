@@ -0,0 +1,186 @@
+package iteso.clusters;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Resultado de una ejecución de K-Means.
+ * Se comporta como la lista de clusters resultantes y además informa cuántas iteraciones
+ * se ejecutaron, si el algoritmo convergió, la inercia final y el tiempo de cada iteración.
+ */
+public class KMeansResult extends AbstractList<Cluster> {
+    /**
+     * Clusters resultantes.
+     */
+    private final List<Cluster> clusters;
+
+    /**
+     * Número de iteraciones ejecutadas.
+     */
+    private final int iterations;
+
+    /**
+     * Indica si el algoritmo se detuvo por convergencia y no por el límite de iteraciones.
+     */
+    private final boolean converged;
+
+    /**
+     * Suma de las distancias euclidianas al cuadrado de cada punto a su centroide.
+     */
+    private final double inertia;
+
+    /**
+     * Duración de cada iteración en nanosegundos.
+     */
+    private final long[] iterationTimes;
+
+    /**
+     * Duración de la selección de centroides iniciales en nanosegundos.
+     */
+    private final long initializationTime;
+
+    /**
+     * Semilla usada en la inicialización.
+     */
+    private final long seed;
+
+    /**
+     * Distancias evaluadas durante las iteraciones.
+     */
+    private final long distanceComputations;
+
+    /**
+     * Distancias que evaluaría el algoritmo de Lloyd en las mismas iteraciones (n * k por iteración).
+     */
+    private final long naiveDistanceComputations;
+
+    /**
+     * Constructor del resultado.
+     * @param clusters Clusters resultantes.
+     * @param iterations Número de iteraciones ejecutadas.
+     * @param converged Si el algoritmo convergió.
+     * @param inertia Inercia final.
+     * @param iterationTimes Duración de cada iteración en nanosegundos.
+     * @param initializationTime Duración de la inicialización en nanosegundos.
+     * @param seed Semilla usada en la inicialización.
+     * @param distanceComputations Distancias evaluadas durante las iteraciones.
+     * @param naiveDistanceComputations Distancias que evaluaría el algoritmo de Lloyd.
+     */
+    public KMeansResult(List<Cluster> clusters, int iterations, boolean converged, double inertia, long[] iterationTimes,
+                        long initializationTime, long seed, long distanceComputations, long naiveDistanceComputations) {
+        this.clusters = clusters;
+        this.iterations = iterations;
+        this.converged = converged;
+        this.inertia = inertia;
+        this.iterationTimes = iterationTimes;
+        this.initializationTime = initializationTime;
+        this.seed = seed;
+        this.distanceComputations = distanceComputations;
+        this.naiveDistanceComputations = naiveDistanceComputations;
+    }
+
+    /**
+     * Obtiene un cluster resultante.
+     * @param index Índice del cluster.
+     * @return El cluster.
+     */
+    @Override
+    public Cluster get(int index) {
+        return clusters.get(index);
+    }
+
+    /**
+     * Obtiene el número de clusters.
+     * @return Número de clusters.
+     */
+    @Override
+    public int size() {
+        return clusters.size();
+    }
+
+    /**
+     * Obtiene los clusters resultantes.
+     * @return Lista de clusters.
+     */
+    public List<Cluster> getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Obtiene el número de iteraciones que realmente se ejecutaron.
+     * @return Número de iteraciones.
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Indica si el algoritmo se detuvo porque los centroides dejaron de moverse
+     * o ningún punto cambió de cluster.
+     * @return true si convergió antes del límite de iteraciones.
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * Obtiene la inercia final (suma de cuadrados dentro de los clusters).
+     * @return La inercia.
+     */
+    public double getInertia() {
+        return inertia;
+    }
+
+    /**
+     * Obtiene la duración de cada iteración.
+     * @return Duraciones en nanosegundos, una por iteración ejecutada.
+     */
+    public long[] getIterationTimes() {
+        return iterationTimes.clone();
+    }
+
+    /**
+     * Obtiene la duración de la selección de centroides iniciales, medida aparte de las iteraciones.
+     * @return Duración en nanosegundos.
+     */
+    public long getInitializationTime() {
+        return initializationTime;
+    }
+
+    /**
+     * Obtiene la semilla usada en la inicialización; con ella y la misma configuración
+     * la ejecución puede reproducirse.
+     * @return La semilla.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Obtiene el número de distancias evaluadas durante las iteraciones, incluidas las
+     * distancias entre centroides que usan los algoritmos acelerados.
+     * @return Número de evaluaciones de distancia.
+     */
+    public long getDistanceComputations() {
+        return distanceComputations;
+    }
+
+    /**
+     * Obtiene cuántas evaluaciones de distancia se evitaron respecto al algoritmo de Lloyd,
+     * que evalúa n * k distancias por iteración. Puede ser negativo en conjuntos muy pequeños,
+     * donde el costo de mantener las cotas supera el ahorro.
+     * @return Número de evaluaciones evitadas.
+     */
+    public long getAvoidedDistanceComputations() {
+        return naiveDistanceComputations - distanceComputations;
+    }
+
+    /**
+     * Obtiene el tiempo total de las iteraciones.
+     * @return Suma de las duraciones en nanosegundos.
+     */
+    public long getTotalTime() {
+        return Arrays.stream(iterationTimes).sum();
+    }
+}
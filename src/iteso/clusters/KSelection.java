@@ -0,0 +1,324 @@
+package iteso.clusters;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/**
+ * Selección del número de clusters: ajusta y evalúa un rango de valores de k sobre un mismo
+ * conjunto de datos, cargado una sola vez, y devuelve las curvas del codo, de la silueta y de
+ * tiempos en un {@link KSelectionResult}.
+ * <p>
+ * Con K-Means el rango se divide en cadenas de {@link #setChainLength(int) k consecutivos}. Las
+ * cadenas se ejecutan en paralelo en un pool acotado y, dentro de cada una, cada k parte de la
+ * solución del k anterior más un centroide elegido con un paso de k-means++. La división depende
+ * solo del rango, y la semilla de cada k solo de la semilla del barrido, así que el resultado no
+ * depende del número de hilos. Con el clustering jerárquico se construye un solo dendrograma y
+ * cada k es un corte de él.
+ */
+public class KSelection {
+    /**
+     * Métrica de distancia del clustering y de la evaluación.
+     */
+    private final DistanceMetric metric;
+
+    /**
+     * Exponente de la distancia de Minkowski; solo se usa con {@link DistanceMetric#MINKOWSKI}.
+     */
+    private double minkowskiP = DistanceMetric.DEFAULT_MINKOWSKI_P;
+
+    /**
+     * Número máximo de iteraciones de K-Means por k.
+     */
+    private int maxIterations = 300;
+
+    /**
+     * Tolerancia de convergencia de K-Means.
+     */
+    private double tolerance = 0.0;
+
+    /**
+     * Estrategia de inicialización del primer k de cada cadena.
+     */
+    private CentroidInitializer initializer = InitializationMethod.KMEANS_PLUS_PLUS;
+
+    /**
+     * Número de k consecutivos que se inician a partir del anterior; 1 desactiva el arranque en caliente.
+     */
+    private int chainLength = 4;
+
+    /**
+     * Número de hilos del pool.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Semilla del barrido, o null para elegir una nueva en cada uno.
+     */
+    private Long seed;
+
+    /**
+     * Tamaño de muestra de la silueta; con más puntos se estima.
+     */
+    private int sampleSize = ClusterEvaluator.DEFAULT_SAMPLE_SIZE;
+
+    /**
+     * Constructor del barrido.
+     * @param metric Métrica de distancia del clustering y de la evaluación.
+     */
+    public KSelection(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Establece el exponente de la distancia de Minkowski, que solo se usa con
+     * {@link DistanceMetric#MINKOWSKI}.
+     * @param minkowskiP Exponente, al menos 1; por defecto {@link DistanceMetric#DEFAULT_MINKOWSKI_P}.
+     */
+    public void setMinkowskiP(double minkowskiP) {
+        this.minkowskiP = DistanceMetric.checkMinkowskiP(minkowskiP);
+    }
+
+    /**
+     * Establece el número máximo de iteraciones de K-Means por k.
+     * @param maxIterations Número máximo de iteraciones.
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Establece la tolerancia de convergencia de K-Means.
+     * @param tolerance Desplazamiento máximo permitido.
+     */
+    public void setTolerance(double tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("La tolerancia no puede ser negativa");
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Establece la estrategia de inicialización del primer k de cada cadena.
+     * @param initializer La estrategia a utilizar.
+     */
+    public void setInitializer(CentroidInitializer initializer) {
+        this.initializer = initializer;
+    }
+
+    /**
+     * Establece cuántos k consecutivos forman una cadena con arranque en caliente. Cadenas más
+     * largas reutilizan más trabajo; más cadenas permiten más paralelismo.
+     * @param chainLength Longitud de las cadenas; 1 inicia cada k desde cero.
+     */
+    public void setChainLength(int chainLength) {
+        if (chainLength < 1) {
+            throw new IllegalArgumentException("La longitud de las cadenas debe ser al menos 1");
+        }
+        this.chainLength = chainLength;
+    }
+
+    /**
+     * Establece el número de hilos del pool con el que se ajustan y evalúan los k.
+     * @param parallelism Número de hilos.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser al menos 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Fija la semilla del barrido para obtener resultados reproducibles.
+     * @param seed Semilla, o null para elegir una nueva en cada barrido.
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Establece el tamaño de muestra de la silueta; con más puntos que la muestra se estima.
+     * @param sampleSize Tamaño de la muestra.
+     */
+    public void setSampleSize(int sampleSize) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("El tamaño de muestra debe ser al menos 1");
+        }
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * Carga un archivo CSV una sola vez y barre los valores de k con K-Means.
+     * @param filePath Ruta del archivo CSV.
+     * @param minK Menor k.
+     * @param maxK Mayor k.
+     * @return Las curvas del barrido.
+     * @throws IOException Si el archivo no puede leerse.
+     * @throws InvalidDataException Si el archivo contiene valores inválidos.
+     * @throws MissingDataException Si al archivo le faltan valores.
+     */
+    public KSelectionResult sweepKMeans(String filePath, int minK, int maxK)
+            throws IOException, InvalidDataException, MissingDataException {
+        return sweepKMeans(new DataLoader(parallelism).loadDataset(filePath), minK, maxK);
+    }
+
+    /**
+     * Barre los valores de k con K-Means.
+     * @param data Conjunto de datos.
+     * @param minK Menor k.
+     * @param maxK Mayor k.
+     * @return Las curvas del barrido.
+     */
+    public KSelectionResult sweepKMeans(Dataset data, int minK, int maxK) {
+        long start = System.nanoTime();
+        int[] ks = range(data, minK, maxK);
+        long sweepSeed = seed != null ? seed : new Random().nextLong();
+        EvaluationReport[] reports = new EvaluationReport[ks.length];
+        int[] iterations = new int[ks.length];
+        long[] fitTimes = new long[ks.length];
+        long[] evaluationTimes = new long[ks.length];
+
+        int chains = (ks.length + chainLength - 1) / chainLength;
+        run(chains, chain -> {
+            double[] previous = null;
+            int end = Math.min(ks.length, (chain + 1) * chainLength);
+            for (int i = chain * chainLength; i < end; i++) {
+                int k = ks[i];
+                long kSeed = seedFor(sweepSeed, k);
+                long fitStart = System.nanoTime();
+                KMeans kMeans = new KMeans(k, maxIterations, metric);
+                kMeans.setTolerance(tolerance);
+                kMeans.setMinkowskiP(minkowskiP);
+                kMeans.setSeed(kSeed);
+                if (previous != null) {
+                    // Arranque en caliente: la solución anterior más un centroide nuevo
+                    double[] warm = CentroidSeeding.extend(data, previous, k, kMeans.getKernel(), kSeed, null);
+                    kMeans.setInitializer((d, count, m, s, p) -> warm.clone());
+                } else {
+                    kMeans.setInitializer(initializer);
+                }
+                KMeansResult result = kMeans.fit(data);
+                fitTimes[i] = System.nanoTime() - fitStart;
+                iterations[i] = result.getIterations();
+                previous = centroids(result, data.dimensions());
+
+                long evaluationStart = System.nanoTime();
+                reports[i] = evaluator(kSeed).evaluate(result);
+                evaluationTimes[i] = System.nanoTime() - evaluationStart;
+            }
+        });
+        return new KSelectionResult(ks, Arrays.asList(reports), iterations, fitTimes, evaluationTimes, 0,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Barre los valores de k con clustering jerárquico: construye un solo dendrograma y evalúa
+     * en paralelo cada uno de sus cortes.
+     * @param data Conjunto de datos.
+     * @param linkage Tipo de enlace.
+     * @param minK Menor k.
+     * @param maxK Mayor k.
+     * @return Las curvas del barrido; el tiempo compartido es el del dendrograma.
+     */
+    public KSelectionResult sweepHierarchical(Dataset data, LinkageType linkage, int minK, int maxK) {
+        long start = System.nanoTime();
+        int[] ks = range(data, minK, maxK);
+        long sweepSeed = seed != null ? seed : new Random().nextLong();
+        HierarchicalClustering clustering = new HierarchicalClustering(metric, linkage, minK);
+        clustering.setMinkowskiP(minkowskiP);
+        clustering.setParallelism(parallelism);
+        Dendrogram dendrogram = clustering.buildDendrogram(data);
+        long sharedTime = System.nanoTime() - start;
+
+        EvaluationReport[] reports = new EvaluationReport[ks.length];
+        long[] fitTimes = new long[ks.length];
+        long[] evaluationTimes = new long[ks.length];
+        run(ks.length, i -> {
+            long fitStart = System.nanoTime();
+            List<Cluster> clusters = dendrogram.clustersAtK(data, ks[i]);
+            fitTimes[i] = System.nanoTime() - fitStart;
+            long evaluationStart = System.nanoTime();
+            reports[i] = evaluator(seedFor(sweepSeed, ks[i])).evaluate(clusters);
+            evaluationTimes[i] = System.nanoTime() - evaluationStart;
+        });
+        return new KSelectionResult(ks, Arrays.asList(reports), new int[ks.length], fitTimes, evaluationTimes,
+                sharedTime, System.nanoTime() - start);
+    }
+
+    /**
+     * Valida el rango y lo convierte en la lista de valores de k.
+     * @param data Conjunto de datos.
+     * @param minK Menor k.
+     * @param maxK Mayor k.
+     * @return Valores de k en orden creciente.
+     */
+    private static int[] range(Dataset data, int minK, int maxK) {
+        if (minK < 1 || maxK < minK || maxK > data.size()) {
+            throw new IllegalArgumentException("El rango de k debe cumplir 1 <= minK <= maxK <= " + data.size()
+                    + ", se recibió [" + minK + ", " + maxK + "]");
+        }
+        int[] ks = new int[maxK - minK + 1];
+        for (int i = 0; i < ks.length; i++) {
+            ks[i] = minK + i;
+        }
+        return ks;
+    }
+
+    /**
+     * Deriva la semilla de un k a partir de la semilla del barrido.
+     * @param sweepSeed Semilla del barrido.
+     * @param k Valor de k.
+     * @return La semilla del k.
+     */
+    private static long seedFor(long sweepSeed, int k) {
+        return new SplittableRandom(sweepSeed + k).nextLong();
+    }
+
+    /**
+     * Crea el evaluador de un k; se ejecuta en un solo hilo porque los k ya se evalúan en paralelo.
+     * @param evaluationSeed Semilla del muestreo de la silueta.
+     * @return El evaluador.
+     */
+    private ClusterEvaluator evaluator(long evaluationSeed) {
+        ClusterEvaluator evaluator = new ClusterEvaluator(metric);
+        evaluator.setMinkowskiP(minkowskiP);
+        evaluator.setSampleSize(sampleSize);
+        evaluator.setSeed(evaluationSeed);
+        return evaluator;
+    }
+
+    /**
+     * Copia los centroides de un resultado de K-Means en orden por filas.
+     * @param clusters Clusters con centroide.
+     * @param dimensions Número de dimensiones.
+     * @return Centroides (clusters x dimensiones).
+     */
+    private static double[] centroids(List<Cluster> clusters, int dimensions) {
+        double[] centroids = new double[clusters.size() * dimensions];
+        for (int c = 0; c < clusters.size(); c++) {
+            System.arraycopy(clusters.get(c).getCentroid().getFeatures(), 0, centroids, c * dimensions, dimensions);
+        }
+        return centroids;
+    }
+
+    /**
+     * Ejecuta las tareas en un pool acotado por el paralelismo configurado.
+     * @param tasks Número de tareas.
+     * @param body Tarea que recibe su índice.
+     */
+    private void run(int tasks, IntConsumer body) {
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            KMeansEngine.runChunks(tasks, pool, body);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+}
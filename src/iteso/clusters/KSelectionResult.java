@@ -0,0 +1,199 @@
+package iteso.clusters;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de un barrido de valores de k con {@link KSelection}: para cada k, el reporte de
+ * calidad y los tiempos de ajuste y de evaluación, además de las curvas del codo y de la silueta.
+ */
+public class KSelectionResult {
+    /**
+     * Valores de k evaluados, en orden creciente.
+     */
+    private final int[] ks;
+
+    /**
+     * Reporte de calidad de cada k.
+     */
+    private final List<EvaluationReport> reports;
+
+    /**
+     * Iteraciones de K-Means de cada k; 0 en el clustering jerárquico.
+     */
+    private final int[] iterations;
+
+    /**
+     * Tiempo de ajuste y de evaluación de cada k, en nanosegundos.
+     */
+    private final long[] fitTimes, evaluationTimes;
+
+    /**
+     * Tiempo del trabajo compartido por todos los k (el dendrograma), en nanosegundos.
+     */
+    private final long sharedTime;
+
+    /**
+     * Tiempo total del barrido, en nanosegundos.
+     */
+    private final long totalTime;
+
+    /**
+     * Constructor del resultado.
+     * @param ks Valores de k en orden creciente.
+     * @param reports Reporte de calidad de cada k.
+     * @param iterations Iteraciones de cada k.
+     * @param fitTimes Tiempo de ajuste de cada k.
+     * @param evaluationTimes Tiempo de evaluación de cada k.
+     * @param sharedTime Tiempo del trabajo compartido.
+     * @param totalTime Tiempo total.
+     */
+    public KSelectionResult(int[] ks, List<EvaluationReport> reports, int[] iterations, long[] fitTimes,
+                            long[] evaluationTimes, long sharedTime, long totalTime) {
+        this.ks = ks;
+        this.reports = Collections.unmodifiableList(reports);
+        this.iterations = iterations;
+        this.fitTimes = fitTimes;
+        this.evaluationTimes = evaluationTimes;
+        this.sharedTime = sharedTime;
+        this.totalTime = totalTime;
+    }
+
+    /**
+     * Obtiene los valores de k evaluados.
+     * @return Valores de k en orden creciente.
+     */
+    public int[] getKs() {
+        return ks.clone();
+    }
+
+    /**
+     * Obtiene el reporte de calidad de cada k.
+     * @return Reportes en el orden de {@link #getKs()}.
+     */
+    public List<EvaluationReport> getReports() {
+        return reports;
+    }
+
+    /**
+     * Obtiene la curva del codo: la inercia de cada k.
+     * @return Inercias en el orden de {@link #getKs()}.
+     */
+    public double[] getInertiaCurve() {
+        double[] curve = new double[ks.length];
+        for (int i = 0; i < curve.length; i++) {
+            curve[i] = reports.get(i).getInertia().getValue();
+        }
+        return curve;
+    }
+
+    /**
+     * Obtiene la curva de la silueta, exacta o estimada según el tamaño de muestra.
+     * @return Siluetas en el orden de {@link #getKs()}; NaN para k = 1.
+     */
+    public double[] getSilhouetteCurve() {
+        double[] curve = new double[ks.length];
+        for (int i = 0; i < curve.length; i++) {
+            curve[i] = reports.get(i).getSilhouette().getValue();
+        }
+        return curve;
+    }
+
+    /**
+     * Obtiene las iteraciones de K-Means de cada k.
+     * @return Iteraciones en el orden de {@link #getKs()}; 0 en el clustering jerárquico.
+     */
+    public int[] getIterations() {
+        return iterations.clone();
+    }
+
+    /**
+     * Obtiene el tiempo de ajuste de cada k.
+     * @return Tiempos en nanosegundos en el orden de {@link #getKs()}.
+     */
+    public long[] getFitTimes() {
+        return fitTimes.clone();
+    }
+
+    /**
+     * Obtiene el tiempo de evaluación de cada k.
+     * @return Tiempos en nanosegundos en el orden de {@link #getKs()}.
+     */
+    public long[] getEvaluationTimes() {
+        return evaluationTimes.clone();
+    }
+
+    /**
+     * Obtiene el tiempo del trabajo compartido por todos los k, como el dendrograma.
+     * @return Tiempo en nanosegundos.
+     */
+    public long getSharedTime() {
+        return sharedTime;
+    }
+
+    /**
+     * Obtiene el tiempo total del barrido.
+     * @return Tiempo en nanosegundos.
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Obtiene el k con la mayor silueta.
+     * @return El k, o -1 si ninguna silueta está definida.
+     */
+    public int getBestSilhouetteK() {
+        double[] curve = getSilhouetteCurve();
+        int best = -1;
+        for (int i = 0; i < curve.length; i++) {
+            if (!Double.isNaN(curve[i]) && (best < 0 || curve[i] > curve[best])) {
+                best = i;
+            }
+        }
+        return best < 0 ? -1 : ks[best];
+    }
+
+    /**
+     * Obtiene el codo de la curva de inercia: con ambos ejes normalizados a [0, 1], el k más
+     * alejado por debajo de la recta que une el primer y el último punto.
+     * @return El k del codo; con menos de tres valores, el primero.
+     */
+    public int getElbowK() {
+        double[] curve = getInertiaCurve();
+        if (ks.length < 3) {
+            return ks.length == 0 ? -1 : ks[0];
+        }
+        double first = curve[0];
+        double last = curve[curve.length - 1];
+        double range = first - last;
+        if (!(range > 0)) {
+            return ks[0];
+        }
+        int best = 0;
+        double bestGap = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < ks.length; i++) {
+            double x = (double) (ks[i] - ks[0]) / (ks[ks.length - 1] - ks[0]);
+            double y = (curve[i] - last) / range;
+            double gap = (1 - x) - y;
+            if (gap > bestGap) {
+                bestGap = gap;
+                best = i;
+            }
+        }
+        return ks[best];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < ks.length; i++) {
+            text.append(String.format("k=%d inercia=%.4f silueta=%.4f ajuste=%.2f ms evaluación=%.2f ms%n", ks[i],
+                    reports.get(i).getInertia().getValue(), reports.get(i).getSilhouette().getValue(),
+                    fitTimes[i] / 1e6, evaluationTimes[i] / 1e6));
+        }
+        text.append(String.format("Codo: k=%d, mejor silueta: k=%d, total %.2f ms", getElbowK(),
+                getBestSilhouetteK(), totalTime / 1e6));
+        return text.toString();
+    }
+}
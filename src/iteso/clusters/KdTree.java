@@ -0,0 +1,75 @@
+package iteso.clusters;
+
+/**
+ * Índice k-d: cada nodo guarda la caja alineada a los ejes que contiene a sus puntos y se parte
+ * por la mediana de la dimensión de mayor extensión. La cota de un nodo es la distancia del
+ * vector de consulta al punto más cercano de la caja, lo que es muy ajustado en pocas dimensiones.
+ * Se construye con {@link SpatialIndex#build(Dataset, DistanceMetric)}.
+ */
+public final class KdTree extends SpatialIndex {
+    /**
+     * Esquinas inferior y superior de la caja de cada nodo (nodos x dimensiones).
+     */
+    private final double[] lower, upper;
+
+    /**
+     * Constructor del índice, sin construirlo.
+     * @param values Características en orden por filas.
+     * @param size Número de puntos.
+     * @param dimensions Número de dimensiones.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param leafSize Número máximo de puntos por hoja.
+     */
+    KdTree(double[] values, int size, int dimensions, DistanceKernel kernel, int leafSize) {
+        super(values, size, dimensions, kernel, leafSize);
+        this.lower = new double[nodeCount * dimensions];
+        this.upper = new double[nodeCount * dimensions];
+    }
+
+    @Override
+    long estimatedBytes() {
+        return super.estimatedBytes() + 16L * nodeCount * dimensions;
+    }
+
+    @Override
+    void computeBounds(int node) {
+        int base = node * dimensions;
+        int first = order[nodeStart[node]] * dimensions;
+        System.arraycopy(values, first, lower, base, dimensions);
+        System.arraycopy(values, first, upper, base, dimensions);
+        for (int i = nodeStart[node] + 1; i < nodeEnd[node]; i++) {
+            int row = order[i] * dimensions;
+            for (int j = 0; j < dimensions; j++) {
+                double value = values[row + j];
+                if (value < lower[base + j]) lower[base + j] = value;
+                if (value > upper[base + j]) upper[base + j] = value;
+            }
+        }
+    }
+
+    @Override
+    int splitDimension(int node) {
+        int base = node * dimensions;
+        int best = 0;
+        double widest = -1.0;
+        for (int j = 0; j < dimensions; j++) {
+            double width = upper[base + j] - lower[base + j];
+            if (width > widest) {
+                widest = width;
+                best = j;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    double lowerBound(int node, double[] query, int offset, Search search) {
+        // Punto de la caja más cercano al vector de consulta
+        double[] closest = search.scratch(dimensions);
+        int base = node * dimensions;
+        for (int j = 0; j < dimensions; j++) {
+            closest[j] = Math.max(lower[base + j], Math.min(upper[base + j], query[offset + j]));
+        }
+        return kernel.distance(query, offset, closest, 0, dimensions);
+    }
+}
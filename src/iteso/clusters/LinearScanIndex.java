@@ -0,0 +1,36 @@
+package iteso.clusters;
+
+/**
+ * Índice sin cotas para métricas que no permiten descartar nodos, como la distancia coseno, que
+ * no cumple la desigualdad triangular ni se acota con cajas. Conserva la interfaz y el orden de
+ * desempate de {@link SpatialIndex}, pero cada búsqueda compara contra todos los puntos.
+ * Se construye con {@link SpatialIndex#build(Dataset, DistanceMetric)}.
+ */
+public final class LinearScanIndex extends SpatialIndex {
+    /**
+     * Constructor del índice, sin construirlo.
+     * @param values Características en orden por filas.
+     * @param size Número de puntos.
+     * @param dimensions Número de dimensiones.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param leafSize Número máximo de puntos por hoja.
+     */
+    LinearScanIndex(double[] values, int size, int dimensions, DistanceKernel kernel, int leafSize) {
+        super(values, size, dimensions, kernel, leafSize);
+    }
+
+    @Override
+    void computeBounds(int node) {
+        // Sin cotas: ningún nodo puede descartarse
+    }
+
+    @Override
+    int splitDimension(int node) {
+        return 0;
+    }
+
+    @Override
+    double lowerBound(int node, double[] query, int offset, Search search) {
+        return Double.NEGATIVE_INFINITY;
+    }
+}
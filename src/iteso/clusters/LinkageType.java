@@ -2,14 +2,129 @@ package iteso.clusters;
 
 /**
  * Enumeración de los tipos de enlace disponibles para clustering jerárquico.
+ * <p>
+ * Cada enlace declara sus coeficientes de Lance-Williams, con los que la distancia de un cluster k
+ * a la unión de los clusters a y b se obtiene de las distancias ya conocidas, sin volver a recorrer
+ * los puntos:
+ * d(k, a∪b) = αa·d(k,a) + αb·d(k,b) + β·d(a,b) + γ·|d(k,a) − d(k,b)|.
  */
 public enum LinkageType {
     /**
      * Enlace simple: usa la distancia mínima entre puntos de diferentes clusters.
      */
-    SINGLE,
+    SINGLE(true),
     /**
      * Enlace completo: usa la distancia máxima entre puntos de diferentes clusters.
      */
-    COMPLETE
-}
\ No newline at end of file
+    COMPLETE(true),
+    /**
+     * Enlace promedio (UPGMA): usa el promedio de las distancias entre los puntos de un cluster y
+     * los del otro.
+     */
+    AVERAGE(true),
+    /**
+     * Enlace de Ward: fusiona los clusters que menos aumentan la suma de cuadrados dentro de los
+     * clusters. La altura de la fusión de a y b es sqrt(2·na·nb / (na + nb))·‖ca − cb‖, que solo
+     * depende de los centroides y los tamaños; por eso requiere la distancia euclidiana.
+     */
+    WARD(true);
+
+    /**
+     * Indica si el enlace es reducible; ver {@link #isReducible()}.
+     */
+    private final boolean reducible;
+
+    LinkageType(boolean reducible) {
+        this.reducible = reducible;
+    }
+
+    /**
+     * Calcula la distancia de un cluster a la unión de otros dos con la fórmula de Lance-Williams.
+     * @param distanceA Distancia del cluster k al cluster a.
+     * @param distanceB Distancia del cluster k al cluster b.
+     * @param distanceAB Distancia entre a y b.
+     * @param sizeA Tamaño (o peso) de a.
+     * @param sizeB Tamaño (o peso) de b.
+     * @param sizeK Tamaño (o peso) de k.
+     * @return Distancia de k a la unión; al cuadrado si {@link #usesSquaredDistances()}.
+     */
+    public double update(double distanceA, double distanceB, double distanceAB,
+                         double sizeA, double sizeB, double sizeK) {
+        return alpha(sizeA, sizeB, sizeK) * distanceA + alpha(sizeB, sizeA, sizeK) * distanceB
+                + beta(sizeA, sizeB, sizeK) * distanceAB + gamma() * Math.abs(distanceA - distanceB);
+    }
+
+    /**
+     * Obtiene el coeficiente αa de Lance-Williams; αb es el mismo con los tamaños intercambiados.
+     * @param sizeA Tamaño de a.
+     * @param sizeB Tamaño de b.
+     * @param sizeK Tamaño de k.
+     * @return El coeficiente.
+     */
+    public double alpha(double sizeA, double sizeB, double sizeK) {
+        switch (this) {
+            case SINGLE:
+            case COMPLETE:
+                return 0.5;
+            case AVERAGE:
+                return sizeA / (sizeA + sizeB);
+            case WARD:
+                return (sizeA + sizeK) / (sizeA + sizeB + sizeK);
+            default:
+                throw new IllegalArgumentException("Tipo de enlace no soportado: " + this);
+        }
+    }
+
+    /**
+     * Obtiene el coeficiente β de Lance-Williams.
+     * @param sizeA Tamaño de a.
+     * @param sizeB Tamaño de b.
+     * @param sizeK Tamaño de k.
+     * @return El coeficiente.
+     */
+    public double beta(double sizeA, double sizeB, double sizeK) {
+        return this == WARD ? -sizeK / (sizeA + sizeB + sizeK) : 0.0;
+    }
+
+    /**
+     * Obtiene el coeficiente γ de Lance-Williams.
+     * @return -1/2 para enlace simple, 1/2 para completo y 0 para los demás.
+     */
+    public double gamma() {
+        switch (this) {
+            case SINGLE:
+                return -0.5;
+            case COMPLETE:
+                return 0.5;
+            default:
+                return 0.0;
+        }
+    }
+
+    /**
+     * Indica si el enlace es reducible: fusionar dos clusters nunca acerca la unión a un tercero
+     * más de lo que estaba el más cercano de los dos. Es lo que permite usar la cadena de vecinos
+     * más cercanos en lugar de buscar el par más cercano en cada paso; los enlaces de centroide o
+     * de mediana, por ejemplo, no lo son.
+     * @return true si el enlace es reducible.
+     */
+    public boolean isReducible() {
+        return reducible;
+    }
+
+    /**
+     * Indica si la fórmula de Lance-Williams se aplica a las distancias al cuadrado.
+     * @return true para el enlace de Ward.
+     */
+    public boolean usesSquaredDistances() {
+        return this == WARD;
+    }
+
+    /**
+     * Indica si el enlace solo tiene sentido con la distancia euclidiana.
+     * @return true para el enlace de Ward.
+     */
+    public boolean requiresEuclidean() {
+        return this == WARD;
+    }
+}
@@ -0,0 +1,39 @@
+package iteso.clusters;
+
+/**
+ * Enumeración de las formas de almacenar una {@link CondensedDistanceMatrix}.
+ */
+public enum MatrixStorage {
+    /**
+     * Array de doubles en el heap; limitado a unos 65 mil puntos.
+     */
+    DOUBLE,
+    /**
+     * Array de floats en el heap: la mitad de memoria, con unos 7 dígitos de precisión.
+     */
+    FLOAT,
+    /**
+     * Doubles en un archivo temporal mapeado en memoria; el tamaño solo está limitado por el disco.
+     */
+    MAPPED_DOUBLE,
+    /**
+     * Floats en un archivo temporal mapeado en memoria; con 100 mil puntos ocupa unos 20 GB.
+     */
+    MAPPED_FLOAT;
+
+    /**
+     * Indica si los valores se guardan en precisión simple.
+     * @return true para FLOAT y MAPPED_FLOAT.
+     */
+    public boolean isSinglePrecision() {
+        return this == FLOAT || this == MAPPED_FLOAT;
+    }
+
+    /**
+     * Indica si los valores viven en un archivo mapeado en memoria.
+     * @return true para MAPPED_DOUBLE y MAPPED_FLOAT.
+     */
+    public boolean isMapped() {
+        return this == MAPPED_DOUBLE || this == MAPPED_FLOAT;
+    }
+}
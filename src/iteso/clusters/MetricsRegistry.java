@@ -0,0 +1,161 @@
+package iteso.clusters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Receptor que acumula las mediciones de todas las ejecuciones en que se registra: tiempo,
+ * número de veces, distancias y memoria estimada de cada fase, la curva de inercia por iteración
+ * y las fusiones por segundo. Es seguro para hilos y puede compartirse entre ejecuciones
+ * concurrentes; {@link #toString()} da un resumen legible.
+ */
+public class MetricsRegistry implements ClusteringListener {
+    /**
+     * Acumuladores de cada fase, con llave "componente.fase".
+     */
+    private final Map<String, Phase> phases = new ConcurrentHashMap<>();
+
+    /**
+     * Inercia de cada iteración de K-Means, en el orden en que se recibieron.
+     */
+    private final List<Double> inertia = new ArrayList<>();
+
+    /**
+     * Fusiones y tiempo total dedicado a calcularlas.
+     */
+    private final LongAdder merges = new LongAdder();
+    private final LongAdder mergeNanos = new LongAdder();
+
+    /**
+     * Acumuladores de una fase.
+     */
+    private static final class Phase {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder distances = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+    }
+
+    @Override
+    public void phaseCompleted(String source, String phase, long nanos, long distanceComputations,
+                               long allocatedBytes) {
+        Phase totals = phases.computeIfAbsent(source + "." + phase, key -> new Phase());
+        totals.count.increment();
+        totals.nanos.add(nanos);
+        totals.distances.add(distanceComputations);
+        totals.bytes.add(allocatedBytes);
+    }
+
+    @Override
+    public void iterationCompleted(String source, int iteration, double inertia, int changes,
+                                   long distanceComputations, long nanos) {
+        synchronized (this.inertia) {
+            this.inertia.add(inertia);
+        }
+    }
+
+    @Override
+    public void mergesCompleted(String source, int merges, long nanos) {
+        this.merges.add(merges);
+        mergeNanos.add(nanos);
+    }
+
+    /**
+     * Obtiene el tiempo acumulado de una fase.
+     * @param source Componente, por ejemplo "KMeans".
+     * @param phase Nombre de la fase.
+     * @return Tiempo en nanosegundos, o 0 si la fase no se ha ejecutado.
+     */
+    public long getPhaseTime(String source, String phase) {
+        Phase totals = phases.get(source + "." + phase);
+        return totals == null ? 0 : totals.nanos.sum();
+    }
+
+    /**
+     * Obtiene cuántas veces se ha ejecutado una fase.
+     * @param source Componente.
+     * @param phase Nombre de la fase.
+     * @return Número de ejecuciones.
+     */
+    public long getPhaseCount(String source, String phase) {
+        Phase totals = phases.get(source + "." + phase);
+        return totals == null ? 0 : totals.count.sum();
+    }
+
+    /**
+     * Obtiene el total de distancias evaluadas en todas las fases.
+     * @return Número de evaluaciones de distancia.
+     */
+    public long getDistanceComputations() {
+        long total = 0;
+        for (Phase totals : phases.values()) {
+            total += totals.distances.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Obtiene la estimación acumulada de la memoria reservada en todas las fases.
+     * @return Número de bytes.
+     */
+    public long getAllocatedBytes() {
+        long total = 0;
+        for (Phase totals : phases.values()) {
+            total += totals.bytes.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Obtiene la inercia de cada iteración de K-Means recibida.
+     * @return Inercias en el orden en que se recibieron.
+     */
+    public double[] getInertiaCurve() {
+        synchronized (inertia) {
+            return inertia.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+
+    /**
+     * Obtiene las fusiones por segundo de los clustering jerárquicos recibidos.
+     * @return Fusiones por segundo, o 0 si no se ha recibido ninguno.
+     */
+    public double getMergesPerSecond() {
+        long nanos = mergeNanos.sum();
+        return nanos == 0 ? 0.0 : merges.sum() * 1e9 / nanos;
+    }
+
+    /**
+     * Borra todas las mediciones acumuladas.
+     */
+    public void clear() {
+        phases.clear();
+        synchronized (inertia) {
+            inertia.clear();
+        }
+        merges.reset();
+        mergeNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Phase> entry : new TreeMap<>(phases).entrySet()) {
+            Phase totals = entry.getValue();
+            text.append(String.format("%s: %d veces, %.2f ms, %d distancias, %.1f MB%n", entry.getKey(),
+                    totals.count.sum(), totals.nanos.sum() / 1e6, totals.distances.sum(), totals.bytes.sum() / 1e6));
+        }
+        if (merges.sum() > 0) {
+            text.append(String.format("Fusiones por segundo: %.0f%n", getMergesPerSecond()));
+        }
+        double[] curve = getInertiaCurve();
+        if (curve.length > 0) {
+            text.append(String.format("Iteraciones: %d, última inercia: %.4f%n", curve.length, curve[curve.length - 1]));
+        }
+        return text.toString();
+    }
+}
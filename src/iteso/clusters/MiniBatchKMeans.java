@@ -0,0 +1,426 @@
+package iteso.clusters;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Clase que implementa K-Means por mini-lotes (Sculley, 2010).
+ * <p>
+ * En cada paso se toma un lote de tamaño fijo, se asigna cada punto del lote a su centroide más
+ * cercano y cada centroide se mueve hacia sus puntos con una tasa de aprendizaje de
+ * 1 / (puntos que ha recibido). Así no es necesario tener todos los datos en memoria:
+ * {@link #fit(BatchSource)} consume lotes de una fuente en flujo y {@link #partialFit(Dataset)}
+ * permite seguir actualizando los centroides conforme llegan datos nuevos, sin reentrenar.
+ * Con {@link DistanceMetric#COSINE} los centroides se normalizan a norma 1 al inicializarse y
+ * tras cada lote, como en {@link KMeans}.
+ * Los métodos de actualización y consulta están sincronizados para poder usarse desde un servicio.
+ */
+public class MiniBatchKMeans implements ClusteringAlgorithm {
+    /**
+     * Número de clusters a formar.
+     */
+    private int k;
+
+    /**
+     * Número de puntos por lote.
+     */
+    private int batchSize;
+
+    /**
+     * Número máximo de lotes a procesar en un entrenamiento.
+     */
+    private int maxIterations;
+
+    /**
+     * Métrica de distancia a utilizar.
+     */
+    private DistanceMetric metric;
+
+    /**
+     * Exponente de la distancia de Minkowski; solo se usa con {@link DistanceMetric#MINKOWSKI}.
+     */
+    private double minkowskiP = DistanceMetric.DEFAULT_MINKOWSKI_P;
+
+    /**
+     * Núcleo de distancias de la métrica.
+     */
+    private DistanceKernel kernel;
+
+    /**
+     * Estrategia de selección de los centroides iniciales, aplicada sobre el primer lote.
+     */
+    private CentroidInitializer initializer = InitializationMethod.KMEANS_PLUS_PLUS;
+
+    /**
+     * Semilla fija, o null para elegir una nueva en cada entrenamiento.
+     */
+    private Long seed;
+
+    /**
+     * Desplazamiento máximo de un centroide en un lote por debajo del cual se considera que convergió.
+     */
+    private double tolerance = 0.0;
+
+    /**
+     * Centroides actuales (k x dimensiones), o null antes del primer lote.
+     */
+    private double[] centroids;
+
+    /**
+     * Número de puntos que ha recibido cada centroide.
+     */
+    private long[] counts;
+
+    /**
+     * Número de dimensiones de los datos entrenados.
+     */
+    private int dimensions;
+
+    /**
+     * Constructor que inicializa los parámetros del algoritmo.
+     * @param k Número de clusters.
+     * @param batchSize Número de puntos por lote.
+     * @param maxIterations Número máximo de lotes por entrenamiento.
+     * @param metric Métrica de distancia.
+     */
+    public MiniBatchKMeans(int k, int batchSize, int maxIterations, DistanceMetric metric) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser al menos 1");
+        }
+        this.k = k;
+        this.batchSize = batchSize;
+        this.maxIterations = maxIterations;
+        this.metric = metric;
+        this.kernel = DistanceKernel.of(metric);
+    }
+
+    /**
+     * Establece el exponente de la distancia de Minkowski, que solo se usa con
+     * {@link DistanceMetric#MINKOWSKI}.
+     * @param minkowskiP Exponente, al menos 1; por defecto {@link DistanceMetric#DEFAULT_MINKOWSKI_P}.
+     */
+    public void setMinkowskiP(double minkowskiP) {
+        this.minkowskiP = DistanceMetric.checkMinkowskiP(minkowskiP);
+        this.kernel = DistanceKernel.of(metric, minkowskiP);
+    }
+
+    /**
+     * Establece la estrategia de selección de los centroides iniciales.
+     * @param initializer La estrategia a utilizar.
+     */
+    public void setInitializer(CentroidInitializer initializer) {
+        if (initializer == null) {
+            throw new IllegalArgumentException("La estrategia de inicialización no puede ser null");
+        }
+        this.initializer = initializer;
+    }
+
+    /**
+     * Fija la semilla del muestreo y de la inicialización.
+     * @param seed La semilla a utilizar.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Establece la tolerancia de convergencia para {@link #fit(Dataset)}: si ningún centroide se
+     * desplaza más que este valor al procesar un lote, el entrenamiento se detiene.
+     * @param tolerance Desplazamiento máximo permitido.
+     */
+    public void setTolerance(double tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("La tolerancia no puede ser negativa");
+        }
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Actualiza los centroides con un lote de datos nuevos. El primer lote después de crear el
+     * objeto o de {@link #reset()} inicializa los centroides y debe tener al menos k puntos.
+     * @param batch Lote de datos.
+     * @return Suma de las distancias euclidianas al cuadrado de los puntos del lote a su centroide,
+     * medida antes de actualizar.
+     */
+    public synchronized double partialFit(Dataset batch) {
+        return update(batch, seed != null ? seed : new Random().nextLong());
+    }
+
+    /**
+     * Olvida los centroides entrenados.
+     */
+    public synchronized void reset() {
+        centroids = null;
+        counts = null;
+        dimensions = 0;
+    }
+
+    /**
+     * Indica si ya se recibió al menos un lote.
+     * @return true si hay centroides entrenados.
+     */
+    public synchronized boolean isInitialized() {
+        return centroids != null;
+    }
+
+    /**
+     * Obtiene una copia de los centroides actuales.
+     * @return Centroides en orden por filas (k x dimensiones).
+     * @throws IllegalStateException Si aún no se ha recibido ningún lote.
+     */
+    public synchronized double[] getCentroids() {
+        checkInitialized();
+        return centroids.clone();
+    }
+
+    /**
+     * Obtiene cuántos puntos ha recibido cada centroide.
+     * @return Número de puntos por centroide.
+     * @throws IllegalStateException Si aún no se ha recibido ningún lote.
+     */
+    public synchronized long[] getCounts() {
+        checkInitialized();
+        return counts.clone();
+    }
+
+    /**
+     * Busca el cluster más cercano a un punto con los centroides actuales.
+     * @param features Características del punto.
+     * @return Índice del cluster más cercano.
+     * @throws IllegalStateException Si aún no se ha recibido ningún lote.
+     */
+    public synchronized int predict(double[] features) {
+        checkInitialized();
+        return nearest(features, 0);
+    }
+
+    /**
+     * Entrena con lotes muestreados al azar de los puntos proporcionados.
+     * @param data Lista de puntos de datos a clusterizar.
+     * @return Clusters resultantes junto con las estadísticas de la ejecución.
+     */
+    @Override
+    public KMeansResult fit(List<DataPoint> data) {
+        return fit(Dataset.fromDataPoints(data), data);
+    }
+
+    /**
+     * Entrena con lotes muestreados al azar (con reemplazo) del conjunto y al final asigna
+     * todos los puntos a su centroide más cercano.
+     * @param data Conjunto de datos a clusterizar.
+     * @return Clusters resultantes junto con las estadísticas de la ejecución.
+     */
+    @Override
+    public KMeansResult fit(Dataset data) {
+        return fit(data, data.toDataPoints());
+    }
+
+    /**
+     * Entrena consumiendo los lotes de una fuente en flujo, hasta agotarla o hasta procesar
+     * {@code maxIterations} lotes. Los datos nunca están completos en memoria, así que los
+     * clusters resultantes solo tienen centroide y la inercia informada es la suma de las
+     * inercias de cada lote medidas antes de actualizar.
+     * @param source Fuente de lotes; no se cierra.
+     * @return Clusters resultantes (sin puntos) junto con las estadísticas de la ejecución.
+     * @throws IOException Si la fuente no puede leerse.
+     * @throws InvalidDataException Si un lote contiene filas inválidas.
+     * @throws MissingDataException Si a un lote le faltan valores.
+     */
+    public synchronized KMeansResult fit(BatchSource source) throws IOException, InvalidDataException, MissingDataException {
+        reset();
+        long runSeed = seed != null ? seed : new Random().nextLong();
+        long[] iterationTimes = new long[16];
+        int iterations = 0;
+        long distances = 0;
+        double inertia = 0.0;
+        Dataset batch;
+        while ((maxIterations <= 0 || iterations < maxIterations) && (batch = source.nextBatch()) != null) {
+            long start = System.nanoTime();
+            inertia += update(batch, runSeed);
+            distances += (long) batch.size() * k;
+            if (iterations == iterationTimes.length) {
+                iterationTimes = Arrays.copyOf(iterationTimes, iterations * 2);
+            }
+            iterationTimes[iterations++] = System.nanoTime() - start;
+        }
+        checkInitialized();
+        return new KMeansResult(centroidClusters(), iterations, false, inertia,
+                Arrays.copyOf(iterationTimes, iterations), 0, runSeed, distances, distances);
+    }
+
+    /**
+     * Entrena sobre un conjunto en memoria, usando los puntos dados como miembros de los clusters.
+     * @param data Conjunto de datos con las características.
+     * @param points Puntos correspondientes a cada fila del conjunto.
+     * @return Clusters resultantes junto con las estadísticas de la ejecución.
+     */
+    private synchronized KMeansResult fit(Dataset data, List<DataPoint> points) {
+        reset();
+        long runSeed = seed != null ? seed : new Random().nextLong();
+        Random random = new Random(runSeed);
+        int size = data.size();
+        int sampleSize = Math.min(batchSize, size);
+        Dataset batch = Dataset.allocate(sampleSize, data.dimensions());
+
+        long[] iterationTimes = new long[Math.max(maxIterations, 0)];
+        double[] previous = null;
+        int iterations = 0;
+        boolean converged = false;
+        long distances = 0;
+        long initializationTime = 0;
+        while (iterations < maxIterations && !converged) {
+            long start = System.nanoTime();
+            // Muestrear un lote con reemplazo
+            for (int i = 0; i < sampleSize; i++) {
+                data.copyRow(random.nextInt(size), batch.array(), i * batch.dimensions());
+            }
+            if (centroids == null) {
+                long initializationStart = System.nanoTime();
+                initialize(batch, runSeed);
+                initializationTime = System.nanoTime() - initializationStart;
+                update(batch, runSeed);
+            } else {
+                update(batch, runSeed);
+                converged = maxShift(previous) <= tolerance;
+            }
+            distances += (long) sampleSize * k;
+            previous = centroids.clone();
+            iterationTimes[iterations++] = System.nanoTime() - start;
+        }
+        checkInitialized();
+
+        // Asignar todos los puntos con los centroides finales
+        KMeansEngine engine = new KMeansEngine(data, centroids, kernel, null);
+        engine.assign();
+        distances += engine.distanceComputations();
+        return new KMeansResult(engine.toClusters(points), iterations, converged, engine.inertia(),
+                Arrays.copyOf(iterationTimes, iterations), initializationTime, runSeed, distances,
+                distances);
+    }
+
+    /**
+     * Inicializa los centroides a partir de un lote con la estrategia configurada.
+     * @param batch Lote de datos con al menos k puntos.
+     * @param runSeed Semilla de la inicialización.
+     */
+    private void initialize(Dataset batch, long runSeed) {
+        if (batch.size() < k) {
+            throw new IllegalArgumentException("El primer lote debe tener al menos k = " + k + " puntos");
+        }
+        dimensions = batch.dimensions();
+        centroids = initializer.initialize(batch, k, kernel, runSeed, null);
+        if (metric.requiresNormalizedVectors()) {
+            for (int j = 0; j < k; j++) {
+                KMeansEngine.normalize(centroids, j * dimensions, dimensions);
+            }
+        }
+        counts = new long[k];
+    }
+
+    /**
+     * Aplica un paso de mini-lote: asigna los puntos del lote con los centroides actuales y después
+     * mueve cada centroide hacia sus puntos con tasa 1 / (puntos recibidos).
+     * @param batch Lote de datos.
+     * @param runSeed Semilla para inicializar los centroides si aún no existen.
+     * @return Inercia del lote antes de actualizar.
+     */
+    private double update(Dataset batch, long runSeed) {
+        if (centroids == null) {
+            initialize(batch, runSeed);
+        } else if (batch.dimensions() != dimensions) {
+            throw new IllegalArgumentException("El lote tiene " + batch.dimensions()
+                    + " dimensiones, se esperaban " + dimensions);
+        }
+
+        int size = batch.size();
+        boolean onHeap = batch.hasArray();
+        double[] values = onHeap ? batch.array() : new double[Dataset.checkedCapacity(size, dimensions)];
+        if (!onHeap) {
+            for (int p = 0; p < size; p++) {
+                batch.copyRow(p, values, p * dimensions);
+            }
+        }
+
+        // Asignar todo el lote antes de mover los centroides
+        int[] labels = new int[size];
+        double inertia = 0.0;
+        for (int p = 0; p < size; p++) {
+            labels[p] = nearest(values, p * dimensions);
+            inertia += DistanceKernel.of(DistanceMetric.EUCLIDEAN).squaredDistance(values, p * dimensions, centroids,
+                    labels[p] * dimensions, dimensions);
+        }
+
+        // Mover cada centroide con su propia tasa de aprendizaje
+        boolean[] moved = new boolean[k];
+        for (int p = 0; p < size; p++) {
+            int label = labels[p];
+            moved[label] = true;
+            counts[label]++;
+            double rate = 1.0 / counts[label];
+            int offset = label * dimensions;
+            for (int i = 0; i < dimensions; i++) {
+                centroids[offset + i] += rate * (values[p * dimensions + i] - centroids[offset + i]);
+            }
+        }
+        if (metric.requiresNormalizedVectors()) {
+            // K-Means esférico: la distancia coseno supone centroides de norma 1
+            for (int j = 0; j < k; j++) {
+                if (moved[j]) {
+                    KMeansEngine.normalize(centroids, j * dimensions, dimensions);
+                }
+            }
+        }
+        return inertia;
+    }
+
+    /**
+     * Busca el centroide más cercano a un vector; en caso de empate gana el de menor índice.
+     * @param values Array que contiene el vector.
+     * @param offset Posición inicial del vector.
+     * @return Índice del centroide más cercano.
+     */
+    private int nearest(double[] values, int offset) {
+        return kernel.nearest(values, offset, centroids, k, dimensions);
+    }
+
+    /**
+     * Calcula el mayor desplazamiento euclidiano de un centroide respecto a una copia anterior.
+     * @param previous Centroides anteriores.
+     * @return El mayor desplazamiento.
+     */
+    private double maxShift(double[] previous) {
+        double max = 0.0;
+        for (int c = 0; c < k; c++) {
+            double shift = DistanceKernel.of(DistanceMetric.EUCLIDEAN).squaredDistance(previous, c * dimensions,
+                    centroids, c * dimensions, dimensions);
+            max = Math.max(max, shift);
+        }
+        return Math.sqrt(max);
+    }
+
+    /**
+     * Crea un cluster sin puntos por cada centroide actual.
+     * @return Lista de clusters.
+     */
+    private List<Cluster> centroidClusters() {
+        List<Cluster> clusters = new ArrayList<>(k);
+        for (int c = 0; c < k; c++) {
+            Cluster cluster = new Cluster();
+            cluster.setCentroid(new DataPoint(Arrays.copyOfRange(centroids, c * dimensions, (c + 1) * dimensions), null));
+            clusters.add(cluster);
+        }
+        return clusters;
+    }
+
+    /**
+     * Verifica que ya existan centroides entrenados.
+     */
+    private void checkInitialized() {
+        if (centroids == null) {
+            throw new IllegalStateException("El modelo aún no ha recibido datos");
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package iteso.clusters;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * K-Means con varios reinicios: ejecuta N ajustes con semillas distintas sobre los mismos datos y
+ * devuelve el de menor inercia, junto con la dispersión de la inercia entre reinicios en un
+ * {@link MultiStartKMeansResult}.
+ * <p>
+ * Los reinicios avanzan por rondas de una iteración que se reparten en un pool acotado; todos
+ * leen la misma matriz de características sin copiarla, y cada uno conserva solo su motor de
+ * iteraciones. Tras cada ronda, a partir de {@link #setWarmupIterations(int) unas iteraciones},
+ * se abandonan los reinicios cuya inercia supera a la mejor en más de
+ * {@link #setPruningMargin(double) un margen}: la inercia de Lloyd no aumenta entre iteraciones,
+ * así que es muy poco probable que un reinicio tan atrasado termine ganando.
+ * <p>
+ * La semilla de cada reinicio se deriva de una semilla maestra y las decisiones de abandono solo
+ * comparan reinicios en la misma ronda, de modo que el resultado es el mismo con cualquier número
+ * de hilos.
+ */
+public class MultiStartKMeans implements ClusteringAlgorithm {
+    /**
+     * Configuración de cada reinicio: k, iteraciones, métrica, tolerancia, inicialización y
+     * variante del motor.
+     */
+    private final KMeans kMeans;
+
+    /**
+     * Número de reinicios.
+     */
+    private final int restarts;
+
+    /**
+     * Semilla maestra, o null para elegir una nueva en cada ejecución.
+     */
+    private Long seed;
+
+    /**
+     * Fracción en que la inercia de un reinicio puede superar a la mejor antes de abandonarlo.
+     */
+    private double pruningMargin = 0.1;
+
+    /**
+     * Iteraciones que ejecuta cada reinicio antes de poder abandonarse.
+     */
+    private int warmupIterations = 3;
+
+    /**
+     * Número de hilos del pool cuando no se proporciona uno.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Pool de hilos compartido, o null para crear uno por ejecución según el paralelismo.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * Constructor que toma la configuración de un K-Means; su semilla, paralelismo y receptor se
+     * ignoran. Con {@link HamerlyKMeans} o {@link IndexedKMeans} cada reinicio usa el motor
+     * acelerado correspondiente.
+     * @param kMeans Configuración de cada reinicio.
+     * @param restarts Número de reinicios, al menos 1.
+     */
+    public MultiStartKMeans(KMeans kMeans, int restarts) {
+        if (kMeans == null) {
+            throw new IllegalArgumentException("Se requiere la configuración de K-Means");
+        }
+        if (restarts < 1) {
+            throw new IllegalArgumentException("El número de reinicios debe ser al menos 1");
+        }
+        this.kMeans = kMeans;
+        this.restarts = restarts;
+    }
+
+    /**
+     * Fija la semilla maestra para que toda la ejecución sea reproducible.
+     * @param seed La semilla, o null para elegir una en cada ejecución.
+     */
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Establece cuánto puede superar la inercia de un reinicio a la mejor antes de abandonarlo.
+     * @param pruningMargin Fracción de la mejor inercia, por ejemplo 0.1 para un 10 %;
+     *                      {@link Double#POSITIVE_INFINITY} ejecuta todos los reinicios completos.
+     */
+    public void setPruningMargin(double pruningMargin) {
+        if (!(pruningMargin >= 0)) {
+            throw new IllegalArgumentException("El margen de abandono no puede ser negativo");
+        }
+        this.pruningMargin = pruningMargin;
+    }
+
+    /**
+     * Establece las iteraciones que ejecuta cada reinicio antes de poder abandonarse; en las
+     * primeras la inercia cambia demasiado para compararla.
+     * @param warmupIterations Número de iteraciones, al menos 1.
+     */
+    public void setWarmupIterations(int warmupIterations) {
+        if (warmupIterations < 1) {
+            throw new IllegalArgumentException("Las iteraciones de calentamiento deben ser al menos 1");
+        }
+        this.warmupIterations = warmupIterations;
+    }
+
+    /**
+     * Establece el número de reinicios que avanzan a la vez. Con 1 todo se ejecuta en el hilo actual.
+     * @param parallelism Número de hilos.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("El paralelismo debe ser al menos 1");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Establece un pool de hilos compartido; tiene prioridad sobre el paralelismo.
+     * @param pool El pool a utilizar, o null para volver a usar el paralelismo configurado.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Ejecuta los reinicios sobre los datos proporcionados.
+     * @param data Lista de puntos de datos a clusterizar.
+     * @return Los clusters del mejor reinicio junto con las estadísticas de todos.
+     */
+    @Override
+    public MultiStartKMeansResult fit(List<DataPoint> data) {
+        return fit(Dataset.fromDataPoints(data), data);
+    }
+
+    /**
+     * Ejecuta los reinicios sobre un conjunto de datos columnar.
+     * @param data Conjunto de datos a clusterizar.
+     * @return Los clusters del mejor reinicio, cuyos puntos son vistas sobre el conjunto, junto
+     * con las estadísticas de todos.
+     */
+    @Override
+    public MultiStartKMeansResult fit(Dataset data) {
+        return fit(data, data.toDataPoints());
+    }
+
+    /**
+     * Ejecuta los reinicios por rondas y construye el resultado del mejor.
+     * @param data Conjunto de datos con las características.
+     * @param points Puntos correspondientes a cada fila del conjunto.
+     * @return El resultado.
+     */
+    private MultiStartKMeansResult fit(Dataset data, List<DataPoint> points) {
+        long start = System.nanoTime();
+        long masterSeed = seed != null ? seed : new Random().nextLong();
+        Restart[] runs = new Restart[restarts];
+        for (int i = 0; i < restarts; i++) {
+            runs[i] = new Restart(seedFor(masterSeed, i), kMeans.getMaxIterations());
+        }
+        ForkJoinPool executor = pool != null ? pool : parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        int best = -1;
+        try {
+            // Cada reinicio se inicializa y avanza en un solo hilo; el paralelismo es entre reinicios
+            KMeansEngine.runChunks(restarts, executor, i -> runs[i].initialize(data));
+            int[] all = new int[restarts];
+            Arrays.setAll(all, i -> i);
+            best = keepBest(runs, all, best);
+            int[] active = activeRestarts(runs);
+            while (active.length > 0) {
+                int[] round = active;
+                KMeansEngine.runChunks(round.length, executor, a -> runs[round[a]].step());
+
+                // La referencia es la mejor inercia conocida en esta ronda, de los activos y de los terminados
+                double reference = Double.POSITIVE_INFINITY;
+                for (Restart run : runs) {
+                    if (!run.pruned && !Double.isNaN(run.inertia)) {
+                        reference = Math.min(reference, run.inertia);
+                    }
+                }
+                for (int i : round) {
+                    Restart run = runs[i];
+                    if (!run.finished && run.iterations >= warmupIterations
+                            && run.inertia > reference * (1 + pruningMargin)) {
+                        run.prune();
+                    }
+                }
+                best = keepBest(runs, round, best);
+                active = activeRestarts(runs);
+            }
+        } finally {
+            if (executor != null && executor != pool) {
+                executor.shutdown();
+            }
+        }
+
+        Restart winner = runs[best];
+        KMeansEngine engine = winner.engine;
+        KMeansResult result = new KMeansResult(engine.toClusters(points), winner.iterations, winner.converged,
+                winner.inertia, Arrays.copyOf(winner.iterationTimes, winner.iterations), winner.initializationTime,
+                winner.seed, engine.distanceComputations(),
+                (long) data.size() * kMeans.getK() * winner.iterations);
+        long[] seeds = new long[restarts];
+        double[] inertias = new double[restarts];
+        int[] iterations = new int[restarts];
+        boolean[] pruned = new boolean[restarts];
+        for (int i = 0; i < restarts; i++) {
+            seeds[i] = runs[i].seed;
+            inertias[i] = runs[i].inertia;
+            iterations[i] = runs[i].iterations;
+            pruned[i] = runs[i].pruned;
+        }
+        return new MultiStartKMeansResult(result, best, kMeans.getMetric(), kMeans.getMinkowskiP(), masterSeed, seeds,
+                inertias, iterations, pruned, System.nanoTime() - start);
+    }
+
+    /**
+     * Compara con el mejor los reinicios que acaban de terminar y libera el motor de los demás;
+     * en empate gana el de menor índice.
+     * @param runs Todos los reinicios.
+     * @param candidates Índices de los reinicios de la ronda, en orden.
+     * @param best Índice del mejor reinicio terminado hasta ahora, o -1.
+     * @return Índice del mejor reinicio terminado, o -1 si ninguno ha terminado.
+     */
+    private static int keepBest(Restart[] runs, int[] candidates, int best) {
+        for (int i : candidates) {
+            Restart run = runs[i];
+            if (!run.finished || run.pruned) continue;
+            if (best < 0 || run.inertia < runs[best].inertia || (run.inertia == runs[best].inertia && i < best)) {
+                if (best >= 0) runs[best].engine = null;
+                best = i;
+            } else {
+                run.engine = null;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Obtiene los índices de los reinicios que aún no terminan, en orden.
+     */
+    private static int[] activeRestarts(Restart[] runs) {
+        int[] active = new int[runs.length];
+        int count = 0;
+        for (int i = 0; i < runs.length; i++) {
+            if (!runs[i].finished) active[count++] = i;
+        }
+        return Arrays.copyOf(active, count);
+    }
+
+    /**
+     * Deriva la semilla de un reinicio a partir de la semilla maestra.
+     * @param masterSeed Semilla maestra.
+     * @param restart Índice del reinicio.
+     * @return La semilla del reinicio.
+     */
+    private static long seedFor(long masterSeed, int restart) {
+        return new SplittableRandom(masterSeed + restart).nextLong();
+    }
+
+    /**
+     * Estado de un reinicio.
+     */
+    private final class Restart {
+        final long seed;
+        final long[] iterationTimes;
+        KMeansEngine engine;
+        long initializationTime;
+        int iterations;
+        double inertia = Double.NaN;
+        boolean converged, finished, pruned;
+
+        Restart(long seed, int maxIterations) {
+            this.seed = seed;
+            this.iterationTimes = new long[Math.max(maxIterations, 0)];
+            this.finished = maxIterations <= 0;
+        }
+
+        /**
+         * Elige los centroides iniciales y crea el motor, sin pool propio.
+         */
+        void initialize(Dataset data) {
+            long initializationStart = System.nanoTime();
+            DistanceKernel kernel = kMeans.getKernel();
+            double[] initialCentroids = kMeans.getInitializer().initialize(data, kMeans.getK(), kernel, seed, null);
+            initializationTime = System.nanoTime() - initializationStart;
+            engine = kMeans.createEngine(data, initialCentroids, kernel, null);
+            if (finished) {
+                engine.assign();
+                inertia = engine.inertia();
+            }
+        }
+
+        /**
+         * Ejecuta una iteración y, si el reinicio terminó o ya puede compararse, mide su inercia.
+         */
+        void step() {
+            long start = System.nanoTime();
+            int changes = engine.iterate();
+            iterationTimes[iterations++] = System.nanoTime() - start;
+            // Sin reasignaciones los centroides ya no pueden cambiar
+            converged = changes == 0 || engine.maxShift <= kMeans.getTolerance();
+            finished = converged || iterations >= iterationTimes.length;
+            if (finished || iterations >= warmupIterations) {
+                inertia = engine.inertia();
+            }
+        }
+
+        /**
+         * Abandona el reinicio y libera su motor.
+         */
+        void prune() {
+            pruned = true;
+            finished = true;
+            engine = null;
+        }
+    }
+}
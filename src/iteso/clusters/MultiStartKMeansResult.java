@@ -0,0 +1,244 @@
+package iteso.clusters;
+
+import java.util.AbstractList;
+
+/**
+ * Resultado de una ejecución de {@link MultiStartKMeans}.
+ * Se comporta como la lista de clusters del mejor reinicio, que está completo en
+ * {@link #getBest()}, y además informa la semilla, la inercia y las iteraciones de cada reinicio,
+ * cuáles se abandonaron y la dispersión de la inercia entre los que terminaron.
+ */
+public class MultiStartKMeansResult extends AbstractList<Cluster> {
+    /**
+     * Resultado completo del mejor reinicio.
+     */
+    private final KMeansResult best;
+
+    /**
+     * Índice del mejor reinicio.
+     */
+    private final int bestRestart;
+
+    /**
+     * Métrica de distancia de la ejecución.
+     */
+    private final DistanceMetric metric;
+
+    /**
+     * Exponente de Minkowski de la ejecución.
+     */
+    private final double minkowskiP;
+
+    /**
+     * Semilla maestra de la que se derivan las de los reinicios.
+     */
+    private final long seed;
+
+    /**
+     * Semilla de cada reinicio.
+     */
+    private final long[] seeds;
+
+    /**
+     * Inercia final de cada reinicio, o la última medida si se abandonó.
+     */
+    private final double[] inertias;
+
+    /**
+     * Iteraciones ejecutadas por cada reinicio.
+     */
+    private final int[] iterations;
+
+    /**
+     * Indica qué reinicios se abandonaron antes de terminar.
+     */
+    private final boolean[] pruned;
+
+    /**
+     * Duración total de la ejecución en nanosegundos.
+     */
+    private final long totalTime;
+
+    /**
+     * Constructor del resultado.
+     * @param best Resultado completo del mejor reinicio.
+     * @param bestRestart Índice del mejor reinicio.
+     * @param metric Métrica de distancia.
+     * @param minkowskiP Exponente de Minkowski; las demás métricas lo ignoran.
+     * @param seed Semilla maestra.
+     * @param seeds Semilla de cada reinicio.
+     * @param inertias Inercia de cada reinicio.
+     * @param iterations Iteraciones de cada reinicio.
+     * @param pruned Reinicios abandonados.
+     * @param totalTime Duración total en nanosegundos.
+     */
+    public MultiStartKMeansResult(KMeansResult best, int bestRestart, DistanceMetric metric, double minkowskiP,
+                                  long seed, long[] seeds, double[] inertias, int[] iterations, boolean[] pruned,
+                                  long totalTime) {
+        this.best = best;
+        this.bestRestart = bestRestart;
+        this.metric = metric;
+        this.minkowskiP = minkowskiP;
+        this.seed = seed;
+        this.seeds = seeds;
+        this.inertias = inertias;
+        this.iterations = iterations;
+        this.pruned = pruned;
+        this.totalTime = totalTime;
+    }
+
+    @Override
+    public Cluster get(int index) {
+        return best.get(index);
+    }
+
+    @Override
+    public int size() {
+        return best.size();
+    }
+
+    /**
+     * Obtiene el resultado completo del reinicio con menor inercia.
+     * @return El mejor resultado, con sus propias estadísticas.
+     */
+    public KMeansResult getBest() {
+        return best;
+    }
+
+    /**
+     * Crea un modelo persistente con los centroides del mejor reinicio.
+     * @return El modelo.
+     */
+    public KMeansModel toModel() {
+        return new KMeansModel(best, metric, minkowskiP);
+    }
+
+    /**
+     * Obtiene el índice del mejor reinicio; en empate gana el de menor índice.
+     * @return Índice del reinicio.
+     */
+    public int getBestRestart() {
+        return bestRestart;
+    }
+
+    /**
+     * Obtiene la semilla maestra, que basta para repetir toda la ejecución.
+     * @return La semilla.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Obtiene la semilla derivada de cada reinicio.
+     * @return Copia de las semillas.
+     */
+    public long[] getSeeds() {
+        return seeds.clone();
+    }
+
+    /**
+     * Obtiene la inercia de cada reinicio: la final si terminó, o la última medida si se abandonó.
+     * @return Copia de las inercias.
+     */
+    public double[] getInertias() {
+        return inertias.clone();
+    }
+
+    /**
+     * Obtiene las iteraciones ejecutadas por cada reinicio.
+     * @return Copia de las iteraciones.
+     */
+    public int[] getIterations() {
+        return iterations.clone();
+    }
+
+    /**
+     * Indica qué reinicios se abandonaron porque su inercia quedó claramente detrás de la mejor.
+     * @return Copia de las marcas.
+     */
+    public boolean[] getPruned() {
+        return pruned.clone();
+    }
+
+    /**
+     * Obtiene el número de reinicios abandonados.
+     * @return Número de reinicios.
+     */
+    public int getPrunedCount() {
+        int count = 0;
+        for (boolean value : pruned) {
+            if (value) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Obtiene la menor inercia, la del mejor reinicio.
+     * @return La inercia.
+     */
+    public double getBestInertia() {
+        return inertias[bestRestart];
+    }
+
+    /**
+     * Obtiene la mayor inercia entre los reinicios que terminaron.
+     * @return La inercia.
+     */
+    public double getWorstInertia() {
+        double worst = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < inertias.length; i++) {
+            if (!pruned[i]) worst = Math.max(worst, inertias[i]);
+        }
+        return worst;
+    }
+
+    /**
+     * Obtiene la inercia promedio de los reinicios que terminaron.
+     * @return El promedio.
+     */
+    public double getMeanInertia() {
+        double sum = 0.0;
+        int count = 0;
+        for (int i = 0; i < inertias.length; i++) {
+            if (!pruned[i]) {
+                sum += inertias[i];
+                count++;
+            }
+        }
+        return sum / count;
+    }
+
+    /**
+     * Obtiene la desviación estándar de la inercia de los reinicios que terminaron: cuánto
+     * depende el resultado de la semilla.
+     * @return La desviación estándar muestral, o 0 con un solo reinicio terminado.
+     */
+    public double getInertiaStandardDeviation() {
+        double mean = getMeanInertia();
+        double sum = 0.0;
+        int count = 0;
+        for (int i = 0; i < inertias.length; i++) {
+            if (!pruned[i]) {
+                sum += (inertias[i] - mean) * (inertias[i] - mean);
+                count++;
+            }
+        }
+        return count > 1 ? Math.sqrt(sum / (count - 1)) : 0.0;
+    }
+
+    /**
+     * Obtiene la duración total de la ejecución.
+     * @return Tiempo en nanosegundos.
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d reinicios (%d abandonados): mejor #%d con inercia %.6f, peor %.6f, promedio %.6f ± %.6f",
+                inertias.length, getPrunedCount(), bestRestart, getBestInertia(), getWorstInertia(),
+                getMeanInertia(), getInertiaStandardDeviation());
+    }
+}
@@ -0,0 +1,114 @@
+package iteso.clusters;
+
+import java.util.List;
+
+/**
+ * Ejecuta un algoritmo de clustering sobre los datos reducidos por una {@link DimensionReduction}.
+ * <p>
+ * Con datos de miles de dimensiones, o dispersos, cada distancia del algoritmo recorre todas las
+ * dimensiones; reducir antes a unas decenas hace que el costo dependa de la dimensión reducida y
+ * que los índices espaciales vuelvan a descartar nodos. La reducción se ajusta de nuevo en cada
+ * ejecución. Los clusters resultantes son vistas sobre el conjunto reducido: sus centroides están
+ * en el espacio reducido y {@link DataPoint#getIndex()} de cada punto es su fila en los datos
+ * originales, con la misma etiqueta.
+ */
+public class ProjectedClustering implements ClusteringAlgorithm {
+    /**
+     * Reducción que se aplica antes del clustering.
+     */
+    private final DimensionReduction reduction;
+
+    /**
+     * Algoritmo que se ejecuta sobre los datos reducidos.
+     */
+    private final ClusteringAlgorithm algorithm;
+
+    /**
+     * Datos reducidos de la última ejecución.
+     */
+    private Dataset reducedData;
+
+    /**
+     * Receptor de las mediciones de cada ejecución, o null para no medir.
+     */
+    private ClusteringListener listener;
+
+    /**
+     * Constructor que combina una reducción con un algoritmo.
+     * @param reduction Reducción de dimensiones.
+     * @param algorithm Algoritmo de clustering.
+     */
+    public ProjectedClustering(DimensionReduction reduction, ClusteringAlgorithm algorithm) {
+        if (reduction == null || algorithm == null) {
+            throw new IllegalArgumentException("Se requieren una reducción y un algoritmo");
+        }
+        this.reduction = reduction;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Establece el receptor de las mediciones de la fase de reducción; las del algoritmo se
+     * configuran en el algoritmo mismo.
+     * @param listener El receptor, o null para no medir.
+     */
+    public void setListener(ClusteringListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Obtiene los datos reducidos de la última ejecución.
+     * @return El conjunto reducido, o null si no se ha ejecutado.
+     */
+    public Dataset getReducedData() {
+        return reducedData;
+    }
+
+    /**
+     * Reduce los puntos y ejecuta el algoritmo sobre ellos.
+     * @param data Lista de puntos de datos a clusterizar.
+     * @return Lista de clusters resultantes, cuyos puntos son vistas sobre el conjunto reducido.
+     */
+    @Override
+    public List<Cluster> fit(List<DataPoint> data) {
+        return fit(Dataset.fromDataPoints(data));
+    }
+
+    /**
+     * Reduce un conjunto denso y ejecuta el algoritmo sobre él.
+     * @param data Conjunto de datos a clusterizar.
+     * @return Lista de clusters resultantes, cuyos puntos son vistas sobre el conjunto reducido.
+     */
+    @Override
+    public List<Cluster> fit(Dataset data) {
+        long start = System.nanoTime();
+        Dataset reduced = reduction.fit(data).transform(data);
+        return fitReduced(reduced, System.nanoTime() - start);
+    }
+
+    /**
+     * Reduce un conjunto disperso, recorriendo solo sus valores distintos de cero, y ejecuta el
+     * algoritmo sobre él.
+     * @param data Conjunto de datos a clusterizar.
+     * @return Lista de clusters resultantes, cuyos puntos son vistas sobre el conjunto reducido.
+     */
+    public List<Cluster> fit(SparseDataset data) {
+        long start = System.nanoTime();
+        Dataset reduced = reduction.fit(data).transform(data);
+        return fitReduced(reduced, System.nanoTime() - start);
+    }
+
+    /**
+     * Informa la reducción y ejecuta el algoritmo sobre los datos reducidos.
+     * @param reduced Datos reducidos.
+     * @param nanos Duración de la reducción.
+     * @return Lista de clusters resultantes.
+     */
+    private List<Cluster> fitReduced(Dataset reduced, long nanos) {
+        reducedData = reduced;
+        if (listener != null) {
+            listener.phaseCompleted("ProjectedClustering", "reducción", nanos, 0,
+                    8L * reduced.size() * reduced.dimensions());
+        }
+        return algorithm.fit(reduced);
+    }
+}
@@ -0,0 +1,134 @@
+package iteso.clusters;
+
+/**
+ * Valor de una métrica de calidad de clustering, con el tiempo que tomó calcularlo.
+ * Las métricas estimadas a partir de una muestra incluyen además un intervalo de confianza.
+ */
+public class QualityScore {
+    /**
+     * Nombre de la métrica.
+     */
+    private final String name;
+
+    /**
+     * Valor calculado o estimado.
+     */
+    private final double value;
+
+    /**
+     * Extremos del intervalo de confianza; iguales al valor si el cálculo es exacto.
+     */
+    private final double lowerBound, upperBound;
+
+    /**
+     * Número de puntos usados en el cálculo.
+     */
+    private final int sampleSize;
+
+    /**
+     * Indica si el valor es una estimación por muestreo.
+     */
+    private final boolean estimated;
+
+    /**
+     * Tiempo de cálculo en nanosegundos.
+     */
+    private final long computeTime;
+
+    /**
+     * Constructor de un valor exacto.
+     * @param name Nombre de la métrica.
+     * @param value Valor calculado.
+     * @param sampleSize Número de puntos usados.
+     * @param computeTime Tiempo de cálculo en nanosegundos.
+     */
+    public QualityScore(String name, double value, int sampleSize, long computeTime) {
+        this(name, value, value, value, sampleSize, false, computeTime);
+    }
+
+    /**
+     * Constructor general.
+     * @param name Nombre de la métrica.
+     * @param value Valor calculado o estimado.
+     * @param lowerBound Límite inferior del intervalo de confianza.
+     * @param upperBound Límite superior del intervalo de confianza.
+     * @param sampleSize Número de puntos usados.
+     * @param estimated true si el valor se estimó con una muestra.
+     * @param computeTime Tiempo de cálculo en nanosegundos.
+     */
+    public QualityScore(String name, double value, double lowerBound, double upperBound, int sampleSize,
+                        boolean estimated, long computeTime) {
+        this.name = name;
+        this.value = value;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+        this.sampleSize = sampleSize;
+        this.estimated = estimated;
+        this.computeTime = computeTime;
+    }
+
+    /**
+     * Obtiene el nombre de la métrica.
+     * @return Nombre de la métrica.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Obtiene el valor de la métrica; NaN si no está definida para los clusters dados.
+     * @return Valor de la métrica.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Obtiene el límite inferior del intervalo de confianza.
+     * @return Límite inferior.
+     */
+    public double getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Obtiene el límite superior del intervalo de confianza.
+     * @return Límite superior.
+     */
+    public double getUpperBound() {
+        return upperBound;
+    }
+
+    /**
+     * Obtiene el número de puntos usados en el cálculo.
+     * @return Número de puntos.
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Indica si el valor es una estimación por muestreo.
+     * @return true si se estimó con una muestra.
+     */
+    public boolean isEstimated() {
+        return estimated;
+    }
+
+    /**
+     * Obtiene el tiempo de cálculo en nanosegundos.
+     * @return Tiempo de cálculo.
+     */
+    public long getComputeTime() {
+        return computeTime;
+    }
+
+    @Override
+    public String toString() {
+        String text = String.format("%s: %.6f", name, value);
+        if (estimated) {
+            text += String.format(" [%.6f, %.6f] (muestra de %d)", lowerBound, upperBound, sampleSize);
+        }
+        return text + String.format(" en %.2f ms", computeTime / 1e6);
+    }
+}
@@ -0,0 +1,40 @@
+package iteso.clusters;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Proyección aleatoria de Achlioptas: cada entrada de la matriz vale ±sqrt(3 / t) con
+ * probabilidad 1/6 y 0 con probabilidad 2/3. Por el lema de Johnson-Lindenstrauss conserva
+ * aproximadamente las distancias euclidianas entre puntos con t del orden de log(n) / ε², sin
+ * mirar los datos: el ajuste solo genera la matriz, así que cuesta O(d · t) y no recorre los puntos.
+ * <p>
+ * Es la opción más barata para reducir antes de K-Means o DBSCAN con la métrica euclidiana;
+ * cuando importa conservar la varianza de los datos conviene {@link StreamingPCA}.
+ */
+public class RandomProjection extends DimensionReduction {
+    /**
+     * Constructor que fija el número de dimensiones del resultado.
+     * @param targetDimensions Número de dimensiones del resultado.
+     */
+    public RandomProjection(int targetDimensions) {
+        super(targetDimensions);
+    }
+
+    @Override
+    void fit(Rows rows, ForkJoinPool executor) {
+        int d = rows.dimensions;
+        int t = targetDimensions;
+        double scale = Math.sqrt(3.0 / t);
+        // La matriz se genera en orden, así que solo depende de la semilla y no del número de hilos
+        SplittableRandom random = new SplittableRandom(seed != null ? seed : new Random().nextLong());
+        double[] matrix = new double[Math.multiplyExact(d, t)];
+        for (int i = 0; i < matrix.length; i++) {
+            int draw = random.nextInt(6);
+            matrix[i] = draw == 0 ? scale : draw == 1 ? -scale : 0.0;
+        }
+        components = matrix;
+        shift = new double[t];
+    }
+}
@@ -0,0 +1,177 @@
+package iteso.clusters;
+
+import java.util.Arrays;
+
+/**
+ * Estadísticas de un {@link ClusteringService} en un momento dado: trabajos por estado final,
+ * profundidad de la cola, uso de la caché de datos y percentiles de la espera en cola y de la
+ * latencia total de los trabajos recientes.
+ */
+public class ServiceStats {
+    private final long submitted;
+    private final long succeeded;
+    private final long failed;
+    private final long cancelled;
+    private final long timedOut;
+    private final int queueDepth;
+    private final int running;
+    private final long cacheHits;
+    private final long cacheMisses;
+    private final long cachedBytes;
+
+    /**
+     * Muestras ordenadas de espera en cola y de latencia total, en nanosegundos.
+     */
+    private final long[] queueTimes;
+    private final long[] latencies;
+
+    ServiceStats(long submitted, long succeeded, long failed, long cancelled, long timedOut, int queueDepth,
+                 int running, long cacheHits, long cacheMisses, long cachedBytes, long[] queueTimes,
+                 long[] latencies) {
+        this.submitted = submitted;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.cancelled = cancelled;
+        this.timedOut = timedOut;
+        this.queueDepth = queueDepth;
+        this.running = running;
+        this.cacheHits = cacheHits;
+        this.cacheMisses = cacheMisses;
+        this.cachedBytes = cachedBytes;
+        this.queueTimes = queueTimes.clone();
+        this.latencies = latencies.clone();
+        Arrays.sort(this.queueTimes);
+        Arrays.sort(this.latencies);
+    }
+
+    /**
+     * Obtiene el número de trabajos enviados.
+     * @return Número de trabajos.
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Obtiene el número de trabajos terminados con resultado.
+     * @return Número de trabajos.
+     */
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Obtiene el número de trabajos terminados con error.
+     * @return Número de trabajos.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    /**
+     * Obtiene el número de trabajos cancelados.
+     * @return Número de trabajos.
+     */
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Obtiene el número de trabajos detenidos por su plazo.
+     * @return Número de trabajos.
+     */
+    public long getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Obtiene el número de trabajos enviados cuyo algoritmo aún no empieza.
+     * @return Profundidad de la cola.
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Obtiene el número de trabajos ejecutando su algoritmo.
+     * @return Número de trabajos.
+     */
+    public int getRunning() {
+        return running;
+    }
+
+    /**
+     * Obtiene cuántas veces un trabajo encontró sus datos en la caché.
+     * @return Número de aciertos.
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Obtiene cuántas veces un trabajo tuvo que cargar sus datos.
+     * @return Número de fallos.
+     */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Obtiene los bytes estimados de los datos en la caché.
+     * @return Número de bytes.
+     */
+    public long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * Obtiene un percentil de la espera en cola de los trabajos recientes que llegaron a ejecutarse.
+     * @param percentile Percentil entre 0 y 100.
+     * @return Espera en nanosegundos, o 0 sin muestras.
+     */
+    public long getQueueTimePercentile(double percentile) {
+        return percentile(queueTimes, percentile);
+    }
+
+    /**
+     * Obtiene un percentil de la latencia total, del envío al fin, de los trabajos recientes.
+     * @param percentile Percentil entre 0 y 100.
+     * @return Latencia en nanosegundos, o 0 sin muestras.
+     */
+    public long getLatencyPercentile(double percentile) {
+        return percentile(latencies, percentile);
+    }
+
+    /**
+     * Calcula un percentil por el método del rango más cercano.
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("El percentil debe estar entre 0 y 100");
+        }
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Trabajos: %d enviados, %d exitosos, %d fallidos, %d cancelados, %d vencidos%n"
+                        + "Cola: %d en espera, %d en ejecución%n"
+                        + "Caché: %d aciertos, %d fallos, %d KB%n"
+                        + "Espera en cola (ms): p50 %.1f, p95 %.1f, p99 %.1f, máx %.1f%n"
+                        + "Latencia (ms): p50 %.1f, p95 %.1f, p99 %.1f, máx %.1f",
+                submitted, succeeded, failed, cancelled, timedOut, queueDepth, running,
+                cacheHits, cacheMisses, cachedBytes / 1024,
+                millis(getQueueTimePercentile(50)), millis(getQueueTimePercentile(95)),
+                millis(getQueueTimePercentile(99)), millis(getQueueTimePercentile(100)),
+                millis(getLatencyPercentile(50)), millis(getLatencyPercentile(95)),
+                millis(getLatencyPercentile(99)), millis(getLatencyPercentile(100)));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -1,9 +1,14 @@
 package iteso.clusters;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
  * Clase principal que simplifica la ejecución de algoritmos de clustering.
+ * Por defecto imprime un resumen de cada cluster (tamaño y centroide); los puntos de cada cluster
+ * solo se imprimen con {@link #setPrintPoints(boolean)}, porque con muchos datos escribirlos en la
+ * consola tarda más que el clustering. Las mediciones de la carga y del algoritmo se envían al
+ * receptor de {@link #setListener(ClusteringListener)}, por ejemplo un {@link ConsoleSummary}.
  */
 public class Simplify {
     /**
@@ -11,6 +16,16 @@ public class Simplify {
      */
     private String csvPath;
 
+    /**
+     * Indica si se imprimen los datos cargados y los puntos de cada cluster.
+     */
+    private boolean printPoints;
+
+    /**
+     * Receptor de las mediciones, o null para no medir.
+     */
+    private ClusteringListener listener;
+
     /**
      * Constructor que inicializa la ruta del archivo CSV.
      * @param csvPath La ruta al archivo CSV.
@@ -19,6 +34,22 @@ public class Simplify {
         this.csvPath = csvPath;
     }
 
+    /**
+     * Indica si deben imprimirse los datos cargados y los puntos de cada cluster además del resumen.
+     * @param printPoints true para imprimir cada punto.
+     */
+    public void setPrintPoints(boolean printPoints) {
+        this.printPoints = printPoints;
+    }
+
+    /**
+     * Establece el receptor de las mediciones de la carga y del algoritmo.
+     * @param listener El receptor, o null para no medir.
+     */
+    public void setListener(ClusteringListener listener) {
+        this.listener = listener;
+    }
+
     /**
      * Ejecuta el clustering utilizando el método y parámetros especificados.
      * @param method El método de clustering ("kmeans" o "hierarchical").
@@ -29,33 +60,47 @@ public class Simplify {
     public void performClustering(String method, int numClusters, DistanceMetric metric, LinkageType linkageType) {
         // Cargar los datos desde el CSV
         DataLoader dataLoader = new DataLoader();
-        List<DataPoint> dataPoints = dataLoader.loadFromCSV(csvPath);
+        dataLoader.setListener(listener);
+        Dataset dataset;
+        try {
+            dataset = dataLoader.loadDataset(csvPath);
+        } catch (IOException | InvalidDataException | MissingDataException e) {
+            System.err.println("No se pudieron cargar datos desde el archivo: " + csvPath + " (" + e.getMessage() + ")");
+            return;
+        }
 
         // Validar que se hayan cargado datos
-        if (dataPoints.isEmpty()) {
+        if (dataset.size() == 0) {
             System.err.println("No se pudieron cargar datos desde el archivo: " + csvPath);
             return;
         }
+        System.out.println("Datos cargados: " + dataset.size() + " puntos de " + dataset.dimensions() + " dimensiones");
 
         // Mostrar los datos cargados
-        System.out.println("Datos cargados:");
-        for (DataPoint point : dataPoints) {
-            System.out.println("Características: " + java.util.Arrays.toString(point.getFeatures()) + ", Etiqueta: " + point.getLabel());
+        if (printPoints) {
+            for (DataPoint point : dataset.toDataPoints()) {
+                System.out.println("Características: " + java.util.Arrays.toString(point.getFeatures()) + ", Etiqueta: " + point.getLabel());
+            }
         }
 
         // Determinar el método de clustering a utilizar
         if (method.equalsIgnoreCase("kmeans")) {
             System.out.println("\nAplicando K-Means Clustering...");
             KMeans kMeans = new KMeans(numClusters, 100, metric);
-            List<Cluster> clusters = kMeans.fit(dataPoints);
+            kMeans.setListener(listener);
+            KMeansResult clusters = kMeans.fit(dataset);
 
             // Imprimir los clusters formados
             printClusters(clusters, "K-Means");
+            System.out.println("Iteraciones: " + clusters.getIterations()
+                    + (clusters.isConverged() ? " (convergió)" : " (límite alcanzado)")
+                    + ", inercia: " + clusters.getInertia());
 
         } else if (method.equalsIgnoreCase("hierarchical")) {
             System.out.println("\nAplicando Hierarchical Clustering...");
             HierarchicalClustering hierarchicalClustering = new HierarchicalClustering(metric, linkageType, numClusters);
-            List<Cluster> clusters = hierarchicalClustering.fit(dataPoints);
+            hierarchicalClustering.setListener(listener);
+            List<Cluster> clusters = hierarchicalClustering.fit(dataset);
 
             // Imprimir los clusters formados
             printClusters(clusters, "Hierarchical Clustering");
@@ -65,7 +110,7 @@ public class Simplify {
     }
 
     /**
-     * Imprime los clusters resultantes en la consola.
+     * Imprime el tamaño y el centroide de cada cluster en la consola, y sus puntos si se pidió.
      * @param clusters Lista de clusters a imprimir.
      * @param methodName El nombre del método de clustering utilizado.
      */
@@ -73,7 +118,11 @@ public class Simplify {
         System.out.println("\nClusters formados por " + methodName + ":");
         for (int i = 0; i < clusters.size(); i++) {
             Cluster cluster = clusters.get(i);
-            System.out.println("Cluster " + (i + 1) + ":");
+            System.out.println("Cluster " + (i + 1) + ": " + cluster.getPoints().size() + " puntos, centroide "
+                    + java.util.Arrays.toString(cluster.getCentroid().getFeatures()));
+            if (!printPoints) {
+                continue;
+            }
             for (DataPoint point : cluster.getPoints()) {
                 System.out.println("  Características: " + java.util.Arrays.toString(point.getFeatures()) + ", Etiqueta: " + point.getLabel());
             }
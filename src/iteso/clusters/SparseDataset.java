@@ -0,0 +1,279 @@
+package iteso.clusters;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto de datos disperso en formato CSR (filas comprimidas): por cada punto solo se guardan
+ * las características distintas de cero, con su columna, en orden creciente de columna.
+ * <p>
+ * Es la representación adecuada para datos de muchas dimensiones casi todas nulas, como las
+ * variables categóricas codificadas en one-hot o los conteos de términos de un texto: la memoria
+ * y el costo de cada distancia crecen con el número de valores distintos de cero y no con el
+ * número de dimensiones. Las distancias se calculan con {@link SparseKernel}, y
+ * {@link DimensionReduction} reduce el conjunto a uno denso de pocas dimensiones para ejecutar
+ * cualquier algoritmo de clustering sobre él.
+ */
+public class SparseDataset {
+    /**
+     * Número de puntos (filas) del conjunto.
+     */
+    private final int size;
+
+    /**
+     * Número de características (columnas) por punto.
+     */
+    private final int dimensions;
+
+    /**
+     * Posición en {@link #columns} y {@link #values} donde empieza cada fila; la fila i ocupa
+     * el rango [rowPointers[i], rowPointers[i + 1]).
+     */
+    private final int[] rowPointers;
+
+    /**
+     * Columna de cada valor distinto de cero, creciente dentro de cada fila.
+     */
+    private final int[] columns;
+
+    /**
+     * Valores distintos de cero.
+     */
+    private final double[] values;
+
+    /**
+     * Etiqueta de cada punto; puede contener nulls.
+     */
+    private final String[] labels;
+
+    /**
+     * Constructor que envuelve arreglos CSR existentes sin copiarlos.
+     * @param rowPointers Inicio de cada fila, con size + 1 elementos y el último igual al número
+     *                    de valores.
+     * @param columns Columna de cada valor, creciente dentro de cada fila.
+     * @param values Valores distintos de cero.
+     * @param dimensions Número de características por punto.
+     * @param labels Etiquetas de los puntos, o null si no hay etiquetas.
+     */
+    public SparseDataset(int[] rowPointers, int[] columns, double[] values, int dimensions, String[] labels) {
+        if (rowPointers.length == 0 || dimensions < 0) {
+            throw new IllegalArgumentException("Punteros de fila vacíos o dimensiones negativas");
+        }
+        int size = rowPointers.length - 1;
+        int nonZeros = rowPointers[size];
+        if (rowPointers[0] != 0 || columns.length < nonZeros || values.length < nonZeros) {
+            throw new IllegalArgumentException("Los punteros de fila no corresponden a los arreglos de valores");
+        }
+        for (int row = 0; row < size; row++) {
+            if (rowPointers[row] > rowPointers[row + 1]) {
+                throw new IllegalArgumentException("Los punteros de fila deben ser crecientes, fila " + row);
+            }
+            for (int i = rowPointers[row]; i < rowPointers[row + 1]; i++) {
+                if (columns[i] < 0 || columns[i] >= dimensions
+                        || (i > rowPointers[row] && columns[i] <= columns[i - 1])) {
+                    throw new IllegalArgumentException("Columnas inválidas o desordenadas en la fila " + row);
+                }
+            }
+        }
+        if (labels != null && labels.length < size) {
+            throw new IllegalArgumentException("Hay menos etiquetas que puntos");
+        }
+        this.size = size;
+        this.dimensions = dimensions;
+        this.rowPointers = rowPointers;
+        this.columns = columns;
+        this.values = values;
+        this.labels = labels != null ? labels : new String[size];
+    }
+
+    /**
+     * Crea un conjunto disperso con los valores distintos de cero de un conjunto denso.
+     * @param data Conjunto denso.
+     * @return El conjunto disperso, con las mismas etiquetas.
+     */
+    public static SparseDataset fromDataset(Dataset data) {
+        int size = data.size();
+        int dimensions = data.dimensions();
+        int[] rowPointers = new int[size + 1];
+        for (int row = 0; row < size; row++) {
+            int count = 0;
+            for (int column = 0; column < dimensions; column++) {
+                if (data.get(row, column) != 0.0) count++;
+            }
+            rowPointers[row + 1] = Math.addExact(rowPointers[row], count);
+        }
+        int[] columns = new int[rowPointers[size]];
+        double[] values = new double[rowPointers[size]];
+        int position = 0;
+        for (int row = 0; row < size; row++) {
+            for (int column = 0; column < dimensions; column++) {
+                double value = data.get(row, column);
+                if (value != 0.0) {
+                    columns[position] = column;
+                    values[position++] = value;
+                }
+            }
+        }
+        return new SparseDataset(rowPointers, columns, values, dimensions, data.getLabels().clone());
+    }
+
+    /**
+     * Obtiene el número de puntos del conjunto.
+     * @return Número de filas.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Obtiene el número de características por punto.
+     * @return Número de columnas.
+     */
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Obtiene el número de valores distintos de cero guardados.
+     * @return Número de valores.
+     */
+    public int nonZeros() {
+        return rowPointers[size];
+    }
+
+    /**
+     * Obtiene la fracción de valores distintos de cero.
+     * @return Valores guardados entre el total de la matriz densa.
+     */
+    public double density() {
+        long total = (long) size * dimensions;
+        return total == 0 ? 0.0 : (double) nonZeros() / total;
+    }
+
+    /**
+     * Lee una característica buscando su columna en la fila.
+     * @param row Índice del punto.
+     * @param column Índice de la característica.
+     * @return El valor, o 0 si no está guardado.
+     */
+    public double get(int row, int column) {
+        int found = Arrays.binarySearch(columns, rowPointers[row], rowPointers[row + 1], column);
+        return found >= 0 ? values[found] : 0.0;
+    }
+
+    /**
+     * Obtiene la posición donde empieza una fila en {@link #columns()} y {@link #values()}.
+     * @param row Índice del punto.
+     * @return Posición del primer valor de la fila.
+     */
+    public int rowStart(int row) {
+        return rowPointers[row];
+    }
+
+    /**
+     * Obtiene la posición donde termina una fila en {@link #columns()} y {@link #values()}.
+     * @param row Índice del punto.
+     * @return Posición siguiente al último valor de la fila.
+     */
+    public int rowEnd(int row) {
+        return rowPointers[row + 1];
+    }
+
+    /**
+     * Obtiene la columna de cada valor, sin copiarlas.
+     * @return Las columnas de todas las filas, consecutivas.
+     */
+    public int[] columns() {
+        return columns;
+    }
+
+    /**
+     * Obtiene los valores distintos de cero, sin copiarlos.
+     * @return Los valores de todas las filas, consecutivos.
+     */
+    public double[] values() {
+        return values;
+    }
+
+    /**
+     * Obtiene la etiqueta de un punto.
+     * @param row Índice del punto.
+     * @return La etiqueta, o null si no tiene.
+     */
+    public String getLabel(int row) {
+        return labels[row];
+    }
+
+    /**
+     * Obtiene el array de etiquetas, sin copiarlo.
+     * @return Las etiquetas de todos los puntos.
+     */
+    public String[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * Calcula la distancia entre dos puntos del conjunto, recorriendo solo sus valores distintos
+     * de cero.
+     * Con {@link DistanceMetric#MINKOWSKI} se usa {@link DistanceMetric#DEFAULT_MINKOWSKI_P}; para
+     * otro exponente se usa directamente {@link SparseKernel#minkowski(double)}.
+     * @param row Índice del primer punto.
+     * @param otherRow Índice del segundo punto.
+     * @param metric Métrica de distancia.
+     * @return La distancia.
+     */
+    public double distance(int row, int otherRow, DistanceMetric metric) {
+        return SparseKernel.of(metric).distance(this, row, this, otherRow);
+    }
+
+    /**
+     * Calcula la distancia de un punto del conjunto a un vector denso, por ejemplo un centroide.
+     * @param row Índice del punto.
+     * @param vector Array que contiene el vector denso.
+     * @param offset Posición inicial del vector.
+     * @param metric Métrica de distancia.
+     * @return La distancia.
+     * @see SparseKernel#comparable(SparseDataset, int, double[], int, double)
+     */
+    public double distance(int row, double[] vector, int offset, DistanceMetric metric) {
+        SparseKernel kernel = SparseKernel.of(metric);
+        double term = kernel.vectorTerm(vector, offset, dimensions);
+        return kernel.toDistance(kernel.comparable(this, row, vector, offset, term));
+    }
+
+    /**
+     * Divide cada punto entre su norma euclidiana, como supone {@link DistanceMetric#COSINE}.
+     * Los puntos nulos quedan igual.
+     */
+    public void normalizeRows() {
+        for (int row = 0; row < size; row++) {
+            double squaredNorm = 0.0;
+            for (int i = rowPointers[row]; i < rowPointers[row + 1]; i++) {
+                squaredNorm += values[i] * values[i];
+            }
+            if (squaredNorm > 0.0) {
+                double scale = 1.0 / Math.sqrt(squaredNorm);
+                for (int i = rowPointers[row]; i < rowPointers[row + 1]; i++) {
+                    values[i] *= scale;
+                }
+            }
+        }
+    }
+
+    /**
+     * Copia el conjunto a una matriz densa en el heap. Solo conviene con pocas dimensiones:
+     * la memoria crece con el número de puntos por el número de dimensiones.
+     * @return El conjunto denso, con las mismas etiquetas.
+     */
+    public Dataset toDense() {
+        Dataset dense = Dataset.allocate(size, dimensions);
+        double[] target = dense.array();
+        for (int row = 0; row < size; row++) {
+            int base = row * dimensions;
+            for (int i = rowPointers[row]; i < rowPointers[row + 1]; i++) {
+                target[base + columns[i]] = values[i];
+            }
+        }
+        System.arraycopy(labels, 0, dense.getLabels(), 0, size);
+        return dense;
+    }
+}
@@ -0,0 +1,437 @@
+package iteso.clusters;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Núcleo de cálculo de distancias sobre filas de un {@link SparseDataset}, que solo recorre sus
+ * valores distintos de cero.
+ * <p>
+ * Entre dos filas dispersas se recorren a la vez las dos listas de columnas, como en la mezcla de
+ * dos listas ordenadas. Entre una fila dispersa y un vector denso, como un centroide, la
+ * contribución de las columnas nulas de la fila solo depende del vector: se calcula una vez con
+ * {@link #vectorTerm} (la norma al cuadrado para la euclidiana, la norma 1 para Manhattan) y cada
+ * distancia solo corrige esa suma en las columnas distintas de cero. Así una distancia cuesta
+ * O(valores distintos de cero) en lugar de O(dimensiones). La excepción es Chebyshev, cuyo máximo
+ * no se descompone de esa forma y recorre el vector denso completo.
+ * <p>
+ * Igual que en {@link DistanceKernel}, {@link #comparable} devuelve un valor monótono con la
+ * distancia que se convierte con {@link #toDistance}.
+ */
+public abstract class SparseKernel {
+    private static final SparseKernel EUCLIDEAN = new Euclidean();
+    private static final SparseKernel MANHATTAN = new Manhattan();
+    private static final SparseKernel CHEBYSHEV = new Chebyshev();
+    private static final SparseKernel COSINE = new Cosine();
+
+    /**
+     * Núcleos de Minkowski creados, por exponente, para no crear uno en cada llamada.
+     */
+    private static final Map<Double, Minkowski> MINKOWSKI_KERNELS = new ConcurrentHashMap<>();
+
+    /**
+     * Último núcleo de Minkowski devuelto, igual que en {@link DistanceKernel#minkowski(double)}.
+     */
+    private static volatile Minkowski lastMinkowski;
+
+    SparseKernel() {
+    }
+
+    /**
+     * Obtiene el núcleo de una métrica; {@link DistanceMetric#MINKOWSKI} usa
+     * {@link DistanceMetric#DEFAULT_MINKOWSKI_P}.
+     * @param metric Métrica de distancia.
+     * @return El núcleo disperso.
+     */
+    public static SparseKernel of(DistanceMetric metric) {
+        return of(metric, DistanceMetric.DEFAULT_MINKOWSKI_P);
+    }
+
+    /**
+     * Obtiene el núcleo de una métrica con el exponente de Minkowski dado, que las demás métricas
+     * ignoran. No crea objetos, así que puede llamarse por cada distancia.
+     * @param metric Métrica de distancia.
+     * @param minkowskiP Exponente de Minkowski, al menos 1.
+     * @return El núcleo disperso.
+     */
+    public static SparseKernel of(DistanceMetric metric, double minkowskiP) {
+        if (metric == DistanceMetric.EUCLIDEAN) return EUCLIDEAN;
+        if (metric == DistanceMetric.MANHATTAN) return MANHATTAN;
+        if (metric == DistanceMetric.CHEBYSHEV) return CHEBYSHEV;
+        if (metric == DistanceMetric.COSINE) return COSINE;
+        if (metric == DistanceMetric.MINKOWSKI) return minkowski(minkowskiP);
+        throw new IllegalArgumentException("Métrica no soportada: " + metric);
+    }
+
+    /**
+     * Obtiene el núcleo disperso de Minkowski con un exponente; con p = 1, 2 o infinito devuelve
+     * el de Manhattan, euclidiano o de Chebyshev.
+     * @param p Exponente, al menos 1.
+     * @return El núcleo disperso.
+     */
+    public static SparseKernel minkowski(double p) {
+        if (p == 1.0) return MANHATTAN;
+        if (p == 2.0) return EUCLIDEAN;
+        if (p == Double.POSITIVE_INFINITY) return CHEBYSHEV;
+        Minkowski last = lastMinkowski;
+        if (last != null && last.p == p) {
+            return last;
+        }
+        last = MINKOWSKI_KERNELS.computeIfAbsent(DistanceMetric.checkMinkowskiP(p), Minkowski::new);
+        lastMinkowski = last;
+        return last;
+    }
+
+    /**
+     * Calcula el valor comparable entre dos filas dispersas.
+     * @param a Primer conjunto.
+     * @param row Fila del primer conjunto.
+     * @param b Segundo conjunto, con las mismas dimensiones.
+     * @param otherRow Fila del segundo conjunto.
+     * @return El valor comparable.
+     */
+    public abstract double comparable(SparseDataset a, int row, SparseDataset b, int otherRow);
+
+    /**
+     * Calcula la parte de la distancia a un vector denso que no depende de la fila dispersa.
+     * Se calcula una vez por vector y se pasa a {@link #comparable(SparseDataset, int, double[], int, double)}.
+     * @param vector Array que contiene el vector.
+     * @param offset Posición inicial del vector.
+     * @param length Número de dimensiones.
+     * @return El término del vector.
+     */
+    public abstract double vectorTerm(double[] vector, int offset, int length);
+
+    /**
+     * Calcula el valor comparable entre una fila dispersa y un vector denso.
+     * @param data Conjunto disperso.
+     * @param row Fila del conjunto.
+     * @param vector Array que contiene el vector, con las dimensiones del conjunto.
+     * @param offset Posición inicial del vector.
+     * @param vectorTerm Resultado de {@link #vectorTerm} para el mismo vector.
+     * @return El valor comparable.
+     */
+    public abstract double comparable(SparseDataset data, int row, double[] vector, int offset, double vectorTerm);
+
+    /**
+     * Convierte un valor comparable en la distancia real.
+     * @param comparable Valor devuelto por {@link #comparable}.
+     * @return La distancia.
+     */
+    public abstract double toDistance(double comparable);
+
+    /**
+     * Calcula la distancia entre dos filas dispersas.
+     * @param a Primer conjunto.
+     * @param row Fila del primer conjunto.
+     * @param b Segundo conjunto, con las mismas dimensiones.
+     * @param otherRow Fila del segundo conjunto.
+     * @return La distancia.
+     */
+    public double distance(SparseDataset a, int row, SparseDataset b, int otherRow) {
+        return toDistance(comparable(a, row, b, otherRow));
+    }
+
+    /**
+     * Calcula el término de cada uno de varios vectores densos contiguos.
+     * @param vectors Vectores en orden por filas.
+     * @param count Número de vectores.
+     * @param length Número de dimensiones.
+     * @return El término de cada vector.
+     */
+    public double[] vectorTerms(double[] vectors, int count, int length) {
+        double[] terms = new double[count];
+        for (int c = 0; c < count; c++) {
+            terms[c] = vectorTerm(vectors, c * length, length);
+        }
+        return terms;
+    }
+
+    /**
+     * Busca el vector denso más cercano a una fila dispersa; en empate gana el de menor índice.
+     * @param data Conjunto disperso.
+     * @param row Fila del conjunto.
+     * @param vectors Vectores en orden por filas.
+     * @param terms Término de cada vector, de {@link #vectorTerms}.
+     * @param count Número de vectores.
+     * @return Índice del vector más cercano.
+     */
+    public int nearest(SparseDataset data, int row, double[] vectors, double[] terms, int count) {
+        int dimensions = data.dimensions();
+        int best = 0;
+        double bestValue = Double.POSITIVE_INFINITY;
+        for (int c = 0; c < count; c++) {
+            double value = comparable(data, row, vectors, c * dimensions, terms[c]);
+            if (value < bestValue) {
+                bestValue = value;
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Distancia euclidiana; el valor comparable es su cuadrado.
+     */
+    private static final class Euclidean extends SparseKernel {
+        @Override
+        public double comparable(SparseDataset a, int row, SparseDataset b, int otherRow) {
+            int[] aColumns = a.columns(), bColumns = b.columns();
+            double[] aValues = a.values(), bValues = b.values();
+            int i = a.rowStart(row), iEnd = a.rowEnd(row);
+            int j = b.rowStart(otherRow), jEnd = b.rowEnd(otherRow);
+            double sum = 0.0;
+            while (i < iEnd && j < jEnd) {
+                double delta;
+                if (aColumns[i] == bColumns[j]) {
+                    delta = aValues[i++] - bValues[j++];
+                } else if (aColumns[i] < bColumns[j]) {
+                    delta = aValues[i++];
+                } else {
+                    delta = bValues[j++];
+                }
+                sum += delta * delta;
+            }
+            for (; i < iEnd; i++) sum += aValues[i] * aValues[i];
+            for (; j < jEnd; j++) sum += bValues[j] * bValues[j];
+            return sum;
+        }
+
+        @Override
+        public double vectorTerm(double[] vector, int offset, int length) {
+            double sum = 0.0;
+            for (int i = 0; i < length; i++) {
+                sum += vector[offset + i] * vector[offset + i];
+            }
+            return sum;
+        }
+
+        @Override
+        public double comparable(SparseDataset data, int row, double[] vector, int offset, double vectorTerm) {
+            int[] columns = data.columns();
+            double[] values = data.values();
+            // ‖x − v‖² = ‖v‖² + Σ sobre las columnas de x de ((x_j − v_j)² − v_j²)
+            double sum = vectorTerm;
+            for (int i = data.rowStart(row), end = data.rowEnd(row); i < end; i++) {
+                double v = vector[offset + columns[i]];
+                double delta = values[i] - v;
+                sum += delta * delta - v * v;
+            }
+            return Math.max(sum, 0.0);
+        }
+
+        @Override
+        public double toDistance(double comparable) {
+            return Math.sqrt(comparable);
+        }
+    }
+
+    /**
+     * Distancia Manhattan; el valor comparable es la distancia misma.
+     */
+    private static final class Manhattan extends SparseKernel {
+        @Override
+        public double comparable(SparseDataset a, int row, SparseDataset b, int otherRow) {
+            int[] aColumns = a.columns(), bColumns = b.columns();
+            double[] aValues = a.values(), bValues = b.values();
+            int i = a.rowStart(row), iEnd = a.rowEnd(row);
+            int j = b.rowStart(otherRow), jEnd = b.rowEnd(otherRow);
+            double sum = 0.0;
+            while (i < iEnd && j < jEnd) {
+                if (aColumns[i] == bColumns[j]) {
+                    sum += Math.abs(aValues[i++] - bValues[j++]);
+                } else if (aColumns[i] < bColumns[j]) {
+                    sum += Math.abs(aValues[i++]);
+                } else {
+                    sum += Math.abs(bValues[j++]);
+                }
+            }
+            for (; i < iEnd; i++) sum += Math.abs(aValues[i]);
+            for (; j < jEnd; j++) sum += Math.abs(bValues[j]);
+            return sum;
+        }
+
+        @Override
+        public double vectorTerm(double[] vector, int offset, int length) {
+            double sum = 0.0;
+            for (int i = 0; i < length; i++) {
+                sum += Math.abs(vector[offset + i]);
+            }
+            return sum;
+        }
+
+        @Override
+        public double comparable(SparseDataset data, int row, double[] vector, int offset, double vectorTerm) {
+            int[] columns = data.columns();
+            double[] values = data.values();
+            double sum = vectorTerm;
+            for (int i = data.rowStart(row), end = data.rowEnd(row); i < end; i++) {
+                double v = vector[offset + columns[i]];
+                sum += Math.abs(values[i] - v) - Math.abs(v);
+            }
+            return Math.max(sum, 0.0);
+        }
+
+        @Override
+        public double toDistance(double comparable) {
+            return comparable;
+        }
+    }
+
+    /**
+     * Distancia de Minkowski con un exponente arbitrario; el valor comparable es la suma de las
+     * diferencias elevadas al exponente.
+     */
+    private static final class Minkowski extends SparseKernel {
+        private final double p;
+
+        Minkowski(double p) {
+            this.p = p;
+        }
+
+        @Override
+        public double comparable(SparseDataset a, int row, SparseDataset b, int otherRow) {
+            int[] aColumns = a.columns(), bColumns = b.columns();
+            double[] aValues = a.values(), bValues = b.values();
+            int i = a.rowStart(row), iEnd = a.rowEnd(row);
+            int j = b.rowStart(otherRow), jEnd = b.rowEnd(otherRow);
+            double sum = 0.0;
+            while (i < iEnd && j < jEnd) {
+                double delta;
+                if (aColumns[i] == bColumns[j]) {
+                    delta = aValues[i++] - bValues[j++];
+                } else if (aColumns[i] < bColumns[j]) {
+                    delta = aValues[i++];
+                } else {
+                    delta = bValues[j++];
+                }
+                sum += Math.pow(Math.abs(delta), p);
+            }
+            for (; i < iEnd; i++) sum += Math.pow(Math.abs(aValues[i]), p);
+            for (; j < jEnd; j++) sum += Math.pow(Math.abs(bValues[j]), p);
+            return sum;
+        }
+
+        @Override
+        public double vectorTerm(double[] vector, int offset, int length) {
+            double sum = 0.0;
+            for (int i = 0; i < length; i++) {
+                sum += Math.pow(Math.abs(vector[offset + i]), p);
+            }
+            return sum;
+        }
+
+        @Override
+        public double comparable(SparseDataset data, int row, double[] vector, int offset, double vectorTerm) {
+            int[] columns = data.columns();
+            double[] values = data.values();
+            double sum = vectorTerm;
+            for (int i = data.rowStart(row), end = data.rowEnd(row); i < end; i++) {
+                double v = vector[offset + columns[i]];
+                sum += Math.pow(Math.abs(values[i] - v), p) - Math.pow(Math.abs(v), p);
+            }
+            return Math.max(sum, 0.0);
+        }
+
+        @Override
+        public double toDistance(double comparable) {
+            return Math.pow(comparable, 1.0 / p);
+        }
+    }
+
+    /**
+     * Distancia de Chebyshev. Contra un vector denso recorre todas sus dimensiones, porque el
+     * máximo de las columnas nulas de la fila no puede calcularse de antemano.
+     */
+    private static final class Chebyshev extends SparseKernel {
+        @Override
+        public double comparable(SparseDataset a, int row, SparseDataset b, int otherRow) {
+            int[] aColumns = a.columns(), bColumns = b.columns();
+            double[] aValues = a.values(), bValues = b.values();
+            int i = a.rowStart(row), iEnd = a.rowEnd(row);
+            int j = b.rowStart(otherRow), jEnd = b.rowEnd(otherRow);
+            double max = 0.0;
+            while (i < iEnd && j < jEnd) {
+                if (aColumns[i] == bColumns[j]) {
+                    max = Math.max(max, Math.abs(aValues[i++] - bValues[j++]));
+                } else if (aColumns[i] < bColumns[j]) {
+                    max = Math.max(max, Math.abs(aValues[i++]));
+                } else {
+                    max = Math.max(max, Math.abs(bValues[j++]));
+                }
+            }
+            for (; i < iEnd; i++) max = Math.max(max, Math.abs(aValues[i]));
+            for (; j < jEnd; j++) max = Math.max(max, Math.abs(bValues[j]));
+            return max;
+        }
+
+        @Override
+        public double vectorTerm(double[] vector, int offset, int length) {
+            return 0.0;
+        }
+
+        @Override
+        public double comparable(SparseDataset data, int row, double[] vector, int offset, double vectorTerm) {
+            int[] columns = data.columns();
+            double[] values = data.values();
+            int i = data.rowStart(row), end = data.rowEnd(row);
+            double max = 0.0;
+            for (int column = 0, length = data.dimensions(); column < length; column++) {
+                double value = i < end && columns[i] == column ? values[i++] : 0.0;
+                max = Math.max(max, Math.abs(value - vector[offset + column]));
+            }
+            return max;
+        }
+
+        @Override
+        public double toDistance(double comparable) {
+            return comparable;
+        }
+    }
+
+    /**
+     * Distancia coseno sobre filas de norma 1: uno menos el producto punto, que solo recorre las
+     * columnas distintas de cero.
+     */
+    private static final class Cosine extends SparseKernel {
+        @Override
+        public double comparable(SparseDataset a, int row, SparseDataset b, int otherRow) {
+            int[] aColumns = a.columns(), bColumns = b.columns();
+            double[] aValues = a.values(), bValues = b.values();
+            int i = a.rowStart(row), iEnd = a.rowEnd(row);
+            int j = b.rowStart(otherRow), jEnd = b.rowEnd(otherRow);
+            double dot = 0.0;
+            while (i < iEnd && j < jEnd) {
+                if (aColumns[i] == bColumns[j]) {
+                    dot += aValues[i++] * bValues[j++];
+                } else if (aColumns[i] < bColumns[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return 1.0 - dot;
+        }
+
+        @Override
+        public double vectorTerm(double[] vector, int offset, int length) {
+            return 0.0;
+        }
+
+        @Override
+        public double comparable(SparseDataset data, int row, double[] vector, int offset, double vectorTerm) {
+            int[] columns = data.columns();
+            double[] values = data.values();
+            double dot = 0.0;
+            for (int i = data.rowStart(row), end = data.rowEnd(row); i < end; i++) {
+                dot += values[i] * vector[offset + columns[i]];
+            }
+            return 1.0 - dot;
+        }
+
+        @Override
+        public double toDistance(double comparable) {
+            return comparable;
+        }
+    }
+}
@@ -0,0 +1,651 @@
+package iteso.clusters;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Índice espacial sobre las filas de una matriz de características, para buscar el punto más
+ * cercano, los k más cercanos o todos los que están dentro de un radio sin recorrer todos los puntos.
+ * <p>
+ * El índice es un árbol binario implícito: el nodo i tiene por hijos a 2i + 1 y 2i + 2, y cada nodo
+ * cubre un rango de un arreglo de índices de filas que se parte por la mitad. Como los rangos solo
+ * dependen del número de puntos, los subárboles se construyen en paralelo sin coordinación y el
+ * resultado es el mismo con cualquier número de hilos. Cada implementación guarda la cota de sus
+ * nodos: cajas alineadas a los ejes en {@link KdTree} y esferas en {@link BallTree}.
+ * <p>
+ * Un índice construido no cambia y puede consultarse desde varios hilos, siempre que cada hilo use
+ * su propio {@link Search}. Las búsquedas son exactas: en empates gana la fila de menor índice.
+ */
+public abstract class SpatialIndex {
+    /**
+     * Número máximo de puntos por hoja.
+     */
+    public static final int DEFAULT_LEAF_SIZE = 32;
+
+    /**
+     * Mayor número de dimensiones con el que {@link #build} elige un k-d tree.
+     */
+    static final int KD_TREE_MAX_DIMENSIONS = 16;
+
+    /**
+     * Número de puntos a partir del cual un subárbol se construye en una tarea aparte.
+     */
+    private static final int PARALLEL_THRESHOLD = 16384;
+
+    /**
+     * Margen relativo con el que se relajan las cotas para absorber errores de redondeo.
+     */
+    private static final double MARGIN = 1e-10;
+
+    /**
+     * Características en orden por filas.
+     */
+    double[] values;
+
+    /**
+     * Número de puntos y de dimensiones.
+     */
+    final int size, dimensions;
+
+    /**
+     * Métrica y su núcleo de distancias.
+     */
+    final DistanceMetric metric;
+    final DistanceKernel kernel;
+
+    /**
+     * Filas en el orden del árbol; cada nodo cubre un rango contiguo.
+     */
+    final int[] order;
+
+    /**
+     * Número de nodos e índice de la primera hoja.
+     */
+    final int nodeCount, firstLeaf;
+
+    /**
+     * Rango [inicio, fin) de {@link #order} que cubre cada nodo.
+     */
+    final int[] nodeStart, nodeEnd;
+
+    /**
+     * Constructor que calcula la forma del árbol; las subclases reservan sus cotas y llaman a {@link #build}.
+     * @param values Características en orden por filas.
+     * @param size Número de puntos.
+     * @param dimensions Número de dimensiones.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param leafSize Número máximo de puntos por hoja.
+     */
+    SpatialIndex(double[] values, int size, int dimensions, DistanceKernel kernel, int leafSize) {
+        if (leafSize < 1) {
+            throw new IllegalArgumentException("El tamaño de hoja debe ser al menos 1");
+        }
+        this.values = values;
+        this.size = size;
+        this.dimensions = dimensions;
+        this.metric = kernel.metric();
+        this.kernel = kernel;
+        this.order = new int[size];
+        int levels = 1;
+        while (levels < 31 && ((long) size + (1L << (levels - 1)) - 1) >> (levels - 1) > leafSize) {
+            levels++;
+        }
+        this.nodeCount = (1 << levels) - 1;
+        this.firstLeaf = (1 << (levels - 1)) - 1;
+        this.nodeStart = new int[nodeCount];
+        this.nodeEnd = new int[nodeCount];
+        nodeEnd[0] = size;
+        for (int node = 0; node < firstLeaf; node++) {
+            int middle = nodeStart[node] + (nodeEnd[node] - nodeStart[node]) / 2;
+            nodeStart[2 * node + 1] = nodeStart[node];
+            nodeEnd[2 * node + 1] = middle;
+            nodeStart[2 * node + 2] = middle;
+            nodeEnd[2 * node + 2] = nodeEnd[node];
+        }
+    }
+
+    /**
+     * Construye un índice sobre un conjunto de datos en el hilo actual.
+     * @param data Conjunto de datos.
+     * @param metric Métrica de distancia.
+     * @return El índice.
+     * @see #build(Dataset, DistanceMetric, ForkJoinPool)
+     */
+    public static SpatialIndex build(Dataset data, DistanceMetric metric) {
+        return build(data, metric, null);
+    }
+
+    /**
+     * Construye un índice sobre un conjunto de datos: un {@link KdTree} para la métrica euclidiana
+     * en pocas dimensiones, un {@link BallTree} para las demás métricas de Minkowski o muchas
+     * dimensiones y un {@link LinearScanIndex} para las métricas sin cotas, como la coseno.
+     * @param data Conjunto de datos.
+     * @param metric Métrica de distancia.
+     * @param pool Pool de hilos para construir en paralelo, o null.
+     * @return El índice.
+     */
+    public static SpatialIndex build(Dataset data, DistanceMetric metric, ForkJoinPool pool) {
+        return build(data, DistanceKernel.of(metric), pool);
+    }
+
+    /**
+     * Construye un índice con el núcleo de una métrica, por ejemplo
+     * {@link DistanceKernel#minkowski(double)} con un exponente dado.
+     * @param data Conjunto de datos.
+     * @param kernel Núcleo de distancias.
+     * @param pool Pool de hilos para construir en paralelo, o null.
+     * @return El índice.
+     */
+    public static SpatialIndex build(Dataset data, DistanceKernel kernel, ForkJoinPool pool) {
+        Dataset heap = data.toHeap();
+        SpatialIndex index = create(heap.array(), heap.size(), heap.dimensions(), kernel, DEFAULT_LEAF_SIZE);
+        index.build(pool);
+        return index;
+    }
+
+    /**
+     * Crea el tipo de índice adecuado sin construirlo.
+     * @param values Características en orden por filas.
+     * @param size Número de puntos.
+     * @param dimensions Número de dimensiones.
+     * @param kernel Núcleo de distancias de la métrica.
+     * @param leafSize Número máximo de puntos por hoja.
+     * @return El índice, que debe construirse con {@link #build(ForkJoinPool)}.
+     */
+    static SpatialIndex create(double[] values, int size, int dimensions, DistanceKernel kernel, int leafSize) {
+        DistanceMetric metric = kernel.metric();
+        if (!metric.supportsTrianglePruning() && !metric.supportsBoxBounds()) {
+            return new LinearScanIndex(values, size, dimensions, kernel, leafSize);
+        }
+        return metric == DistanceMetric.EUCLIDEAN && dimensions <= KD_TREE_MAX_DIMENSIONS
+                ? new KdTree(values, size, dimensions, kernel, leafSize)
+                : new BallTree(values, size, dimensions, kernel, leafSize);
+    }
+
+    /**
+     * Obtiene el número de puntos indexados.
+     * @return Número de puntos.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Obtiene el número de dimensiones.
+     * @return Número de dimensiones.
+     */
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Obtiene la métrica de distancia del índice.
+     * @return La métrica.
+     */
+    public DistanceMetric getMetric() {
+        return metric;
+    }
+
+    /**
+     * Busca la fila más cercana a un vector.
+     * @param query Vector de consulta.
+     * @return Índice de la fila más cercana, o -1 si el índice está vacío.
+     */
+    public int nearest(double[] query) {
+        return nearest(query, 0, new Search());
+    }
+
+    /**
+     * Busca las filas más cercanas a un vector.
+     * @param query Vector de consulta.
+     * @param count Número de vecinos.
+     * @return Índices de las filas, de la más cercana a la más lejana.
+     */
+    public int[] nearest(double[] query, int count) {
+        Search search = new Search();
+        int found = nearest(query, 0, count, search);
+        return Arrays.copyOf(search.indices, found);
+    }
+
+    /**
+     * Busca las filas a una distancia no mayor que un radio.
+     * @param query Vector de consulta.
+     * @param radius Radio de búsqueda.
+     * @return Índices de las filas, en el orden del árbol.
+     */
+    public int[] withinRadius(double[] query, double radius) {
+        Search search = new Search();
+        int found = withinRadius(query, 0, radius, search);
+        return Arrays.copyOf(search.indices, found);
+    }
+
+    /**
+     * Busca la fila más cercana a un vector guardado dentro de un array más grande, sin asignar memoria.
+     * @param query Array que contiene el vector.
+     * @param offset Posición inicial del vector.
+     * @param search Estado de búsqueda del hilo actual; recibe el resultado y su distancia.
+     * @return Índice de la fila más cercana, o -1 si el índice está vacío.
+     */
+    public int nearest(double[] query, int offset, Search search) {
+        search.count = 0;
+        search.capacity = 1;
+        nearestIn(0, query, offset, search);
+        return search.finish(kernel) == 0 ? -1 : search.indices[0];
+    }
+
+    /**
+     * Busca las filas más cercanas a un vector guardado dentro de un array más grande.
+     * @param query Array que contiene el vector.
+     * @param offset Posición inicial del vector.
+     * @param count Número de vecinos.
+     * @param search Estado de búsqueda del hilo actual; recibe los resultados ordenados por distancia.
+     * @return Número de vecinos encontrados, el menor entre count y el tamaño del índice.
+     */
+    public int nearest(double[] query, int offset, int count, Search search) {
+        search.count = 0;
+        search.capacity = Math.max(0, Math.min(count, size));
+        search.ensureCapacity(search.capacity);
+        if (search.capacity > 0) {
+            nearestIn(0, query, offset, search);
+        }
+        return search.finish(kernel);
+    }
+
+    /**
+     * Busca las filas a una distancia no mayor que un radio de un vector guardado dentro de un array más grande.
+     * @param query Array que contiene el vector.
+     * @param offset Posición inicial del vector.
+     * @param radius Radio de búsqueda.
+     * @param search Estado de búsqueda del hilo actual; recibe los resultados en el orden del árbol.
+     * @return Número de filas encontradas.
+     */
+    public int withinRadius(double[] query, int offset, double radius, Search search) {
+        search.count = 0;
+        search.capacity = -1;
+        radiusIn(0, query, offset, radius, kernel.toComparable(radius), search);
+        return search.finish(kernel);
+    }
+
+    /**
+     * Construye el árbol sobre las características actuales.
+     * @param pool Pool de hilos, o null para construir en el hilo actual.
+     */
+    void build(ForkJoinPool pool) {
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        if (pool != null && size > PARALLEL_THRESHOLD) {
+            pool.invoke(new BuildTask(0));
+        } else {
+            buildSubtree(0);
+        }
+    }
+
+    /**
+     * Vuelve a construir el árbol en su lugar, sin asignar memoria, sobre otras características
+     * con el mismo número de puntos.
+     * @param values Nuevas características en orden por filas.
+     */
+    void rebuild(double[] values) {
+        this.values = values;
+        build(null);
+    }
+
+    /**
+     * Estima la memoria que reservó el índice, sin contar las características.
+     * @return Número de bytes.
+     */
+    long estimatedBytes() {
+        return 4L * size + 8L * nodeCount;
+    }
+
+    /**
+     * Calcula la cota de un nodo a partir de los puntos de su rango.
+     * @param node Índice del nodo; su rango no está vacío.
+     */
+    abstract void computeBounds(int node);
+
+    /**
+     * Elige la dimensión por la que se parte un nodo interno.
+     * @param node Índice del nodo.
+     * @return La dimensión.
+     */
+    abstract int splitDimension(int node);
+
+    /**
+     * Calcula una cota inferior de la distancia de un vector a cualquier punto de un nodo.
+     * @param node Índice del nodo; su rango no está vacío.
+     * @param query Array que contiene el vector.
+     * @param offset Posición inicial del vector.
+     * @param search Estado de búsqueda, con memoria auxiliar.
+     * @return La cota, en unidades de distancia.
+     */
+    abstract double lowerBound(int node, double[] query, int offset, Search search);
+
+    /**
+     * Calcula la cota de un nodo y reparte su rango entre sus hijos.
+     * @param node Índice del nodo.
+     */
+    private void buildNode(int node) {
+        int start = nodeStart[node];
+        int end = nodeEnd[node];
+        if (start == end) {
+            return;
+        }
+        computeBounds(node);
+        if (node < firstLeaf) {
+            select(start, end, nodeEnd[2 * node + 1], splitDimension(node));
+        }
+    }
+
+    /**
+     * Construye un subárbol completo en el hilo actual.
+     * @param node Raíz del subárbol.
+     */
+    private void buildSubtree(int node) {
+        buildNode(node);
+        if (node < firstLeaf) {
+            buildSubtree(2 * node + 1);
+            buildSubtree(2 * node + 2);
+        }
+    }
+
+    /**
+     * Tarea que construye un subárbol y lanza en paralelo los hijos grandes. Nunca se serializa,
+     * aunque {@link RecursiveAction} sea serializable.
+     */
+    @SuppressWarnings("serial")
+    private final class BuildTask extends RecursiveAction {
+        private final int node;
+
+        BuildTask(int node) {
+            this.node = node;
+        }
+
+        @Override
+        protected void compute() {
+            if (nodeEnd[node] - nodeStart[node] <= PARALLEL_THRESHOLD) {
+                buildSubtree(node);
+                return;
+            }
+            buildNode(node);
+            ForkJoinTask.invokeAll(new BuildTask(2 * node + 1), new BuildTask(2 * node + 2));
+        }
+    }
+
+    /**
+     * Reordena un rango de {@link #order} para que la posición target quede con el elemento de su
+     * rango según la dimensión dada, los menores antes y los mayores después (Hoare).
+     * @param start Inicio del rango.
+     * @param end Fin del rango (exclusivo).
+     * @param target Posición a fijar.
+     * @param dimension Dimensión de comparación.
+     */
+    private void select(int start, int end, int target, int dimension) {
+        int low = start;
+        int high = end - 1;
+        while (high > low) {
+            double a = key(low, dimension);
+            double b = key((low + high) >>> 1, dimension);
+            double c = key(high, dimension);
+            double pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (key(i, dimension) < pivot) i++;
+                while (key(j, dimension) > pivot) j--;
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (target <= j) {
+                high = j;
+            } else if (target >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Obtiene el valor de una dimensión de la fila en una posición de {@link #order}.
+     */
+    private double key(int position, int dimension) {
+        return values[order[position] * dimensions + dimension];
+    }
+
+    /**
+     * Calcula la cota de un nodo, infinita si su rango está vacío.
+     */
+    private double bound(int node, double[] query, int offset, Search search) {
+        if (nodeStart[node] == nodeEnd[node]) {
+            return Double.POSITIVE_INFINITY;
+        }
+        search.evaluations++;
+        return lowerBound(node, query, offset, search);
+    }
+
+    /**
+     * Búsqueda en profundidad de los vecinos más cercanos, visitando primero el hijo más cercano.
+     */
+    private void nearestIn(int node, double[] query, int offset, Search search) {
+        if (node >= firstLeaf) {
+            for (int i = nodeStart[node]; i < nodeEnd[node]; i++) {
+                int row = order[i];
+                search.evaluations++;
+                search.offer(row, kernel.comparable(query, offset, values, row * dimensions, dimensions));
+            }
+            return;
+        }
+        int left = 2 * node + 1;
+        int right = left + 1;
+        double leftBound = bound(left, query, offset, search);
+        double rightBound = bound(right, query, offset, search);
+        if (leftBound <= rightBound) {
+            if (!prunable(leftBound, search)) nearestIn(left, query, offset, search);
+            if (!prunable(rightBound, search)) nearestIn(right, query, offset, search);
+        } else {
+            if (!prunable(rightBound, search)) nearestIn(right, query, offset, search);
+            if (!prunable(leftBound, search)) nearestIn(left, query, offset, search);
+        }
+    }
+
+    /**
+     * Indica si un nodo no puede mejorar los vecinos encontrados. Un nodo a la misma distancia
+     * que el peor vecino no se descarta, porque puede contener una fila de menor índice.
+     */
+    private boolean prunable(double bound, Search search) {
+        return bound == Double.POSITIVE_INFINITY
+                || search.count == search.capacity && bound * (1 - MARGIN) > kernel.toDistance(search.worst());
+    }
+
+    /**
+     * Búsqueda en profundidad de las filas dentro del radio.
+     */
+    private void radiusIn(int node, double[] query, int offset, double radius, double limit, Search search) {
+        if (node >= firstLeaf) {
+            for (int i = nodeStart[node]; i < nodeEnd[node]; i++) {
+                int row = order[i];
+                search.evaluations++;
+                double value = kernel.comparable(query, offset, values, row * dimensions, dimensions);
+                // Cerca del límite se compara la distancia, porque convertir el radio redondea
+                if (value <= limit || value <= limit * (1 + MARGIN) && kernel.toDistance(value) <= radius) {
+                    search.append(row, value);
+                }
+            }
+            return;
+        }
+        for (int child = 2 * node + 1; child <= 2 * node + 2; child++) {
+            double bound = bound(child, query, offset, search);
+            if (bound != Double.POSITIVE_INFINITY && bound * (1 - MARGIN) <= radius) {
+                radiusIn(child, query, offset, radius, limit, search);
+            }
+        }
+    }
+
+    /**
+     * Estado reutilizable de las búsquedas de un hilo: los resultados de la última búsqueda y la
+     * memoria auxiliar, para que las búsquedas repetidas no asignen memoria. No es seguro
+     * compartirlo entre hilos.
+     */
+    public static final class Search {
+        int[] indices = new int[8];
+        double[] values = new double[8];
+        int count;
+
+        /**
+         * Número de vecinos buscados, o -1 en una búsqueda por radio.
+         */
+        int capacity;
+
+        /**
+         * Memoria auxiliar de las cotas.
+         */
+        double[] scratch = new double[0];
+
+        /**
+         * Distancias evaluadas en todas las búsquedas, incluidas las cotas de los nodos.
+         */
+        long evaluations;
+
+        /**
+         * Obtiene el número de resultados de la última búsqueda.
+         * @return Número de resultados.
+         */
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Obtiene la fila de un resultado.
+         * @param i Posición del resultado.
+         * @return Índice de la fila.
+         */
+        public int getIndex(int i) {
+            return indices[i];
+        }
+
+        /**
+         * Obtiene la distancia de un resultado.
+         * @param i Posición del resultado.
+         * @return La distancia al vector de consulta.
+         */
+        public double getDistance(int i) {
+            return values[i];
+        }
+
+        /**
+         * Obtiene el número de distancias evaluadas en todas las búsquedas con este estado.
+         * @return Número de evaluaciones.
+         */
+        public long getEvaluations() {
+            return evaluations;
+        }
+
+        /**
+         * Obtiene la memoria auxiliar con al menos el tamaño indicado.
+         */
+        double[] scratch(int length) {
+            if (scratch.length < length) {
+                scratch = new double[length];
+            }
+            return scratch;
+        }
+
+        void ensureCapacity(int length) {
+            if (indices.length < length) {
+                int newLength = Math.max(length, indices.length * 2);
+                indices = Arrays.copyOf(indices, newLength);
+                values = Arrays.copyOf(values, newLength);
+            }
+        }
+
+        /**
+         * Valor comparable del peor vecino encontrado, en la raíz del montículo.
+         */
+        double worst() {
+            return values[0];
+        }
+
+        /**
+         * Agrega un resultado de una búsqueda por radio.
+         */
+        void append(int index, double value) {
+            ensureCapacity(count + 1);
+            indices[count] = index;
+            values[count++] = value;
+        }
+
+        /**
+         * Ofrece un candidato a un montículo de máximos con los mejores vecinos; en empate de
+         * distancia se considera peor la fila de mayor índice.
+         */
+        void offer(int index, double value) {
+            if (count < capacity) {
+                int i = count++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (!worse(values[parent], indices[parent], value, index)) {
+                        indices[i] = indices[parent];
+                        values[i] = values[parent];
+                        i = parent;
+                    } else {
+                        break;
+                    }
+                }
+                indices[i] = index;
+                values[i] = value;
+            } else if (worse(values[0], indices[0], value, index)) {
+                siftDown(0, count, index, value);
+            }
+        }
+
+        /**
+         * Convierte el montículo en una lista ordenada de la más cercana a la más lejana, o deja
+         * los resultados por radio en su orden, y pasa los valores a distancias.
+         * @return Número de resultados.
+         */
+        int finish(DistanceKernel kernel) {
+            if (capacity >= 0) {
+                for (int end = count - 1; end > 0; end--) {
+                    int index = indices[end];
+                    double value = values[end];
+                    indices[end] = indices[0];
+                    values[end] = values[0];
+                    siftDown(0, end, index, value);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                values[i] = kernel.toDistance(values[i]);
+            }
+            return count;
+        }
+
+        private void siftDown(int i, int length, int index, double value) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= length) break;
+                if (child + 1 < length && worse(values[child + 1], indices[child + 1], values[child], indices[child])) {
+                    child++;
+                }
+                if (!worse(values[child], indices[child], value, index)) break;
+                indices[i] = indices[child];
+                values[i] = values[child];
+                i = child;
+            }
+            indices[i] = index;
+            values[i] = value;
+        }
+
+        private static boolean worse(double value, int index, double otherValue, int otherIndex) {
+            return value > otherValue || value == otherValue && index > otherIndex;
+        }
+    }
+}
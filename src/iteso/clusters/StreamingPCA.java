@@ -0,0 +1,350 @@
+package iteso.clusters;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Análisis de componentes principales por iteración de subespacios aleatorizada (Halko, Martinsson
+ * y Tropp, 2011), sin formar la matriz de covarianza de d x d.
+ * <p>
+ * Cada pasada recorre los puntos por bloques y multiplica la covarianza por una base Q de t + p
+ * columnas: Y = Xcᵀ (Xc Q), con Xc los datos centrados. El centrado no se materializa, así que un
+ * {@link SparseDataset} sigue disperso y cada pasada cuesta O(valores distintos de cero · (t + p)).
+ * Los productos por filas se reparten por bloques de filas y la acumulación de Y por grupos de
+ * columnas, de modo que cada valor se suma siempre en el orden de las filas y el resultado es el
+ * mismo con cualquier número de hilos. Tras las pasadas, los componentes se obtienen de la
+ * proyección de la covarianza sobre la base (Rayleigh-Ritz), una matriz de (t + p) x (t + p).
+ */
+public class StreamingPCA extends DimensionReduction {
+    /**
+     * Número de filas cuyos productos se guardan a la vez durante una pasada.
+     */
+    private static final int WINDOW_ROWS = 8192;
+
+    /**
+     * Número mínimo de columnas de Y por grupo al repartir la acumulación entre hilos.
+     */
+    private static final int SLICE_COLUMNS = 8;
+
+    /**
+     * Número de pasadas de iteración de subespacios.
+     */
+    private int passes = 3;
+
+    /**
+     * Columnas adicionales de la base, que mejoran la precisión de los últimos componentes.
+     */
+    private int oversampling = 10;
+
+    /**
+     * Media de cada dimensión de los datos del ajuste.
+     */
+    private double[] mean;
+
+    /**
+     * Varianza explicada por cada componente.
+     */
+    private double[] explainedVariance;
+
+    /**
+     * Constructor que fija el número de componentes.
+     * @param components Número de componentes principales, que es la dimensión del resultado.
+     */
+    public StreamingPCA(int components) {
+        super(components);
+    }
+
+    /**
+     * Establece el número de pasadas de iteración de subespacios. Cada pasada recorre los datos
+     * una vez; con espectros que decaen lento conviene subirlo.
+     * @param passes Número de pasadas, al menos 0.
+     */
+    public void setPasses(int passes) {
+        if (passes < 0) {
+            throw new IllegalArgumentException("El número de pasadas no puede ser negativo");
+        }
+        this.passes = passes;
+    }
+
+    /**
+     * Establece el número de columnas adicionales de la base.
+     * @param oversampling Columnas adicionales, al menos 0.
+     */
+    public void setOversampling(int oversampling) {
+        if (oversampling < 0) {
+            throw new IllegalArgumentException("El sobremuestreo no puede ser negativo");
+        }
+        this.oversampling = oversampling;
+    }
+
+    /**
+     * Obtiene la media de los datos del ajuste, que se resta antes de proyectar.
+     * @return Copia de la media de cada dimensión, o null antes del ajuste.
+     */
+    public double[] getMean() {
+        return mean != null ? mean.clone() : null;
+    }
+
+    /**
+     * Obtiene la varianza de los datos a lo largo de cada componente, en orden decreciente.
+     * @return Copia de la varianza explicada por cada componente, o null antes del ajuste.
+     */
+    public double[] getExplainedVariance() {
+        return explainedVariance != null ? explainedVariance.clone() : null;
+    }
+
+    @Override
+    void fit(Rows rows, ForkJoinPool executor) {
+        int size = rows.size;
+        int d = rows.dimensions;
+        int t = targetDimensions;
+        if (t > d) {
+            throw new IllegalArgumentException("No puede haber más componentes (" + t + ") que dimensiones (" + d + ")");
+        }
+        int width = Math.min(t + oversampling, d);
+
+        // Media de cada dimensión, en el orden de las filas
+        double[] mu = new double[d];
+        for (int row = 0; row < size; row++) {
+            for (int i = rows.start(row), end = rows.end(row); i < end; i++) {
+                mu[rows.column(row, i)] += rows.values[i];
+            }
+        }
+        for (int j = 0; j < d; j++) {
+            mu[j] /= Math.max(size, 1);
+        }
+
+        // Base inicial gaussiana; solo depende de la semilla
+        SplittableRandom random = new SplittableRandom(seed != null ? seed : new Random().nextLong());
+        double[] basis = new double[Math.multiplyExact(d, width)];
+        for (int i = 0; i < basis.length; i++) {
+            basis[i] = gaussian(random);
+        }
+        orthonormalize(basis, d, width);
+        for (int pass = 0; pass < passes; pass++) {
+            basis = covarianceProduct(rows, mu, basis, width, executor);
+            orthonormalize(basis, d, width);
+        }
+
+        // Rayleigh-Ritz: H = Qᵀ C Q es pequeña y sus vectores propios rotan la base
+        double[] product = covarianceProduct(rows, mu, basis, width, executor);
+        double[] projected = new double[width * width];
+        for (int j = 0; j < d; j++) {
+            int base = j * width;
+            for (int a = 0; a < width; a++) {
+                double q = basis[base + a];
+                if (q == 0.0) continue;
+                for (int b = 0; b < width; b++) {
+                    projected[a * width + b] += q * product[base + b];
+                }
+            }
+        }
+        for (int a = 0; a < width; a++) {
+            for (int b = a + 1; b < width; b++) {
+                double average = 0.5 * (projected[a * width + b] + projected[b * width + a]);
+                projected[a * width + b] = average;
+                projected[b * width + a] = average;
+            }
+        }
+        double[] vectors = new double[width * width];
+        double[] values = symmetricEigen(projected, width, vectors);
+        Integer[] order = new Integer[width];
+        for (int a = 0; a < width; a++) order[a] = a;
+        Arrays.sort(order, (a, b) -> Double.compare(values[b], values[a]));
+
+        double[] matrix = new double[Math.multiplyExact(d, t)];
+        double[] variance = new double[t];
+        for (int c = 0; c < t; c++) {
+            int source = order[c];
+            variance[c] = Math.max(values[source], 0.0) / Math.max(size - 1, 1);
+            for (int j = 0; j < d; j++) {
+                double sum = 0.0;
+                for (int a = 0; a < width; a++) {
+                    sum += basis[j * width + a] * vectors[a * width + source];
+                }
+                matrix[j * t + c] = sum;
+            }
+            // Signo canónico: la entrada de mayor magnitud es positiva
+            int largest = 0;
+            for (int j = 1; j < d; j++) {
+                if (Math.abs(matrix[j * t + c]) > Math.abs(matrix[largest * t + c])) largest = j;
+            }
+            if (matrix[largest * t + c] < 0) {
+                for (int j = 0; j < d; j++) matrix[j * t + c] = -matrix[j * t + c];
+            }
+        }
+        double[] projectedMean = new double[t];
+        for (int j = 0; j < d; j++) {
+            if (mu[j] == 0.0) continue;
+            for (int c = 0; c < t; c++) {
+                projectedMean[c] += mu[j] * matrix[j * t + c];
+            }
+        }
+        mean = mu;
+        explainedVariance = variance;
+        components = matrix;
+        shift = projectedMean;
+    }
+
+    /**
+     * Multiplica la covarianza sin normalizar de los datos por una base: Xcᵀ (Xc Q), recorriendo
+     * los puntos por ventanas de filas.
+     * @param rows Filas de los datos.
+     * @param mu Media de cada dimensión.
+     * @param basis Base en orden por filas (dimensiones x width).
+     * @param width Número de columnas de la base.
+     * @param executor Pool de hilos, o null.
+     * @return El producto, con la misma forma que la base.
+     */
+    private static double[] covarianceProduct(Rows rows, double[] mu, double[] basis, int width,
+                                              ForkJoinPool executor) {
+        int d = rows.dimensions;
+        double[] muBasis = new double[width];
+        for (int j = 0; j < d; j++) {
+            if (mu[j] == 0.0) continue;
+            for (int c = 0; c < width; c++) {
+                muBasis[c] += mu[j] * basis[j * width + c];
+            }
+        }
+        double[] result = new double[basis.length];
+        double[] total = new double[width];
+        double[] window = new double[Math.min(WINDOW_ROWS, Math.max(rows.size, 1)) * width];
+        int slices = (width + SLICE_COLUMNS - 1) / SLICE_COLUMNS;
+        for (int first = 0; first < rows.size; first += WINDOW_ROWS) {
+            int start = first;
+            int end = Math.min(rows.size, first + WINDOW_ROWS);
+            // z = (x − μ)·Q para cada fila de la ventana, por bloques de filas independientes
+            KMeansEngine.runChunks(blockCount(end - start), executor, block -> {
+                for (int row = start + block * BLOCK_ROWS, last = Math.min(end, row + BLOCK_ROWS); row < last; row++) {
+                    int offset = (row - start) * width;
+                    rows.multiply(row, basis, width, window, offset);
+                    for (int c = 0; c < width; c++) {
+                        window[offset + c] -= muBasis[c];
+                    }
+                }
+            });
+            // Y += xᵀ z, por grupos de columnas para que cada valor se sume en el orden de las filas
+            KMeansEngine.runChunks(slices, executor, slice -> {
+                int from = slice * SLICE_COLUMNS;
+                int to = Math.min(width, from + SLICE_COLUMNS);
+                for (int row = start; row < end; row++) {
+                    rows.scatter(row, window, (row - start) * width, result, width, from, to);
+                }
+            });
+            for (int row = start; row < end; row++) {
+                int offset = (row - start) * width;
+                for (int c = 0; c < width; c++) {
+                    total[c] += window[offset + c];
+                }
+            }
+        }
+        // El centrado de xᵀ: Xcᵀ Z = Xᵀ Z − μ (1ᵀ Z)
+        for (int j = 0; j < d; j++) {
+            if (mu[j] == 0.0) continue;
+            for (int c = 0; c < width; c++) {
+                result[j * width + c] -= mu[j] * total[c];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Ortonormaliza las columnas de una matriz con Gram-Schmidt modificado, repetido dos veces
+     * para no perder ortogonalidad. Las columnas linealmente dependientes quedan en cero.
+     * @param matrix Matriz en orden por filas (rows x width).
+     * @param rows Número de filas.
+     * @param width Número de columnas.
+     */
+    private static void orthonormalize(double[] matrix, int rows, int width) {
+        for (int c = 0; c < width; c++) {
+            double original = columnNorm(matrix, rows, width, c);
+            for (int repeat = 0; repeat < 2; repeat++) {
+                for (int previous = 0; previous < c; previous++) {
+                    double dot = 0.0;
+                    for (int j = 0; j < rows; j++) {
+                        dot += matrix[j * width + c] * matrix[j * width + previous];
+                    }
+                    for (int j = 0; j < rows; j++) {
+                        matrix[j * width + c] -= dot * matrix[j * width + previous];
+                    }
+                }
+            }
+            double norm = columnNorm(matrix, rows, width, c);
+            double scale = norm > 1e-10 * original && norm > 0.0 ? 1.0 / norm : 0.0;
+            for (int j = 0; j < rows; j++) {
+                matrix[j * width + c] *= scale;
+            }
+        }
+    }
+
+    private static double columnNorm(double[] matrix, int rows, int width, int column) {
+        double sum = 0.0;
+        for (int j = 0; j < rows; j++) {
+            double value = matrix[j * width + column];
+            sum += value * value;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Calcula los valores y vectores propios de una matriz simétrica con el método de Jacobi
+     * cíclico, adecuado para las matrices pequeñas de Rayleigh-Ritz.
+     * @param matrix Matriz simétrica (size x size); se modifica.
+     * @param size Número de filas.
+     * @param vectors Matriz donde se guardan los vectores propios por columnas.
+     * @return Los valores propios, en el orden de las columnas de los vectores.
+     */
+    static double[] symmetricEigen(double[] matrix, int size, double[] vectors) {
+        Arrays.fill(vectors, 0.0);
+        for (int i = 0; i < size; i++) vectors[i * size + i] = 1.0;
+        for (int sweep = 0; sweep < 100; sweep++) {
+            double off = 0.0, diagonal = 0.0;
+            for (int p = 0; p < size; p++) {
+                diagonal += matrix[p * size + p] * matrix[p * size + p];
+                for (int q = p + 1; q < size; q++) off += matrix[p * size + q] * matrix[p * size + q];
+            }
+            if (off <= 1e-30 * Math.max(diagonal, Double.MIN_NORMAL)) {
+                break;
+            }
+            for (int p = 0; p < size; p++) {
+                for (int q = p + 1; q < size; q++) {
+                    double apq = matrix[p * size + q];
+                    if (apq == 0.0) continue;
+                    double theta = (matrix[q * size + q] - matrix[p * size + p]) / (2 * apq);
+                    double tangent = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+                    if (theta == 0.0) tangent = 1.0;
+                    double cosine = 1 / Math.sqrt(tangent * tangent + 1);
+                    double sine = tangent * cosine;
+                    for (int k = 0; k < size; k++) {
+                        double akp = matrix[k * size + p], akq = matrix[k * size + q];
+                        matrix[k * size + p] = cosine * akp - sine * akq;
+                        matrix[k * size + q] = sine * akp + cosine * akq;
+                    }
+                    for (int k = 0; k < size; k++) {
+                        double apk = matrix[p * size + k], aqk = matrix[q * size + k];
+                        matrix[p * size + k] = cosine * apk - sine * aqk;
+                        matrix[q * size + k] = sine * apk + cosine * aqk;
+                    }
+                    for (int k = 0; k < size; k++) {
+                        double vkp = vectors[k * size + p], vkq = vectors[k * size + q];
+                        vectors[k * size + p] = cosine * vkp - sine * vkq;
+                        vectors[k * size + q] = sine * vkp + cosine * vkq;
+                    }
+                }
+            }
+        }
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) values[i] = matrix[i * size + i];
+        return values;
+    }
+
+    /**
+     * Genera un número con distribución normal estándar con el método de Box-Muller.
+     */
+    private static double gaussian(SplittableRandom random) {
+        double u = 1.0 - random.nextDouble();
+        return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * random.nextDouble());
+    }
+}
@@ -1,5 +1,8 @@
 package iteso.clusters;
 
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
 /**
  * Clase de utilidades con métodos estáticos.
  */
@@ -12,25 +15,37 @@ public class Utils {
      * @return La distancia calculada.
      */
     public static double calculateDistance(double[] features1, double[] features2, DistanceMetric metric) {
-        double distance = 0.0;
-        switch (metric) {
-            case EUCLIDEAN:
-                // Calcular la suma de las diferencias al cuadrado
-                for (int i = 0; i < features1.length; i++) {
-                    distance += Math.pow(features1[i] - features2[i], 2);
-                }
-                // Obtener la raíz cuadrada de la suma
-                distance = Math.sqrt(distance);
-                break;
-            case MANHATTAN:
-                // Calcular la suma de las diferencias absolutas
-                for (int i = 0; i < features1.length; i++) {
-                    distance += Math.abs(features1[i] - features2[i]);
-                }
-                break;
-            default:
-                throw new IllegalArgumentException("Métrica no soportada");
+        return calculateDistance(features1, 0, features2, 0, features1.length, metric);
+    }
+
+    /**
+     * Calcula la distancia entre dos vectores almacenados dentro de arrays más grandes,
+     * como las filas de la matriz contigua de un {@link Dataset}. Los ciclos internos deben obtener
+     * el {@link DistanceKernel} una sola vez en lugar de llamar a este método por cada par.
+     * Con {@link DistanceMetric#MINKOWSKI} se usa {@link DistanceMetric#DEFAULT_MINKOWSKI_P}; para otro
+     * exponente se usa directamente {@link DistanceKernel#minkowski(double)}.
+     * @param features1 Array que contiene el primer vector.
+     * @param offset1 Posición inicial del primer vector.
+     * @param features2 Array que contiene el segundo vector.
+     * @param offset2 Posición inicial del segundo vector.
+     * @param length Número de características de cada vector.
+     * @param metric La métrica de distancia a utilizar.
+     * @return La distancia calculada.
+     */
+    public static double calculateDistance(double[] features1, int offset1, double[] features2, int offset2,
+                                           int length, DistanceMetric metric) {
+        return DistanceKernel.of(metric).distance(features1, offset1, features2, offset2, length);
+    }
+
+    /**
+     * Detiene un cálculo largo si se pidió, por ejemplo al cancelarse o vencerse el trabajo de
+     * {@link ClusteringService} que lo ejecuta.
+     * @param stop Condición de paro, o null si el cálculo no puede detenerse.
+     * @throws CancellationException Si la condición se cumple.
+     */
+    static void checkStop(BooleanSupplier stop) {
+        if (stop != null && stop.getAsBoolean()) {
+            throw new CancellationException("Cálculo detenido");
         }
-        return distance;
     }
-}
\ No newline at end of file
+}